@@ -0,0 +1,45 @@
+#!/usr/bin/env bash
+# Time from `docker run` to the first answered API request, for comparing image builds:
+#
+#   docker compose up -d
+#   docker build -t forkthebill:jar .
+#   docker build --build-arg AOT=true -t forkthebill:aot .
+#   scripts/measure-startup.sh forkthebill:jar 5
+#   scripts/measure-startup.sh forkthebill:aot 5
+#
+# The first request is a GET for an unknown slug, so it goes through the rate limiter, the
+# dispatcher servlet and a database lookup before its 404 counts as served.
+set -euo pipefail
+
+image=${1:?usage: measure-startup.sh <image> [runs]}
+runs=${2:-3}
+port=${PORT:-18080}
+database_url=${DATABASE_URL:-jdbc:postgresql://localhost:5433/forkthebill}
+
+now_ms() {
+    date +%s%3N
+}
+
+for run in $(seq 1 "$runs"); do
+    start=$(now_ms)
+    container=$(docker run -d --rm --network host \
+        -e PORT="$port" \
+        -e DATABASE_URL="$database_url" \
+        -e DATABASE_USERNAME="${DATABASE_USERNAME:-postgres}" \
+        -e DATABASE_PASSWORD="${DATABASE_PASSWORD:-postgres}" \
+        "$image")
+    trap 'docker stop "$container" > /dev/null 2>&1 || true' EXIT
+
+    until [ "$(curl -s -o /dev/null -w '%{http_code}' "http://localhost:$port/expense/startup-probe" || true)" = "404" ]; do
+        if [ "$(( $(now_ms) - start ))" -gt 120000 ]; then
+            echo "run $run: no answer after 120s" >&2
+            docker logs "$container" >&2
+            exit 1
+        fi
+        sleep 0.05
+    done
+
+    echo "run $run: first request answered after $(( $(now_ms) - start )) ms"
+    docker stop "$container" > /dev/null
+    trap - EXIT
+done
@@ -0,0 +1,37 @@
+#!/usr/bin/env bash
+# Builds the native image, starts it against the Compose database and runs the smoke tests:
+#
+#   docker compose up -d
+#   scripts/native-smoke-test.sh
+#
+# Prints the resident memory of the process once the tests pass, for comparing with the JVM image.
+set -euo pipefail
+
+image=${IMAGE:-forkthebill:native}
+port=${PORT:-18080}
+management_port=${MANAGEMENT_PORT:-18081}
+
+docker build --target native -t "$image" .
+
+container=$(docker run -d --rm --network host \
+    -e PORT="$port" \
+    -e MANAGEMENT_PORT="$management_port" \
+    -e DATABASE_URL="${DATABASE_URL:-jdbc:postgresql://localhost:5433/forkthebill}" \
+    -e DATABASE_USERNAME="${DATABASE_USERNAME:-postgres}" \
+    -e DATABASE_PASSWORD="${DATABASE_PASSWORD:-postgres}" \
+    "$image")
+trap 'docker stop "$container" > /dev/null 2>&1 || true' EXIT
+
+start=$(date +%s)
+until curl -sf -o /dev/null "http://localhost:$management_port/actuator/health"; do
+    if [ "$(( $(date +%s) - start ))" -gt 60 ]; then
+        echo "native image did not become healthy after 60s" >&2
+        docker logs "$container" >&2
+        exit 1
+    fi
+    sleep 0.1
+done
+
+./gradlew smokeTest -PsmokeBaseUrl="http://localhost:$port" -PsmokeManagementUrl="http://localhost:$management_port"
+
+docker stats --no-stream --format 'resident memory after smoke tests: {{.MemUsage}}' "$container"
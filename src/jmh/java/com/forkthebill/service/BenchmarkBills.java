@@ -0,0 +1,96 @@
+package com.forkthebill.service;
+
+import com.forkthebill.service.models.dto.BillParsedData;
+import com.forkthebill.service.models.entities.Expense;
+import com.forkthebill.service.models.entities.Item;
+import com.forkthebill.service.models.entities.Person;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Deterministic bills for the benchmarks: every item is claimed by one to three people.
+ */
+public final class BenchmarkBills {
+
+    private BenchmarkBills() {
+    }
+
+    public static Expense expense(int items, int people, long seed) {
+        Random random = new Random(seed);
+        Expense expense = Expense.builder()
+                .id(UUID.randomUUID().toString())
+                .slug("bench-" + items + "-" + people)
+                .createdAt(LocalDateTime.now())
+                .payerName("Payer")
+                .restaurantName("Benchmark Bistro")
+                .subtotal(BigDecimal.ZERO)
+                .tax(new BigDecimal("18.00"))
+                .serviceCharge(new BigDecimal("10.00"))
+                .discount(new BigDecimal("5.00"))
+                .totalAmount(BigDecimal.ZERO)
+                .version(0L)
+                .items(new ArrayList<>())
+                .people(new ArrayList<>())
+                .build();
+
+        for (int i = 0; i < items; i++) {
+            expense.addItem(Item.builder()
+                    .id(UUID.randomUUID().toString())
+                    .name("Item " + i)
+                    .price(BigDecimal.valueOf(100 + random.nextInt(90_000), 2))
+                    .quantity(1)
+                    .totalQuantity(1)
+                    .claimedBy(new ArrayList<>())
+                    .build());
+        }
+        for (int p = 0; p < people; p++) {
+            expense.addPerson(Person.builder()
+                    .id(UUID.randomUUID())
+                    .name("Diner " + p)
+                    .subtotal(BigDecimal.ZERO)
+                    .totalOwed(BigDecimal.ZERO)
+                    .itemsClaimed(new ArrayList<>())
+                    .build());
+        }
+
+        List<Person> diners = expense.getPeople();
+        for (Item item : expense.getItems()) {
+            int claimants = 1 + random.nextInt(Math.min(3, people));
+            for (int c = 0; c < claimants; c++) {
+                Person person = diners.get(random.nextInt(people));
+                if (!item.getClaimedBy().contains(person.getId())) {
+                    item.getClaimedBy().add(person.getId());
+                    person.getItemsClaimed().add(item.getId());
+                }
+            }
+        }
+        expense.recalculateAmounts();
+        return expense;
+    }
+
+    public static BillParsedData parsedBill(int lines, long seed) {
+        Random random = new Random(seed);
+        List<BillParsedData.BillItem> items = new ArrayList<>();
+        for (int i = 0; i < lines; i++) {
+            items.add(BillParsedData.BillItem.builder()
+                    .name("Item " + i)
+                    .price(BigDecimal.valueOf(100 + random.nextInt(90_000), 2))
+                    // Mostly single items, some shared plates ordered several times
+                    .quantity(random.nextInt(4) == 0 ? 2 + random.nextInt(4) : 1)
+                    .build());
+        }
+        return BillParsedData.builder()
+                .restaurantName("Benchmark Bistro")
+                .subtotal(new BigDecimal("1000.00"))
+                .tax(new BigDecimal("18.00"))
+                .serviceCharge(new BigDecimal("10.00"))
+                .totalAmount(new BigDecimal("1028.00"))
+                .items(items)
+                .build();
+    }
+}
@@ -0,0 +1,62 @@
+package com.forkthebill.service.models.entities;
+
+import com.forkthebill.service.BenchmarkBills;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Split math on bills from 5 to 500 items and 2 to 50 people.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ExpenseSplitBenchmark {
+
+    @Param({"5", "50", "500"})
+    public int items;
+
+    @Param({"2", "10", "50"})
+    public int people;
+
+    private Expense expense;
+    private String itemId;
+    private UUID personId;
+
+    @Setup
+    public void setUp() {
+        expense = BenchmarkBills.expense(items, people, 42);
+        // A pair that is not claimed yet, so claim + unclaim leaves the bill unchanged
+        outer:
+        for (Item item : expense.getItems()) {
+            for (Person person : expense.getPeople()) {
+                if (!item.getClaimedBy().contains(person.getId())) {
+                    itemId = item.getId();
+                    personId = person.getId();
+                    break outer;
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public Expense recalculateAmounts() {
+        expense.recalculateAmounts();
+        return expense;
+    }
+
+    @Benchmark
+    public Expense claimAndUnclaimItem() {
+        expense.claimItem(itemId, personId);
+        expense.unclaimItem(itemId, personId);
+        return expense;
+    }
+}
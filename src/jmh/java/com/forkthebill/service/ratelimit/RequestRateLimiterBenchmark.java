@@ -0,0 +1,78 @@
+package com.forkthebill.service.ratelimit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost RateLimitFilter adds to every /expense request when the request is allowed: a client,
+ * an address and a slug bucket lookup, each checked and then taken with a compare-and-set. The
+ * contended cases have all threads polling one slug, the worst case for the shared bucket, and
+ * the NAT case has them share one address too; nanoTime is the floor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RequestRateLimiterBenchmark {
+
+    private static final String SLUG = "john-doe-burger-2024-01-15";
+
+    private RequestRateLimiter rateLimiter;
+
+    @State(Scope.Thread)
+    public static class Client {
+        String address;
+        String session;
+
+        @Setup
+        public void setUp(ThreadParams threadParams) {
+            address = "10.0.0." + threadParams.getThreadIndex();
+            session = "session-" + threadParams.getThreadIndex();
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        // Budgets large enough that every request is allowed, which is the hot path
+        String unlimited = Integer.MAX_VALUE + "/1s";
+        rateLimiter = new RequestRateLimiter(new SimpleMeterRegistry(), 100_000, 8,
+                unlimited, unlimited, unlimited, unlimited, unlimited);
+    }
+
+    @Benchmark
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+
+    @Benchmark
+    public long poll(Client client) {
+        return rateLimiter.tryAcquire(RequestRateLimiter.Budget.POLL, client.address, client.session, SLUG);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long pollSharedSlug(Client client) {
+        return rateLimiter.tryAcquire(RequestRateLimiter.Budget.POLL, client.address, client.session, SLUG);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long pollSharedAddressAndSlug(Client client) {
+        return rateLimiter.tryAcquire(RequestRateLimiter.Budget.POLL, "10.0.0.1", client.session, SLUG);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long pollSharedClientAndSlug() {
+        return rateLimiter.tryAcquire(RequestRateLimiter.Budget.POLL, "10.0.0.1", "session", SLUG);
+    }
+}
@@ -0,0 +1,73 @@
+package com.forkthebill.service.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.forkthebill.service.BenchmarkBills;
+import com.forkthebill.service.cache.ExpenseResponseCache;
+import com.forkthebill.service.models.entities.Expense;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GET /expense/{slug} body throughput once the expense is loaded: mapping and serializing
+ * on every poll (before) against the bytes cached when the last write committed (after).
+ * The version lookup both paths share is not included.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ExpenseGetPathBenchmark {
+
+    @Param({"5", "50", "500"})
+    public int items;
+
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            .findAndAddModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+
+    private ExpenseService expenseService;
+    private Expense expense;
+    private ExpenseResponseCache cache;
+    private String etag;
+
+    @Setup
+    public void setUp() throws Exception {
+        expenseService = new ExpenseService(null, null, null, new ExpenseMetrics(new SimpleMeterRegistry()), null, null, null, null, null);
+        expense = BenchmarkBills.expense(items, Math.max(2, items / 10), 42);
+        expense.setVersion(1L);
+
+        cache = new ExpenseResponseCache(10_000, DataSize.ofKilobytes(1), 6);
+        etag = ExpenseResponseCache.etag(expense.getVersion());
+        cache.put(expense.getSlug(),
+                cache.body(etag, objectMapper.writeValueAsBytes(expenseService.mapToExpenseResponse(expense))));
+    }
+
+    @Benchmark
+    public int renderPerRequest() throws Exception {
+        out.reset();
+        objectMapper.writeValue(out, expenseService.mapToExpenseResponse(expense));
+        return out.size();
+    }
+
+    @Benchmark
+    public int servePublishedBytes() {
+        out.reset();
+        out.writeBytes(cache.get(expense.getSlug(), etag).json());
+        return out.size();
+    }
+}
@@ -0,0 +1,85 @@
+package com.forkthebill.service.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.forkthebill.service.BenchmarkBills;
+import com.forkthebill.service.models.dto.BillParsedData;
+import com.forkthebill.service.models.dto.CompactExpenseResponse;
+import com.forkthebill.service.models.dto.ExpenseRequest;
+import com.forkthebill.service.models.dto.ExpenseResponse;
+import com.forkthebill.service.models.entities.Expense;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity to DTO mapping and JSON serialization of the full and compact responses, and
+ * turning a parsed bill into an ExpenseRequest.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ExpenseMappingBenchmark {
+
+    @Param({"5", "50", "500"})
+    public int items;
+
+    @Param({"2", "10", "50"})
+    public int people;
+
+    // Same settings as the ObjectMapper Spring Boot configures
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            .findAndAddModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    private ExpenseService expenseService;
+    private Expense expense;
+    private ExpenseResponse response;
+    private CompactExpenseResponse compactResponse;
+    private BillParsedData parsedBill;
+
+    @Setup
+    public void setUp() {
+        // The mapping methods do not touch the repository or Gemini
+        expenseService = new ExpenseService(null, null, null, new ExpenseMetrics(new SimpleMeterRegistry()), null, null, null, null, null);
+        expense = BenchmarkBills.expense(items, people, 42);
+        response = expenseService.mapToExpenseResponse(expense);
+        compactResponse = expenseService.mapToCompactExpenseResponse(expense);
+        parsedBill = BenchmarkBills.parsedBill(items, 42);
+    }
+
+    @Benchmark
+    public ExpenseResponse mapToExpenseResponse() {
+        return expenseService.mapToExpenseResponse(expense);
+    }
+
+    @Benchmark
+    public byte[] serializeExpenseResponse() throws Exception {
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public CompactExpenseResponse mapToCompactExpenseResponse() {
+        return expenseService.mapToCompactExpenseResponse(expense);
+    }
+
+    @Benchmark
+    public byte[] serializeCompactExpenseResponse() throws Exception {
+        return objectMapper.writeValueAsBytes(compactResponse);
+    }
+
+    @Benchmark
+    public ExpenseRequest createExpenseRequestFromParsedData() {
+        return expenseService.createExpenseRequestFromParsedData(parsedBill, "Payer");
+    }
+}
@@ -0,0 +1,58 @@
+package com.forkthebill.service.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.forkthebill.service.BenchmarkBills;
+import com.forkthebill.service.models.entities.Expense;
+import com.forkthebill.service.utils.GzipCompressor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU cost of gzip per level against the bytes it saves on an ExpenseResponse body. The
+ * compressed size is printed once per trial; the precompressed cache pays this cost once
+ * per expense version instead of once per poll.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ResponseCompressionBenchmark {
+
+    @Param({"5", "50", "500"})
+    public int items;
+
+    @Param({"1", "6", "9"})
+    public int level;
+
+    private byte[] json;
+
+    @Setup
+    public void setUp() throws Exception {
+        ObjectMapper objectMapper = JsonMapper.builder()
+                .findAndAddModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        ExpenseService expenseService = new ExpenseService(null, null, null, new ExpenseMetrics(new SimpleMeterRegistry()), null, null, null, null, null);
+        Expense expense = BenchmarkBills.expense(items, Math.max(2, items / 10), 42);
+        json = objectMapper.writeValueAsBytes(expenseService.mapToExpenseResponse(expense));
+
+        int compressed = GzipCompressor.compress(json, level).length;
+        System.out.printf("%nitems=%d level=%d json=%d bytes gzip=%d bytes (%.1f%% of original)%n",
+                items, level, json.length, compressed, 100.0 * compressed / json.length);
+    }
+
+    @Benchmark
+    public byte[] gzip() {
+        return GzipCompressor.compress(json, level);
+    }
+}
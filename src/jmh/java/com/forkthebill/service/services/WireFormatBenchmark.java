@@ -0,0 +1,75 @@
+package com.forkthebill.service.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.forkthebill.service.BenchmarkBills;
+import com.forkthebill.service.config.WireFormatConfig;
+import com.forkthebill.service.models.dto.ExpenseResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ExpenseResponse through the JSON mapper the API uses by default against the CBOR mapper
+ * served for Accept: application/cbor. Encoded sizes are printed once per trial.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WireFormatBenchmark {
+
+    @Param({"5", "50", "500"})
+    public int items;
+
+    private ObjectMapper jsonMapper;
+    private ObjectMapper cborMapper;
+    private ExpenseResponse response;
+    private byte[] json;
+    private byte[] cbor;
+
+    @Setup
+    public void setUp() throws Exception {
+        jsonMapper = JsonMapper.builder()
+                .findAndAddModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        cborMapper = WireFormatConfig.cborMapper();
+
+        ExpenseService expenseService = new ExpenseService(null, null, null, new ExpenseMetrics(new SimpleMeterRegistry()), null, null, null, null, null);
+        response = expenseService.mapToExpenseResponse(BenchmarkBills.expense(items, Math.max(2, items / 10), 42));
+        json = jsonMapper.writeValueAsBytes(response);
+        cbor = cborMapper.writeValueAsBytes(response);
+
+        System.out.printf("%nitems=%d json=%d bytes cbor=%d bytes (%.1f%% of json)%n",
+                items, json.length, cbor.length, 100.0 * cbor.length / json.length);
+    }
+
+    @Benchmark
+    public byte[] serializeJson() throws Exception {
+        return jsonMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public byte[] serializeCbor() throws Exception {
+        return cborMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public ExpenseResponse deserializeJson() throws Exception {
+        return jsonMapper.readValue(json, ExpenseResponse.class);
+    }
+
+    @Benchmark
+    public ExpenseResponse deserializeCbor() throws Exception {
+        return cborMapper.readValue(cbor, ExpenseResponse.class);
+    }
+}
@@ -0,0 +1,51 @@
+package com.forkthebill.service.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.forkthebill.service.BenchmarkBills;
+import com.forkthebill.service.models.dto.BillParsedData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing a fenced Gemini reply into BillParsedData: the previous path (regex fence
+ * stripping and a new ObjectMapper per upload) against the shared, pre-warmed reader.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BillJsonParserBenchmark {
+
+    @Param({"5", "50"})
+    public int lines;
+
+    private String response;
+    private BillJsonParser parser;
+
+    @Setup
+    public void setUp() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        response = "```json\n" + objectMapper.writeValueAsString(BenchmarkBills.parsedBill(lines, 42)) + "\n```";
+        parser = new BillJsonParser(objectMapper);
+    }
+
+    @Benchmark
+    public BillParsedData newMapperPerUpload() throws Exception {
+        String json = response.trim()
+                .replaceFirst("```json", "")
+                .replaceFirst("```$", "");
+        return new ObjectMapper().readValue(json, BillParsedData.class);
+    }
+
+    @Benchmark
+    public BillParsedData sharedStreamingReader() throws Exception {
+        return parser.parse(response);
+    }
+}
@@ -0,0 +1,47 @@
+package com.forkthebill.service.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Settlement cost grows with members, not expenses: balances are kept per member
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DebtSimplifierBenchmark {
+
+    @Param({"8", "100", "1000"})
+    private int members;
+
+    private Map<String, BigDecimal> balances;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        balances = new HashMap<>();
+        long sum = 0;
+        for (int i = 1; i < members; i++) {
+            long cents = random.nextInt(100_001) - 50_000;
+            balances.put("member-" + i, BigDecimal.valueOf(cents, 2));
+            sum += cents;
+        }
+        balances.put("member-0", BigDecimal.valueOf(-sum, 2));
+    }
+
+    @Benchmark
+    public List<DebtSimplifier.Transfer> simplify() {
+        return DebtSimplifier.simplify(balances);
+    }
+}
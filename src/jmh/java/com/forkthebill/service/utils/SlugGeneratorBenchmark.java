@@ -0,0 +1,30 @@
+package com.forkthebill.service.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SlugGeneratorBenchmark {
+
+    private SlugGenerator slugGenerator;
+
+    @Setup
+    public void setUp() {
+        // generateSlug only reads the word list
+        slugGenerator = new SlugGenerator(null);
+    }
+
+    @Benchmark
+    public String generateSlug() {
+        return slugGenerator.generateSlug();
+    }
+}
@@ -0,0 +1,159 @@
+package com.forkthebill.service.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * One simulated table: the payer creates (or uploads) a bill and shares the link, diners
+ * join, everybody polls the bill while claiming items in bursts, and each diner marks
+ * themselves finished. Tables repeat with a new bill until the deadline.
+ *
+ * Everyone at a table shares one public address, as on restaurant Wi-Fi, and each person
+ * has their own client id.
+ */
+class DinnerTable implements Runnable {
+
+    private final LoadTestClient client;
+    private final LoadTestClient payer;
+    private final String address;
+    private final LoadTestOptions options;
+    private final byte[] billImage;
+    private final long deadlineNanos;
+
+    DinnerTable(LoadTestClient client, int table, LoadTestOptions options, byte[] billImage, long deadlineNanos) {
+        this.client = client;
+        // 198.18.0.0/15 is reserved for benchmarking, so it never collides with a real client
+        this.address = "198.18." + (table / 256 % 256) + "." + (table % 256);
+        this.payer = client.as(address, "table-" + table + "-payer");
+        this.options = options;
+        this.billImage = billImage;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    @Override
+    public void run() {
+        while (System.nanoTime() < deadlineNanos && !Thread.currentThread().isInterrupted()) {
+            JsonNode expense = createBill();
+            if (expense == null) {
+                pause(options.thinkTime().toNanos());
+                continue;
+            }
+
+            String slug = expense.get("slug").asText();
+            List<String> itemIds = new ArrayList<>();
+            expense.get("items").forEach(item -> itemIds.add(item.get("id").asText()));
+
+            List<Thread> diners = new ArrayList<>();
+            for (int d = 0; d < options.diners(); d++) {
+                String name = "Diner " + d;
+                LoadTestClient diner = client.as(address, UUID.randomUUID().toString());
+                diners.add(Thread.ofVirtual().start(() -> dine(diner, slug, name, itemIds)));
+            }
+            // The payer keeps the bill open while diners claim
+            while (diners.stream().anyMatch(Thread::isAlive) && System.nanoTime() < deadlineNanos) {
+                payer.get("GET /expense/{slug}", "/expense/" + slug);
+                pause(options.pollInterval().toNanos());
+            }
+            for (Thread diner : diners) {
+                try {
+                    diner.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private JsonNode createBill() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (billImage != null && random.nextDouble() < options.uploadRatio()) {
+            return payer.upload("POST /expense/upload", "/expense/upload", billImage, "Payer");
+        }
+
+        int items = random.nextInt(options.minItems(), options.maxItems() + 1);
+        List<Map<String, Object>> itemRequests = new ArrayList<>();
+        BigDecimal subtotal = BigDecimal.ZERO;
+        for (int i = 0; i < items; i++) {
+            BigDecimal price = BigDecimal.valueOf(random.nextInt(100, 90_000), 2);
+            subtotal = subtotal.add(price);
+            itemRequests.add(Map.of("name", "Item " + i, "price", price, "quantity", 1, "totalQuantity", 1));
+        }
+        BigDecimal tax = subtotal.multiply(new BigDecimal("0.05")).setScale(2, RoundingMode.HALF_UP);
+        return payer.post("POST /expense", "/expense", Map.of(
+                "payerName", "Payer",
+                "restaurantName", "Load Test Diner",
+                "subtotal", subtotal,
+                "tax", tax,
+                "totalAmount", subtotal.add(tax),
+                "items", itemRequests));
+    }
+
+    private void dine(LoadTestClient client, String slug, String name, List<String> itemIds) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        // People open the link at different times
+        pause(random.nextLong(options.pollInterval().toNanos() + 1));
+
+        JsonNode expense = client.post("POST /expense/{slug}/people", "/expense/" + slug + "/people", Map.of("name", name));
+        String personId = personId(expense, name);
+        if (personId == null) {
+            return;
+        }
+
+        List<String> shuffled = new ArrayList<>(itemIds);
+        Collections.shuffle(shuffled);
+        int toClaim = Math.max(1, itemIds.size() / Math.max(1, options.diners()) + random.nextInt(2));
+        List<String> claimed = new ArrayList<>();
+
+        int next = 0;
+        while (next < toClaim && next < shuffled.size() && System.nanoTime() < deadlineNanos) {
+            client.get("GET /expense/{slug}", "/expense/" + slug);
+            // A burst of quick taps, then a look at the updated bill
+            int burst = random.nextInt(1, 4);
+            for (int b = 0; b < burst && next < toClaim && next < shuffled.size(); b++, next++) {
+                String itemId = shuffled.get(next);
+                client.post("POST /expense/{slug}/items/{itemId}/claim",
+                        "/expense/" + slug + "/items/" + itemId + "/claim", Map.of("personId", personId));
+                claimed.add(itemId);
+                pause(options.thinkTime().toNanos() / 4);
+            }
+            // Occasionally undo a mis-tap
+            if (!claimed.isEmpty() && random.nextInt(10) == 0) {
+                String itemId = claimed.remove(claimed.size() - 1);
+                client.delete("DELETE /expense/{slug}/items/{itemId}/claim/{personId}",
+                        "/expense/" + slug + "/items/" + itemId + "/claim/" + personId);
+            }
+            pause(options.thinkTime().toNanos());
+        }
+
+        client.put("PUT /expense/{slug}/people/{personId}/finish",
+                "/expense/" + slug + "/people/" + personId + "/finish");
+    }
+
+    private static String personId(JsonNode expense, String name) {
+        if (expense == null) {
+            return null;
+        }
+        for (JsonNode person : expense.get("people")) {
+            if (name.equals(person.get("name").asText())) {
+                return person.get("id").asText();
+            }
+        }
+        return null;
+    }
+
+    private static void pause(long nanos) {
+        if (nanos > 0) {
+            LockSupport.parkNanos(nanos);
+        }
+    }
+}
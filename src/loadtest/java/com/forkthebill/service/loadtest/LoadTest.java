@@ -0,0 +1,76 @@
+package com.forkthebill.service.loadtest;
+
+import com.forkthebill.service.ForkTheBillServiceApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Simulates many dinner tables using the API at once and reports throughput and latency
+ * percentiles per endpoint.
+ *
+ * Without --base-url the application is started in-process on an in-memory H2 database.
+ * See the README for the available options.
+ */
+public class LoadTest {
+
+    public static void main(String[] args) throws IOException {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        byte[] billImage = options.billImage() != null ? Files.readAllBytes(options.billImage()) : null;
+
+        ConfigurableApplicationContext application = null;
+        String baseUrl = options.baseUrl();
+        if (baseUrl == null) {
+            application = startApplication();
+            baseUrl = "http://localhost:" + ((ServletWebServerApplicationContext) application).getWebServer().getPort();
+        }
+
+        System.out.printf("Simulating %d tables of %d diners against %s for %s%n",
+                options.tables(), options.diners(), baseUrl, options.duration());
+
+        LatencyReport report = new LatencyReport();
+        LoadTestClient client = new LoadTestClient(baseUrl, report);
+        long start = System.nanoTime();
+        long deadline = start + options.rampUp().toNanos() + options.duration().toNanos();
+
+        List<Thread> tables = new ArrayList<>();
+        long rampStepNanos = options.rampUp().toNanos() / Math.max(1, options.tables());
+        for (int t = 0; t < options.tables(); t++) {
+            tables.add(Thread.ofVirtual().name("table-" + t).start(new DinnerTable(client, t, options, billImage, deadline)));
+            LockSupport.parkNanos(rampStepNanos);
+        }
+        for (Thread table : tables) {
+            try {
+                table.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        report.print(System.out, System.nanoTime() - start);
+        if (application != null) {
+            application.close();
+        }
+    }
+
+    private static ConfigurableApplicationContext startApplication() {
+        // Passed as command line arguments so they override application.properties
+        return new SpringApplicationBuilder(ForkTheBillServiceApplication.class).run(
+                "--server.port=0",
+                "--management.server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--expense.archival.enabled=false",
+                "--logging.level.com.forkthebill=WARN");
+    }
+}
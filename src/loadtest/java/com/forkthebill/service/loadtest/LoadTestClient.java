@@ -0,0 +1,136 @@
+package com.forkthebill.service.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+
+/**
+ * Blocking HTTP calls against the API, timed per endpoint. Meant to be called from virtual
+ * threads, one per simulated person.
+ *
+ * Each person calls through their own view (see as), which sends the table's address in
+ * X-Forwarded-For and the person's X-Client-Id the way a browser behind a shared NAT would, so
+ * the rate limiter sees the same clients it would in production.
+ */
+class LoadTestClient {
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final String baseUrl;
+    private final LatencyReport report;
+    private final String address;
+    private final String clientId;
+
+    LoadTestClient(String baseUrl, LatencyReport report) {
+        this(HttpClient.newBuilder()
+                        .version(HttpClient.Version.HTTP_1_1)
+                        .connectTimeout(Duration.ofSeconds(10))
+                        .executor(Executors.newVirtualThreadPerTaskExecutor())
+                        .build(),
+                new ObjectMapper(), baseUrl, report, null, null);
+    }
+
+    private LoadTestClient(HttpClient httpClient, ObjectMapper objectMapper, String baseUrl, LatencyReport report,
+                           String address, String clientId) {
+        this.httpClient = httpClient;
+        this.objectMapper = objectMapper;
+        this.baseUrl = baseUrl;
+        this.report = report;
+        this.address = address;
+        this.clientId = clientId;
+    }
+
+    /**
+     * @return a client sharing this one's connections that calls as the given person
+     */
+    LoadTestClient as(String address, String clientId) {
+        return new LoadTestClient(httpClient, objectMapper, baseUrl, report, address, clientId);
+    }
+
+    JsonNode post(String endpoint, String path, Object body) {
+        return send(endpoint, request(path).POST(json(body)).header("Content-Type", "application/json"));
+    }
+
+    JsonNode put(String endpoint, String path) {
+        return send(endpoint, request(path).PUT(HttpRequest.BodyPublishers.noBody()));
+    }
+
+    JsonNode get(String endpoint, String path) {
+        return send(endpoint, request(path).GET());
+    }
+
+    JsonNode delete(String endpoint, String path) {
+        return send(endpoint, request(path).DELETE());
+    }
+
+    JsonNode upload(String endpoint, String path, byte[] image, String payerName) {
+        String boundary = "loadtest-" + UUID.randomUUID();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        writePart(body, boundary, "Content-Disposition: form-data; name=\"payerName\"\r\n\r\n", payerName.getBytes(StandardCharsets.UTF_8));
+        writePart(body, boundary, "Content-Disposition: form-data; name=\"bill\"; filename=\"bill.jpg\"\r\n"
+                + "Content-Type: image/jpeg\r\n\r\n", image);
+        body.writeBytes(("--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+
+        return send(endpoint, request(path)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary));
+    }
+
+    private HttpRequest.Builder request(String path) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(Duration.ofSeconds(30));
+        if (address != null) {
+            request.header("X-Forwarded-For", address);
+        }
+        if (clientId != null) {
+            request.header("X-Client-Id", clientId);
+        }
+        return request;
+    }
+
+    private HttpRequest.BodyPublisher json(Object body) {
+        try {
+            return HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the parsed response body, or null for failed or empty responses
+     */
+    private JsonNode send(String endpoint, HttpRequest.Builder request) {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            HttpResponse<byte[]> response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+            success = response.statusCode() < 400;
+            if (!success || response.body().length == 0) {
+                return null;
+            }
+            return objectMapper.readTree(response.body());
+        } catch (IOException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            report.record(endpoint, System.nanoTime() - start, success);
+        }
+    }
+
+    private static void writePart(ByteArrayOutputStream body, String boundary, String headers, byte[] content) {
+        body.writeBytes(("--" + boundary + "\r\n" + headers).getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(content);
+        body.writeBytes("\r\n".getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,60 @@
+package com.forkthebill.service.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Command line options, given as --name=value.
+ */
+record LoadTestOptions(
+        String baseUrl,
+        int tables,
+        int diners,
+        int minItems,
+        int maxItems,
+        Duration duration,
+        Duration rampUp,
+        Duration pollInterval,
+        Duration thinkTime,
+        Path billImage,
+        double uploadRatio) {
+
+    static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            int separator = arg.indexOf('=');
+            values.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+
+        return new LoadTestOptions(
+                values.get("base-url"),
+                Integer.parseInt(values.getOrDefault("tables", "100")),
+                Integer.parseInt(values.getOrDefault("diners", "6")),
+                Integer.parseInt(values.getOrDefault("min-items", "5")),
+                Integer.parseInt(values.getOrDefault("max-items", "40")),
+                duration(values.getOrDefault("duration", "60s")),
+                duration(values.getOrDefault("ramp-up", "10s")),
+                duration(values.getOrDefault("poll-interval", "2s")),
+                duration(values.getOrDefault("think-time", "500ms")),
+                values.containsKey("bill-image") ? Path.of(values.get("bill-image")) : null,
+                Double.parseDouble(values.getOrDefault("upload-ratio", "0")));
+    }
+
+    // 250ms, 30s, 5m
+    private static Duration duration(String value) {
+        if (value.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        }
+        long amount = Long.parseLong(value.substring(0, value.length() - 1));
+        return switch (value.charAt(value.length() - 1)) {
+            case 's' -> Duration.ofSeconds(amount);
+            case 'm' -> Duration.ofMinutes(amount);
+            default -> throw new IllegalArgumentException("Unsupported duration " + value);
+        };
+    }
+}
@@ -1,9 +1,12 @@
 package com.forkthebill.service;
 
+import com.forkthebill.service.config.NativeHints;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.ImportRuntimeHints;
 
 @SpringBootApplication
+@ImportRuntimeHints(NativeHints.class)
 public class ForkTheBillServiceApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,177 @@
+package com.forkthebill.service.cache;
+
+import com.forkthebill.service.services.ExpenseService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Serves GET /expense/{slug} from {@link ExpenseResponseCache} while the expense is
+ * unchanged, so a poll costs a version lookup and a byte copy instead of mapping,
+ * serialization and compression. Bodies are cached when a write commits
+ * ({@link ExpenseResponsePublisher}) or, failing that, on the first GET after it. A
+ * matching If-None-Match is answered with 304 without a body.
+ *
+ * Other responses are compressed by the server (server.compression.*).
+ */
+@Component
+public class CachedExpenseResponseFilter extends OncePerRequestFilter {
+
+    private static final Pattern EXPENSE_PATH = Pattern.compile("^/expense/([^/]+)$");
+    // An entity-tag (RFC 9110 section 8.8.3), optionally weak, with the opaque part captured
+    private static final Pattern ENTITY_TAG = Pattern.compile("\\s*(?:W/)?(\"[^\"]*\")\\s*(?:,|$)");
+
+    private final ExpenseService expenseService;
+    private final ExpenseResponseCache responseCache;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter notModified;
+
+    public CachedExpenseResponseFilter(ExpenseService expenseService,
+                                       ExpenseResponseCache responseCache,
+                                       MeterRegistry meterRegistry) {
+        this.expenseService = expenseService;
+        this.responseCache = responseCache;
+        this.hits = counter(meterRegistry, "hit");
+        this.misses = counter(meterRegistry, "miss");
+        this.notModified = counter(meterRegistry, "not_modified");
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"GET".equals(request.getMethod())
+                || !EXPENSE_PATH.matcher(request.getRequestURI()).matches()
+                || !prefersJson(request);
+    }
+
+    // Cached bodies are JSON; clients negotiating another format (e.g. CBOR) go to the controller
+    private static boolean prefersJson(HttpServletRequest request) {
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        if (accept == null || accept.isBlank()) {
+            return true;
+        }
+        try {
+            // Highest quality wins, earliest listed on ties
+            return MediaType.parseMediaTypes(accept).stream()
+                    .max(Comparator.comparingDouble(MediaType::getQualityValue))
+                    .map(mediaType -> mediaType.isCompatibleWith(MediaType.APPLICATION_JSON))
+                    .orElse(true);
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+    }
+
+    private static boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        return acceptEncoding != null && acceptEncoding.contains("gzip");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Matcher matcher = EXPENSE_PATH.matcher(request.getRequestURI());
+        matcher.matches();
+        String slug = matcher.group(1);
+
+        Optional<Long> version = expenseService.findExpenseVersion(slug);
+        if (version.isEmpty()) {
+            // Let the controller produce the 404
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        String etag = ExpenseResponseCache.etag(version.get());
+        if (noneMatchFails(request, etag)) {
+            notModified.increment();
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            response.setHeader(HttpHeaders.ETAG, etag);
+            return;
+        }
+
+        ExpenseResponseCache.CachedBody cached = responseCache.get(slug, etag);
+        if (cached != null) {
+            hits.increment();
+            write(request, response, cached);
+            return;
+        }
+
+        misses.increment();
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        filterChain.doFilter(request, wrapper);
+
+        String responseEtag = wrapper.getHeader(HttpHeaders.ETAG);
+        if (wrapper.getStatus() != HttpServletResponse.SC_OK || responseEtag == null) {
+            wrapper.copyBodyToResponse();
+            return;
+        }
+
+        // Keyed by the version the body was rendered from, which may be newer than the one checked above
+        ExpenseResponseCache.CachedBody rendered = responseCache.body(responseEtag, wrapper.getContentAsByteArray());
+        responseCache.put(slug, rendered);
+        // Headers set by the controller are already on the response; only the buffered body is replaced
+        write(request, response, rendered);
+    }
+
+    /**
+     * If-None-Match per RFC 9110 section 13.1.2: "*" or a list of entity-tags, compared weakly
+     * (W/"v3" matches "v3"), possibly split across several header lines. A malformed list
+     * matches nothing, so the client gets the full response.
+     */
+    private static boolean noneMatchFails(HttpServletRequest request, String etag) {
+        Enumeration<String> headers = request.getHeaders(HttpHeaders.IF_NONE_MATCH);
+        while (headers != null && headers.hasMoreElements()) {
+            String header = headers.nextElement().trim();
+            if ("*".equals(header)) {
+                return true;
+            }
+            Matcher matcher = ENTITY_TAG.matcher(header);
+            int end = 0;
+            while (end < header.length() && matcher.find(end) && matcher.start() == end) {
+                if (matcher.group(1).equals(etag)) {
+                    return true;
+                }
+                end = matcher.end();
+            }
+        }
+        return false;
+    }
+
+    private static void write(HttpServletRequest request, HttpServletResponse response,
+                              ExpenseResponseCache.CachedBody body) throws IOException {
+        byte[] bytes = body.json();
+        if (body.gzip() != null && acceptsGzip(request)) {
+            bytes = body.gzip();
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT + ", " + HttpHeaders.ACCEPT_ENCODING);
+        response.setHeader(HttpHeaders.ETAG, body.etag());
+        response.setContentLength(bytes.length);
+        // The cached array is written as is, with no intermediate copy or encoding
+        response.getOutputStream().write(bytes);
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("expense.response.cache")
+                .description("Precompressed GET /expense/{slug} responses by result")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
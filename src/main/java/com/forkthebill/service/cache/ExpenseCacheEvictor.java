@@ -0,0 +1,89 @@
+package com.forkthebill.service.cache;
+
+import com.forkthebill.service.models.entities.Expense;
+import com.forkthebill.service.models.entities.Item;
+import com.forkthebill.service.models.entities.Person;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.hibernate.cache.spi.access.NaturalIdDataAccess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.UUID;
+
+@Component
+@RequiredArgsConstructor
+public class ExpenseCacheEvictor {
+
+    private static final String EXPENSE_ITEMS_ROLE = Expense.class.getName() + ".items";
+    private static final String EXPENSE_PEOPLE_ROLE = Expense.class.getName() + ".people";
+    private static final String ITEM_CLAIMED_BY_ROLE = Item.class.getName() + ".claimedBy";
+    private static final String ITEM_UNIT_CLAIMS_ROLE = Item.class.getName() + ".unitClaims";
+    private static final String PERSON_ITEMS_CLAIMED_ROLE = Person.class.getName() + ".itemsClaimed";
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    public void evict(ExpenseCacheInvalidation invalidation) {
+        Cache cache = cache();
+        cache.evictEntityData(Expense.class, invalidation.expenseId());
+        cache.evictCollectionData(EXPENSE_ITEMS_ROLE, invalidation.expenseId());
+        cache.evictCollectionData(EXPENSE_PEOPLE_ROLE, invalidation.expenseId());
+
+        invalidation.itemIds().forEach(itemId -> {
+            cache.evictEntityData(Item.class, itemId);
+            cache.evictCollectionData(ITEM_CLAIMED_BY_ROLE, itemId);
+            cache.evictCollectionData(ITEM_UNIT_CLAIMS_ROLE, itemId);
+        });
+        invalidation.personIds().forEach(personId -> {
+            cache.evictEntityData(Person.class, personId);
+            cache.evictCollectionData(PERSON_ITEMS_CLAIMED_ROLE, personId);
+        });
+    }
+
+    /**
+     * Drops one cached aggregate, including its natural-id entry. Used after a version conflict,
+     * when the cached children may no longer match the database, so their ids are read from it.
+     */
+    public void evictExpense(String expenseId) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            List<String> itemIds = entityManager.createQuery(
+                            "select i.id from Item i where i.expense.id = :expenseId", String.class)
+                    .setParameter("expenseId", expenseId)
+                    .getResultList();
+            List<UUID> personIds = entityManager.createQuery(
+                            "select p.id from Person p where p.expense.id = :expenseId", UUID.class)
+                    .setParameter("expenseId", expenseId)
+                    .getResultList();
+            evict(new ExpenseCacheInvalidation(expenseId, itemIds, personIds));
+
+            entityManager.createQuery("select e.slug from Expense e where e.id = :expenseId", String.class)
+                    .setParameter("expenseId", expenseId)
+                    .getResultStream()
+                    .findFirst()
+                    .ifPresent(slug -> evictNaturalId(slug, entityManager.unwrap(SharedSessionContractImplementor.class)));
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    private void evictNaturalId(String slug, SharedSessionContractImplementor session) {
+        EntityPersister persister = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getMappingMetamodel()
+                .getEntityDescriptor(Expense.class);
+        NaturalIdDataAccess naturalIdAccess = persister.getNaturalIdCacheAccessStrategy();
+        if (naturalIdAccess != null) {
+            naturalIdAccess.evict(naturalIdAccess.generateCacheKey(slug, persister, session));
+        }
+    }
+
+    private Cache cache() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getCache();
+    }
+}
@@ -0,0 +1,11 @@
+package com.forkthebill.service.cache;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Identifies the cached state of one Expense aggregate that another node must drop
+ * after this node changed it.
+ */
+public record ExpenseCacheInvalidation(String expenseId, List<String> itemIds, List<UUID> personIds) {
+}
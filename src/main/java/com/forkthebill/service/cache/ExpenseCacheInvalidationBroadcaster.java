@@ -0,0 +1,10 @@
+package com.forkthebill.service.cache;
+
+/**
+ * Tells other service nodes that an Expense aggregate changed so they can evict it from
+ * their second-level cache. Called inside the writing transaction, so implementations
+ * that persist the message only publish committed changes.
+ */
+public interface ExpenseCacheInvalidationBroadcaster {
+    void publish(ExpenseCacheInvalidation invalidation);
+}
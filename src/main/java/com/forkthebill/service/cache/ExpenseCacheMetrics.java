@@ -0,0 +1,52 @@
+package com.forkthebill.service.cache;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Hit ratio per second-level cache region. Raw hit/miss/put counters come from the
+ * Hibernate metrics binder; this adds the ratio so dashboards need no arithmetic.
+ */
+@Component
+@RequiredArgsConstructor
+public class ExpenseCacheMetrics implements MeterBinder {
+
+    private static final List<String> REGIONS = List.of(
+            "expense", "expense-slug", "expense-items", "expense-people",
+            "item", "item-claimed-by", "item-unit-claims", "person", "person-items-claimed");
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        REGIONS.forEach(region -> Gauge.builder("expense.cache.hit.ratio", statistics, stats -> hitRatio(stats, region))
+                .tag("region", region)
+                .description("Second-level cache hit ratio since startup")
+                .register(registry));
+    }
+
+    private static double hitRatio(Statistics statistics, String region) {
+        try {
+            CacheRegionStatistics regionStatistics = statistics.getDomainDataRegionStatistics(region);
+            if (regionStatistics == null) {
+                return Double.NaN;
+            }
+            long hits = regionStatistics.getHitCount();
+            long total = hits + regionStatistics.getMissCount();
+            return total == 0 ? Double.NaN : (double) hits / total;
+        } catch (IllegalArgumentException e) {
+            // Region not created, e.g. second-level cache disabled
+            return Double.NaN;
+        }
+    }
+}
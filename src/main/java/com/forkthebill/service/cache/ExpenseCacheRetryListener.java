@@ -0,0 +1,53 @@
+package com.forkthebill.service.cache;
+
+import com.forkthebill.service.models.entities.Expense;
+import jakarta.persistence.OptimisticLockException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.retry.RetryCallback;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.RetryListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * A version conflict on save means the write started from stale cached state, so the
+ * retry must reload that expense from the database. Other expenses stay cached.
+ */
+@Slf4j
+@Component("expenseCacheRetryListener")
+@RequiredArgsConstructor
+public class ExpenseCacheRetryListener implements RetryListener {
+
+    private final ExpenseCacheEvictor expenseCacheEvictor;
+
+    @Override
+    public <T, E extends Throwable> void onError(RetryContext context, RetryCallback<T, E> callback, Throwable throwable) {
+        if (!(throwable instanceof OptimisticLockingFailureException)) {
+            return;
+        }
+        String expenseId = conflictingExpenseId(throwable);
+        if (expenseId == null) {
+            // E.g. a group row or a document, neither of which is in the second-level cache
+            log.debug("Version conflict (attempt {}) not on a cached expense: {}", context.getRetryCount(), throwable.getMessage());
+            return;
+        }
+        log.debug("Expense {} version conflict (attempt {}), evicting its cached aggregate", expenseId, context.getRetryCount());
+        expenseCacheEvictor.evictExpense(expenseId);
+    }
+
+    static String conflictingExpenseId(Throwable throwable) {
+        if (throwable instanceof ObjectOptimisticLockingFailureException conflict
+                && Expense.class.getName().equals(conflict.getPersistentClassName())
+                && conflict.getIdentifier() != null) {
+            return conflict.getIdentifier().toString();
+        }
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OptimisticLockException lockException && lockException.getEntity() instanceof Expense expense) {
+                return expense.getId();
+            }
+        }
+        return null;
+    }
+}
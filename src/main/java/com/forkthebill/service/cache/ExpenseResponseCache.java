@@ -0,0 +1,62 @@
+package com.forkthebill.service.cache;
+
+import com.forkthebill.service.utils.GzipCompressor;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Serialized GET /expense/{slug} bodies, keyed by slug and tagged with the expense version
+ * they were rendered from. An entry is only served while the expense is still at that
+ * version, so writes on any node invalidate it without explicit eviction.
+ */
+@Component
+public class ExpenseResponseCache {
+
+    /**
+     * @param json the JSON body
+     * @param gzip the gzip-compressed body, or null when the body is below the compression threshold
+     */
+    public record CachedBody(String etag, byte[] json, byte[] gzip) {
+    }
+
+    private final Cache<String, CachedBody> bodies;
+    private final int minCompressedSize;
+    private final int gzipLevel;
+
+    public ExpenseResponseCache(@Value("${expense.response-cache.max-entries:10000}") long maxEntries,
+                                @Value("${server.compression.min-response-size:2KB}") DataSize minCompressedSize,
+                                @Value("${expense.response-cache.gzip-level:6}") int gzipLevel) {
+        this.bodies = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .build();
+        this.minCompressedSize = (int) minCompressedSize.toBytes();
+        this.gzipLevel = gzipLevel;
+    }
+
+    public static String etag(long version) {
+        return "\"v" + version + "\"";
+    }
+
+    /**
+     * Builds a cache entry, compressing the body once if it is large enough to be served gzipped.
+     */
+    public CachedBody body(String etag, byte[] json) {
+        byte[] gzip = json.length >= minCompressedSize ? GzipCompressor.compress(json, gzipLevel) : null;
+        return new CachedBody(etag, json, gzip);
+    }
+
+    /**
+     * @return the cached body if it was rendered for this ETag, otherwise null
+     */
+    public CachedBody get(String slug, String etag) {
+        CachedBody body = bodies.getIfPresent(slug);
+        return body != null && body.etag().equals(etag) ? body : null;
+    }
+
+    public void put(String slug, CachedBody body) {
+        bodies.put(slug, body);
+    }
+}
@@ -0,0 +1,56 @@
+package com.forkthebill.service.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.forkthebill.service.models.dto.ExpenseResponse;
+import com.forkthebill.service.models.entities.Expense;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Puts the response of a write into {@link ExpenseResponseCache} as soon as the write
+ * commits, so the next poll of GET /expense/{slug} is served from bytes instead of mapping
+ * and serializing the expense again.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ExpenseResponsePublisher {
+
+    private final ExpenseResponseCache responseCache;
+    private final ObjectMapper objectMapper;
+
+    public void publishAfterCommit(Expense expense, ExpenseResponse response) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish(expense, response);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                publish(expense, response);
+            }
+        });
+    }
+
+    private void publish(Expense expense, ExpenseResponse response) {
+        // Read after the flush, which is when the forced version increment happens
+        Long version = expense.getVersion();
+        if (version == null) {
+            return;
+        }
+
+        try {
+            // A slower concurrent writer may overwrite a newer entry; GETs then see a version
+            // mismatch and render again, so the cache heals on the next poll
+            responseCache.put(expense.getSlug(),
+                    responseCache.body(ExpenseResponseCache.etag(version), objectMapper.writeValueAsBytes(response)));
+        } catch (JsonProcessingException e) {
+            log.warn("Could not serialize expense {} for the response cache", expense.getSlug(), e);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.forkthebill.service.cache;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Single-node deployments: Hibernate keeps the local cache consistent on its own.
+ */
+@Component
+@ConditionalOnProperty(name = "expense.cache.invalidation.mode", havingValue = "none", matchIfMissing = true)
+public class NoOpExpenseCacheInvalidationBroadcaster implements ExpenseCacheInvalidationBroadcaster {
+
+    @Override
+    public void publish(ExpenseCacheInvalidation invalidation) {
+        // Nothing to notify
+    }
+}
@@ -0,0 +1,92 @@
+package com.forkthebill.service.cache;
+
+import com.forkthebill.service.models.entities.ExpenseCacheInvalidationEntry;
+import com.forkthebill.service.repositories.ExpenseCacheInvalidationEntryRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Multi-node invalidation through a shared table: each write appends a row in the writing
+ * transaction, so a rolled-back write leaves no row, and every node polls for rows written
+ * by other nodes.
+ *
+ * Identity values can commit out of order, so each poll re-reads a small overlap below
+ * the high-water mark and skips rows it has already applied.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "expense.cache.invalidation.mode", havingValue = "table")
+public class TableExpenseCacheInvalidationBroadcaster implements ExpenseCacheInvalidationBroadcaster {
+
+    private static final long OVERLAP = 500;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final NavigableSet<Long> appliedIds = new ConcurrentSkipListSet<>();
+    private final ExpenseCacheInvalidationEntryRepository invalidationRepository;
+    private final ExpenseCacheEvictor expenseCacheEvictor;
+    private final Duration retention;
+    private volatile Long highWaterMark;
+
+    public TableExpenseCacheInvalidationBroadcaster(ExpenseCacheInvalidationEntryRepository invalidationRepository,
+                                                    ExpenseCacheEvictor expenseCacheEvictor,
+                                                    @Value("${expense.cache.invalidation.retention:10m}") Duration retention) {
+        this.invalidationRepository = invalidationRepository;
+        this.expenseCacheEvictor = expenseCacheEvictor;
+        this.retention = retention;
+    }
+
+    @Override
+    public void publish(ExpenseCacheInvalidation invalidation) {
+        invalidationRepository.save(ExpenseCacheInvalidationEntry.builder()
+                .nodeId(nodeId)
+                .expenseId(invalidation.expenseId())
+                .itemIds(invalidation.itemIds())
+                .personIds(invalidation.personIds())
+                .createdAt(LocalDateTime.now())
+                .build());
+    }
+
+    @Scheduled(fixedDelayString = "${expense.cache.invalidation.poll-interval-ms:1000}")
+    public void poll() {
+        try {
+            if (highWaterMark == null) {
+                // Anything older is already reflected in the database we will read from
+                highWaterMark = invalidationRepository.findMaxId();
+                return;
+            }
+
+            List<ExpenseCacheInvalidationEntry> entries =
+                    invalidationRepository.findTop1000ByIdGreaterThanOrderByIdAsc(Math.max(0, highWaterMark - OVERLAP));
+            long maxSeen = highWaterMark;
+            for (ExpenseCacheInvalidationEntry entry : entries) {
+                if (appliedIds.add(entry.getId()) && !nodeId.equals(entry.getNodeId())) {
+                    expenseCacheEvictor.evict(new ExpenseCacheInvalidation(
+                            entry.getExpenseId(), entry.getItemIds(), entry.getPersonIds()));
+                }
+                maxSeen = Math.max(maxSeen, entry.getId());
+            }
+            highWaterMark = maxSeen;
+            appliedIds.headSet(maxSeen - OVERLAP).clear();
+        } catch (Exception e) {
+            log.warn("Failed to poll expense cache invalidations: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${expense.cache.invalidation.cleanup-interval-ms:60000}")
+    @Transactional
+    public void cleanup() {
+        int deleted = invalidationRepository.deleteCreatedBefore(LocalDateTime.now().minus(retention));
+        log.debug("Deleted {} expired expense cache invalidations", deleted);
+    }
+}
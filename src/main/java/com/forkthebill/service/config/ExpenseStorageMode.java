@@ -0,0 +1,17 @@
+package com.forkthebill.service.config;
+
+import java.util.Locale;
+
+/**
+ * How the Expense aggregate is persisted behind ExpenseRepository.
+ * RELATIONAL spreads it across the expenses, items, people and claim tables;
+ * DOCUMENT stores the whole aggregate as a single JSON row keyed by slug.
+ */
+public enum ExpenseStorageMode {
+    RELATIONAL,
+    DOCUMENT;
+
+    public static ExpenseStorageMode from(String value) {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,79 @@
+package com.forkthebill.service.config;
+
+import com.forkthebill.service.exceptions.ApiError;
+import com.forkthebill.service.models.documents.ExpenseDocument;
+import com.forkthebill.service.models.dto.BillParsedData;
+import com.forkthebill.service.models.dto.CompactExpenseResponse;
+import com.forkthebill.service.models.dto.ExpenseResponse;
+import com.forkthebill.service.models.entities.AssignableUuidGenerator;
+import com.forkthebill.service.utils.ReceiptLayout;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * What the GraalVM native image needs beyond the hints Spring AOT derives from beans,
+ * controllers and JPA entities: files read from the classpath at runtime, types bound by
+ * ObjectMappers outside Spring MVC, and classes loaded by name.
+ */
+public class NativeHints implements RuntimeHintsRegistrar {
+
+    private static final String GEMINI_TYPES = "com/google/genai/types/";
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        hints.resources()
+                .registerPattern("words.txt")
+                .registerPattern("receipt-layouts.json")
+                // Caffeine JCache regions for the second-level cache
+                .registerPattern("application.conf")
+                .registerPattern("db/partitioning/*.sql")
+                // Glyph lists, font metrics and CMaps for PDF text, and jsoup's HTML entities
+                .registerPattern("org/apache/pdfbox/resources/**")
+                .registerPattern("org/apache/fontbox/**")
+                .registerPattern("org/jsoup/nodes/*.properties");
+
+        // Read and written by ObjectMappers directly: Gemini replies, layout rules, JSON columns
+        // and archives, and errors written by filters
+        new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(),
+                BillParsedData.class, ReceiptLayout.class, ExpenseDocument.class, ApiError.class,
+                ExpenseResponse.class, CompactExpenseResponse.class);
+
+        // Instantiated by Hibernate from @IdGeneratorType and from configuration strings
+        hints.reflection().registerType(AssignableUuidGenerator.class, MemberCategory.INVOKE_DECLARED_CONSTRUCTORS);
+        hints.reflection().registerTypeIfPresent(classLoader,
+                "com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider",
+                MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+        hints.reflection().registerTypeIfPresent(classLoader,
+                "org.hibernate.cache.jcache.internal.JCacheRegionFactory",
+                MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+
+        registerGeminiTypes(hints, classLoader);
+    }
+
+    // The Gemini client maps its request and response types (and their generated builders)
+    // with Jackson, so every class in the package is registered
+    private static void registerGeminiTypes(RuntimeHints hints, ClassLoader classLoader) {
+        try {
+            Resource[] classes = new PathMatchingResourcePatternResolver(classLoader)
+                    .getResources("classpath*:" + GEMINI_TYPES + "*.class");
+            for (Resource resource : classes) {
+                String fileName = resource.getFilename();
+                if (fileName == null || fileName.equals("package-info.class")) {
+                    continue;
+                }
+                String className = (GEMINI_TYPES + fileName.substring(0, fileName.length() - ".class".length()))
+                        .replace('/', '.');
+                hints.reflection().registerTypeIfPresent(classLoader, className, MemberCategory.values());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
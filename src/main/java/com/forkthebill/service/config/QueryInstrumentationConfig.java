@@ -0,0 +1,40 @@
+package com.forkthebill.service.config;
+
+import com.forkthebill.service.datasource.QueryStatisticsListener;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+@Configuration
+public class QueryInstrumentationConfig {
+
+    /**
+     * Wraps the application's DataSource (the one JPA uses) so every statement passes
+     * through {@link QueryStatisticsListener}. Pool and replica DataSources behind it are
+     * left alone so statements are not counted twice.
+     */
+    @Bean
+    public static BeanPostProcessor queryStatisticsDataSourcePostProcessor(
+            @Value("${expense.sql.slow-threshold:200ms}") Duration slowThreshold,
+            @Value("${expense.sql.slow-log-sample-rate:1.0}") double slowLogSampleRate,
+            @Value("${expense.sql.log-sample-rate:0.0}") double logSampleRate) {
+        QueryStatisticsListener listener = new QueryStatisticsListener(slowThreshold, slowLogSampleRate, logSampleRate);
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && "dataSource".equals(beanName)) {
+                    return ProxyDataSourceBuilder.create(dataSource)
+                            .name(beanName)
+                            .listener(listener)
+                            .build();
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,33 @@
+package com.forkthebill.service.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.forkthebill.service.utils.CompactBinaryModule;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Lets clients send and receive application/cbor instead of JSON (Accept / Content-Type).
+ * See {@link CompactBinaryModule} for how ids and amounts are encoded.
+ */
+@Configuration
+public class WireFormatConfig implements WebMvcConfigurer {
+
+    public static ObjectMapper cborMapper() {
+        return CBORMapper.builder()
+                .findAndAddModules()
+                .addModule(new CompactBinaryModule())
+                .build();
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // Spring registers a default CBOR converter when the format is on the classpath; replace it
+        converters.removeIf(converter -> converter instanceof MappingJackson2CborHttpMessageConverter);
+        converters.add(new MappingJackson2CborHttpMessageConverter(cborMapper()));
+    }
+}
@@ -1,19 +1,37 @@
 package com.forkthebill.service.controllers;
 
+import com.forkthebill.service.cache.ExpenseResponseCache;
+import com.forkthebill.service.exceptions.ApiError;
+import com.forkthebill.service.exceptions.BillExtractionException;
+import com.forkthebill.service.exceptions.BillExtractionUnavailableException;
+import com.forkthebill.service.exceptions.ValidationException;
 import com.forkthebill.service.models.dto.ClaimItemRequest;
+import com.forkthebill.service.models.dto.CompactExpenseResponse;
 import com.forkthebill.service.models.dto.ExpenseRequest;
 import com.forkthebill.service.models.dto.ExpenseResponse;
+import com.forkthebill.service.models.dto.ExpenseSummaryPage;
 import com.forkthebill.service.models.dto.PersonRequest;
+import com.forkthebill.service.services.BillPageExtractor;
 import com.forkthebill.service.services.ExpenseService;
+import jakarta.annotation.PreDestroy;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Slf4j
 @RestController
@@ -21,37 +39,153 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class ExpenseController {
     
+    // Streamed uploads wait on the model for seconds; the Gemini bulkhead bounds how many run
+    private static final long UPLOAD_STREAM_TIMEOUT_MS = 120_000;
+
+    private static final String PAYER_TOKEN = "X-Payer-Token";
+
     private final ExpenseService expenseService;
+    private final ExecutorService uploadStreamExecutor = Executors.newVirtualThreadPerTaskExecutor();
     
+    // Expenses created with an X-Payer-Token are listed by GET /expense with the same token
     @PostMapping
-    public ResponseEntity<ExpenseResponse> createExpense(@Valid @RequestBody ExpenseRequest request) {
-        ExpenseResponse response = expenseService.createExpense(request);
+    public ResponseEntity<ExpenseResponse> createExpense(
+            @Valid @RequestBody ExpenseRequest request,
+            @RequestHeader(value = PAYER_TOKEN, required = false) String payerToken) {
+        ExpenseResponse response = expenseService.createExpense(request, payerToken);
         return new ResponseEntity<>(response, HttpStatus.CREATED);
     }
+
+    // The payer's dashboard: summaries of the expenses created with this token, newest first
+    @GetMapping
+    public ResponseEntity<ExpenseSummaryPage> listPayerExpenses(
+            @RequestHeader(value = PAYER_TOKEN, required = false) String payerToken,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        ExpenseSummaryPage page = expenseService.listPayerExpenses(payerToken, cursor, limit);
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .body(page);
+    }
     
+    // Long receipts can be sent as several "bill" parts, one photo per page in receipt order
     @PostMapping("/upload")
     public ResponseEntity<ExpenseResponse> createExpenseFromImage(
-            @RequestParam("bill") MultipartFile file, @RequestParam("payerName") String payerName) {
+            @RequestParam("bill") List<MultipartFile> files, @RequestParam("payerName") String payerName,
+            @RequestHeader(value = PAYER_TOKEN, required = false) String payerToken) {
         
-        if (file.isEmpty()) {
+        if (files.isEmpty() || files.stream().anyMatch(MultipartFile::isEmpty)) {
             throw new IllegalArgumentException("File is empty");
         }
         
         try {
-            byte[] imageData = file.getBytes();
-            ExpenseResponse response = expenseService.createExpenseFromImage(imageData, payerName);
+            ExpenseResponse response;
+            if (files.size() == 1) {
+                MultipartFile file = files.get(0);
+                response = expenseService.createExpenseFromImage(file.getBytes(), file.getContentType(), payerName, payerToken);
+            } else {
+                List<BillPageExtractor.Page> pages = new ArrayList<>(files.size());
+                for (MultipartFile file : files) {
+                    pages.add(new BillPageExtractor.Page(file.getBytes(), file.getContentType()));
+                }
+                response = expenseService.createExpenseFromImages(pages, payerName, payerToken);
+            }
             return new ResponseEntity<>(response, HttpStatus.CREATED);
             
+        } catch (BillExtractionException e) {
+            // Carries its own status (502, or 503 with Retry-After)
+            throw e;
+        } catch (ValidationException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error creating expense: {}", e.getMessage());
             throw new RuntimeException("Failed to process image. Please try again.");
         }
     }
     
+    /**
+     * Streams the upload as server-sent events: an "item" event per bill item as the model
+     * reads it, then "expense" with the created expense, or "error" with an ApiError (502, or
+     * 503 with the retry delay as the event's retry field).
+     */
+    @PostMapping(value = "/upload/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter createExpenseFromImageStreaming(
+            @RequestParam("bill") MultipartFile file, @RequestParam("payerName") String payerName,
+            @RequestHeader(value = PAYER_TOKEN, required = false) String payerToken) throws IOException {
+
+        if (file.isEmpty()) {
+            throw new IllegalArgumentException("File is empty");
+        }
+
+        byte[] imageData = file.getBytes();
+        String contentType = file.getContentType();
+        SseEmitter emitter = new SseEmitter(UPLOAD_STREAM_TIMEOUT_MS);
+        uploadStreamExecutor.execute(() -> {
+            try {
+                ExpenseResponse response = expenseService.createExpenseFromImageStreaming(imageData, contentType, payerName, payerToken,
+                        item -> send(emitter, SseEmitter.event().name("item").data(item)));
+                send(emitter, SseEmitter.event().name("expense").data(response));
+            } catch (BillExtractionUnavailableException e) {
+                send(emitter, SseEmitter.event().name("error")
+                        .reconnectTime(e.getRetryAfter().toMillis())
+                        .data(uploadStreamError(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage())));
+            } catch (BillExtractionException e) {
+                send(emitter, SseEmitter.event().name("error")
+                        .data(uploadStreamError(HttpStatus.BAD_GATEWAY, e.getMessage())));
+            } catch (ValidationException e) {
+                send(emitter, SseEmitter.event().name("error")
+                        .data(uploadStreamError(HttpStatus.BAD_REQUEST, e.getMessage())));
+            } catch (Exception e) {
+                log.error("Error creating expense: {}", e.getMessage());
+                send(emitter, SseEmitter.event().name("error")
+                        .data(uploadStreamError(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to process image. Please try again.")));
+            }
+            emitter.complete();
+        });
+        return emitter;
+    }
+
+    private static ApiError uploadStreamError(HttpStatus status, String message) {
+        return ApiError.builder()
+                .timestamp(LocalDateTime.now())
+                .status(status.value())
+                .error(status.getReasonPhrase())
+                .message(message)
+                .path("/expense/upload/stream")
+                .build();
+    }
+
+    // A client that went away does not stop the upload; the expense is still created
+    private static void send(SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+        try {
+            emitter.send(event);
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Could not send upload stream event: {}", e.getMessage());
+        }
+    }
+
     @GetMapping("/{slug}")
     public ResponseEntity<ExpenseResponse> getExpenseBySlug(@PathVariable String slug) {
         ExpenseResponse response = expenseService.getExpenseBySlug(slug);
-        return ResponseEntity.ok(response);
+        if (response.getVersion() == null) {
+            return ResponseEntity.ok(response);
+        }
+        // Lets polling clients revalidate with If-None-Match instead of downloading the bill again
+        return ResponseEntity.ok()
+                .eTag(ExpenseResponseCache.etag(response.getVersion()))
+                .body(response);
+    }
+    
+    // Opt-in shape with claims sent once as indexes; see CompactExpenseResponse
+    @GetMapping(value = "/{slug}", produces = CompactExpenseResponse.MEDIA_TYPE)
+    public ResponseEntity<CompactExpenseResponse> getCompactExpenseBySlug(@PathVariable String slug) {
+        CompactExpenseResponse response = expenseService.getCompactExpenseBySlug(slug);
+        if (response.getVersion() == null) {
+            return ResponseEntity.ok(response);
+        }
+        return ResponseEntity.ok()
+                .eTag(ExpenseResponseCache.etag(response.getVersion()))
+                .body(response);
     }
     
     @PutMapping("/{slug}")
@@ -67,7 +201,9 @@ public class ExpenseController {
             @PathVariable String slug,
             @PathVariable String itemId,
             @Valid @RequestBody ClaimItemRequest request) {
-        ExpenseResponse response = expenseService.claimItem(slug, itemId, request.getPersonId());
+        ExpenseResponse response = request.getUnits() != null
+                ? expenseService.claimItemUnits(slug, itemId, request.getPersonId(), request.getUnits())
+                : expenseService.claimItem(slug, itemId, request.getPersonId());
         return ResponseEntity.ok(response);
     }
     
@@ -103,4 +239,9 @@ public class ExpenseController {
         ExpenseResponse response = expenseService.addPersonToExpense(slug, personRequest);
         return ResponseEntity.ok(response);
     }
-}
\ No newline at end of file
+
+    @PreDestroy
+    public void shutdown() {
+        uploadStreamExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,44 @@
+package com.forkthebill.service.controllers;
+
+import com.forkthebill.service.models.dto.GroupExpenseRequest;
+import com.forkthebill.service.models.dto.GroupRequest;
+import com.forkthebill.service.models.dto.GroupSettlementResponse;
+import com.forkthebill.service.services.GroupLedgerService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/groups")
+@RequiredArgsConstructor
+public class GroupController {
+
+    private final GroupLedgerService groupLedgerService;
+
+    @PostMapping
+    public ResponseEntity<GroupSettlementResponse> createGroup(@Valid @RequestBody GroupRequest request) {
+        return new ResponseEntity<>(groupLedgerService.createGroup(request), HttpStatus.CREATED);
+    }
+
+    // Balances and the payments that settle them, across every expense in the group
+    @GetMapping("/{slug}")
+    public ResponseEntity<GroupSettlementResponse> getSettlement(@PathVariable String slug) {
+        return ResponseEntity.ok(groupLedgerService.getSettlement(slug));
+    }
+
+    @PostMapping("/{slug}/expenses")
+    public ResponseEntity<GroupSettlementResponse> addExpense(
+            @PathVariable String slug,
+            @Valid @RequestBody GroupExpenseRequest request) {
+        return ResponseEntity.ok(groupLedgerService.addExpense(slug, request.getExpenseSlug()));
+    }
+
+    @DeleteMapping("/{slug}/expenses/{expenseSlug}")
+    public ResponseEntity<GroupSettlementResponse> removeExpense(
+            @PathVariable String slug,
+            @PathVariable String expenseSlug) {
+        return ResponseEntity.ok(groupLedgerService.removeExpense(slug, expenseSlug));
+    }
+}
@@ -0,0 +1,47 @@
+package com.forkthebill.service.datasource;
+
+import lombok.Getter;
+
+/**
+ * JDBC activity of the current request, collected by {@link QueryStatisticsListener} and
+ * published by {@link QueryStatisticsFilter}.
+ */
+@Getter
+public final class QueryStatistics {
+
+    private static final ThreadLocal<QueryStatistics> CURRENT = new ThreadLocal<>();
+
+    private final String request;
+    private int statements;
+    private int slowStatements;
+    private long jdbcTimeMs;
+
+    private QueryStatistics(String request) {
+        this.request = request;
+    }
+
+    public static QueryStatistics start(String request) {
+        QueryStatistics statistics = new QueryStatistics(request);
+        CURRENT.set(statistics);
+        return statistics;
+    }
+
+    /**
+     * @return statistics of the current request, or null outside a request (e.g. scheduled jobs)
+     */
+    public static QueryStatistics current() {
+        return CURRENT.get();
+    }
+
+    public static void end() {
+        CURRENT.remove();
+    }
+
+    void record(int statements, long elapsedMs, boolean slow) {
+        this.statements += statements;
+        this.jdbcTimeMs += elapsedMs;
+        if (slow) {
+            this.slowStatements++;
+        }
+    }
+}
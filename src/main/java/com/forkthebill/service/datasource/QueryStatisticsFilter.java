@@ -0,0 +1,100 @@
+package com.forkthebill.service.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes per-request SQL statement counts and JDBC time, tagged by endpoint. With
+ * expense.sql.response-headers=true (local profile) the numbers are also returned as
+ * X-Query-Count and X-Query-Time-Ms.
+ *
+ * Event streams are never buffered: their events are written from another thread after this
+ * filter has returned, so a buffer would swallow them. They get the metrics but no headers.
+ */
+@Component
+public class QueryStatisticsFilter extends OncePerRequestFilter {
+
+    private static final String UPLOAD_STREAM = "/expense/upload/stream";
+
+    private final MeterRegistry meterRegistry;
+    private final boolean responseHeaders;
+
+    public QueryStatisticsFilter(MeterRegistry meterRegistry,
+                                 @Value("${expense.sql.response-headers:false}") boolean responseHeaders) {
+        this.meterRegistry = meterRegistry;
+        this.responseHeaders = responseHeaders;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getRequestURI().startsWith("/actuator");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        QueryStatistics statistics = QueryStatistics.start(request.getMethod() + " " + request.getRequestURI());
+        // Headers must be set before the body is written, so buffer it when they are enabled
+        ContentCachingResponseWrapper bufferedResponse = responseHeaders && !isEventStream(request)
+                ? new ContentCachingResponseWrapper(response) : null;
+        try {
+            filterChain.doFilter(request, bufferedResponse != null ? bufferedResponse : response);
+        } finally {
+            QueryStatistics.end();
+            record(request, statistics);
+            if (bufferedResponse != null) {
+                bufferedResponse.setHeader("X-Query-Count", String.valueOf(statistics.getStatements()));
+                bufferedResponse.setHeader("X-Query-Time-Ms", String.valueOf(statistics.getJdbcTimeMs()));
+                bufferedResponse.copyBodyToResponse();
+            }
+        }
+    }
+
+    private static boolean isEventStream(HttpServletRequest request) {
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        return request.getRequestURI().equals(UPLOAD_STREAM)
+                || (accept != null && accept.contains(MediaType.TEXT_EVENT_STREAM_VALUE));
+    }
+
+    private void record(HttpServletRequest request, QueryStatistics statistics) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+        String method = request.getMethod();
+
+        DistributionSummary.builder("http.server.requests.sql.statements")
+                .description("SQL statements executed per request")
+                .tags("method", method, "uri", uri)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(statistics.getStatements());
+        Timer.builder("http.server.requests.sql.time")
+                .description("Total JDBC execution time per request")
+                .tags("method", method, "uri", uri)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(statistics.getJdbcTimeMs(), TimeUnit.MILLISECONDS);
+        if (statistics.getSlowStatements() > 0) {
+            Counter.builder("http.server.requests.sql.slow")
+                    .description("Statements slower than expense.sql.slow-threshold")
+                    .tags("method", method, "uri", uri)
+                    .register(meterRegistry)
+                    .increment(statistics.getSlowStatements());
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.forkthebill.service.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+/**
+ * Counts statements and JDBC time per request, and logs a sample of statements instead of
+ * printing every one (replaces spring.jpa.show-sql).
+ */
+@Slf4j
+public class QueryStatisticsListener implements QueryExecutionListener {
+
+    private final long slowThresholdMs;
+    private final double slowLogSampleRate;
+    private final double logSampleRate;
+
+    public QueryStatisticsListener(Duration slowThreshold, double slowLogSampleRate, double logSampleRate) {
+        this.slowThresholdMs = slowThreshold.toMillis();
+        this.slowLogSampleRate = slowLogSampleRate;
+        this.logSampleRate = logSampleRate;
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        long elapsedMs = execInfo.getElapsedTime();
+        boolean slow = elapsedMs >= slowThresholdMs;
+        // A batch counts once per queued parameter set
+        int statements = execInfo.isBatch() ? Math.max(1, execInfo.getBatchSize()) : queryInfoList.size();
+
+        QueryStatistics statistics = QueryStatistics.current();
+        if (statistics != null) {
+            statistics.record(statements, elapsedMs, slow);
+        }
+
+        if (slow && sampled(slowLogSampleRate)) {
+            log.warn("Slow SQL: elapsedMs={} statements={} request=\"{}\" sql=\"{}\"",
+                    elapsedMs, statements, request(statistics), sql(queryInfoList));
+        } else if (log.isDebugEnabled() && sampled(logSampleRate)) {
+            log.debug("SQL: elapsedMs={} statements={} request=\"{}\" sql=\"{}\"",
+                    elapsedMs, statements, request(statistics), sql(queryInfoList));
+        }
+    }
+
+    private static boolean sampled(double rate) {
+        return rate >= 1.0 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    private static String request(QueryStatistics statistics) {
+        return statistics == null ? "-" : statistics.getRequest();
+    }
+
+    private static String sql(List<QueryInfo> queryInfoList) {
+        return queryInfoList.stream().map(QueryInfo::getQuery).collect(Collectors.joining("; "));
+    }
+}
@@ -0,0 +1,34 @@
+package com.forkthebill.service.datasource;
+
+import java.util.function.Supplier;
+
+/**
+ * Thread-bound override that sends the next connection of a read-only transaction to the
+ * primary. Only the first statement of a transaction picks the connection, so this has to
+ * wrap that statement.
+ */
+public final class ReadRoutingContext {
+
+    private static final ThreadLocal<Boolean> FORCE_PRIMARY = new ThreadLocal<>();
+
+    private ReadRoutingContext() {
+    }
+
+    public static boolean isPrimaryForced() {
+        return Boolean.TRUE.equals(FORCE_PRIMARY.get());
+    }
+
+    public static <T> T onPrimary(Supplier<T> action) {
+        Boolean previous = FORCE_PRIMARY.get();
+        FORCE_PRIMARY.set(Boolean.TRUE);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                FORCE_PRIMARY.remove();
+            } else {
+                FORCE_PRIMARY.set(previous);
+            }
+        }
+    }
+}
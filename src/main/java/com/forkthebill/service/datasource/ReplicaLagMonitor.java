@@ -0,0 +1,59 @@
+package com.forkthebill.service.datasource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Periodically measures replication lag on the replica. Reads fall back to the primary
+ * while the lag is above the threshold or the replica cannot be reached.
+ */
+@Slf4j
+public class ReplicaLagMonitor {
+
+    // 0 on a server that is not a standby. A standby without a WAL receiver (disconnected from
+    // the primary) has replayed all it received but may be arbitrarily far behind, so it reports
+    // Infinity; pg_stat_wal_receiver has a row only while the receiver runs, visible to any role.
+    private static final String LAG_QUERY = "SELECT CASE WHEN NOT pg_is_in_recovery() THEN 0 "
+            + "WHEN NOT EXISTS (SELECT 1 FROM pg_stat_wal_receiver) THEN 'Infinity'::float8 "
+            + "WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 "
+            + "ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp())::float8, 'Infinity'::float8) END";
+
+    private final JdbcTemplate replicaJdbcTemplate;
+    private final Duration maxLag;
+    // Unknown until the first check succeeds, so start on the primary
+    private volatile double lagSeconds = Double.NaN;
+
+    public ReplicaLagMonitor(DataSource replicaDataSource, Duration maxLag, MeterRegistry meterRegistry) {
+        this.replicaJdbcTemplate = new JdbcTemplate(replicaDataSource);
+        this.replicaJdbcTemplate.setQueryTimeout(1);
+        this.maxLag = maxLag;
+        Gauge.builder("datasource.replica.lag", this, monitor -> monitor.lagSeconds)
+                .baseUnit("seconds")
+                .description("Replication lag of the read replica, NaN when unreachable, Infinity when not streaming")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${expense.read-replica.lag-check-interval-ms:1000}")
+    public void check() {
+        try {
+            Double lag = replicaJdbcTemplate.queryForObject(LAG_QUERY, Double.class);
+            lagSeconds = lag == null ? 0 : lag;
+        } catch (Exception e) {
+            if (!Double.isNaN(lagSeconds)) {
+                log.warn("Replica lag check failed, routing reads to the primary", e);
+            }
+            lagSeconds = Double.NaN;
+        }
+    }
+
+    public boolean isReplicaUsable() {
+        double lag = lagSeconds;
+        return !Double.isNaN(lag) && lag * 1000 <= maxLag.toMillis();
+    }
+}
@@ -0,0 +1,99 @@
+package com.forkthebill.service.datasource;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Decides per slug whether a read may go to the replica. Slugs written (or missed on the
+ * replica) stick to the primary for a short window, so a client reads its own writes even
+ * while the replica is behind.
+ *
+ * Stickiness is kept on this node and also handed to the client as a cookie scoped to
+ * /expense/{slug}, so the client's next read sticks to the primary on whichever node the
+ * load balancer picks.
+ */
+public class ReplicaReadRouting {
+
+    static final String STICKY_COOKIE = "ftb-read-primary";
+
+    private static final int CLEANUP_THRESHOLD = 10_000;
+
+    private final BooleanSupplier replicaUsable;
+    private final Duration stickyWindow;
+    private final long stickyWindowNanos;
+    private final Map<String, Long> stickyUntil = new ConcurrentHashMap<>();
+
+    public ReplicaReadRouting(BooleanSupplier replicaUsable, Duration stickyWindow) {
+        this.replicaUsable = replicaUsable;
+        this.stickyWindow = stickyWindow;
+        this.stickyWindowNanos = stickyWindow.toNanos();
+    }
+
+    public void stickToPrimary(String slug) {
+        long now = System.nanoTime();
+        stickyUntil.put(slug, now + stickyWindowNanos);
+        if (stickyUntil.size() > CLEANUP_THRESHOLD) {
+            stickyUntil.values().removeIf(until -> until - now <= 0);
+        }
+
+        // Off request threads (e.g. streamed uploads) only this node's window applies
+        ServletRequestAttributes attributes = currentAttributes();
+        HttpServletResponse response = attributes == null ? null : attributes.getResponse();
+        if (response != null && !response.isCommitted() && !stickyWindow.isZero()) {
+            response.addHeader(HttpHeaders.SET_COOKIE, ResponseCookie.from(STICKY_COOKIE, slug)
+                    .path("/expense/" + slug)
+                    .maxAge(Duration.ofSeconds((stickyWindowNanos + 999_999_999) / 1_000_000_000))
+                    .httpOnly(true)
+                    .sameSite("Lax")
+                    .build()
+                    .toString());
+        }
+    }
+
+    /**
+     * True when the current transaction is read-only, the replica is healthy and the slug
+     * has not been written recently, on this node or by this client.
+     */
+    public boolean routesToReplica(String slug) {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly() || !replicaUsable.getAsBoolean()) {
+            return false;
+        }
+        if (hasStickyCookie(slug)) {
+            return false;
+        }
+
+        Long until = stickyUntil.get(slug);
+        return until == null || until - System.nanoTime() <= 0;
+    }
+
+    private static boolean hasStickyCookie(String slug) {
+        ServletRequestAttributes attributes = currentAttributes();
+        HttpServletRequest request = attributes == null ? null : attributes.getRequest();
+        if (request == null || request.getCookies() == null) {
+            return false;
+        }
+        for (Cookie cookie : request.getCookies()) {
+            if (STICKY_COOKIE.equals(cookie.getName()) && slug.equals(cookie.getValue())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static ServletRequestAttributes currentAttributes() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes instanceof ServletRequestAttributes servletAttributes ? servletAttributes : null;
+    }
+}
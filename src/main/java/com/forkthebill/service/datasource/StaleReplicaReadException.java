@@ -0,0 +1,14 @@
+package com.forkthebill.service.datasource;
+
+import org.springframework.dao.TransientDataAccessException;
+
+/**
+ * Thrown when a slug is missing on the replica. It may have been created moments ago, so
+ * the read is retried against the primary.
+ */
+public class StaleReplicaReadException extends TransientDataAccessException {
+
+    public StaleReplicaReadException(String slug) {
+        super("Expense not found on the read replica: " + slug);
+    }
+}
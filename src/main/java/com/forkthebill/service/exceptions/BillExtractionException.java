@@ -0,0 +1,15 @@
+package com.forkthebill.service.exceptions;
+
+/**
+ * Gemini failed to extract a bill from an upload: the call errored, timed out or returned
+ * nothing usable.
+ */
+public class BillExtractionException extends RuntimeException {
+    public BillExtractionException(String message) {
+        super(message);
+    }
+
+    public BillExtractionException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
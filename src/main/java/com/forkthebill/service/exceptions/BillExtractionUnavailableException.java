@@ -0,0 +1,19 @@
+package com.forkthebill.service.exceptions;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * The upload was rejected before calling Gemini because the circuit is open or the
+ * concurrency or rate limit is reached. The client may retry after {@link #getRetryAfter()}.
+ */
+@Getter
+public class BillExtractionUnavailableException extends BillExtractionException {
+    private final Duration retryAfter;
+
+    public BillExtractionUnavailableException(String message, Duration retryAfter, Throwable cause) {
+        super(message, cause);
+        this.retryAfter = retryAfter;
+    }
+}
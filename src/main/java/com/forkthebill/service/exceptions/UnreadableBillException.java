@@ -0,0 +1,15 @@
+package com.forkthebill.service.exceptions;
+
+/**
+ * Gemini answered, but the reply held no bill: it was empty or not the JSON we asked for.
+ * The upload is at fault rather than the model, so the circuit breaker ignores it.
+ */
+public class UnreadableBillException extends BillExtractionException {
+    public UnreadableBillException(String message) {
+        super(message);
+    }
+
+    public UnreadableBillException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
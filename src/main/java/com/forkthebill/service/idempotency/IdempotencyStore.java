@@ -0,0 +1,39 @@
+package com.forkthebill.service.idempotency;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Outcomes of requests sent with an Idempotency-Key, kept for expense.idempotency.ttl so a
+ * retry gets the original response instead of running the request again.
+ */
+public interface IdempotencyStore {
+
+    /**
+     * @param status the HTTP status, or 0 while the first request is still running
+     * @param requestHash SHA-256 of the request body that produced the response
+     * @param headers response headers replayed with the body (Location, ETag, Retry-After)
+     */
+    record StoredResponse(int status, String contentType, byte[] body, String requestHash, Map<String, String> headers) {
+
+        public static final StoredResponse IN_PROGRESS = new StoredResponse(0, null, null, null, Map.of());
+
+        public boolean inProgress() {
+            return status == 0;
+        }
+    }
+
+    /**
+     * Claims the key for a request about to run.
+     *
+     * @return empty if the caller now owns the key, otherwise what is stored for it
+     */
+    Optional<StoredResponse> begin(String key);
+
+    void complete(String key, StoredResponse response);
+
+    /**
+     * Forgets a key whose request failed in a way worth retrying.
+     */
+    void release(String key);
+}
@@ -0,0 +1,104 @@
+package com.forkthebill.service.idempotency;
+
+import com.forkthebill.service.models.entities.IdempotencyRecord;
+import com.forkthebill.service.repositories.IdempotencyRecordRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Multi-node deployments: keys are rows in idempotency_keys, so a retry that lands on another
+ * node still finds the original outcome. The key is claimed by inserting its row; a node that
+ * dies mid-request leaves a row without a status, which is taken over after
+ * expense.idempotency.lock-timeout.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "expense.idempotency.store", havingValue = "table")
+public class TableIdempotencyStore implements IdempotencyStore {
+
+    private final IdempotencyRecordRepository repository;
+    private final Duration ttl;
+    private final Duration lockTimeout;
+
+    public TableIdempotencyStore(IdempotencyRecordRepository repository,
+                                 @Value("${expense.idempotency.ttl:24h}") Duration ttl,
+                                 @Value("${expense.idempotency.lock-timeout:2m}") Duration lockTimeout) {
+        this.repository = repository;
+        this.ttl = ttl;
+        this.lockTimeout = lockTimeout;
+    }
+
+    @Override
+    public Optional<StoredResponse> begin(String key) {
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            repository.insertStarted(key, now);
+            return Optional.empty();
+        } catch (DataIntegrityViolationException e) {
+            // Someone else holds the key, or already finished with it
+        }
+
+        Optional<IdempotencyRecord> existing = repository.findById(key);
+        if (existing.isEmpty()) {
+            // Expired between the insert and the read; the client can simply retry
+            return Optional.of(StoredResponse.IN_PROGRESS);
+        }
+
+        IdempotencyRecord record = existing.get();
+        if (record.getStatus() != null) {
+            return Optional.of(new StoredResponse(record.getStatus(), record.getContentType(), record.getBody(),
+                    record.getRequestHash(), parseHeaders(record.getHeaders())));
+        }
+        if (record.getCreatedAt().isBefore(now.minus(lockTimeout))
+                && repository.takeOver(key, record.getCreatedAt(), now) == 1) {
+            return Optional.empty();
+        }
+        return Optional.of(StoredResponse.IN_PROGRESS);
+    }
+
+    @Override
+    public void complete(String key, StoredResponse response) {
+        repository.complete(key, response.status(), response.contentType(), response.body(),
+                response.requestHash(), formatHeaders(response.headers()));
+    }
+
+    @Override
+    public void release(String key) {
+        repository.deleteById(key);
+    }
+
+    private static String formatHeaders(Map<String, String> headers) {
+        StringBuilder lines = new StringBuilder();
+        headers.forEach((name, value) -> lines.append(name).append(": ").append(value).append('\n'));
+        return lines.toString();
+    }
+
+    private static Map<String, String> parseHeaders(String lines) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        if (lines != null) {
+            for (String line : lines.split("\n")) {
+                int colon = line.indexOf(": ");
+                if (colon > 0) {
+                    headers.put(line.substring(0, colon), line.substring(colon + 2));
+                }
+            }
+        }
+        return headers;
+    }
+
+    @Scheduled(fixedDelayString = "${expense.idempotency.cleanup-interval-ms:600000}")
+    public void cleanup() {
+        int deleted = repository.deleteCreatedBefore(LocalDateTime.now().minus(ttl));
+        log.debug("Deleted {} expired idempotency keys", deleted);
+    }
+}
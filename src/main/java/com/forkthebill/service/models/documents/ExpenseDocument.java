@@ -0,0 +1,190 @@
+package com.forkthebill.service.models.documents;
+
+import com.forkthebill.service.models.entities.Expense;
+import com.forkthebill.service.models.entities.Item;
+import com.forkthebill.service.models.entities.Person;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * JSON shape of a whole Expense aggregate (items, people and claims) as stored
+ * in document storage mode.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExpenseDocument {
+    private String id;
+    private String slug;
+    private Long version;
+    private LocalDateTime createdAt;
+    private String payerName;
+    private String payerKey;
+    private String restaurantName;
+    private BigDecimal subtotal;
+    private BigDecimal tax;
+    private BigDecimal serviceCharge;
+    private BigDecimal discount;
+    private BigDecimal totalAmount;
+    private String groupId;
+
+    @Builder.Default
+    private List<ItemDocument> items = new ArrayList<>();
+
+    @Builder.Default
+    private List<PersonDocument> people = new ArrayList<>();
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ItemDocument {
+        private String id;
+        private String name;
+        private BigDecimal price;
+        private Integer quantity;
+        private Integer totalQuantity;
+
+        @Builder.Default
+        private List<UUID> claimedBy = new ArrayList<>();
+
+        @Builder.Default
+        private Map<UUID, Integer> unitClaims = new HashMap<>();
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PersonDocument {
+        private UUID id;
+        private String name;
+
+        @Builder.Default
+        private List<String> itemsClaimed = new ArrayList<>();
+
+        private BigDecimal subtotal;
+        private BigDecimal taxShare;
+        private BigDecimal serviceChargeShare;
+        private BigDecimal discountShare;
+        private BigDecimal totalOwed;
+        private boolean isFinished;
+    }
+
+    /**
+     * Assigns identifiers to the expense and any new items or people. Document storage
+     * has no database-generated ids, so this mirrors what Hibernate does on persist.
+     */
+    public static void assignMissingIds(Expense expense) {
+        if (expense.getId() == null) {
+            expense.setId(UUID.randomUUID().toString());
+        }
+        expense.getItems().forEach(item -> {
+            if (item.getId() == null) {
+                item.setId(UUID.randomUUID().toString());
+            }
+        });
+        expense.getPeople().forEach(person -> {
+            if (person.getId() == null) {
+                person.setId(UUID.randomUUID());
+            }
+        });
+    }
+
+    public static ExpenseDocument fromExpense(Expense expense) {
+        return ExpenseDocument.builder()
+                .id(expense.getId())
+                .slug(expense.getSlug())
+                .version(expense.getVersion())
+                .createdAt(expense.getCreatedAt())
+                .payerName(expense.getPayerName())
+                .payerKey(expense.getPayerKey())
+                .restaurantName(expense.getRestaurantName())
+                .subtotal(expense.getSubtotal())
+                .tax(expense.getTax())
+                .serviceCharge(expense.getServiceCharge())
+                .discount(expense.getDiscount())
+                .totalAmount(expense.getTotalAmount())
+                .groupId(expense.getGroupId())
+                .items(expense.getItems().stream()
+                        .map(item -> ItemDocument.builder()
+                                .id(item.getId())
+                                .name(item.getName())
+                                .price(item.getPrice())
+                                .quantity(item.getQuantity())
+                                .totalQuantity(item.getTotalQuantity())
+                                .claimedBy(new ArrayList<>(item.getClaimedBy()))
+                                .unitClaims(new HashMap<>(item.getUnitClaims()))
+                                .build())
+                        .toList())
+                .people(expense.getPeople().stream()
+                        .map(person -> PersonDocument.builder()
+                                .id(person.getId())
+                                .name(person.getName())
+                                .itemsClaimed(new ArrayList<>(person.getItemsClaimed()))
+                                .subtotal(person.getSubtotal())
+                                .taxShare(person.getTaxShare())
+                                .serviceChargeShare(person.getServiceChargeShare())
+                                .discountShare(person.getDiscountShare())
+                                .totalOwed(person.getTotalOwed())
+                                .isFinished(person.isFinished())
+                                .build())
+                        .toList())
+                .build();
+    }
+
+    public Expense toExpense() {
+        Expense expense = Expense.builder()
+                .id(id)
+                .slug(slug)
+                .version(version)
+                .createdAt(createdAt)
+                .payerName(payerName)
+                .payerKey(payerKey)
+                .restaurantName(restaurantName)
+                .subtotal(subtotal)
+                .tax(tax)
+                .serviceCharge(serviceCharge)
+                .discount(discount)
+                .totalAmount(totalAmount)
+                .groupId(groupId)
+                .items(new ArrayList<>())
+                .people(new ArrayList<>())
+                .build();
+
+        items.forEach(item -> expense.addItem(Item.builder()
+                .id(item.getId())
+                .name(item.getName())
+                .price(item.getPrice())
+                .quantity(item.getQuantity())
+                .totalQuantity(item.getTotalQuantity())
+                .claimedBy(new ArrayList<>(item.getClaimedBy()))
+                .unitClaims(new HashMap<>(item.getUnitClaims()))
+                .build()));
+
+        people.forEach(person -> expense.addPerson(Person.builder()
+                .id(person.getId())
+                .name(person.getName())
+                .itemsClaimed(new ArrayList<>(person.getItemsClaimed()))
+                .subtotal(person.getSubtotal())
+                .taxShare(person.getTaxShare())
+                .serviceChargeShare(person.getServiceChargeShare())
+                .discountShare(person.getDiscountShare())
+                .totalOwed(person.getTotalOwed())
+                .isFinished(person.isFinished())
+                .build()));
+
+        return expense;
+    }
+}
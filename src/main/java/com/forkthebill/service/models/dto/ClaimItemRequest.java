@@ -1,6 +1,7 @@
 package com.forkthebill.service.models.dto;
 
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -15,4 +16,8 @@ import java.util.UUID;
 public class ClaimItemRequest {
     @NotNull(message = "Person ID is required")
     private UUID personId;
+
+    // Number of units to take; without it the person shares the item (or its unclaimed units)
+    @Positive(message = "Units must be positive")
+    private Integer units;
 }
\ No newline at end of file
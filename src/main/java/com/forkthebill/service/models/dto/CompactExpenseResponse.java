@@ -0,0 +1,54 @@
+package com.forkthebill.service.models.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ExpenseResponse with claims sent once. claims[i] holds the indexes in people of those who
+ * claimed items[i], so ids are not repeated per claim, and claimUnits[i][j] the units taken
+ * by claims[i][j] (0 for a share). claimUnits is omitted when no item has unit claims.
+ * Served for Accept: application/vnd.forkthebill.compact+json.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CompactExpenseResponse {
+    public static final String MEDIA_TYPE = "application/vnd.forkthebill.compact+json";
+
+    private String id;
+    private String slug;
+    private String restaurantName;
+    private LocalDateTime createdAt;
+    private String payerName;
+    private BigDecimal totalAmount;
+    private BigDecimal subtotal;
+    private BigDecimal tax;
+    private BigDecimal serviceCharge;
+    private BigDecimal discount;
+
+    @Builder.Default
+    private List<CompactItemResponse> items = new ArrayList<>();
+
+    @Builder.Default
+    private List<CompactPersonResponse> people = new ArrayList<>();
+
+    @Builder.Default
+    private int[][] claims = new int[0][];
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private int[][] claimUnits;
+
+    // Sent as the ETag of GET /expense/{slug}, not in the body
+    @JsonIgnore
+    private Long version;
+}
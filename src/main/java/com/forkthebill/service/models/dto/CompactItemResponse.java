@@ -0,0 +1,20 @@
+package com.forkthebill.service.models.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CompactItemResponse {
+    private String id;
+    private String name;
+    private BigDecimal price;
+    private Integer quantity;
+    private Integer totalQuantity;
+}
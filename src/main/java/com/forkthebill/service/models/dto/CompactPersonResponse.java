@@ -0,0 +1,24 @@
+package com.forkthebill.service.models.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CompactPersonResponse {
+    private UUID id;
+    private String name;
+    private BigDecimal subtotal;
+    private BigDecimal taxShare;
+    private BigDecimal serviceChargeShare;
+    private BigDecimal discountShare;
+    private BigDecimal totalOwed;
+    private boolean isFinished;
+}
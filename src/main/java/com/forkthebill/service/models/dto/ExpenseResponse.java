@@ -1,5 +1,6 @@
 package com.forkthebill.service.models.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -31,4 +32,8 @@ public class ExpenseResponse {
 
     @Builder.Default
     private List<PersonResponse> people = new ArrayList<>();
+
+    // Sent as the ETag of GET /expense/{slug}, not in the body
+    @JsonIgnore
+    private Long version;
 }
\ No newline at end of file
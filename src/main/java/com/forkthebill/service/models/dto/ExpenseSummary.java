@@ -0,0 +1,26 @@
+package com.forkthebill.service.models.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One row of a payer's expense list, read as a projection rather than a whole aggregate.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ExpenseSummary {
+    private String id;
+    private String slug;
+    private String restaurantName;
+    private BigDecimal totalAmount;
+    private LocalDateTime createdAt;
+    private Long peopleFinished;
+    private Long peoplePending;
+}
@@ -0,0 +1,22 @@
+package com.forkthebill.service.models.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ExpenseSummaryPage {
+    // Newest first
+    @Builder.Default
+    private List<ExpenseSummary> expenses = new ArrayList<>();
+
+    // Pass as cursor to get the next page; null on the last page
+    private String nextCursor;
+}
@@ -0,0 +1,16 @@
+package com.forkthebill.service.models.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class GroupRequest {
+    @NotBlank(message = "Group name is required")
+    private String name;
+}
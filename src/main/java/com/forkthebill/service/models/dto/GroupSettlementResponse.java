@@ -0,0 +1,52 @@
+package com.forkthebill.service.models.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A group with where its members stand across all of its expenses, and the payments that
+ * would settle everyone up.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class GroupSettlementResponse {
+    private String id;
+    private String slug;
+    private String name;
+    private LocalDateTime createdAt;
+
+    // Members who are owed money first; settled members are left out
+    @Builder.Default
+    private List<MemberBalance> balances = new ArrayList<>();
+
+    @Builder.Default
+    private List<Transfer> transfers = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class MemberBalance {
+        private String name;
+        private BigDecimal balance;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Transfer {
+        private String from;
+        private String to;
+        private BigDecimal amount;
+    }
+}
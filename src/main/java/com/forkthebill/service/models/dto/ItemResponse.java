@@ -1,5 +1,6 @@
 package com.forkthebill.service.models.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -7,7 +8,9 @@ import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @Data
@@ -23,4 +26,9 @@ public class ItemResponse {
 
     @Builder.Default
     private List<UUID> claimedBy = new ArrayList<>();
+
+    // Units taken per person, for those in claimedBy who claimed units rather than a share
+    @Builder.Default
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private Map<UUID, Integer> unitClaims = new HashMap<>();
 }
\ No newline at end of file
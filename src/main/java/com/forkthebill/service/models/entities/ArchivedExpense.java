@@ -0,0 +1,54 @@
+package com.forkthebill.service.models.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "archived_expenses",
+        indexes = @Index(name = "archived_expenses_payer_key_idx", columnList = "payer_key, created_at, expense_id"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ArchivedExpense {
+    @Id
+    private String slug;
+
+    @Column(nullable = false)
+    private String expenseId;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private LocalDateTime archivedAt;
+
+    // Summary as of archival, so a payer's list does not restore or decompress archived expenses
+    @Column(name = "payer_key", length = 64)
+    private String payerKey;
+
+    private String restaurantName;
+
+    @Column(precision = 10, scale = 2)
+    private BigDecimal totalAmount;
+
+    private Integer peopleFinished;
+
+    private Integer peoplePending;
+
+    // Gzip-compressed ExpenseDocument JSON
+    @Column(nullable = false, length = 16 * 1024 * 1024)
+    @ToString.Exclude
+    private byte[] payload;
+}
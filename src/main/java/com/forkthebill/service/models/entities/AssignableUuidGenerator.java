@@ -0,0 +1,35 @@
+package com.forkthebill.service.models.entities;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+import org.hibernate.persister.entity.EntityPersister;
+
+import java.util.EnumSet;
+import java.util.UUID;
+
+public class AssignableUuidGenerator implements BeforeExecutionGenerator {
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue, EventType eventType) {
+        EntityPersister persister = session.getEntityPersister(null, owner);
+        Object assigned = persister.getIdentifier(owner, session);
+        if (assigned != null) {
+            return assigned;
+        }
+
+        UUID uuid = UUID.randomUUID();
+        return persister.getIdentifierType().getReturnedClass() == String.class ? uuid.toString() : uuid;
+    }
+
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return EventTypeSets.INSERT_ONLY;
+    }
+
+    @Override
+    public boolean allowAssignedIdentifiers() {
+        return true;
+    }
+}
@@ -1,8 +1,14 @@
 package com.forkthebill.service.models.entities;
 
 import com.forkthebill.service.exceptions.ResourceNotFoundException;
+import com.forkthebill.service.exceptions.ValidationException;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
@@ -10,25 +16,46 @@ import java.time.LocalDateTime;
 import java.util.*;
 
 @Entity
-@Table(name = "expenses")
+// Keyset index for listing a payer's expenses newest first, and the archival job's candidates
+@Table(name = "expenses", indexes = {
+        @Index(name = "expenses_payer_key_idx", columnList = "payer_key, created_at, id"),
+        @Index(name = "expenses_last_activity_at_idx", columnList = "last_activity_at")})
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "expense")
+@NaturalIdCache(region = "expense-slug")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 public class Expense {
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @AssignableUuid
     private String id;
 
+    @NaturalId
     @Column(unique = true, nullable = false)
     private String slug;
 
+    // Bumped on every save so writes that started from stale cached state are rejected
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
+
     @Column(nullable = false)
     private LocalDateTime createdAt;
 
+    // Set on every save and on restore from the archive; expenses idle for expense.archival.max-age are archived.
+    // Null on rows saved before it existed, which fall back to createdAt
+    @Column(name = "last_activity_at")
+    private LocalDateTime lastActivityAt;
+
     @Column(nullable = false)
     private String payerName;
 
+    // SHA-256 of the X-Payer-Token the expense was created with; null when none was sent
+    @Column(name = "payer_key", length = 64)
+    private String payerKey;
+
     @Column
     private String restaurantName;
 
@@ -44,13 +71,19 @@ public class Expense {
     @Column(nullable = false, precision = 10, scale = 2)
     private BigDecimal totalAmount;
 
+    // The ExpenseGroup whose ledger this expense counts towards, if any
+    @Column(name = "group_id")
+    private String groupId;
+
     @OneToMany(mappedBy = "expense", cascade = CascadeType.ALL, orphanRemoval = true)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "expense-items")
     @ToString.Exclude
     @Builder.Default
     @OrderColumn(name = "item_order")
     private List<Item> items = new ArrayList<>();
 
     @OneToMany(mappedBy = "expense", cascade = CascadeType.ALL, orphanRemoval = true)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "expense-people")
     @ToString.Exclude
     @Builder.Default
     private List<Person> people = new ArrayList<>();
@@ -59,6 +92,7 @@ public class Expense {
     public void addItem(Item item) {
         items.add(item);
         item.setExpense(this);
+        item.setExpenseCreatedAt(createdAt);
     }
 
     public void removeItem(Item item) {
@@ -69,6 +103,7 @@ public class Expense {
     public void addPerson(Person person) {
         people.add(person);
         person.setExpense(this);
+        person.setExpenseCreatedAt(createdAt);
     }
 
     public void removePerson(Person person) {
@@ -107,12 +142,111 @@ public class Expense {
         recalculateAmounts();
     }
 
+    /**
+     * Claims a number of units of an item for one person, or changes how many they took.
+     */
+    public void claimItemUnits(String itemId, UUID personId, int units) {
+        Person person = findPersonById(personId);
+        Item item = findItemById(itemId);
+
+        int available = item.unitCount() - item.claimedUnits() + item.getUnitClaims().getOrDefault(personId, 0);
+        if (units < 1 || units > available) {
+            throw new ValidationException("Only " + available + " of " + item.unitCount()
+                    + " units of " + item.getName() + " are left to claim");
+        }
+
+        item.getUnitClaims().put(personId, units);
+        if (!item.getClaimedBy().contains(personId)) {
+            item.getClaimedBy().add(personId);
+        }
+        if (!person.getItemsClaimed().contains(itemId)) {
+            person.getItemsClaimed().add(itemId);
+        }
+
+        recalculateAmounts();
+    }
+
+    /**
+     * Merges items that were stored one row per unit (quantity 1 of totalQuantity n, same
+     * name and price) into a single item with one unit claim per claimant. Only rows that
+     * came from the same bill line are merged: the rows of a line were stored next to each
+     * other, so a line is a run of at most totalQuantity matching rows, and two lines with the
+     * same name and price stay separate. A line with a row shared by several people is left
+     * alone, since a fraction of a unit is not a unit claim.
+     *
+     * @return the number of rows removed
+     */
+    public int consolidateUnitRows() {
+        List<List<Item>> lines = new ArrayList<>();
+        List<Item> line = null;
+        List<Object> lineKey = null;
+        for (Item item : items) {
+            if (!Integer.valueOf(1).equals(item.getQuantity())
+                    || item.getTotalQuantity() == null || item.getTotalQuantity() < 2) {
+                line = null;
+                continue;
+            }
+            List<Object> key = List.of(item.getName(), item.getPrice().stripTrailingZeros(), item.getTotalQuantity());
+            if (line == null || !key.equals(lineKey) || line.size() == item.getTotalQuantity()) {
+                line = new ArrayList<>();
+                lineKey = key;
+                lines.add(line);
+            }
+            line.add(item);
+        }
+
+        int removed = 0;
+        for (List<Item> rows : lines) {
+            if (rows.size() < 2 || rows.stream().anyMatch(row -> row.getClaimedBy().size() > 1
+                    || !row.getUnitClaims().isEmpty())) {
+                continue;
+            }
+
+            Item merged = rows.get(0);
+            BigDecimal price = BigDecimal.ZERO;
+            Map<UUID, Integer> unitClaims = new LinkedHashMap<>();
+            for (Item row : rows) {
+                price = price.add(row.getPrice());
+                row.getClaimedBy().forEach(personId -> unitClaims.merge(personId, 1, Integer::sum));
+            }
+
+            Set<String> removedIds = new HashSet<>();
+            for (Item row : rows.subList(1, rows.size())) {
+                removedIds.add(row.getId());
+            }
+            rows.subList(1, rows.size()).forEach(this::removeItem);
+            removed += removedIds.size();
+
+            merged.setPrice(price);
+            // A line missing some of its rows is now a line of the units left
+            merged.setQuantity(rows.size());
+            merged.setTotalQuantity(rows.size());
+            merged.getClaimedBy().clear();
+            merged.getClaimedBy().addAll(unitClaims.keySet());
+            merged.getUnitClaims().clear();
+            merged.getUnitClaims().putAll(unitClaims);
+
+            for (Person person : people) {
+                person.getItemsClaimed().removeIf(removedIds::contains);
+                if (unitClaims.containsKey(person.getId()) && !person.getItemsClaimed().contains(merged.getId())) {
+                    person.getItemsClaimed().add(merged.getId());
+                }
+            }
+        }
+
+        if (removed > 0) {
+            recalculateAmounts();
+        }
+        return removed;
+    }
+
     public void unclaimItem(String itemId, UUID personId) {
         Person person = findPersonById(personId);
         Item item = findItemById(itemId);
 
         // Remove claim
         item.getClaimedBy().remove(personId);
+        item.getUnitClaims().remove(personId);
         person.getItemsClaimed().remove(itemId);
 
         // Recalculate amounts
@@ -128,15 +262,7 @@ public class Expense {
                     .findFirst();
 
             if (itemOpt.isPresent()) {
-                Item item = itemOpt.get();
-                int claimCount = item.getClaimedBy().size();
-
-                if (claimCount > 0) {
-                    // Divide item price by number of people claiming it
-                    BigDecimal priceShare = item.getPrice()
-                            .divide(BigDecimal.valueOf(claimCount), 2, RoundingMode.HALF_UP);
-                    personSubtotal = personSubtotal.add(priceShare);
-                }
+                personSubtotal = personSubtotal.add(itemOpt.get().shareOf(person.getId()));
             }
         }
 
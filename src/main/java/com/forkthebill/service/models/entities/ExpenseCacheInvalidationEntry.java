@@ -0,0 +1,43 @@
+package com.forkthebill.service.models.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+@Entity
+@Table(name = "expense_cache_invalidations")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ExpenseCacheInvalidationEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String nodeId;
+
+    @Column(nullable = false)
+    private String expenseId;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Builder.Default
+    private List<String> itemIds = new ArrayList<>();
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Builder.Default
+    private List<UUID> personIds = new ArrayList<>();
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,63 @@
+package com.forkthebill.service.models.entities;
+
+import com.forkthebill.service.models.documents.ExpenseDocument;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.Version;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "expense_documents",
+        indexes = @Index(name = "expense_documents_payer_key_idx", columnList = "payer_key, created_at, expense_id"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ExpenseDocumentEntity {
+    @Id
+    private String slug;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    // Same role as Expense.version: a save that started from an older document is rejected
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
+
+    // Copied out of the document so a payer's expenses can be listed without reading them all
+    @Column(name = "expense_id")
+    private String expenseId;
+
+    @Column(name = "payer_key", length = 64)
+    private String payerKey;
+
+    // The rest of a payer's list entry, so the list is a projection like ArchivedExpense's.
+    // Null on rows saved before these columns existed, until their next save
+    private String restaurantName;
+
+    @Column(precision = 10, scale = 2)
+    private BigDecimal totalAmount;
+
+    private Integer peopleFinished;
+
+    private Integer peoplePending;
+
+    // Mapped to jsonb on PostgreSQL
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(nullable = false)
+    private ExpenseDocument document;
+}
@@ -0,0 +1,44 @@
+package com.forkthebill.service.models.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.Version;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.time.LocalDateTime;
+
+/**
+ * People who share bills repeatedly. Expenses join a group through Expense.groupId, and the
+ * group keeps one running balance per member in group_balances.
+ */
+@Entity
+@Table(name = "expense_groups")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ExpenseGroup {
+    @Id
+    @AssignableUuid
+    private String id;
+
+    @Column(unique = true, nullable = false)
+    private String slug;
+
+    @Column(nullable = false)
+    private String name;
+
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
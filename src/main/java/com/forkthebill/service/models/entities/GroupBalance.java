@@ -0,0 +1,51 @@
+package com.forkthebill.service.models.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * A member's net position across every expense in a group: positive when the others owe
+ * them, negative when they owe. Kept up to date by GroupLedgerService as expenses change.
+ */
+@Entity
+@Table(name = "group_balances")
+@IdClass(GroupBalance.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class GroupBalance {
+    @Id
+    @Column(name = "group_id")
+    private String groupId;
+
+    // Normalised name, so "Bob" on one bill and "bob " on the next are the same person
+    @Id
+    @Column(name = "member_key")
+    private String member;
+
+    // As first written, for display
+    @Column(nullable = false)
+    private String name;
+
+    @Column(nullable = false, precision = 12, scale = 2)
+    private BigDecimal balance;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String groupId;
+        private String member;
+    }
+}
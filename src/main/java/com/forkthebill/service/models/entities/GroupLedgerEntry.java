@@ -0,0 +1,49 @@
+package com.forkthebill.service.models.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * What one expense currently adds to a member's group balance. When the expense changes,
+ * only the difference to these rows is applied to group_balances.
+ */
+@Entity
+@Table(name = "group_ledger_entries")
+@IdClass(GroupLedgerEntry.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class GroupLedgerEntry {
+    @Id
+    @Column(name = "expense_id")
+    private String expenseId;
+
+    @Id
+    @Column(name = "member_key")
+    private String member;
+
+    @Column(name = "group_id", nullable = false)
+    private String groupId;
+
+    @Column(nullable = false, precision = 12, scale = 2)
+    private BigDecimal amount;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String expenseId;
+        private String member;
+    }
+}
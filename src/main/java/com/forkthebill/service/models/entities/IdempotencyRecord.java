@@ -0,0 +1,46 @@
+package com.forkthebill.service.models.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "idempotency_keys")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IdempotencyRecord {
+    // SHA-256 of the method, path and client key
+    @Id
+    @Column(length = 64)
+    private String idempotencyKey;
+
+    // Null while the first request is running
+    private Integer status;
+
+    private String contentType;
+
+    // SHA-256 of the request body, so a key reused for a different request is refused
+    @Column(length = 64)
+    private String requestHash;
+
+    // Replayed response headers, one "Name: value" per line
+    @Column(length = 2048)
+    private String headers;
+
+    @Column(length = 16 * 1024 * 1024)
+    @ToString.Exclude
+    private byte[] body;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -6,21 +6,28 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @Entity
 @Table(name = "items")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "item")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 public class Item {
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @AssignableUuid
     private String id;
     
     @Column(nullable = false)
@@ -38,10 +45,59 @@ public class Item {
     @JoinColumn(name = "expense_id")
     @ToString.Exclude
     private Expense expense;
+
+    // Partition key when the tables are range-partitioned; mirrors the owning expense's createdAt
+    @Column(name = "expense_created_at")
+    private LocalDateTime expenseCreatedAt;
     
     @ElementCollection
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "item-claimed-by")
     @CollectionTable(name = "item_claimed_by", joinColumns = @JoinColumn(name = "item_id"))
     @Column(name = "person_id")
     @Builder.Default
     private List<UUID> claimedBy = new ArrayList<>();
+
+    // Claimants who took a number of units rather than sharing the item; they are also in claimedBy
+    @ElementCollection
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "item-unit-claims")
+    @CollectionTable(name = "item_unit_claims", joinColumns = @JoinColumn(name = "item_id"))
+    @MapKeyColumn(name = "person_id")
+    @Column(name = "units", nullable = false)
+    @Builder.Default
+    private Map<UUID, Integer> unitClaims = new HashMap<>();
+
+    /**
+     * Units on this line; items without a quantity are a single unit.
+     */
+    public int unitCount() {
+        return quantity == null || quantity < 1 ? 1 : quantity;
+    }
+
+    public int claimedUnits() {
+        return unitClaims.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    /**
+     * What a claimant owes for this item. Unit claimants pay for their units at the unit
+     * price; everyone else who claimed the item splits the units left over equally. Without
+     * unit claims this is the item price divided by the number of claimants.
+     */
+    public BigDecimal shareOf(UUID personId) {
+        int units = unitCount();
+        Integer claimed = unitClaims.get(personId);
+        if (claimed != null) {
+            return price.multiply(BigDecimal.valueOf(claimed))
+                    .divide(BigDecimal.valueOf(units), 2, RoundingMode.HALF_UP);
+        }
+
+        long sharers = claimedBy.stream().filter(id -> !unitClaims.containsKey(id)).count();
+        if (sharers == 0 || !claimedBy.contains(personId)) {
+            return BigDecimal.ZERO;
+        }
+        int remaining = Math.max(0, units - claimedUnits());
+        BigDecimal remainingPrice = remaining == units
+                ? price
+                : price.multiply(BigDecimal.valueOf(remaining)).divide(BigDecimal.valueOf(units), 10, RoundingMode.HALF_UP);
+        return remainingPrice.divide(BigDecimal.valueOf(sharers), 2, RoundingMode.HALF_UP);
+    }
 }
\ No newline at end of file
@@ -6,21 +6,25 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
 @Entity
-@Table(name = "people")
+@Table(name = "people", indexes = @Index(name = "people_expense_id_idx", columnList = "expense_id"))
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "person")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 public class Person {
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @AssignableUuid
     private UUID id;
     
     @Column(nullable = false)
@@ -30,8 +34,13 @@ public class Person {
     @JoinColumn(name = "expense_id")
     @ToString.Exclude
     private Expense expense;
+
+    // Partition key when the tables are range-partitioned; mirrors the owning expense's createdAt
+    @Column(name = "expense_created_at")
+    private LocalDateTime expenseCreatedAt;
     
     @ElementCollection
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "person-items-claimed")
     @CollectionTable(name = "person_items_claimed", joinColumns = @JoinColumn(name = "person_id"))
     @Column(name = "item_id")
     @Builder.Default
@@ -0,0 +1,108 @@
+package com.forkthebill.service.ratelimit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.forkthebill.service.exceptions.ApiError;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Answers 429 with Retry-After once a client, or everyone together on one slug, exceeds
+ * their budget for /expense and /groups requests: GET polls, mutations and uploads are counted
+ * separately (see RequestRateLimiter).
+ *
+ * Runs right after Spring Security, so refused requests still carry CORS headers but never
+ * reach the version lookup or the database. The client is the remote address, taken from
+ * X-Forwarded-For behind a trusted proxy (server.forward-headers-strategy), together with the
+ * X-Client-Id the browser makes up once per session, so a table behind one NAT is not one client.
+ */
+@Component
+@Order(0)
+@ConditionalOnProperty(name = "expense.rate-limit.enabled", havingValue = "true", matchIfMissing = true)
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final String EXPENSE_PREFIX = "/expense/";
+    private static final String GROUPS_PREFIX = "/groups/";
+    public static final String CLIENT_ID = "X-Client-Id";
+    private static final int MAX_CLIENT_ID_LENGTH = 64;
+
+    private final RequestRateLimiter rateLimiter;
+    private final ObjectMapper objectMapper;
+
+    public RateLimitFilter(RequestRateLimiter rateLimiter, ObjectMapper objectMapper) {
+        this.rateLimiter = rateLimiter;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        return "OPTIONS".equals(request.getMethod())
+                || !(path.equals("/expense") || path.startsWith(EXPENSE_PREFIX)
+                        || path.equals("/groups") || path.startsWith(GROUPS_PREFIX));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String path = request.getRequestURI();
+        String slug = slug(path);
+        RequestRateLimiter.Budget budget;
+        if ("upload".equals(slug) && "POST".equals(request.getMethod())) {
+            budget = RequestRateLimiter.Budget.UPLOAD;
+            slug = null;
+        } else if ("GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod())) {
+            budget = RequestRateLimiter.Budget.POLL;
+        } else {
+            budget = RequestRateLimiter.Budget.MUTATION;
+        }
+
+        long wait = rateLimiter.tryAcquire(budget, request.getRemoteAddr(), clientId(request), slug);
+        if (wait == 0) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + TimeUnit.SECONDS.toNanos(1) - 1));
+        ApiError apiError = ApiError.builder()
+                .timestamp(LocalDateTime.now())
+                .status(HttpStatus.TOO_MANY_REQUESTS.value())
+                .error(HttpStatus.TOO_MANY_REQUESTS.getReasonPhrase())
+                .message("Too many requests, please retry in " + retryAfter + "s")
+                .path(path)
+                .build();
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), apiError);
+    }
+
+    // Ignored when blank or too long, so it cannot be used to fill the bucket caches with junk keys
+    private static String clientId(HttpServletRequest request) {
+        String clientId = request.getHeader(CLIENT_ID);
+        return clientId == null || clientId.isBlank() || clientId.length() > MAX_CLIENT_ID_LENGTH
+                ? null : clientId.strip();
+    }
+
+    // First path segment after /expense/: the slug, or "upload". Group requests only count
+    // against the client's budgets
+    private static String slug(String path) {
+        if (!path.startsWith(EXPENSE_PREFIX) || path.length() <= EXPENSE_PREFIX.length()) {
+            return null;
+        }
+        int end = path.indexOf('/', EXPENSE_PREFIX.length());
+        return path.substring(EXPENSE_PREFIX.length(), end < 0 ? path.length() : end);
+    }
+}
@@ -0,0 +1,154 @@
+package com.forkthebill.service.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Token buckets per client and per slug, with a separate budget for each kind of request. A
+ * limit is written as capacity/period, e.g. 120/1m: a burst of up to 120 requests, refilled
+ * at 120 a minute. "none" turns a limit off.
+ *
+ * A client is an address plus the session token the browser sends, so diners behind one NAT
+ * get a budget each. Tokens are free to make up, so each address is also held to
+ * expense.rate-limit.clients-per-address times the client budget.
+ *
+ * A request is only counted when every bucket it draws from has a token, so one refused by
+ * the slug's budget does not also use up the client's.
+ *
+ * Buckets are dropped after a full period without requests. By then they would be full again,
+ * so forgetting them changes nothing, and at most expense.rate-limit.max-tracked of each kind
+ * are kept.
+ */
+@Component
+public class RequestRateLimiter {
+
+    public enum Budget {
+        POLL, MUTATION, UPLOAD
+    }
+
+    private final Map<Budget, Limiter> perClient = new EnumMap<>(Budget.class);
+    private final Map<Budget, Limiter> perAddress = new EnumMap<>(Budget.class);
+    private final Map<Budget, Limiter> perSlug = new EnumMap<>(Budget.class);
+
+    public RequestRateLimiter(MeterRegistry meterRegistry,
+                              @Value("${expense.rate-limit.max-tracked:100000}") long maxTracked,
+                              @Value("${expense.rate-limit.clients-per-address:8}") int clientsPerAddress,
+                              @Value("${expense.rate-limit.poll.per-client:120/1m}") String pollPerClient,
+                              @Value("${expense.rate-limit.poll.per-slug:600/1m}") String pollPerSlug,
+                              @Value("${expense.rate-limit.mutation.per-client:60/1m}") String mutationPerClient,
+                              @Value("${expense.rate-limit.mutation.per-slug:120/1m}") String mutationPerSlug,
+                              @Value("${expense.rate-limit.upload.per-client:10/1m}") String uploadPerClient) {
+        put(perClient, Budget.POLL, "client", pollPerClient, 1, maxTracked, meterRegistry);
+        put(perAddress, Budget.POLL, "address", pollPerClient, clientsPerAddress, maxTracked, meterRegistry);
+        put(perSlug, Budget.POLL, "slug", pollPerSlug, 1, maxTracked, meterRegistry);
+        put(perClient, Budget.MUTATION, "client", mutationPerClient, 1, maxTracked, meterRegistry);
+        put(perAddress, Budget.MUTATION, "address", mutationPerClient, clientsPerAddress, maxTracked, meterRegistry);
+        put(perSlug, Budget.MUTATION, "slug", mutationPerSlug, 1, maxTracked, meterRegistry);
+        put(perClient, Budget.UPLOAD, "client", uploadPerClient, 1, maxTracked, meterRegistry);
+        put(perAddress, Budget.UPLOAD, "address", uploadPerClient, clientsPerAddress, maxTracked, meterRegistry);
+    }
+
+    /**
+     * @param address the client's address
+     * @param session the client's session token, or null
+     * @param slug the expense the request is about, or null
+     * @return 0 if the request may go ahead, otherwise the nanoseconds until it may be retried
+     */
+    public long tryAcquire(Budget budget, String address, String session, String slug) {
+        long now = System.nanoTime();
+        Limiter clientLimiter = perClient.get(budget);
+        Limiter addressLimiter = session != null ? perAddress.get(budget) : null;
+        Limiter slugLimiter = slug != null ? perSlug.get(budget) : null;
+        String client = session != null ? address + " " + session : address;
+
+        long wait = check(clientLimiter, client, now);
+        if (wait == 0) {
+            wait = check(addressLimiter, address, now);
+        }
+        if (wait == 0) {
+            wait = check(slugLimiter, slug, now);
+        }
+        if (wait > 0) {
+            return wait;
+        }
+
+        // Another request may have taken the last token since the check; then this one is refused
+        wait = take(clientLimiter, client, now);
+        if (wait == 0) {
+            wait = take(addressLimiter, address, now);
+        }
+        return wait == 0 ? take(slugLimiter, slug, now) : wait;
+    }
+
+    private static long check(Limiter limiter, String key, long now) {
+        return limiter != null ? limiter.check(key, now) : 0;
+    }
+
+    private static long take(Limiter limiter, String key, long now) {
+        return limiter != null ? limiter.tryTake(key, now) : 0;
+    }
+
+    private static void put(Map<Budget, Limiter> limiters, Budget budget, String scope, String spec,
+                            int multiplier, long maxTracked, MeterRegistry meterRegistry) {
+        if (spec == null || spec.isBlank() || spec.strip().equalsIgnoreCase("none")) {
+            return;
+        }
+        String[] parts = spec.split("/");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Rate limit must be written as capacity/period, got " + spec);
+        }
+        int capacity = (int) Math.min(Integer.MAX_VALUE, (long) Integer.parseInt(parts[0].strip()) * multiplier);
+        Duration period = DurationStyle.detectAndParse(parts[1].strip());
+        Counter rejected = Counter.builder("expense.rate-limit.rejected")
+                .description("Requests refused with 429, by budget and by which limit was hit")
+                .tag("budget", budget.name().toLowerCase(Locale.ROOT))
+                .tag("limit", scope)
+                .register(meterRegistry);
+        limiters.put(budget, new Limiter(capacity, period, maxTracked, rejected));
+    }
+
+    private static final class Limiter {
+
+        private final int capacity;
+        private final Duration period;
+        private final Cache<String, TokenBucket> buckets;
+        private final Counter rejected;
+
+        Limiter(int capacity, Duration period, long maxTracked, Counter rejected) {
+            this.capacity = capacity;
+            this.period = period;
+            this.buckets = Caffeine.newBuilder()
+                    .maximumSize(maxTracked)
+                    .expireAfterAccess(period)
+                    .build();
+            this.rejected = rejected;
+        }
+
+        long check(String key, long now) {
+            TokenBucket bucket = buckets.getIfPresent(key);
+            long wait = bucket != null ? bucket.timeToToken(now) : 0;
+            if (wait > 0) {
+                rejected.increment();
+            }
+            return wait;
+        }
+
+        long tryTake(String key, long now) {
+            long wait = buckets.get(key, k -> new TokenBucket(capacity, period, now)).tryTake(now);
+            if (wait > 0) {
+                rejected.increment();
+            }
+            return wait;
+        }
+    }
+}
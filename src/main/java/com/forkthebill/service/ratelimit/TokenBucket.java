@@ -0,0 +1,55 @@
+package com.forkthebill.service.ratelimit;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket. Rather than a token count and a last-refill time, the state is the
+ * single instant at which the bucket will be full again, so taking a token is one
+ * compare-and-set on a long and a refused request only reads it. The bucket holds capacity
+ * tokens and refills one every refillPeriod / capacity.
+ *
+ * Times are System.nanoTime() values, passed in so tests and benchmarks control the clock.
+ */
+public final class TokenBucket {
+
+    private final long nanosPerToken;
+    private final long capacityNanos;
+    private final AtomicLong fullAt;
+
+    public TokenBucket(int capacity, Duration refillPeriod, long now) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("A token bucket needs a capacity of at least 1");
+        }
+        this.nanosPerToken = Math.max(1, refillPeriod.toNanos() / capacity);
+        this.capacityNanos = nanosPerToken * capacity;
+        this.fullAt = new AtomicLong(now);
+    }
+
+    /**
+     * @return 0 if a token is available, otherwise the nanoseconds until one will be; nothing is taken
+     */
+    public long timeToToken(long now) {
+        long full = fullAt.get();
+        long next = (full - now > 0 ? full : now) + nanosPerToken;
+        return Math.max(0, next - now - capacityNanos);
+    }
+
+    /**
+     * @return 0 if a token was taken, otherwise the nanoseconds until one will be available
+     */
+    public long tryTake(long now) {
+        while (true) {
+            long full = fullAt.get();
+            // An empty bucket is one that is full only capacity tokens from now
+            long next = (full - now > 0 ? full : now) + nanosPerToken;
+            long wait = next - now - capacityNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(full, next)) {
+                return 0;
+            }
+        }
+    }
+}
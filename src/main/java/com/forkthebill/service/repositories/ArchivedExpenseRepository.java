@@ -0,0 +1,9 @@
+package com.forkthebill.service.repositories;
+
+import com.forkthebill.service.models.entities.ArchivedExpense;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ArchivedExpenseRepository extends JpaRepository<ArchivedExpense, String> {
+}
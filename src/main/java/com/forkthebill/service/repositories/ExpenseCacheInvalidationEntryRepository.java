@@ -0,0 +1,23 @@
+package com.forkthebill.service.repositories;
+
+import com.forkthebill.service.models.entities.ExpenseCacheInvalidationEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ExpenseCacheInvalidationEntryRepository extends JpaRepository<ExpenseCacheInvalidationEntry, Long> {
+    List<ExpenseCacheInvalidationEntry> findTop1000ByIdGreaterThanOrderByIdAsc(Long id);
+
+    @Query("select coalesce(max(e.id), 0) from ExpenseCacheInvalidationEntry e")
+    long findMaxId();
+
+    @Modifying
+    @Query("delete from ExpenseCacheInvalidationEntry e where e.createdAt < :cutoff")
+    int deleteCreatedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -0,0 +1,24 @@
+package com.forkthebill.service.repositories;
+
+import com.forkthebill.service.models.entities.ExpenseGroup;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface ExpenseGroupRepository extends JpaRepository<ExpenseGroup, String> {
+
+    Optional<ExpenseGroup> findBySlug(String slug);
+
+    boolean existsBySlug(String slug);
+
+    // Serialises balance updates of one group; expenses of other groups are not held up
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select g from ExpenseGroup g where g.id = :id")
+    Optional<ExpenseGroup> lockById(@Param("id") String id);
+}
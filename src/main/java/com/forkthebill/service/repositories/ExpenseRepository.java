@@ -1,13 +1,31 @@
 package com.forkthebill.service.repositories;
 
 import com.forkthebill.service.models.entities.Expense;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.util.Optional;
+import java.time.LocalDateTime;
+import java.util.List;
 
 @Repository
-public interface ExpenseRepository extends JpaRepository<Expense, String> {
-    Optional<Expense> findBySlug(String slug);
-    boolean existsBySlug(String slug);
-}
\ No newline at end of file
+public interface ExpenseRepository extends JpaRepository<Expense, String>, ExpenseRepositoryCustom {
+
+    // Lock timeout -2 is SKIP LOCKED: expenses being claimed right now are left for a later run
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("select e from Expense e where e.lastActivityAt < :cutoff "
+            + "or (e.lastActivityAt is null and e.createdAt < :cutoff) order by e.createdAt")
+    List<Expense> findArchivableBatch(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+
+    // Expenses still holding one row per unit of a multi-unit item, in slug order for keyset paging
+    @Query("select distinct e.slug from Expense e join e.items i "
+            + "where i.quantity = 1 and i.totalQuantity > 1 and e.slug > :after order by e.slug")
+    List<String> findSlugsWithUnitRows(@Param("after") String after, Pageable pageable);
+}
@@ -0,0 +1,33 @@
+package com.forkthebill.service.repositories;
+
+import com.forkthebill.service.models.dto.ExpenseSummary;
+import com.forkthebill.service.models.entities.Expense;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Aggregate-level operations whose backing storage depends on expense.storage.mode.
+ * These take precedence over the JpaRepository defaults of the same name.
+ */
+public interface ExpenseRepositoryCustom {
+    Optional<Expense> findBySlug(String slug);
+
+    boolean existsBySlug(String slug);
+
+    /**
+     * The expense's current version, without reading its items, people or document. Empty for
+     * unknown and archived slugs; archived expenses are left archived.
+     */
+    Optional<Long> findVersionBySlug(String slug);
+
+    <S extends Expense> S save(S expense);
+
+    /**
+     * Expenses created with the given payer key, archived ones included, newest first by
+     * (createdAt, id). With afterCreatedAt and afterId set, only those that come after that
+     * position in this order.
+     */
+    List<ExpenseSummary> findPayerExpenses(String payerKey, LocalDateTime afterCreatedAt, String afterId, int limit);
+}
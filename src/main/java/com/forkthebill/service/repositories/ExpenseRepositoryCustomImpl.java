@@ -0,0 +1,371 @@
+package com.forkthebill.service.repositories;
+
+import com.forkthebill.service.cache.ExpenseCacheInvalidation;
+import com.forkthebill.service.cache.ExpenseCacheInvalidationBroadcaster;
+import com.forkthebill.service.cache.NoOpExpenseCacheInvalidationBroadcaster;
+import com.forkthebill.service.config.ExpenseStorageMode;
+import com.forkthebill.service.datasource.ReadRoutingContext;
+import com.forkthebill.service.datasource.ReplicaReadRouting;
+import com.forkthebill.service.datasource.StaleReplicaReadException;
+import com.forkthebill.service.models.dto.ExpenseSummary;
+import com.forkthebill.service.models.documents.ExpenseDocument;
+import com.forkthebill.service.models.entities.ArchivedExpense;
+import com.forkthebill.service.models.entities.Expense;
+import com.forkthebill.service.models.entities.ExpenseDocumentEntity;
+import com.forkthebill.service.models.entities.Item;
+import com.forkthebill.service.models.entities.Person;
+import com.forkthebill.service.services.ExpenseArchiveRestorer;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.Cache;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cache.spi.access.NaturalIdDataAccess;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+@Transactional(readOnly = true)
+public class ExpenseRepositoryCustomImpl implements ExpenseRepositoryCustom {
+
+    private final EntityManager entityManager;
+    private final ExpenseStorageMode storageMode;
+    private final ExpenseCacheInvalidationBroadcaster invalidationBroadcaster;
+    private final ExpenseArchiveRestorer archiveRestorer;
+    private final Duration partitionLookupWindow;
+    private final ReplicaReadRouting readRouting;
+
+    @Autowired
+    public ExpenseRepositoryCustomImpl(EntityManager entityManager,
+                                       @Value("${expense.storage.mode:relational}") String storageMode,
+                                       ObjectProvider<ExpenseCacheInvalidationBroadcaster> invalidationBroadcaster,
+                                       ObjectProvider<ExpenseArchiveRestorer> archiveRestorer,
+                                       @Value("${expense.partitioning.enabled:false}") boolean partitioningEnabled,
+                                       @Value("${expense.partitioning.lookup-window:30d}") Duration partitionLookupWindow,
+                                       ObjectProvider<ReplicaReadRouting> readRouting) {
+        this(entityManager, ExpenseStorageMode.from(storageMode),
+                invalidationBroadcaster.getIfAvailable(NoOpExpenseCacheInvalidationBroadcaster::new),
+                archiveRestorer.getIfAvailable(),
+                partitioningEnabled ? partitionLookupWindow : null,
+                readRouting.getIfAvailable());
+    }
+
+    /**
+     * @param archiveRestorer       may be null, in which case archived slugs are not restored
+     * @param partitionLookupWindow may be null when the tables are not partitioned by createdAt
+     * @param readRouting           may be null when there is no read replica
+     */
+    public ExpenseRepositoryCustomImpl(EntityManager entityManager, ExpenseStorageMode storageMode,
+                                       ExpenseCacheInvalidationBroadcaster invalidationBroadcaster,
+                                       ExpenseArchiveRestorer archiveRestorer,
+                                       Duration partitionLookupWindow,
+                                       ReplicaReadRouting readRouting) {
+        this.entityManager = entityManager;
+        this.storageMode = storageMode;
+        this.invalidationBroadcaster = invalidationBroadcaster;
+        this.archiveRestorer = archiveRestorer;
+        this.partitionLookupWindow = partitionLookupWindow;
+        this.readRouting = readRouting;
+    }
+
+    @Override
+    public Optional<Expense> findBySlug(String slug) {
+        if (readRouting == null) {
+            return findOrRestore(slug);
+        }
+        if (!readRouting.routesToReplica(slug)) {
+            return ReadRoutingContext.onPrimary(() -> findOrRestore(slug));
+        }
+
+        // Replica rows may be behind what other nodes have cached; only read the shared cache
+        entityManager.unwrap(Session.class).setCacheMode(CacheMode.GET);
+        Optional<Expense> expense = lookup(slug);
+        if (expense.isEmpty()) {
+            // Possibly created moments ago (or archived, which only the primary can restore)
+            readRouting.stickToPrimary(slug);
+            throw new StaleReplicaReadException(slug);
+        }
+        return expense;
+    }
+
+    @Override
+    public Optional<Long> findVersionBySlug(String slug) {
+        if (readRouting == null) {
+            return lookupVersion(slug);
+        }
+        if (!readRouting.routesToReplica(slug)) {
+            return ReadRoutingContext.onPrimary(() -> lookupVersion(slug));
+        }
+
+        entityManager.unwrap(Session.class).setCacheMode(CacheMode.GET);
+        Optional<Long> version = lookupVersion(slug);
+        if (version.isEmpty()) {
+            readRouting.stickToPrimary(slug);
+            throw new StaleReplicaReadException(slug);
+        }
+        return version;
+    }
+
+    private Optional<Long> lookupVersion(String slug) {
+        if (storageMode == ExpenseStorageMode.DOCUMENT) {
+            // The version column alone; the document is not read or deserialised
+            return entityManager.createQuery(
+                            "select d.version from ExpenseDocumentEntity d where d.slug = :slug", Long.class)
+                    .setParameter("slug", slug)
+                    .getResultStream()
+                    .findFirst();
+        }
+
+        // The expenses row alone, usually from the second-level cache; items and people are lazy
+        return findRecentBySlug(slug).or(() -> loadBySlug(slug)).map(Expense::getVersion);
+    }
+
+    private Optional<Expense> findOrRestore(String slug) {
+        Optional<Expense> expense = lookup(slug);
+        if (expense.isPresent() || storageMode == ExpenseStorageMode.DOCUMENT) {
+            return expense;
+        }
+
+        // Old expenses are moved to archived_expenses; bring them back transparently
+        if (archiveRestorer != null && archiveRestorer.restore(slug)) {
+            return loadBySlug(slug);
+        }
+        return Optional.empty();
+    }
+
+    private Optional<Expense> lookup(String slug) {
+        if (storageMode == ExpenseStorageMode.DOCUMENT) {
+            // Single primary-key lookup, no joins
+            return Optional.ofNullable(entityManager.find(ExpenseDocumentEntity.class, slug))
+                    .map(row -> row.getDocument().toExpense());
+        }
+
+        return findRecentBySlug(slug).or(() -> loadBySlug(slug));
+    }
+
+    @Override
+    public boolean existsBySlug(String slug) {
+        if (storageMode == ExpenseStorageMode.DOCUMENT) {
+            return countBySlug("select count(d) from ExpenseDocumentEntity d where d.slug = :slug", slug) > 0;
+        }
+
+        // Archived slugs are still taken
+        return countBySlug("select count(e) from Expense e where e.slug = :slug", slug) > 0
+                || entityManager.find(ArchivedExpense.class, slug) != null;
+    }
+
+    @Override
+    @Transactional
+    public <S extends Expense> S save(S expense) {
+        if (readRouting != null) {
+            readRouting.stickToPrimary(expense.getSlug());
+        }
+
+        if (storageMode == ExpenseStorageMode.DOCUMENT) {
+            return saveDocument(expense);
+        }
+
+        expense.setLastActivityAt(LocalDateTime.now());
+        if (expense.getId() == null) {
+            entityManager.persist(expense);
+            return expense;
+        }
+
+        S managed = entityManager.contains(expense) ? expense : entityManager.merge(expense);
+        // Child changes do not touch the expenses row, so force the version check and bump explicitly
+        entityManager.lock(managed, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+        invalidationBroadcaster.publish(new ExpenseCacheInvalidation(
+                managed.getId(),
+                managed.getItems().stream().map(Item::getId).filter(Objects::nonNull).toList(),
+                managed.getPeople().stream().map(Person::getId).filter(Objects::nonNull).toList()));
+        return managed;
+    }
+
+    /**
+     * The document is rewritten as a whole, so a save must start from the current version;
+     * otherwise it would drop whatever the other writer changed. Conflicts surface as
+     * OptimisticLockingFailureException, like the relational mode's version check.
+     */
+    private <S extends Expense> S saveDocument(S expense) {
+        ExpenseDocument.assignMissingIds(expense);
+        ExpenseDocumentEntity row = entityManager.find(ExpenseDocumentEntity.class, expense.getSlug());
+        if (row == null) {
+            row = ExpenseDocumentEntity.builder()
+                    .slug(expense.getSlug())
+                    .createdAt(expense.getCreatedAt())
+                    .build();
+            expense.setVersion(0L);
+        } else if (!Objects.equals(row.getVersion(), expense.getVersion())) {
+            throw new ObjectOptimisticLockingFailureException(ExpenseDocumentEntity.class, expense.getSlug());
+        } else {
+            expense.setVersion(row.getVersion() + 1);
+        }
+
+        row.setExpenseId(expense.getId());
+        row.setPayerKey(expense.getPayerKey());
+        row.setRestaurantName(expense.getRestaurantName());
+        row.setTotalAmount(expense.getTotalAmount());
+        row.setPeopleFinished((int) expense.getPeople().stream().filter(Person::isFinished).count());
+        row.setPeoplePending((int) expense.getPeople().stream().filter(person -> !person.isFinished()).count());
+        row.setDocument(ExpenseDocument.fromExpense(expense));
+        if (!entityManager.contains(row)) {
+            entityManager.persist(row);
+        }
+        // Checks the version against the row now, and lets a second save in this transaction see the bump
+        entityManager.flush();
+        return expense;
+    }
+
+    /**
+     * With partitioned tables, a slug lookup that also bounds createdAt only probes the
+     * recent partitions. Older expenses fall through to the unbounded natural-id lookup.
+     *
+     * A slug in the natural-id cache is served from the caches without any query. On a miss,
+     * items and people are fetched with their expense_created_at as well, so their loads are
+     * pruned to the expense's month instead of probing every partition by expense_id.
+     */
+    private Optional<Expense> findRecentBySlug(String slug) {
+        if (partitionLookupWindow == null) {
+            return Optional.empty();
+        }
+
+        Object cachedId = cachedExpenseId(slug);
+        if (cachedId != null) {
+            Expense cached = entityManager.find(Expense.class, cachedId);
+            if (cached != null) {
+                return Optional.of(cached);
+            }
+        }
+
+        Optional<Expense> expense = entityManager.createQuery(
+                        "select e from Expense e where e.slug = :slug and e.createdAt >= :createdAfter", Expense.class)
+                .setParameter("slug", slug)
+                .setParameter("createdAfter", LocalDateTime.now().minus(partitionLookupWindow))
+                .getResultStream()
+                .findFirst();
+        expense.ifPresent(found -> {
+            fetchChildrenInPartition(found, "items", "i");
+            fetchChildrenInPartition(found, "people", "p");
+        });
+        return expense;
+    }
+
+    private Object cachedExpenseId(String slug) {
+        SharedSessionContractImplementor session = entityManager.unwrap(SharedSessionContractImplementor.class);
+        EntityPersister persister = session.getFactory().getMappingMetamodel().getEntityDescriptor(Expense.class);
+        NaturalIdDataAccess naturalIdAccess = persister.getNaturalIdCacheAccessStrategy();
+        if (naturalIdAccess == null || !session.getCacheMode().isGetEnabled()) {
+            return null;
+        }
+        return naturalIdAccess.get(session, naturalIdAccess.generateCacheKey(slug, persister, session));
+    }
+
+    // One collection per query, since fetching both bags at once is not allowed
+    private void fetchChildrenInPartition(Expense expense, String collection, String alias) {
+        Cache cache = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getCache();
+        if (cache.containsCollection(Expense.class.getName() + "." + collection, expense.getId())) {
+            return;
+        }
+        entityManager.createQuery(("select e from Expense e left join fetch e.%1$s %2$s "
+                        + "where e.id = :id and e.createdAt = :createdAt "
+                        + "and (%2$s.id is null or %2$s.expenseCreatedAt = :createdAt)").formatted(collection, alias), Expense.class)
+                .setParameter("id", expense.getId())
+                .setParameter("createdAt", expense.getCreatedAt())
+                .getResultList();
+    }
+
+    private Optional<Expense> loadBySlug(String slug) {
+        // Resolved through the natural-id cache, then the entity cache, when the second-level cache is on
+        return entityManager.unwrap(Session.class)
+                .bySimpleNaturalId(Expense.class)
+                .loadOptional(slug);
+    }
+
+    @Override
+    public List<ExpenseSummary> findPayerExpenses(String payerKey, LocalDateTime afterCreatedAt, String afterId, int limit) {
+        if (storageMode == ExpenseStorageMode.DOCUMENT) {
+            // Summary columns only; a document is read just for a row not saved since they were added
+            return pageQuery("select new com.forkthebill.service.models.dto.ExpenseSummary(d.expenseId, d.slug, "
+                            + "d.restaurantName, d.totalAmount, d.createdAt, "
+                            + "cast(d.peopleFinished as Long), cast(d.peoplePending as Long)) "
+                            + "from ExpenseDocumentEntity d where d.payerKey = :payerKey %s "
+                            + "order by d.createdAt desc, d.expenseId desc",
+                    "d.createdAt", "d.expenseId", ExpenseSummary.class, payerKey, afterCreatedAt, afterId, limit)
+                    .stream()
+                    .map(summary -> summary.getPeopleFinished() != null ? summary
+                            : summarize(entityManager.find(ExpenseDocumentEntity.class, summary.getSlug()).getDocument()))
+                    .toList();
+        }
+
+        // Each person count is one probe of people_expense_id_idx per listed expense
+        List<ExpenseSummary> summaries = new ArrayList<>(pageQuery(
+                "select new com.forkthebill.service.models.dto.ExpenseSummary(e.id, e.slug, e.restaurantName, "
+                        + "e.totalAmount, e.createdAt, "
+                        + "(select count(p) from Person p where p.expense = e and p.isFinished = true), "
+                        + "(select count(p) from Person p where p.expense = e and p.isFinished = false)) "
+                        + "from Expense e where e.payerKey = :payerKey %s order by e.createdAt desc, e.id desc",
+                "e.createdAt", "e.id", ExpenseSummary.class, payerKey, afterCreatedAt, afterId, limit));
+        summaries.addAll(pageQuery(
+                "select new com.forkthebill.service.models.dto.ExpenseSummary(a.expenseId, a.slug, a.restaurantName, "
+                        + "a.totalAmount, a.createdAt, cast(a.peopleFinished as Long), cast(a.peoplePending as Long)) "
+                        + "from ArchivedExpense a where a.payerKey = :payerKey %s order by a.createdAt desc, a.expenseId desc",
+                "a.createdAt", "a.expenseId", ExpenseSummary.class, payerKey, afterCreatedAt, afterId, limit));
+
+        // Both halves are already in order; the page is the first limit rows of the two together
+        return summaries.stream()
+                .sorted(Comparator.comparing(ExpenseSummary::getCreatedAt).thenComparing(ExpenseSummary::getId).reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    /**
+     * Keyset page of query, whose %s takes the position condition. The redundant upper bound on
+     * createdAt gives the index scan a starting point instead of filtering every newer row.
+     */
+    private <T> List<T> pageQuery(String query, String createdAt, String id, Class<T> type,
+                                  String payerKey, LocalDateTime afterCreatedAt, String afterId, int limit) {
+        boolean after = afterCreatedAt != null && afterId != null;
+        TypedQuery<T> typedQuery = entityManager.createQuery(query.formatted(after
+                        ? "and " + createdAt + " <= :afterCreatedAt and (" + createdAt + " < :afterCreatedAt or " + id + " < :afterId)"
+                        : ""), type)
+                .setParameter("payerKey", payerKey)
+                .setMaxResults(limit);
+        if (after) {
+            typedQuery.setParameter("afterCreatedAt", afterCreatedAt).setParameter("afterId", afterId);
+        }
+        return typedQuery.getResultList();
+    }
+
+    private static ExpenseSummary summarize(ExpenseDocument document) {
+        long finished = document.getPeople().stream().filter(ExpenseDocument.PersonDocument::isFinished).count();
+        return ExpenseSummary.builder()
+                .id(document.getId())
+                .slug(document.getSlug())
+                .restaurantName(document.getRestaurantName())
+                .totalAmount(document.getTotalAmount())
+                .createdAt(document.getCreatedAt())
+                .peopleFinished(finished)
+                .peoplePending(document.getPeople().size() - finished)
+                .build();
+    }
+
+    private long countBySlug(String query, String slug) {
+        return entityManager.createQuery(query, Long.class)
+                .setParameter("slug", slug)
+                .getSingleResult();
+    }
+}
@@ -0,0 +1,13 @@
+package com.forkthebill.service.repositories;
+
+import com.forkthebill.service.models.entities.GroupBalance;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface GroupBalanceRepository extends JpaRepository<GroupBalance, GroupBalance.Key> {
+
+    List<GroupBalance> findByGroupId(String groupId);
+}
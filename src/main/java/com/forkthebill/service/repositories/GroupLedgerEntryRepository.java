@@ -0,0 +1,13 @@
+package com.forkthebill.service.repositories;
+
+import com.forkthebill.service.models.entities.GroupLedgerEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface GroupLedgerEntryRepository extends JpaRepository<GroupLedgerEntry, GroupLedgerEntry.Key> {
+
+    List<GroupLedgerEntry> findByExpenseId(String expenseId);
+}
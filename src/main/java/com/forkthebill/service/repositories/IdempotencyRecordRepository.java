@@ -0,0 +1,40 @@
+package com.forkthebill.service.repositories;
+
+import com.forkthebill.service.models.entities.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    // A plain insert, so a taken key fails on the primary key instead of being merged
+    @Modifying
+    @Transactional
+    @Query(value = "insert into idempotency_keys (idempotency_key, created_at) values (:key, :createdAt)", nativeQuery = true)
+    void insertStarted(@Param("key") String key, @Param("createdAt") LocalDateTime createdAt);
+
+    @Modifying
+    @Transactional
+    @Query("update IdempotencyRecord r set r.createdAt = :now "
+            + "where r.idempotencyKey = :key and r.status is null and r.createdAt = :startedAt")
+    int takeOver(@Param("key") String key, @Param("startedAt") LocalDateTime startedAt, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("update IdempotencyRecord r set r.status = :status, r.contentType = :contentType, r.body = :body, "
+            + "r.requestHash = :requestHash, r.headers = :headers where r.idempotencyKey = :key")
+    void complete(@Param("key") String key, @Param("status") int status,
+                  @Param("contentType") String contentType, @Param("body") byte[] body,
+                  @Param("requestHash") String requestHash, @Param("headers") String headers);
+
+    @Modifying
+    @Transactional
+    @Query("delete from IdempotencyRecord r where r.createdAt < :cutoff")
+    int deleteCreatedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
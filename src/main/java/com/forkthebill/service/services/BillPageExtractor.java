@@ -0,0 +1,122 @@
+package com.forkthebill.service.services;
+
+import com.forkthebill.service.exceptions.BillExtractionException;
+import com.forkthebill.service.exceptions.UnreadableBillException;
+import com.forkthebill.service.exceptions.ValidationException;
+import com.forkthebill.service.models.dto.BillParsedData;
+import com.forkthebill.service.utils.BillJsonParser;
+import com.forkthebill.service.utils.BillPageMerger;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Reads a bill photographed in several pages. All pages are sent to Gemini at once, so an
+ * upload takes about as long as its slowest page, and the results are merged with
+ * BillPageMerger in upload order.
+ *
+ * Each page runs on its own virtual thread. An upload has at most
+ * expense.upload.page-parallelism pages in flight (all of them by default), capped at the
+ * Gemini bulkhead's concurrency so a long receipt never refuses its own pages; across uploads
+ * the bulkhead is the bound.
+ */
+@Slf4j
+@Service
+public class BillPageExtractor {
+
+    private final GeminiService geminiService;
+    private final BillJsonParser billJsonParser;
+    private final ExecutorService pageExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final int pageParallelism;
+    private final int maxPages;
+
+    public BillPageExtractor(GeminiService geminiService,
+                             BillJsonParser billJsonParser,
+                             BulkheadRegistry bulkheadRegistry,
+                             @Value("${expense.upload.page-parallelism:${expense.upload.max-pages:10}}") int pageParallelism,
+                             @Value("${expense.upload.max-pages:10}") int maxPages) {
+        this.geminiService = geminiService;
+        this.billJsonParser = billJsonParser;
+        this.maxPages = maxPages;
+        int bulkheadCalls = bulkheadRegistry.bulkhead(GeminiService.RESILIENCE_NAME)
+                .getBulkheadConfig().getMaxConcurrentCalls();
+        this.pageParallelism = Math.max(1, Math.min(pageParallelism, bulkheadCalls));
+    }
+
+    /**
+     * One uploaded page and the content type it was sent with, which may be null.
+     */
+    public record Page(byte[] data, String contentType) {
+    }
+
+    /**
+     * @param pages photos in receipt order
+     * @throws ValidationException if there are more than expense.upload.max-pages pages
+     * @throws BillExtractionException as soon as any page fails; the other pages are cancelled
+     */
+    public BillParsedData extract(List<Page> pages) {
+        if (pages.size() > maxPages) {
+            throw new ValidationException("A bill can have at most " + maxPages + " pages");
+        }
+
+        CompletionService<BillParsedData> completion = new ExecutorCompletionService<>(pageExecutor);
+        Map<Future<BillParsedData>, Integer> pageNumbers = new IdentityHashMap<>();
+        Semaphore inFlight = new Semaphore(pageParallelism);
+        for (Page page : pages) {
+            pageNumbers.put(completion.submit(() -> {
+                inFlight.acquire();
+                try {
+                    return parse(geminiService.getGeminiResponse(page.data(), page.contentType()));
+                } finally {
+                    inFlight.release();
+                }
+            }), pageNumbers.size());
+        }
+
+        BillParsedData[] results = new BillParsedData[pages.size()];
+        try {
+            for (int i = 0; i < pages.size(); i++) {
+                Future<BillParsedData> done = completion.take();
+                results[pageNumbers.get(done)] = done.get();
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause
+                    ? cause
+                    : new BillExtractionException("Bill extraction failed, please try again", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BillExtractionException("Bill extraction was interrupted", e);
+        } finally {
+            pageNumbers.keySet().forEach(future -> future.cancel(true));
+        }
+
+        return BillPageMerger.merge(List.of(results));
+    }
+
+    private BillParsedData parse(String geminiResponse) {
+        try {
+            return billJsonParser.parse(geminiResponse);
+        } catch (IOException e) {
+            throw new UnreadableBillException("Could not read a bill from one of the pages, please retake it", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pageExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,165 @@
+package com.forkthebill.service.services;
+
+import com.forkthebill.service.cache.ExpenseCacheInvalidation;
+import com.forkthebill.service.cache.ExpenseCacheInvalidationBroadcaster;
+import com.forkthebill.service.config.ExpenseStorageMode;
+import com.forkthebill.service.models.documents.ExpenseDocument;
+import com.forkthebill.service.models.entities.ArchivedExpense;
+import com.forkthebill.service.models.entities.Expense;
+import com.forkthebill.service.models.entities.Item;
+import com.forkthebill.service.models.entities.Person;
+import com.forkthebill.service.repositories.ArchivedExpenseRepository;
+import com.forkthebill.service.repositories.ExpenseRepository;
+import com.forkthebill.service.utils.ExpenseArchiveCodec;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Moves expenses without activity for expense.archival.max-age out of the hot tables into
+ * archived_expenses as compressed documents.
+ *
+ * Each batch runs in its own short transaction with a timeout, and candidate rows are
+ * selected with SKIP LOCKED, so the job never waits on (or holds) locks that live
+ * requests need for more than one bounded batch.
+ */
+@Slf4j
+@Service
+public class ExpenseArchivalService {
+
+    private final ExpenseRepository expenseRepository;
+    private final ArchivedExpenseRepository archivedExpenseRepository;
+    private final ExpenseCacheInvalidationBroadcaster invalidationBroadcaster;
+    private final TransactionTemplate batchTransaction;
+    private final boolean enabled;
+    private final Duration maxAge;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final Duration batchPause;
+
+    private final Counter archivedCounter;
+    private final Timer batchTimer;
+    private final DistributionSummary payloadSize;
+
+    public ExpenseArchivalService(ExpenseRepository expenseRepository,
+                                  ArchivedExpenseRepository archivedExpenseRepository,
+                                  ExpenseCacheInvalidationBroadcaster invalidationBroadcaster,
+                                  PlatformTransactionManager transactionManager,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${expense.storage.mode:relational}") String storageMode,
+                                  @Value("${expense.archival.enabled:false}") boolean enabled,
+                                  @Value("${expense.archival.max-age:14d}") Duration maxAge,
+                                  @Value("${expense.archival.batch-size:100}") int batchSize,
+                                  @Value("${expense.archival.max-batches-per-run:50}") int maxBatchesPerRun,
+                                  @Value("${expense.archival.batch-pause:200ms}") Duration batchPause,
+                                  @Value("${expense.archival.batch-timeout:10s}") Duration batchTimeout) {
+        this.expenseRepository = expenseRepository;
+        this.archivedExpenseRepository = archivedExpenseRepository;
+        this.invalidationBroadcaster = invalidationBroadcaster;
+        // Document storage keeps one row per expense, so there are no child tables to relieve
+        this.enabled = enabled && ExpenseStorageMode.from(storageMode) == ExpenseStorageMode.RELATIONAL;
+        this.maxAge = maxAge;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.batchPause = batchPause;
+
+        this.batchTransaction = new TransactionTemplate(transactionManager);
+        this.batchTransaction.setTimeout((int) batchTimeout.toSeconds());
+
+        this.archivedCounter = Counter.builder("expense.archival.archived")
+                .description("Expenses moved to archive storage")
+                .register(meterRegistry);
+        this.batchTimer = Timer.builder("expense.archival.batch")
+                .description("Duration of one archival batch transaction")
+                .register(meterRegistry);
+        this.payloadSize = DistributionSummary.builder("expense.archival.payload.size")
+                .description("Compressed size of archived expenses")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${expense.archival.cron:0 */15 * * * *}")
+    public void archiveExpiredExpenses() {
+        if (!enabled) {
+            return;
+        }
+
+        LocalDateTime cutoff = LocalDateTime.now().minus(maxAge);
+        long start = System.nanoTime();
+        int total = 0;
+
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            int archived = archiveBatch(cutoff);
+            total += archived;
+            if (archived < batchSize) {
+                break;
+            }
+            pauseBetweenBatches();
+        }
+
+        if (total > 0) {
+            double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+            log.info("Archived {} expenses idle since {} ({} per second)", total, cutoff,
+                    String.format("%.1f", total / seconds));
+        }
+    }
+
+    /**
+     * Archives up to one batch of expenses last active before the cutoff.
+     *
+     * @return the number of expenses archived
+     */
+    public int archiveBatch(LocalDateTime cutoff) {
+        Integer archived = batchTimer.record(() -> batchTransaction.execute(status -> {
+            List<Expense> expenses = expenseRepository.findArchivableBatch(cutoff, PageRequest.of(0, batchSize));
+            expenses.forEach(this::archive);
+            return expenses.size();
+        }));
+        return archived == null ? 0 : archived;
+    }
+
+    private void archive(Expense expense) {
+        byte[] payload = ExpenseArchiveCodec.encode(ExpenseDocument.fromExpense(expense));
+        archivedExpenseRepository.save(ArchivedExpense.builder()
+                .slug(expense.getSlug())
+                .expenseId(expense.getId())
+                .createdAt(expense.getCreatedAt())
+                .archivedAt(LocalDateTime.now())
+                .payerKey(expense.getPayerKey())
+                .restaurantName(expense.getRestaurantName())
+                .totalAmount(expense.getTotalAmount())
+                .peopleFinished((int) expense.getPeople().stream().filter(Person::isFinished).count())
+                .peoplePending((int) expense.getPeople().stream().filter(person -> !person.isFinished()).count())
+                .payload(payload)
+                .build());
+
+        invalidationBroadcaster.publish(new ExpenseCacheInvalidation(
+                expense.getId(),
+                expense.getItems().stream().map(Item::getId).toList(),
+                expense.getPeople().stream().map(Person::getId).toList()));
+        expenseRepository.delete(expense);
+
+        archivedCounter.increment();
+        payloadSize.record(payload.length);
+    }
+
+    private void pauseBetweenBatches() {
+        try {
+            Thread.sleep(batchPause.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
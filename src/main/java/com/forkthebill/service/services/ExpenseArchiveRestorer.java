@@ -0,0 +1,57 @@
+package com.forkthebill.service.services;
+
+import com.forkthebill.service.models.entities.ArchivedExpense;
+import com.forkthebill.service.models.entities.Expense;
+import com.forkthebill.service.utils.ExpenseArchiveCodec;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * Moves an archived expense back into the hot tables when its slug is accessed again.
+ */
+@Slf4j
+@Component
+public class ExpenseArchiveRestorer {
+
+    private final EntityManager entityManager;
+    private final Counter restoredCounter;
+
+    public ExpenseArchiveRestorer(EntityManager entityManager, MeterRegistry meterRegistry) {
+        this.entityManager = entityManager;
+        this.restoredCounter = Counter.builder("expense.archival.restored")
+                .description("Archived expenses restored on access")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs in its own transaction so it also works when called from a read-only one.
+     *
+     * @return true if the slug was archived and is now back in the expenses table
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public boolean restore(String slug) {
+        // Concurrent restores of the same slug serialize on the archive row
+        ArchivedExpense archived = entityManager.find(ArchivedExpense.class, slug, LockModeType.PESSIMISTIC_WRITE);
+        if (archived == null) {
+            return false;
+        }
+
+        Expense expense = ExpenseArchiveCodec.decode(archived.getPayload()).toExpense();
+        // Being accessed again counts as activity, so the next sweep does not archive it straight back
+        expense.setLastActivityAt(LocalDateTime.now());
+        entityManager.persist(expense);
+        entityManager.remove(archived);
+
+        restoredCounter.increment();
+        log.info("Restored archived expense {}", slug);
+        return true;
+    }
+}
@@ -0,0 +1,44 @@
+package com.forkthebill.service.services;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bill size distributions and recalculation timings. Per-operation timings come from @Timed on ExpenseService.
+ */
+@Component
+public class ExpenseMetrics {
+
+    private final DistributionSummary itemsPerExpense;
+    private final DistributionSummary peoplePerExpense;
+    private final Timer recalculation;
+
+    public ExpenseMetrics(MeterRegistry meterRegistry) {
+        this.itemsPerExpense = DistributionSummary.builder("expense.bill.items")
+                .description("Number of items on an expense when it is created")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.peoplePerExpense = DistributionSummary.builder("expense.bill.people")
+                .description("Number of people on an expense after each person joins")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.recalculation = Timer.builder("expense.recalculation")
+                .description("Time to apply a claim change and recalculate an expense's totals and per-person shares")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    public void recordItems(int items) {
+        itemsPerExpense.record(items);
+    }
+
+    public void recordPeople(int people) {
+        peoplePerExpense.record(people);
+    }
+
+    public void recordRecalculation(Runnable recalculation) {
+        this.recalculation.record(recalculation);
+    }
+}
@@ -0,0 +1,111 @@
+package com.forkthebill.service.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Keeps monthly range partitions of expenses, items and people ahead of the clock, and
+ * optionally drops partitions older than expense.partitioning.drop-after.
+ *
+ * Expects the layout from db/partitioning/postgres-partitioned-schema.sql.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "expense.partitioning.enabled", havingValue = "true")
+public class ExpensePartitionMaintainer {
+
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    private static final List<String> PARTITIONED_TABLES = List.of("expenses", "items", "people");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int monthsAhead;
+    private final Duration dropAfter;
+
+    public ExpensePartitionMaintainer(JdbcTemplate jdbcTemplate,
+                                      PlatformTransactionManager transactionManager,
+                                      @Value("${expense.partitioning.months-ahead:2}") int monthsAhead,
+                                      @Value("${expense.partitioning.drop-after:#{null}}") Duration dropAfter) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.monthsAhead = monthsAhead;
+        this.dropAfter = dropAfter;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintainPartitions();
+    }
+
+    @Scheduled(cron = "${expense.partitioning.cron:0 0 3 * * *}")
+    public void maintainPartitions() {
+        YearMonth current = YearMonth.now();
+        for (int i = 0; i <= monthsAhead; i++) {
+            createPartitions(current.plusMonths(i));
+        }
+
+        if (dropAfter != null) {
+            // Only whole months that ended before the cutoff are dropped
+            YearMonth lastDroppable = YearMonth.from(LocalDate.now().minusDays(dropAfter.toDays())).minusMonths(1);
+            dropPartitionsUpTo(lastDroppable);
+        }
+    }
+
+    private void createPartitions(YearMonth month) {
+        for (String table : PARTITIONED_TABLES) {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partitionName(table, month)
+                    + " PARTITION OF " + table
+                    + " FOR VALUES FROM ('" + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')");
+        }
+    }
+
+    private void dropPartitionsUpTo(YearMonth lastDroppable) {
+        List<String> expensePartitions = jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i "
+                        + "JOIN pg_class c ON c.oid = i.inhrelid "
+                        + "JOIN pg_class p ON p.oid = i.inhparent "
+                        + "WHERE p.relname = 'expenses' AND c.relname ~ '^expenses_[0-9]{4}_[0-9]{2}$'",
+                String.class);
+
+        for (String expensePartition : expensePartitions) {
+            YearMonth month = YearMonth.parse(expensePartition.substring("expenses_".length()), SUFFIX);
+            if (!month.isAfter(lastDroppable)) {
+                transactionTemplate.executeWithoutResult(status -> dropPartitions(month));
+                log.info("Dropped expense partitions for {}", month);
+            }
+        }
+    }
+
+    private void dropPartitions(YearMonth month) {
+        String items = partitionName("items", month);
+        String people = partitionName("people", month);
+
+        // Claim tables are not partitioned, so clear the rows that belong to this month first
+        jdbcTemplate.update("DELETE FROM item_claimed_by WHERE item_id IN (SELECT id FROM " + items + ")");
+        jdbcTemplate.update("DELETE FROM item_unit_claims WHERE item_id IN (SELECT id FROM " + items + ")");
+        jdbcTemplate.update("DELETE FROM person_items_claimed WHERE person_id IN (SELECT id FROM " + people + ")");
+
+        for (String table : PARTITIONED_TABLES) {
+            jdbcTemplate.execute("DROP TABLE IF EXISTS " + partitionName(table, month));
+        }
+    }
+
+    private static String partitionName(String table, YearMonth month) {
+        return table + "_" + month.format(SUFFIX);
+    }
+}
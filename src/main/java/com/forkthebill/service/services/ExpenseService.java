@@ -1,45 +1,82 @@
 package com.forkthebill.service.services;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.forkthebill.service.cache.ExpenseResponsePublisher;
+import com.forkthebill.service.datasource.StaleReplicaReadException;
+import com.forkthebill.service.exceptions.BillExtractionException;
 import com.forkthebill.service.exceptions.ResourceNotFoundException;
+import com.forkthebill.service.exceptions.UnreadableBillException;
 import com.forkthebill.service.exceptions.ValidationException;
 import com.forkthebill.service.models.dto.*;
 import com.forkthebill.service.models.entities.Expense;
 import com.forkthebill.service.models.entities.Item;
 import com.forkthebill.service.models.entities.Person;
 import com.forkthebill.service.repositories.ExpenseRepository;
+import com.forkthebill.service.utils.BillJsonParser;
 import com.forkthebill.service.utils.SlugGenerator;
+import com.forkthebill.service.utils.StreamingBillParser;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.retry.annotation.Backoff;
+import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
 import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 @Service
 @RequiredArgsConstructor
 public class ExpenseService {
 
+    static final int DEFAULT_PAGE_SIZE = 20;
+    static final int MAX_PAGE_SIZE = 100;
+    private static final int MIN_PAYER_TOKEN_LENGTH = 16;
+    private static final int MAX_PAYER_TOKEN_LENGTH = 255;
+
     private final ExpenseRepository expenseRepository;
     private final SlugGenerator slugGenerator;
     private final GeminiService geminiService;
-
+    private final ExpenseMetrics expenseMetrics;
+    private final ExpenseResponsePublisher responsePublisher;
+    private final BillJsonParser billJsonParser;
+    private final BillPageExtractor billPageExtractor;
+    private final LocalReceiptExtractor localReceiptExtractor;
+    private final GroupLedgerService groupLedgerService;
+
+    /**
+     * @param payerToken the creator's X-Payer-Token, under which the expense is listed; may be null
+     */
+    @Timed(value = "expense.operation", extraTags = {"operation", "create"}, histogram = true)
     @Transactional
-    public ExpenseResponse createExpense(ExpenseRequest request) {
+    public ExpenseResponse createExpense(ExpenseRequest request, String payerToken) {
+        return createExpenseForPayer(request, optionalPayerKey(payerToken));
+    }
+
+    private ExpenseResponse createExpenseForPayer(ExpenseRequest request, String payerKey) {
 //        validateExpenseRequest(request);
 
         String slug = slugGenerator.generateUniqueSlug();
 
         Expense expense = Expense.builder()
                 .payerName(request.getPayerName())
+                .payerKey(payerKey)
                 .restaurantName(request.getRestaurantName())
                 .totalAmount(request.getTotalAmount())
                 .subtotal(request.getSubtotal())
@@ -80,10 +117,89 @@ public class ExpenseService {
         }
 
         Expense savedExpense = expenseRepository.save(expense);
+        expenseMetrics.recordItems(expense.getItems().size());
+        if (!expense.getPeople().isEmpty()) {
+            expenseMetrics.recordPeople(expense.getPeople().size());
+        }
+
+        return mapAndPublish(savedExpense);
+    }
+
+    /**
+     * A page of the expenses created with payerToken, newest first. The cursor is the
+     * nextCursor of the previous page, or null for the first one.
+     */
+    @Timed(value = "expense.operation", extraTags = {"operation", "listByPayer"}, histogram = true)
+    @Transactional(readOnly = true)
+    public ExpenseSummaryPage listPayerExpenses(String payerToken, String cursor, Integer limit) {
+        if (payerToken == null) {
+            throw new ValidationException("X-Payer-Token is required");
+        }
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        LocalDateTime afterCreatedAt = null;
+        String afterId = null;
+        if (cursor != null) {
+            String[] position = decodeCursor(cursor);
+            afterCreatedAt = LocalDateTime.parse(position[0]);
+            afterId = position[1];
+        }
+
+        // One extra row tells whether there is a next page
+        List<ExpenseSummary> expenses = expenseRepository.findPayerExpenses(
+                payerKey(payerToken), afterCreatedAt, afterId, pageSize + 1);
+        if (expenses.size() <= pageSize) {
+            return ExpenseSummaryPage.builder().expenses(expenses).build();
+        }
+
+        List<ExpenseSummary> page = expenses.subList(0, pageSize);
+        ExpenseSummary last = page.get(pageSize - 1);
+        return ExpenseSummaryPage.builder()
+                .expenses(new ArrayList<>(page))
+                .nextCursor(encodeCursor(last.getCreatedAt() + "|" + last.getId()))
+                .build();
+    }
+
+    // Checked before an upload is read, so a bad token fails fast instead of after a model call
+    private static String optionalPayerKey(String payerToken) {
+        return payerToken == null ? null : payerKey(payerToken);
+    }
+
+    // Only a hash of the token is stored, so a database dump does not reveal the tokens
+    static String payerKey(String payerToken) {
+        if (payerToken.length() < MIN_PAYER_TOKEN_LENGTH || payerToken.length() > MAX_PAYER_TOKEN_LENGTH) {
+            throw new ValidationException("X-Payer-Token must be between " + MIN_PAYER_TOKEN_LENGTH
+                    + " and " + MAX_PAYER_TOKEN_LENGTH + " characters");
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(payerToken.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 
-        return mapToExpenseResponse(savedExpense);
+    private static String encodeCursor(String position) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decodeCursor(String cursor) {
+        try {
+            String[] position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", 2);
+            if (position.length == 2) {
+                LocalDateTime.parse(position[0]);
+                return position;
+            }
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            // Reported below
+        }
+        throw new ValidationException("Invalid cursor");
     }
 
+    // Read-only so it can be served by the replica; a replica miss is retried on the primary
+    @Timed(value = "expense.operation", extraTags = {"operation", "get"}, histogram = true)
+    @Retryable(retryFor = StaleReplicaReadException.class, maxAttempts = 2, backoff = @Backoff(delay = 0))
+    @Transactional(readOnly = true)
     public ExpenseResponse getExpenseBySlug(String slug) {
         Expense expense = expenseRepository.findBySlug(slug)
                 .orElseThrow(() -> new ResourceNotFoundException("Expense not found with slug: " + slug));
@@ -91,6 +207,29 @@ public class ExpenseService {
         return mapToExpenseResponse(expense);
     }
 
+    @Timed(value = "expense.operation", extraTags = {"operation", "getCompact"}, histogram = true)
+    @Retryable(retryFor = StaleReplicaReadException.class, maxAttempts = 2, backoff = @Backoff(delay = 0))
+    @Transactional(readOnly = true)
+    public CompactExpenseResponse getCompactExpenseBySlug(String slug) {
+        Expense expense = expenseRepository.findBySlug(slug)
+                .orElseThrow(() -> new ResourceNotFoundException("Expense not found with slug: " + slug));
+
+        return mapToCompactExpenseResponse(expense);
+    }
+
+    /**
+     * The version of the expense as this node would serve it, without loading items, people
+     * or the document. Used to validate cached response bodies, so an archived slug is not
+     * restored here: it has no cached body, and the GET that follows restores it.
+     */
+    @Retryable(retryFor = StaleReplicaReadException.class, maxAttempts = 2, backoff = @Backoff(delay = 0))
+    @Transactional(readOnly = true)
+    public Optional<Long> findExpenseVersion(String slug) {
+        return expenseRepository.findVersionBySlug(slug);
+    }
+
+    @Timed(value = "expense.operation", extraTags = {"operation", "update"}, histogram = true)
+    @Retryable(retryFor = OptimisticLockingFailureException.class, maxAttempts = 3, listeners = "expenseCacheRetryListener")
     @Transactional
     public ExpenseResponse updateExpenseBySlug(String slug, ExpenseRequest request) {
 //        validateExpenseRequest(request);
@@ -127,10 +266,10 @@ public class ExpenseService {
                 expense.addItem(item);
             }
         });
-        expense.recalculateAmounts();
+        expenseMetrics.recordRecalculation(expense::recalculateAmounts);
         Expense updatedExpense = expenseRepository.save(expense);
 
-        return mapToExpenseResponse(updatedExpense);
+        return mapAndPublish(updatedExpense);
     }
 
     private void validateExpenseRequest(ExpenseRequest request) {
@@ -145,7 +284,19 @@ public class ExpenseService {
         }
     }
 
-    private ExpenseResponse mapToExpenseResponse(Expense expense) {
+    // Writes render the response once for the GET cache, so polls after a write do not map again.
+    // They also move the balances of the expense's group, if it has one, in the same transaction
+    private ExpenseResponse mapAndPublish(Expense expense) {
+        if (expense.getGroupId() != null) {
+            groupLedgerService.recordExpense(expense);
+        }
+        ExpenseResponse response = mapToExpenseResponse(expense);
+        responsePublisher.publishAfterCommit(expense, response);
+        return response;
+    }
+
+    // Package-private for the JMH benchmarks
+    ExpenseResponse mapToExpenseResponse(Expense expense) {
         return ExpenseResponse.builder()
                 .id(expense.getId())
                 .restaurantName(expense.getRestaurantName())
@@ -163,6 +314,7 @@ public class ExpenseService {
                 .people(expense.getPeople().stream()
                         .map(this::mapToPersonResponse)
                         .collect(Collectors.toList()))
+                .version(expense.getVersion())
                 .build();
     }
 
@@ -174,6 +326,7 @@ public class ExpenseService {
                 .quantity(item.getQuantity())
                 .totalQuantity(item.getTotalQuantity())
                 .claimedBy(item.getClaimedBy())
+                .unitClaims(item.getUnitClaims())
                 .build();
     }
 
@@ -191,6 +344,75 @@ public class ExpenseService {
                 .build();
     }
 
+    // Package-private for the JMH benchmarks
+    CompactExpenseResponse mapToCompactExpenseResponse(Expense expense) {
+        List<Person> people = expense.getPeople();
+        List<CompactPersonResponse> personResponses = new ArrayList<>(people.size());
+        Map<UUID, Integer> personIndexes = new HashMap<>();
+        for (Person person : people) {
+            personIndexes.put(person.getId(), personResponses.size());
+            personResponses.add(CompactPersonResponse.builder()
+                    .id(person.getId())
+                    .name(person.getName())
+                    .subtotal(person.getSubtotal())
+                    .taxShare(person.getTaxShare())
+                    .serviceChargeShare(person.getServiceChargeShare())
+                    .discountShare(person.getDiscountShare())
+                    .totalOwed(person.getTotalOwed())
+                    .isFinished(person.isFinished())
+                    .build());
+        }
+
+        List<Item> items = expense.getItems();
+        List<CompactItemResponse> itemResponses = new ArrayList<>(items.size());
+        int[][] claims = new int[items.size()][];
+        // Only sent when some item was claimed by units; otherwise every entry would be 0
+        int[][] claimUnits = items.stream().anyMatch(item -> !item.getUnitClaims().isEmpty())
+                ? new int[items.size()][]
+                : null;
+        for (Item item : items) {
+            int index = itemResponses.size();
+            List<UUID> claimants = item.getClaimedBy().stream()
+                    .filter(personIndexes::containsKey)
+                    .toList();
+            claims[index] = claimants.stream()
+                    .mapToInt(personIndexes::get)
+                    .toArray();
+            if (claimUnits != null) {
+                claimUnits[index] = claimants.stream()
+                        .mapToInt(personId -> item.getUnitClaims().getOrDefault(personId, 0))
+                        .toArray();
+            }
+            itemResponses.add(CompactItemResponse.builder()
+                    .id(item.getId())
+                    .name(item.getName())
+                    .price(item.getPrice())
+                    .quantity(item.getQuantity())
+                    .totalQuantity(item.getTotalQuantity())
+                    .build());
+        }
+
+        return CompactExpenseResponse.builder()
+                .id(expense.getId())
+                .restaurantName(expense.getRestaurantName())
+                .slug(expense.getSlug())
+                .createdAt(expense.getCreatedAt())
+                .payerName(expense.getPayerName())
+                .totalAmount(expense.getTotalAmount())
+                .subtotal(expense.getSubtotal())
+                .tax(expense.getTax())
+                .serviceCharge(expense.getServiceCharge())
+                .discount(expense.getDiscount())
+                .items(itemResponses)
+                .people(personResponses)
+                .claims(claims)
+                .claimUnits(claimUnits)
+                .version(expense.getVersion())
+                .build();
+    }
+
+    @Timed(value = "expense.operation", extraTags = {"operation", "claim"}, histogram = true)
+    @Retryable(retryFor = OptimisticLockingFailureException.class, maxAttempts = 3, listeners = "expenseCacheRetryListener")
     @Transactional
     public ExpenseResponse claimItem(String slug, String itemId, UUID personId) {
         Expense expense = expenseRepository.findBySlug(slug)
@@ -212,12 +434,28 @@ public class ExpenseService {
             throw new ValidationException("Person has already claimed this item");
         }
 
-        expense.claimItem(itemId, personId);
+        expenseMetrics.recordRecalculation(() -> expense.claimItem(itemId, personId));
 
         Expense updatedExpense = expenseRepository.save(expense);
-        return mapToExpenseResponse(updatedExpense);
+        return mapAndPublish(updatedExpense);
     }
 
+    @Timed(value = "expense.operation", extraTags = {"operation", "claimUnits"}, histogram = true)
+    @Retryable(retryFor = OptimisticLockingFailureException.class, maxAttempts = 3, listeners = "expenseCacheRetryListener")
+    @Transactional
+    public ExpenseResponse claimItemUnits(String slug, String itemId, UUID personId, int units) {
+        Expense expense = expenseRepository.findBySlug(slug)
+                .orElseThrow(() -> new ResourceNotFoundException("Expense not found with slug: " + slug));
+
+        // Claiming again changes the number of units, so an existing claim is not an error
+        expenseMetrics.recordRecalculation(() -> expense.claimItemUnits(itemId, personId, units));
+
+        Expense updatedExpense = expenseRepository.save(expense);
+        return mapAndPublish(updatedExpense);
+    }
+
+    @Timed(value = "expense.operation", extraTags = {"operation", "unclaim"}, histogram = true)
+    @Retryable(retryFor = OptimisticLockingFailureException.class, maxAttempts = 3, listeners = "expenseCacheRetryListener")
     @Transactional
     public ExpenseResponse unclaimItem(String slug, String itemId, UUID personId) {
         Expense expense = expenseRepository.findBySlug(slug)
@@ -239,12 +477,14 @@ public class ExpenseService {
             throw new ValidationException("Person has not claimed this item");
         }
 
-        expense.unclaimItem(itemId, personId);
+        expenseMetrics.recordRecalculation(() -> expense.unclaimItem(itemId, personId));
 
         Expense updatedExpense = expenseRepository.save(expense);
-        return mapToExpenseResponse(updatedExpense);
+        return mapAndPublish(updatedExpense);
     }
 
+    @Timed(value = "expense.operation", extraTags = {"operation", "finish"}, histogram = true)
+    @Retryable(retryFor = OptimisticLockingFailureException.class, maxAttempts = 3, listeners = "expenseCacheRetryListener")
     @Transactional
     public void markPersonAsFinished(String slug, UUID personId) {
         Expense expense = expenseRepository.findBySlug(slug)
@@ -253,9 +493,11 @@ public class ExpenseService {
         Person person = expense.findPersonById(personId);
         person.setFinished(true);
 
-        expenseRepository.save(expense);
+        mapAndPublish(expenseRepository.save(expense));
     }
 
+    @Timed(value = "expense.operation", extraTags = {"operation", "pending"}, histogram = true)
+    @Retryable(retryFor = OptimisticLockingFailureException.class, maxAttempts = 3, listeners = "expenseCacheRetryListener")
     @Transactional
     public void markPersonAsPending(String slug, UUID personId) {
         Expense expense = expenseRepository.findBySlug(slug)
@@ -264,9 +506,11 @@ public class ExpenseService {
         Person person = expense.findPersonById(personId);
         person.setFinished(false);
 
-        expenseRepository.save(expense);
+        mapAndPublish(expenseRepository.save(expense));
     }
 
+    @Timed(value = "expense.operation", extraTags = {"operation", "addPerson"}, histogram = true)
+    @Retryable(retryFor = OptimisticLockingFailureException.class, maxAttempts = 3, listeners = "expenseCacheRetryListener")
     @Transactional
     public ExpenseResponse addPersonToExpense(String slug, PersonRequest personRequest) {
         Expense expense = expenseRepository.findBySlug(slug)
@@ -285,36 +529,101 @@ public class ExpenseService {
         expense.addPerson(person);
 
         Expense savedExpense = expenseRepository.save(expense);
-        return mapToExpenseResponse(savedExpense);
+        expenseMetrics.recordPeople(expense.getPeople().size());
+        return mapAndPublish(savedExpense);
     }
 
+    /**
+     * Digital receipts (text-layer PDFs, HTML, plain text) are read locally when their layout
+     * is known and their amounts reconcile; everything else goes to Gemini.
+     *
+     * @param contentType the upload's declared type, may be null
+     */
+    @Timed(value = "expense.operation", extraTags = {"operation", "createFromImage"}, histogram = true)
     @Transactional
-    public ExpenseResponse createExpenseFromImage(byte[] imageData, String payerName) {
+    public ExpenseResponse createExpenseFromImage(byte[] imageData, String contentType, String payerName, String payerToken) {
+        String payerKey = optionalPayerKey(payerToken);
         try {
-            String geminiResponse = geminiService.getGeminiResponse(imageData);
-            ObjectMapper objectMapper = new ObjectMapper();
-            BillParsedData billParsedData = objectMapper.readValue(geminiResponse, BillParsedData.class);
-            ExpenseRequest expenseRequest = createExpenseRequestFromParsedData(billParsedData, payerName);
+            Optional<BillParsedData> localBill = localReceiptExtractor.extract(imageData, contentType);
+            if (localBill.isPresent()) {
+                return createExpenseForPayer(createExpenseRequestFromParsedData(localBill.get(), payerName), payerKey);
+            }
+            String geminiResponse = geminiService.getGeminiResponse(imageData, contentType);
+            return createExpenseForPayer(createExpenseRequestFromReply(geminiResponse, payerName), payerKey);
+        } catch (BillExtractionException e) {
+            // Mapped to 502/503 by GlobalExceptionHandler
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to create expense from image: " + e.getMessage(), e);
+        }
+    }
 
-            return createExpense(expenseRequest);
+    /**
+     * Like createExpenseFromImage, but streams the model's reply and hands each bill item to
+     * onItem as soon as it has been read, so the client can show the bill filling in. The
+     * expense itself is still created from the complete reply.
+     *
+     * Not transactional: no connection is held while the model streams, and the expense is
+     * written by a single save.
+     *
+     * @param contentType the upload's declared type, may be null
+     */
+    @Timed(value = "expense.operation", extraTags = {"operation", "createFromImageStream"}, histogram = true)
+    public ExpenseResponse createExpenseFromImageStreaming(byte[] imageData, String contentType, String payerName,
+                                                           String payerToken, Consumer<BillParsedData.BillItem> onItem) {
+        String payerKey = optionalPayerKey(payerToken);
+        try {
+            String geminiResponse;
+            try (StreamingBillParser items = billJsonParser.streamItems(onItem)) {
+                geminiResponse = geminiService.streamGeminiResponse(imageData, contentType, items::feed);
+            }
+            return createExpenseForPayer(createExpenseRequestFromReply(geminiResponse, payerName), payerKey);
+        } catch (BillExtractionException e) {
+            throw e;
         } catch (Exception e) {
             throw new RuntimeException("Failed to create expense from image: " + e.getMessage(), e);
         }
     }
 
-    private ExpenseRequest createExpenseRequestFromParsedData(BillParsedData parsedData, String payerName) {
+    /**
+     * Creates one expense from a bill photographed in several pages, given in receipt order.
+     * The pages are read concurrently and merged; see BillPageExtractor.
+     *
+     * Not transactional, for the same reason as createExpenseFromImageStreaming.
+     */
+    @Timed(value = "expense.operation", extraTags = {"operation", "createFromImages"}, histogram = true)
+    public ExpenseResponse createExpenseFromImages(List<BillPageExtractor.Page> pages, String payerName, String payerToken) {
+        String payerKey = optionalPayerKey(payerToken);
+        try {
+            BillParsedData billParsedData = billPageExtractor.extract(pages);
+            return createExpenseForPayer(createExpenseRequestFromParsedData(billParsedData, payerName), payerKey);
+        } catch (BillExtractionException | ValidationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to create expense from images: " + e.getMessage(), e);
+        }
+    }
+
+    private ExpenseRequest createExpenseRequestFromReply(String geminiResponse, String payerName) {
+        BillParsedData billParsedData;
+        try {
+            billParsedData = billJsonParser.parse(geminiResponse);
+        } catch (IOException e) {
+            throw new UnreadableBillException("Could not read a bill from the image, please try another photo", e);
+        }
+        return createExpenseRequestFromParsedData(billParsedData, payerName);
+    }
+
+    // Package-private for the JMH benchmarks
+    ExpenseRequest createExpenseRequestFromParsedData(BillParsedData parsedData, String payerName) {
+        // One row per bill line; people claim units of it rather than one row per unit
         List<ItemRequest> itemRequests = parsedData.getItems().stream()
-                .flatMap(billItem -> {
-                    BigDecimal unitPrice = billItem.getPrice().divide(new BigDecimal(billItem.getQuantity()), RoundingMode.CEILING);
-                    return IntStream.range(0, billItem.getQuantity())
-                            .mapToObj(i -> ItemRequest.builder()
-                                    .name(billItem.getName())
-                                    .price(unitPrice)
-                                    .quantity(1)
-                                    .totalQuantity(billItem.getQuantity())
-                                    .build()
-                            );
-                })
+                .map(billItem -> ItemRequest.builder()
+                        .name(billItem.getName())
+                        .price(billItem.getPrice())
+                        .quantity(billItem.getQuantity())
+                        .totalQuantity(billItem.getQuantity())
+                        .build())
                 .collect(Collectors.toList());
 
         return ExpenseRequest.builder()
@@ -0,0 +1,95 @@
+package com.forkthebill.service.services;
+
+import com.forkthebill.service.config.ExpenseStorageMode;
+import com.forkthebill.service.models.entities.Expense;
+import com.forkthebill.service.repositories.ExpenseRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * One-off migration of expenses created before unit claims, which stored an item of
+ * quantity n as n rows of quantity 1. Each expense is consolidated with
+ * Expense.consolidateUnitRows in its own transaction, so a bill being claimed right now
+ * only fails (and is retried on the next start) for that one expense.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "expense.item-migration.enabled", havingValue = "true")
+public class ExpenseUnitRowMigration {
+
+    private final ExpenseRepository expenseRepository;
+    private final TransactionTemplate expenseTransaction;
+    private final boolean relational;
+    private final int batchSize;
+
+    public ExpenseUnitRowMigration(ExpenseRepository expenseRepository,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${expense.storage.mode:relational}") String storageMode,
+                                   @Value("${expense.item-migration.batch-size:200}") int batchSize) {
+        this.expenseRepository = expenseRepository;
+        this.expenseTransaction = new TransactionTemplate(transactionManager);
+        // Document storage has no items table to search; its unit rows keep pricing as before
+        this.relational = ExpenseStorageMode.from(storageMode) == ExpenseStorageMode.RELATIONAL;
+        this.batchSize = batchSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        if (relational) {
+            migrate();
+        }
+    }
+
+    /**
+     * @return the number of item rows removed
+     */
+    public int migrate() {
+        String after = "";
+        int expenses = 0;
+        int removed = 0;
+
+        List<String> slugs;
+        do {
+            slugs = expenseRepository.findSlugsWithUnitRows(after, PageRequest.of(0, batchSize));
+            for (String slug : slugs) {
+                try {
+                    Integer rows = expenseTransaction.execute(status -> consolidate(slug));
+                    if (rows != null && rows > 0) {
+                        expenses++;
+                        removed += rows;
+                    }
+                } catch (OptimisticLockingFailureException e) {
+                    log.warn("Skipped unit row migration of expense {}, it changed concurrently", slug);
+                }
+            }
+            if (!slugs.isEmpty()) {
+                after = slugs.get(slugs.size() - 1);
+            }
+        } while (slugs.size() == batchSize);
+
+        log.info("Consolidated unit rows of {} expenses ({} item rows removed)", expenses, removed);
+        return removed;
+    }
+
+    private int consolidate(String slug) {
+        Expense expense = expenseRepository.findBySlug(slug).orElse(null);
+        if (expense == null) {
+            return 0;
+        }
+        int removed = expense.consolidateUnitRows();
+        if (removed > 0) {
+            expenseRepository.save(expense);
+        }
+        return removed;
+    }
+}
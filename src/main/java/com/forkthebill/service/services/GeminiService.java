@@ -1,20 +1,62 @@
 package com.forkthebill.service.services;
 
+import com.forkthebill.service.exceptions.BillExtractionException;
+import com.forkthebill.service.exceptions.BillExtractionUnavailableException;
+import com.forkthebill.service.exceptions.UnreadableBillException;
 import com.google.genai.Client;
+import com.google.genai.ResponseStream;
 import com.google.genai.types.Content;
 import com.google.genai.types.GenerateContentResponse;
+import com.google.genai.types.HttpOptions;
 import com.google.genai.types.Part;
-import lombok.RequiredArgsConstructor;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.ratelimiter.RateLimiter;
+import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
+import io.github.resilience4j.ratelimiter.RequestNotPermitted;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.util.Objects;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
+/**
+ * Extracts bills from photos with Gemini. Calls go through a bulkhead (concurrent calls), a
+ * rate limiter (the model quota) and a circuit breaker (fail fast while Gemini is degraded),
+ * all configured under resilience4j.*.gemini, and are bounded by gemini.timeout.
+ *
+ * With gemini.hedge.enabled, a call still running after the recent p95 latency of successful
+ * calls is hedged: a second identical request is sent and whichever answers first is used.
+ * The hedge takes its own bulkhead and rate limiter permits and is skipped when refused.
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class GeminiService {
 
+    public static final String RESILIENCE_NAME = "gemini";
+
     private static final String PROMPT = """
             Analyze this restaurant bill image and extract the following information in JSON format:
             {
@@ -42,30 +84,303 @@ public class GeminiService {
             - Some bills might call tip as service charge
             """;
 
+    private final MeterRegistry meterRegistry;
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+    private final RateLimiter rateLimiter;
+    private final String model;
+    private final Duration timeout;
+    private final String baseUrl;
+    private final String apiKey;
+    private final boolean hedgeEnabled;
+    private final Duration hedgeDelay;
+    private final int hedgeMinSamples;
+    private final RecentLatencies recentLatencies = new RecentLatencies(200);
+    private final ExecutorService hedgeExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Counter hedgesSent;
+    private final Counter hedgesWon;
+
+    // Created on first upload, so the application starts without Gemini credentials
+    @Getter(value = AccessLevel.PRIVATE, lazy = true)
+    private final Client client = createClient(timeout, baseUrl, apiKey);
+
+    public GeminiService(MeterRegistry meterRegistry,
+                         CircuitBreakerRegistry circuitBreakerRegistry,
+                         BulkheadRegistry bulkheadRegistry,
+                         RateLimiterRegistry rateLimiterRegistry,
+                         @Value("${gemini.model:gemini-2.5-flash}") String model,
+                         @Value("${gemini.timeout:30s}") Duration timeout,
+                         @Value("${gemini.base-url:#{null}}") String baseUrl,
+                         @Value("${gemini.api-key:#{null}}") String apiKey,
+                         @Value("${gemini.hedge.enabled:false}") boolean hedgeEnabled,
+                         @Value("${gemini.hedge.delay:10s}") Duration hedgeDelay,
+                         @Value("${gemini.hedge.min-samples:20}") int hedgeMinSamples) {
+        this.meterRegistry = meterRegistry;
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker(RESILIENCE_NAME);
+        this.bulkhead = bulkheadRegistry.bulkhead(RESILIENCE_NAME);
+        this.rateLimiter = rateLimiterRegistry.rateLimiter(RESILIENCE_NAME);
+        this.model = model;
+        this.timeout = timeout;
+        this.baseUrl = baseUrl;
+        this.apiKey = apiKey;
+        this.hedgeEnabled = hedgeEnabled;
+        this.hedgeDelay = hedgeDelay;
+        this.hedgeMinSamples = hedgeMinSamples;
+        this.hedgesSent = Counter.builder("gemini.hedge.sent")
+                .description("Gemini calls hedged with a second request")
+                .register(meterRegistry);
+        this.hedgesWon = Counter.builder("gemini.hedge.won")
+                .description("Hedged Gemini calls answered first by the second request")
+                .register(meterRegistry);
+    }
+
+    private static Client createClient(Duration timeout, String baseUrl, String apiKey) {
+        HttpOptions.Builder httpOptions = HttpOptions.builder().timeout((int) timeout.toMillis());
+        if (baseUrl != null) {
+            httpOptions.baseUrl(baseUrl);
+        }
+        Client.Builder builder = Client.builder().httpOptions(httpOptions.build());
+        // Without an explicit key the client uses the GOOGLE_API_KEY environment variable
+        if (apiKey != null) {
+            builder.apiKey(apiKey);
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return the model's reply, which should contain the bill as JSON
+     * @throws BillExtractionUnavailableException if the call was rejected without reaching Gemini
+     * @throws BillExtractionException if the call failed, timed out or returned nothing
+     */
     public String getGeminiResponse(byte[] imageData) {
-        // The client automatically uses the GOOGLE_API_KEY environment variable.
+        return getGeminiResponse(imageData, "image/jpeg");
+    }
+
+    /**
+     * Like getGeminiResponse, for a bill that is not a JPEG photo, e.g. a PDF receipt the
+     * local parser could not read. Anything Gemini does not take is sent as image/jpeg.
+     */
+    public String getGeminiResponse(byte[] data, String contentType) {
+        String mimeType = supportedMimeType(contentType);
+        Supplier<String> attempt = limited(() -> callGemini(data, mimeType));
+        return protect(hedgeEnabled ? () -> hedged(attempt) : attempt);
+    }
+
+    /**
+     * Like getGeminiResponse, but hands the reply to onText piece by piece as the model
+     * streams it. Streamed calls are not hedged, since the first stream has already been shown.
+     *
+     * @param contentType the upload's declared type, may be null; see getGeminiResponse
+     * @return the whole reply
+     */
+    public String streamGeminiResponse(byte[] data, String contentType, Consumer<String> onText) {
+        String mimeType = supportedMimeType(contentType);
+        return protect(limited(() -> streamGemini(data, mimeType, onText)));
+    }
+
+    // Same nesting as the Resilience4j annotations: the circuit breaker sees limiter and
+    // bulkhead rejections and empty replies, which are excluded from its failure rate in
+    // application.properties
+    private Supplier<String> limited(Supplier<String> call) {
+        return RateLimiter.decorateSupplier(rateLimiter, Bulkhead.decorateSupplier(bulkhead, call));
+    }
+
+    private String protect(Supplier<String> call) {
+        try {
+            return CircuitBreaker.decorateSupplier(circuitBreaker, call).get();
+        } catch (CallNotPermittedException e) {
+            throw new BillExtractionUnavailableException("Bill extraction is temporarily unavailable, please retry later",
+                    Duration.ofMillis(circuitBreaker.getCircuitBreakerConfig().getWaitIntervalFunctionInOpenState().apply(1)), e);
+        } catch (RequestNotPermitted e) {
+            throw new BillExtractionUnavailableException("Too many bill uploads right now, please retry shortly",
+                    rateLimiter.getRateLimiterConfig().getLimitRefreshPeriod(), e);
+        } catch (BulkheadFullException e) {
+            throw new BillExtractionUnavailableException("Too many bill uploads right now, please retry shortly",
+                    Duration.ofSeconds(1), e);
+        }
+    }
+
+    /**
+     * Runs the first attempt and, if it has not finished after hedgeDelay(), a second one.
+     * Returns the first success; if both fail, the first attempt's failure is thrown.
+     */
+    private String hedged(Supplier<String> attempt) {
+        CompletionService<String> attempts = new ExecutorCompletionService<>(hedgeExecutor);
+        Future<String> first = attempts.submit(attempt::get);
+        Future<String> second = null;
         try {
-            Client client = new Client();
-            Part imagePart = Part.fromBytes(imageData, "image/jpeg");
-            Part textPart = Part.fromText(PROMPT);
-
-            // Specify the model and the prompt.
-            GenerateContentResponse response = client.models.generateContent(
-                    "gemini-2.5-flash",
-                    Content.fromParts(textPart, imagePart),
+            Future<String> done = attempts.poll(hedgeDelay().toMillis(), TimeUnit.MILLISECONDS);
+            if (done == null) {
+                second = attempts.submit(attempt::get);
+                hedgesSent.increment();
+                done = attempts.take();
+            }
+
+            RuntimeException firstFailure = null;
+            for (int pending = second == null ? 1 : 2; pending > 0; pending--) {
+                if (done == null) {
+                    done = attempts.take();
+                }
+                try {
+                    String text = done.get();
+                    if (done == second) {
+                        hedgesWon.increment();
+                    }
+                    return text;
+                } catch (ExecutionException e) {
+                    if (done == first || firstFailure == null) {
+                        firstFailure = unwrap(e);
+                    }
+                    if (done == second) {
+                        // A refused or failed hedge leaves the first attempt to finish on its own
+                        log.debug("Hedged Gemini request failed: {}", e.getCause().getMessage());
+                    }
+                }
+                done = null;
+            }
+            throw firstFailure;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BillExtractionException("Bill extraction was interrupted", e);
+        } finally {
+            // The loser may still hold a bulkhead permit until the HTTP call returns
+            first.cancel(true);
+            if (second != null) {
+                second.cancel(true);
+            }
+        }
+    }
+
+    private Duration hedgeDelay() {
+        Duration p95 = recentLatencies.percentile(0.95, hedgeMinSamples);
+        return p95 != null ? p95 : hedgeDelay;
+    }
+
+    private static RuntimeException unwrap(ExecutionException e) {
+        return e.getCause() instanceof RuntimeException cause
+                ? cause
+                : new BillExtractionException("Bill extraction failed, please try again", e.getCause());
+    }
+
+    private String callGemini(byte[] data, String mimeType) {
+        return timed("unary", () -> {
+            GenerateContentResponse response = getClient().models.generateContent(
+                    model,
+                    request(data, mimeType),
                     null); // The last parameter is for custom options, null for default.
+            return response.text();
+        });
+    }
+
+    private String streamGemini(byte[] data, String mimeType, Consumer<String> onText) {
+        return timed("stream", () -> {
+            Timer.Sample firstText = Timer.start(meterRegistry);
+            StringBuilder text = new StringBuilder();
+            try (ResponseStream<GenerateContentResponse> stream =
+                         getClient().models.generateContentStream(model, request(data, mimeType), null)) {
+                for (GenerateContentResponse chunk : stream) {
+                    String piece = chunk.text();
+                    if (piece == null || piece.isEmpty()) {
+                        continue;
+                    }
+                    if (text.isEmpty()) {
+                        // What the user waits for before the first item shows up
+                        firstText.stop(Timer.builder("gemini.stream.first-text")
+                                .description("Time from a streamed Gemini call to its first text")
+                                .publishPercentileHistogram()
+                                .register(meterRegistry));
+                    }
+                    text.append(piece);
+                    onText.accept(piece);
+                }
+            }
+            return text.toString();
+        });
+    }
+
+    private static Content request(byte[] data, String mimeType) {
+        return Content.fromParts(Part.fromText(PROMPT), Part.fromBytes(data, mimeType));
+    }
+
+    private static String supportedMimeType(String contentType) {
+        if (contentType == null) {
+            return "image/jpeg";
+        }
+        String mimeType = contentType.split(";")[0].strip().toLowerCase(Locale.ROOT);
+        return mimeType.startsWith("image/") || mimeType.equals("application/pdf") || mimeType.startsWith("text/")
+                ? mimeType
+                : "image/jpeg";
+    }
 
-            // Get the generated text from the response.
-            String text = Objects.requireNonNull(response.text()).trim()
-                    .replaceFirst("```json", "")
-                    .replaceFirst("```$", "");
+    private String timed(String mode, Callable<String> call) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "success";
+        try {
+            String reply = call.call();
+
+            // Fences around the JSON are skipped by BillJsonParser
+            String text = reply == null ? "" : reply.trim();
 
-            System.out.println("Gemini response: " + text);
+            log.debug("Gemini response: {}", text);
+            if (text.isEmpty()) {
+                outcome = "empty";
+                throw new UnreadableBillException("Could not read a bill from the image, please try another photo");
+            }
             return text;
+        } catch (BillExtractionException e) {
+            throw e;
         } catch (Exception e) {
-            System.out.println("Error calling gemini: " + e.getMessage());
-            return "";
+            log.error("Error calling gemini: {}", e.getMessage());
+            outcome = "error";
+            throw new BillExtractionException("Bill extraction failed, please try again", e);
+        } finally {
+            // Count per outcome is the _count of this timer
+            long nanos = sample.stop(Timer.builder("gemini.request")
+                    .description("Latency of Gemini bill extraction calls")
+                    .tag("mode", mode)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+            if (outcome.equals("success") && mode.equals("unary")) {
+                recentLatencies.record(nanos);
+            }
         }
     }
 
+    @PreDestroy
+    public void shutdown() {
+        hedgeExecutor.shutdownNow();
+    }
+
+    /**
+     * Latencies of the last few successful calls, from which the hedge delay is taken.
+     */
+    private static final class RecentLatencies {
+
+        private final long[] nanos;
+        private int next;
+        private int size;
+
+        RecentLatencies(int capacity) {
+            this.nanos = new long[capacity];
+        }
+
+        synchronized void record(long latency) {
+            nanos[next] = latency;
+            next = (next + 1) % nanos.length;
+            size = Math.min(size + 1, nanos.length);
+        }
+
+        /**
+         * @return the percentile, or null with fewer than minSamples recorded
+         */
+        synchronized Duration percentile(double percentile, int minSamples) {
+            if (size == 0 || size < minSamples) {
+                return null;
+            }
+            long[] sorted = Arrays.copyOf(nanos, size);
+            Arrays.sort(sorted);
+            return Duration.ofNanos(sorted[(int) Math.ceil(percentile * size) - 1]);
+        }
+    }
 }
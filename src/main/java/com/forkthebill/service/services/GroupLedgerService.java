@@ -0,0 +1,245 @@
+package com.forkthebill.service.services;
+
+import com.forkthebill.service.exceptions.ResourceNotFoundException;
+import com.forkthebill.service.exceptions.ValidationException;
+import com.forkthebill.service.models.dto.GroupRequest;
+import com.forkthebill.service.models.dto.GroupSettlementResponse;
+import com.forkthebill.service.models.entities.Expense;
+import com.forkthebill.service.models.entities.ExpenseGroup;
+import com.forkthebill.service.models.entities.GroupBalance;
+import com.forkthebill.service.models.entities.GroupLedgerEntry;
+import com.forkthebill.service.models.entities.Person;
+import com.forkthebill.service.repositories.ExpenseGroupRepository;
+import com.forkthebill.service.repositories.ExpenseRepository;
+import com.forkthebill.service.repositories.GroupBalanceRepository;
+import com.forkthebill.service.repositories.GroupLedgerEntryRepository;
+import com.forkthebill.service.utils.DebtSimplifier;
+import com.forkthebill.service.utils.SlugGenerator;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.retry.annotation.Retryable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Keeps one balance per member of each group across all of the group's expenses.
+ *
+ * In each expense the payer is owed what every other person's share adds up to, and each of
+ * them owes their share. Members are matched by name, ignoring case and spacing. Balances are
+ * updated incrementally: every change to a grouped expense applies only the difference to
+ * what that expense contributed before (kept in group_ledger_entries), so a settlement reads
+ * one row per member however many expenses the group has.
+ */
+@Service
+@RequiredArgsConstructor
+public class GroupLedgerService {
+
+    private final ExpenseGroupRepository groupRepository;
+    private final GroupBalanceRepository balanceRepository;
+    private final GroupLedgerEntryRepository entryRepository;
+    private final ExpenseRepository expenseRepository;
+    private final SlugGenerator slugGenerator;
+
+    @Timed(value = "group.operation", extraTags = {"operation", "create"}, histogram = true)
+    @Transactional
+    public GroupSettlementResponse createGroup(GroupRequest request) {
+        ExpenseGroup group = groupRepository.save(ExpenseGroup.builder()
+                .slug(slugGenerator.generateUniqueSlug(groupRepository::existsBySlug))
+                .name(request.getName())
+                .createdAt(LocalDateTime.now())
+                .build());
+        return mapToSettlementResponse(group, List.of());
+    }
+
+    @Timed(value = "group.operation", extraTags = {"operation", "settlement"}, histogram = true)
+    @Transactional(readOnly = true)
+    public GroupSettlementResponse getSettlement(String groupSlug) {
+        ExpenseGroup group = findGroup(groupSlug);
+        return mapToSettlementResponse(group, balanceRepository.findByGroupId(group.getId()));
+    }
+
+    @Timed(value = "group.operation", extraTags = {"operation", "addExpense"}, histogram = true)
+    @Retryable(retryFor = OptimisticLockingFailureException.class, maxAttempts = 3, listeners = "expenseCacheRetryListener")
+    @Transactional
+    public GroupSettlementResponse addExpense(String groupSlug, String expenseSlug) {
+        ExpenseGroup group = findGroup(groupSlug);
+        Expense expense = findExpense(expenseSlug);
+
+        if (expense.getGroupId() != null && !expense.getGroupId().equals(group.getId())) {
+            throw new ValidationException("Expense already belongs to another group");
+        }
+        if (expense.getGroupId() == null) {
+            expense.setGroupId(group.getId());
+            recordExpense(expenseRepository.save(expense));
+        }
+        return mapToSettlementResponse(group, balanceRepository.findByGroupId(group.getId()));
+    }
+
+    @Timed(value = "group.operation", extraTags = {"operation", "removeExpense"}, histogram = true)
+    @Retryable(retryFor = OptimisticLockingFailureException.class, maxAttempts = 3, listeners = "expenseCacheRetryListener")
+    @Transactional
+    public GroupSettlementResponse removeExpense(String groupSlug, String expenseSlug) {
+        ExpenseGroup group = findGroup(groupSlug);
+        Expense expense = findExpense(expenseSlug);
+
+        if (!group.getId().equals(expense.getGroupId())) {
+            throw new ResourceNotFoundException("Expense " + expenseSlug + " is not in group " + groupSlug);
+        }
+        expense.setGroupId(null);
+        apply(group.getId(), expenseRepository.save(expense).getId(), Map.of());
+        return mapToSettlementResponse(group, balanceRepository.findByGroupId(group.getId()));
+    }
+
+    /**
+     * Brings the group balances in line with the expense as it is now. Called by every write
+     * to an expense that belongs to a group, after saving it and in the same transaction.
+     */
+    @Transactional
+    public void recordExpense(Expense expense) {
+        if (expense.getGroupId() != null) {
+            apply(expense.getGroupId(), expense.getId(), contributions(expense));
+        }
+    }
+
+    private void apply(String groupId, String expenseId, Map<String, Contribution> contributions) {
+        // Entries of one expense are only written by a transaction that has also saved that
+        // expense, and both storage modes version-check the save: relational mode on the expenses
+        // row (forced increment), document mode on the expense_documents row, which a concurrent
+        // writer blocks on and then fails. So entries read here can only be stale in a transaction
+        // that will roll back, and it takes its balance changes with it
+        Map<String, GroupLedgerEntry> previous = new HashMap<>();
+        entryRepository.findByExpenseId(expenseId).forEach(entry -> previous.put(entry.getMember(), entry));
+
+        Map<String, BigDecimal> deltas = new LinkedHashMap<>();
+        contributions.forEach((member, contribution) -> deltas.put(member, contribution.amount()));
+        previous.forEach((member, entry) ->
+                deltas.merge(member, entry.getAmount().negate(), BigDecimal::add));
+        deltas.values().removeIf(delta -> delta.signum() == 0);
+        if (deltas.isEmpty()) {
+            // Claims that do not change what anyone owes (e.g. marking someone finished) stop here
+            return;
+        }
+
+        // Balances are shared by all expenses of the group
+        groupRepository.lockById(groupId)
+                .orElseThrow(() -> new ResourceNotFoundException("Group not found with ID: " + groupId));
+
+        List<GroupBalance> balances = new ArrayList<>(deltas.size());
+        deltas.forEach((member, delta) -> {
+            GroupBalance balance = balanceRepository.findById(new GroupBalance.Key(groupId, member))
+                    .orElseGet(() -> GroupBalance.builder()
+                            .groupId(groupId)
+                            .member(member)
+                            .name(contributions.containsKey(member) ? contributions.get(member).name() : member)
+                            .balance(BigDecimal.ZERO)
+                            .build());
+            balance.setBalance(balance.getBalance().add(delta));
+            balances.add(balance);
+        });
+        balanceRepository.saveAll(balances);
+
+        List<GroupLedgerEntry> removed = new ArrayList<>();
+        previous.forEach((member, entry) -> {
+            if (!contributions.containsKey(member)) {
+                removed.add(entry);
+            }
+        });
+        entryRepository.deleteAll(removed);
+
+        List<GroupLedgerEntry> entries = new ArrayList<>(contributions.size());
+        contributions.forEach((member, contribution) -> {
+            GroupLedgerEntry entry = previous.getOrDefault(member, GroupLedgerEntry.builder()
+                    .expenseId(expenseId)
+                    .member(member)
+                    .groupId(groupId)
+                    .build());
+            entry.setAmount(contribution.amount());
+            entries.add(entry);
+        });
+        entryRepository.saveAll(entries);
+    }
+
+    private record Contribution(String name, BigDecimal amount) {
+        Contribution plus(Contribution other) {
+            return new Contribution(name, amount.add(other.amount()));
+        }
+    }
+
+    private static Map<String, Contribution> contributions(Expense expense) {
+        String payer = memberKey(expense.getPayerName());
+        Map<String, Contribution> contributions = new LinkedHashMap<>();
+        for (Person person : expense.getPeople()) {
+            String member = memberKey(person.getName());
+            BigDecimal owed = person.getTotalOwed();
+            // The payer's own share was never lent to anyone
+            if (member.equals(payer) || owed == null || owed.signum() == 0) {
+                continue;
+            }
+            owed = owed.setScale(2, RoundingMode.HALF_UP);
+            contributions.merge(member, new Contribution(person.getName().trim(), owed.negate()), Contribution::plus);
+            contributions.merge(payer, new Contribution(expense.getPayerName().trim(), owed), Contribution::plus);
+        }
+        contributions.values().removeIf(contribution -> contribution.amount().signum() == 0);
+        return contributions;
+    }
+
+    private static String memberKey(String name) {
+        return name.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private ExpenseGroup findGroup(String slug) {
+        return groupRepository.findBySlug(slug)
+                .orElseThrow(() -> new ResourceNotFoundException("Group not found with slug: " + slug));
+    }
+
+    private Expense findExpense(String slug) {
+        return expenseRepository.findBySlug(slug)
+                .orElseThrow(() -> new ResourceNotFoundException("Expense not found with slug: " + slug));
+    }
+
+    private GroupSettlementResponse mapToSettlementResponse(ExpenseGroup group, List<GroupBalance> balances) {
+        Map<String, BigDecimal> byMember = new HashMap<>();
+        Map<String, String> names = new HashMap<>();
+        List<GroupSettlementResponse.MemberBalance> memberBalances = new ArrayList<>();
+        balances.stream()
+                .filter(balance -> balance.getBalance().signum() != 0)
+                .sorted(Comparator.comparing(GroupBalance::getBalance).reversed().thenComparing(GroupBalance::getMember))
+                .forEach(balance -> {
+                    byMember.put(balance.getMember(), balance.getBalance());
+                    names.put(balance.getMember(), balance.getName());
+                    memberBalances.add(GroupSettlementResponse.MemberBalance.builder()
+                            .name(balance.getName())
+                            .balance(balance.getBalance())
+                            .build());
+                });
+
+        List<GroupSettlementResponse.Transfer> transfers = DebtSimplifier.simplify(byMember).stream()
+                .map(transfer -> GroupSettlementResponse.Transfer.builder()
+                        .from(names.get(transfer.from()))
+                        .to(names.get(transfer.to()))
+                        .amount(transfer.amount())
+                        .build())
+                .toList();
+
+        return GroupSettlementResponse.builder()
+                .id(group.getId())
+                .slug(group.getSlug())
+                .name(group.getName())
+                .createdAt(group.getCreatedAt())
+                .balances(memberBalances)
+                .transfers(transfers)
+                .build();
+    }
+}
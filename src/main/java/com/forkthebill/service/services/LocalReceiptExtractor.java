@@ -0,0 +1,154 @@
+package com.forkthebill.service.services;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.forkthebill.service.models.dto.BillParsedData;
+import com.forkthebill.service.utils.ReceiptLayout;
+import com.forkthebill.service.utils.ReceiptTextParser;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Reads digital receipts (PDFs with a text layer, HTML e-mails, plain text) without Gemini,
+ * using the layout rules in expense.local-extraction.layouts. Photos and scanned PDFs have no
+ * text to read, and receipts that do not reconcile are left to Gemini; see ReceiptTextParser.
+ *
+ * Every attempt is timed as receipt.local-extraction, tagged result=served when the bill was
+ * read locally and result=fallback when it was handed on to Gemini.
+ */
+@Slf4j
+@Service
+public class LocalReceiptExtractor {
+
+    private static final byte[] PDF_MAGIC = "%PDF-".getBytes(StandardCharsets.US_ASCII);
+
+    private final ReceiptTextParser parser;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+
+    public LocalReceiptExtractor(ObjectMapper objectMapper,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${expense.local-extraction.enabled:true}") boolean enabled,
+                                 @Value("${expense.local-extraction.layouts:classpath:receipt-layouts.json}") Resource layouts)
+            throws IOException {
+        try (InputStream in = layouts.getInputStream()) {
+            this.parser = new ReceiptTextParser(objectMapper.readValue(in, new TypeReference<List<ReceiptLayout>>() {}));
+        }
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param contentType the upload's declared type; PDFs are also recognised by their header
+     * @return the bill, or empty if it should be read by Gemini instead
+     */
+    public Optional<BillParsedData> extract(byte[] data, String contentType) {
+        Format format = Format.of(data, contentType);
+        if (!enabled || format == null) {
+            return Optional.empty();
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Optional<BillParsedData> bill = Optional.empty();
+        try {
+            String text = text(data, format);
+            if (text != null && !text.isBlank()) {
+                bill = parser.parse(text);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Encrypted or damaged files included; Gemini may still read them
+            log.debug("Could not read {} receipt locally: {}", format, e.getMessage());
+        }
+
+        sample.stop(Timer.builder("receipt.local-extraction")
+                .description("Time spent reading a digital receipt without Gemini")
+                .tag("format", format.name().toLowerCase(Locale.ROOT))
+                .tag("result", bill.isPresent() ? "served" : "fallback")
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+        return bill;
+    }
+
+    private static String text(byte[] data, Format format) throws IOException {
+        return switch (format) {
+            case PDF -> {
+                try (PDDocument document = Loader.loadPDF(data)) {
+                    PDFTextStripper stripper = new PDFTextStripper();
+                    // Keeps a line's name and price together even when they were drawn apart
+                    stripper.setSortByPosition(true);
+                    yield stripper.getText(document);
+                }
+            }
+            case HTML -> htmlText(new String(data, StandardCharsets.UTF_8));
+            case TEXT -> new String(data, StandardCharsets.UTF_8);
+        };
+    }
+
+    /**
+     * One line per block element or table row, with table cells separated by a space, so an
+     * e-mail laid out as a table reads like a printed receipt.
+     */
+    private static String htmlText(String html) {
+        StringBuilder text = new StringBuilder();
+        NodeTraversor.traverse(new NodeVisitor() {
+            @Override
+            public void head(Node node, int depth) {
+                if (node instanceof TextNode textNode) {
+                    text.append(textNode.text());
+                } else if (node instanceof Element element && element.normalName().equals("br")) {
+                    text.append('\n');
+                }
+            }
+
+            @Override
+            public void tail(Node node, int depth) {
+                if (node instanceof Element element) {
+                    if (element.normalName().equals("td") || element.normalName().equals("th")) {
+                        text.append(' ');
+                    } else if (element.isBlock()) {
+                        text.append('\n');
+                    }
+                }
+            }
+        }, Jsoup.parse(html).body());
+        return text.toString();
+    }
+
+    private enum Format {
+        PDF, HTML, TEXT;
+
+        static Format of(byte[] data, String contentType) {
+            if (data.length >= PDF_MAGIC.length && Arrays.equals(data, 0, PDF_MAGIC.length, PDF_MAGIC, 0, PDF_MAGIC.length)) {
+                return PDF;
+            }
+            String mimeType = contentType == null ? "" : contentType.split(";")[0].strip().toLowerCase(Locale.ROOT);
+            return switch (mimeType) {
+                case "application/pdf" -> PDF;
+                case "text/html", "application/xhtml+xml" -> HTML;
+                case "text/plain" -> TEXT;
+                default -> null;
+            };
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.forkthebill.service.utils;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.json.JsonReadFeature;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.forkthebill.service.models.dto.BillParsedData;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * Reads the bill out of a Gemini reply. The reply is not always bare JSON (it may be wrapped
+ * in a ```json fence or follow a sentence), so parsing starts at the first '{' and stops after
+ * the object it opens; whatever surrounds it is never read or copied.
+ */
+@Component
+public class BillJsonParser {
+
+    private final ObjectReader reader;
+    private final ObjectReader itemReader;
+
+    public BillJsonParser(ObjectMapper objectMapper) {
+        this.reader = objectMapper.readerFor(BillParsedData.class)
+                .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .with(JsonReadFeature.ALLOW_TRAILING_COMMA);
+        this.itemReader = reader.forType(BillParsedData.BillItem.class);
+        warmUp();
+    }
+
+    public BillParsedData parse(String response) throws IOException {
+        int start = response.indexOf('{');
+        if (start < 0) {
+            throw new JsonParseException((JsonParser) null, "No JSON object in Gemini response");
+        }
+
+        StringReader source = new StringReader(response);
+        source.skip(start);
+        try (JsonParser parser = reader.createParser(source)) {
+            return reader.readValue(parser);
+        }
+    }
+
+    /**
+     * Starts reading items from a reply that arrives in pieces; see StreamingBillParser.
+     */
+    public StreamingBillParser streamItems(Consumer<BillParsedData.BillItem> onItem) {
+        try {
+            return new StreamingBillParser(itemReader, onItem);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Resolves the deserializers now rather than on the first upload
+    private void warmUp() {
+        try {
+            parse("{\"items\":[{\"name\":\"\",\"price\":0,\"quantity\":1}]}");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
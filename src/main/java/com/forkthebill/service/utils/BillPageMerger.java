@@ -0,0 +1,174 @@
+package com.forkthebill.service.utils;
+
+import com.forkthebill.service.models.dto.BillParsedData;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Combines the bills read from several photos of one long receipt, in the order the photos
+ * were uploaded, into a single bill.
+ *
+ * Consecutive photos usually overlap by a few lines, so the longest run of items that ends
+ * one page and starts the next (same name, price and quantity) is kept only once. A run of a
+ * single line is as likely to be a second round of the same drink, so it is only dropped when
+ * that makes the items add up to the printed subtotal and keeping it does not. Amounts are
+ * printed at the bottom of the receipt, so each is taken from the last page that shows it;
+ * the model reports amounts it cannot see as 0. The result depends only on the pages and
+ * their order, never on which page was read first.
+ */
+public final class BillPageMerger {
+
+    private static final BigDecimal CENT = new BigDecimal("0.01");
+
+    private BillPageMerger() {
+    }
+
+    public static BillParsedData merge(List<BillParsedData> pages) {
+        if (pages.size() == 1) {
+            return pages.get(0);
+        }
+
+        // Items each page adds, and the pages whose first line may repeat the page before
+        List<List<BillParsedData.BillItem>> added = new ArrayList<>();
+        List<Integer> doubtful = new ArrayList<>();
+        List<BillParsedData.BillItem> previousPage = List.of();
+        for (BillParsedData page : pages) {
+            List<BillParsedData.BillItem> pageItems = page.getItems() == null ? List.of() : page.getItems();
+            int overlap = overlap(previousPage, pageItems);
+            if (overlap == 1) {
+                doubtful.add(added.size());
+                overlap = 0;
+            }
+            added.add(pageItems.subList(overlap, pageItems.size()));
+            previousPage = pageItems;
+        }
+
+        BigDecimal subtotal = lastShown(pages, BillParsedData::getSubtotal);
+        int dropped = repeatsToDrop(added, doubtful, subtotal);
+        List<BillParsedData.BillItem> items = new ArrayList<>();
+        for (int i = 0; i < added.size(); i++) {
+            int index = doubtful.indexOf(i);
+            boolean drop = index >= 0 && (dropped & (1 << index)) != 0;
+            items.addAll(drop ? added.get(i).subList(1, added.get(i).size()) : added.get(i));
+        }
+
+        if (subtotal == null) {
+            subtotal = total(items);
+        }
+        BigDecimal tax = orZero(lastShown(pages, BillParsedData::getTax));
+        BigDecimal serviceCharge = orZero(lastShown(pages, BillParsedData::getServiceCharge));
+        BigDecimal totalAmount = lastShown(pages, BillParsedData::getTotalAmount);
+        if (totalAmount == null) {
+            totalAmount = subtotal.add(tax).add(serviceCharge);
+        }
+
+        return BillParsedData.builder()
+                .subtotal(subtotal)
+                .tax(tax)
+                .serviceCharge(serviceCharge)
+                .totalAmount(totalAmount)
+                .items(items)
+                .restaurantName(firstShown(pages, BillParsedData::getRestaurantName))
+                .date(firstShown(pages, BillParsedData::getDate))
+                .build();
+    }
+
+    /**
+     * Picks which single-line repeats to drop: the fewest that make the items add up to the
+     * printed subtotal, to within a cent per item. Without a printed subtotal, or when no
+     * choice reconciles, every line is kept.
+     *
+     * @return a bit per entry of doubtful, set for the pages whose first line is dropped
+     */
+    private static int repeatsToDrop(List<List<BillParsedData.BillItem>> added, List<Integer> doubtful,
+                                     BigDecimal subtotal) {
+        if (subtotal == null || doubtful.isEmpty()) {
+            return 0;
+        }
+        BigDecimal sum = BigDecimal.ZERO;
+        int count = 0;
+        for (List<BillParsedData.BillItem> pageItems : added) {
+            sum = sum.add(total(pageItems));
+            count += pageItems.size();
+        }
+        BigDecimal tolerance = CENT.multiply(BigDecimal.valueOf(count));
+
+        // At most expense.upload.max-pages - 1 candidates, so trying every choice is cheap
+        int best = -1;
+        for (int choice = 0; choice < 1 << doubtful.size(); choice++) {
+            BigDecimal itemTotal = sum;
+            for (int i = 0; i < doubtful.size(); i++) {
+                if ((choice & (1 << i)) != 0) {
+                    itemTotal = itemTotal.subtract(total(added.get(doubtful.get(i)).subList(0, 1)));
+                }
+            }
+            boolean reconciles = itemTotal.subtract(subtotal).abs().compareTo(tolerance) <= 0;
+            if (reconciles && (best < 0 || Integer.bitCount(choice) < Integer.bitCount(best))) {
+                best = choice;
+            }
+        }
+        return Math.max(best, 0);
+    }
+
+    private static BigDecimal total(List<BillParsedData.BillItem> items) {
+        return items.stream()
+                .map(BillParsedData.BillItem::getPrice)
+                .filter(Objects::nonNull)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    /**
+     * @return the length of the longest run of items that ends previous and starts next
+     */
+    static int overlap(List<BillParsedData.BillItem> previous, List<BillParsedData.BillItem> next) {
+        for (int length = Math.min(previous.size(), next.size()); length > 0; length--) {
+            int offset = previous.size() - length;
+            boolean matches = true;
+            for (int i = 0; i < length && matches; i++) {
+                matches = sameLine(previous.get(offset + i), next.get(i));
+            }
+            if (matches) {
+                return length;
+            }
+        }
+        return 0;
+    }
+
+    private static boolean sameLine(BillParsedData.BillItem a, BillParsedData.BillItem b) {
+        return normalize(a.getName()).equals(normalize(b.getName()))
+                && Objects.equals(a.getQuantity(), b.getQuantity())
+                && (a.getPrice() == null ? b.getPrice() == null
+                        : b.getPrice() != null && a.getPrice().compareTo(b.getPrice()) == 0);
+    }
+
+    private static String normalize(String name) {
+        return name == null ? "" : name.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private static BigDecimal lastShown(List<BillParsedData> pages, Function<BillParsedData, BigDecimal> amount) {
+        for (int i = pages.size() - 1; i >= 0; i--) {
+            BigDecimal value = amount.apply(pages.get(i));
+            if (value != null && value.signum() != 0) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    private static String firstShown(List<BillParsedData> pages, Function<BillParsedData, String> field) {
+        return pages.stream()
+                .map(field)
+                .filter(value -> value != null && !value.isBlank())
+                .findFirst()
+                .orElse(null);
+    }
+
+    private static BigDecimal orZero(BigDecimal value) {
+        return value == null ? BigDecimal.ZERO : value;
+    }
+}
@@ -0,0 +1,132 @@
+package com.forkthebill.service.utils;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.deser.std.StdScalarDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdScalarSerializer;
+import com.forkthebill.service.models.dto.ExpenseResponse;
+import com.forkthebill.service.models.dto.ItemResponse;
+import com.forkthebill.service.models.dto.PersonResponse;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Jackson module for the binary wire format. Amounts are written as integers in minor units
+ * (12.50 -> 1250) and ids as 16-byte binary UUIDs, instead of decimal and 36-character
+ * strings. java.util.UUID fields are already written as binary by Jackson for binary formats;
+ * the mix-ins cover the ids the DTOs keep as strings. Null fields of the responses are omitted.
+ *
+ * Only registered on binary mappers; JSON keeps its existing representation.
+ */
+public class CompactBinaryModule extends SimpleModule {
+
+    public static final int MONEY_SCALE = 2;
+
+    public CompactBinaryModule() {
+        super("CompactBinaryModule");
+        addSerializer(BigDecimal.class, new MinorUnitsSerializer());
+        addDeserializer(BigDecimal.class, new MinorUnitsDeserializer());
+        setMixInAnnotation(ExpenseResponse.class, ExpenseResponseMixIn.class);
+        setMixInAnnotation(ItemResponse.class, ItemResponseMixIn.class);
+        setMixInAnnotation(PersonResponse.class, PersonResponseMixIn.class);
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private abstract static class ExpenseResponseMixIn {
+        @JsonSerialize(using = UuidStringSerializer.class)
+        @JsonDeserialize(using = UuidStringDeserializer.class)
+        private String id;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private abstract static class ItemResponseMixIn {
+        @JsonSerialize(using = UuidStringSerializer.class)
+        @JsonDeserialize(using = UuidStringDeserializer.class)
+        private String id;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private abstract static class PersonResponseMixIn {
+        @JsonSerialize(contentUsing = UuidStringSerializer.class)
+        @JsonDeserialize(contentUsing = UuidStringDeserializer.class)
+        private List<String> itemsClaimed;
+    }
+
+    static final class MinorUnitsSerializer extends StdScalarSerializer<BigDecimal> {
+        MinorUnitsSerializer() {
+            super(BigDecimal.class);
+        }
+
+        @Override
+        public void serialize(BigDecimal value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeNumber(value.setScale(MONEY_SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+        }
+    }
+
+    static final class MinorUnitsDeserializer extends StdScalarDeserializer<BigDecimal> {
+        MinorUnitsDeserializer() {
+            super(BigDecimal.class);
+        }
+
+        @Override
+        public BigDecimal deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            if (p.currentToken() != JsonToken.VALUE_NUMBER_INT) {
+                return (BigDecimal) ctxt.handleUnexpectedToken(BigDecimal.class, p);
+            }
+            return BigDecimal.valueOf(p.getLongValue(), MONEY_SCALE);
+        }
+    }
+
+    static final class UuidStringSerializer extends StdScalarSerializer<String> {
+        UuidStringSerializer() {
+            super(String.class);
+        }
+
+        @Override
+        public void serialize(String value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            UUID uuid;
+            try {
+                uuid = UUID.fromString(value);
+            } catch (IllegalArgumentException e) {
+                // Not every id is guaranteed to be a UUID; fall back to the string
+                gen.writeString(value);
+                return;
+            }
+            gen.writeBinary(ByteBuffer.allocate(16)
+                    .putLong(uuid.getMostSignificantBits())
+                    .putLong(uuid.getLeastSignificantBits())
+                    .array());
+        }
+    }
+
+    static final class UuidStringDeserializer extends StdScalarDeserializer<String> {
+        UuidStringDeserializer() {
+            super(String.class);
+        }
+
+        @Override
+        public String deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            if (p.currentToken() == JsonToken.VALUE_STRING) {
+                return p.getText();
+            }
+            byte[] bytes = p.getBinaryValue();
+            if (bytes.length != 16) {
+                return (String) ctxt.handleWeirdNativeValue(ctxt.constructType(String.class), bytes, p);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            return new UUID(buffer.getLong(), buffer.getLong()).toString();
+        }
+    }
+}
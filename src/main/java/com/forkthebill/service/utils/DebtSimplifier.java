@@ -0,0 +1,66 @@
+package com.forkthebill.service.utils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Turns net balances into a short list of payments that settles them.
+ *
+ * Greedy cash-flow minimisation: the largest debtor pays the largest creditor as much as
+ * one of them can take, and whoever has money left over goes back on their heap. Every
+ * payment settles at least one person, so n people need at most n - 1 payments. That is not
+ * always the fewest possible (finding those is NP-hard), but it is in the common cases and
+ * runs in O(n log n) over members, whatever the number of expenses behind the balances.
+ */
+public final class DebtSimplifier {
+
+    public record Transfer(String from, String to, BigDecimal amount) {
+    }
+
+    private record Position(String member, long cents) {
+    }
+
+    // Largest amount first; ties by name so the same balances always give the same payments
+    private static final Comparator<Position> LARGEST_FIRST = Comparator.comparingLong(Position::cents).reversed()
+            .thenComparing(Position::member);
+
+    private DebtSimplifier() {
+    }
+
+    /**
+     * @param balances net balance per member, positive when they are owed money; they should
+     *                 add up to zero, and whatever does not is left unsettled
+     */
+    public static List<Transfer> simplify(Map<String, BigDecimal> balances) {
+        PriorityQueue<Position> creditors = new PriorityQueue<>(LARGEST_FIRST);
+        PriorityQueue<Position> debtors = new PriorityQueue<>(LARGEST_FIRST);
+        balances.forEach((member, balance) -> {
+            long cents = balance.movePointRight(2).longValue();
+            if (cents > 0) {
+                creditors.add(new Position(member, cents));
+            } else if (cents < 0) {
+                debtors.add(new Position(member, -cents));
+            }
+        });
+
+        List<Transfer> transfers = new ArrayList<>();
+        while (!creditors.isEmpty() && !debtors.isEmpty()) {
+            Position creditor = creditors.poll();
+            Position debtor = debtors.poll();
+            long amount = Math.min(creditor.cents(), debtor.cents());
+            transfers.add(new Transfer(debtor.member(), creditor.member(), BigDecimal.valueOf(amount, 2)));
+
+            if (creditor.cents() > amount) {
+                creditors.add(new Position(creditor.member(), creditor.cents() - amount));
+            }
+            if (debtor.cents() > amount) {
+                debtors.add(new Position(debtor.member(), debtor.cents() - amount));
+            }
+        }
+        return transfers;
+    }
+}
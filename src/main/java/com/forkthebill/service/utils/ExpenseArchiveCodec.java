@@ -0,0 +1,45 @@
+package com.forkthebill.service.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.forkthebill.service.models.documents.ExpenseDocument;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Archive format: the ExpenseDocument JSON, gzip-compressed.
+ */
+public final class ExpenseArchiveCodec {
+
+    private static final ObjectMapper OBJECT_MAPPER = JsonMapper.builder()
+            .findAndAddModules()
+            .build();
+
+    private ExpenseArchiveCodec() {
+    }
+
+    public static byte[] encode(ExpenseDocument document) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(bytes)) {
+            OBJECT_MAPPER.writeValue(out, document);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to encode archived expense " + document.getSlug(), e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static ExpenseDocument decode(byte[] payload) {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(payload))) {
+            return OBJECT_MAPPER.readValue(in, ExpenseDocument.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to decode archived expense", e);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.forkthebill.service.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+
+public final class GzipCompressor {
+
+    private GzipCompressor() {
+    }
+
+    /**
+     * @param level 1 (fastest) to 9 (smallest), or -1 for the zlib default (6)
+     */
+    public static byte[] compress(byte[] data, int level) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+        try (GZIPOutputStream out = new LeveledGzipOutputStream(bytes, level)) {
+            out.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static final class LeveledGzipOutputStream extends GZIPOutputStream {
+        LeveledGzipOutputStream(ByteArrayOutputStream out, int level) throws IOException {
+            super(out, 8192);
+            def.setLevel(level);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.forkthebill.service.utils;
+
+/**
+ * Regexes describing one receipt layout, applied line by line by ReceiptTextParser. Layouts
+ * are loaded from expense.local-extraction.layouts; the first whose match pattern is found in
+ * the receipt is used, and a layout without one matches every receipt.
+ *
+ * item must have named groups name and price (the line total), and may have quantity.
+ * restaurantName must have a group name. The amount labels (subtotal, tax, serviceCharge,
+ * total) only need to match the start of the line; the amount is the last one on it. Lines
+ * matching ignore are skipped.
+ */
+public record ReceiptLayout(
+        String name,
+        String match,
+        String restaurantName,
+        String item,
+        String subtotal,
+        String tax,
+        String serviceCharge,
+        String total,
+        String ignore) {
+}
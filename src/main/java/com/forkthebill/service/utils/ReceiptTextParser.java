@@ -0,0 +1,187 @@
+package com.forkthebill.service.utils;
+
+import com.forkthebill.service.models.dto.BillParsedData;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads a bill from the text of a digital receipt using ReceiptLayout rules.
+ *
+ * A bill is only returned when it reconciles: the items add up to the subtotal, and subtotal,
+ * tax and service charge add up to the total, within a cent per line. Anything else (a layout
+ * that does not fit, a discount line, a missed item) returns empty so the caller can fall back
+ * to the model.
+ */
+public class ReceiptTextParser {
+
+    private static final Pattern AMOUNT = Pattern.compile("(-?)\\s?(?:\\p{Sc}|[A-Z]{3})?\\s?(\\d{1,3}(?:[.,\\s]\\d{3})*(?:[.,]\\d{2})|\\d+[.,]\\d{2})\\s*$");
+    private static final BigDecimal CENT = new BigDecimal("0.01");
+
+    private final List<CompiledLayout> layouts;
+
+    public ReceiptTextParser(List<ReceiptLayout> layouts) {
+        this.layouts = layouts.stream().map(CompiledLayout::new).toList();
+    }
+
+    public Optional<BillParsedData> parse(String text) {
+        return layouts.stream()
+                .filter(layout -> layout.match == null || layout.match.matcher(text).find())
+                .findFirst()
+                .flatMap(layout -> parse(layout, text));
+    }
+
+    private Optional<BillParsedData> parse(CompiledLayout layout, String text) {
+        List<BillParsedData.BillItem> items = new ArrayList<>();
+        BigDecimal subtotal = null;
+        BigDecimal tax = null;
+        BigDecimal serviceCharge = null;
+        BigDecimal total = null;
+        String restaurantName = null;
+
+        for (String rawLine : text.split("\\R")) {
+            String line = rawLine.strip().replaceAll("\\s+", " ");
+            if (line.isEmpty() || matches(layout.ignore, line)) {
+                continue;
+            }
+
+            if (restaurantName == null && layout.restaurantName != null) {
+                Matcher name = layout.restaurantName.matcher(line);
+                if (name.find()) {
+                    restaurantName = name.group("name").strip();
+                    continue;
+                }
+            }
+
+            // Labels are checked before items, since "Tax 2.00" also looks like an item
+            if (matches(layout.total, line)) {
+                total = lastAmount(line);
+            } else if (matches(layout.subtotal, line)) {
+                subtotal = lastAmount(line);
+            } else if (matches(layout.tax, line)) {
+                tax = add(tax, lastAmount(line));
+            } else if (matches(layout.serviceCharge, line)) {
+                serviceCharge = add(serviceCharge, lastAmount(line));
+            } else if (total == null) {
+                Matcher item = layout.item.matcher(line);
+                if (item.find()) {
+                    items.add(BillParsedData.BillItem.builder()
+                            .name(item.group("name").replaceAll("[\\s.\\u00B7]+$", ""))
+                            .price(parseAmount(item.group("price")))
+                            .quantity(quantity(item))
+                            .build());
+                }
+            }
+        }
+
+        BigDecimal itemTotal = items.stream()
+                .map(BillParsedData.BillItem::getPrice)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal taxAmount = tax == null ? BigDecimal.ZERO : tax;
+        BigDecimal serviceAmount = serviceCharge == null ? BigDecimal.ZERO : serviceCharge;
+        if (subtotal == null && total != null) {
+            subtotal = total.subtract(taxAmount).subtract(serviceAmount);
+        }
+        if (items.isEmpty() || subtotal == null) {
+            return Optional.empty();
+        }
+        if (total == null) {
+            total = subtotal.add(taxAmount).add(serviceAmount);
+        }
+
+        BigDecimal tolerance = CENT.multiply(BigDecimal.valueOf(items.size()));
+        boolean itemsReconcile = itemTotal.subtract(subtotal).abs().compareTo(tolerance) <= 0;
+        boolean totalReconciles = subtotal.add(taxAmount).add(serviceAmount).subtract(total).abs().compareTo(tolerance) <= 0;
+        if (!itemsReconcile || !totalReconciles) {
+            return Optional.empty();
+        }
+
+        return Optional.of(BillParsedData.builder()
+                .subtotal(subtotal)
+                .tax(taxAmount)
+                .serviceCharge(serviceAmount)
+                .totalAmount(total)
+                .items(items)
+                .restaurantName(restaurantName)
+                .build());
+    }
+
+    private static boolean matches(Pattern pattern, String line) {
+        return pattern != null && pattern.matcher(line).find();
+    }
+
+    private static int quantity(Matcher item) {
+        try {
+            String quantity = item.group("quantity");
+            return quantity == null ? 1 : Integer.parseInt(quantity);
+        } catch (IllegalArgumentException e) {
+            // The layout has no quantity group
+            return 1;
+        }
+    }
+
+    private static BigDecimal lastAmount(String line) {
+        Matcher amount = AMOUNT.matcher(line);
+        if (!amount.find()) {
+            return null;
+        }
+        BigDecimal value = parseAmount(amount.group(2));
+        return amount.group(1).isEmpty() ? value : value.negate();
+    }
+
+    private static BigDecimal add(BigDecimal sum, BigDecimal amount) {
+        if (amount == null) {
+            return sum;
+        }
+        return sum == null ? amount : sum.add(amount);
+    }
+
+    /**
+     * Reads 1,234.56, 1.234,56, 1 234,56 and 12,50 alike: the last separator followed by two
+     * digits is the decimal point, every other separator groups thousands.
+     */
+    static BigDecimal parseAmount(String raw) {
+        String digits = raw.replaceAll("[^\\d.,-]", "");
+        int decimal = Math.max(digits.lastIndexOf('.'), digits.lastIndexOf(','));
+        if (decimal >= 0 && digits.length() - decimal - 1 == 2) {
+            digits = digits.substring(0, decimal).replaceAll("[.,]", "") + "." + digits.substring(decimal + 1);
+        } else {
+            digits = digits.replaceAll("[.,]", "");
+        }
+        return new BigDecimal(digits);
+    }
+
+    private static final class CompiledLayout {
+
+        private final Pattern match;
+        private final Pattern restaurantName;
+        private final Pattern item;
+        private final Pattern subtotal;
+        private final Pattern tax;
+        private final Pattern serviceCharge;
+        private final Pattern total;
+        private final Pattern ignore;
+
+        CompiledLayout(ReceiptLayout layout) {
+            this.match = compile(layout.match());
+            this.restaurantName = compile(layout.restaurantName());
+            this.item = compile(layout.item());
+            this.subtotal = compile(layout.subtotal());
+            this.tax = compile(layout.tax());
+            this.serviceCharge = compile(layout.serviceCharge());
+            this.total = compile(layout.total());
+            this.ignore = compile(layout.ignore());
+            if (item == null) {
+                throw new IllegalArgumentException("Receipt layout " + layout.name() + " has no item pattern");
+            }
+        }
+
+        private static Pattern compile(String regex) {
+            return regex == null || regex.isBlank() ? null : Pattern.compile(regex);
+        }
+    }
+}
@@ -11,6 +11,7 @@ import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
 import java.util.List;
 import java.util.Random;
+import java.util.function.Predicate;
 
 @Component
 public class SlugGenerator {
@@ -37,6 +38,13 @@ public class SlugGenerator {
     }
 
     public String generateUniqueSlug() {
+        return generateUniqueSlug(expenseRepository::existsBySlug);
+    }
+
+    /**
+     * As generateUniqueSlug(), for other things with slugs; taken tells whether a slug is in use.
+     */
+    public String generateUniqueSlug(Predicate<String> taken) {
         String slug;
         int attempts = 0;
         final int MAX_ATTEMPTS = 10;
@@ -50,12 +58,13 @@ public class SlugGenerator {
                 slug = slug + "-" + random.nextInt(1000);
                 break;
             }
-        } while (expenseRepository.existsBySlug(slug));
+        } while (taken.test(slug));
 
         return slug;
     }
 
-    private String generateSlug() {
+    // Package-private for the JMH benchmarks
+    String generateSlug() {
         String word1 = words.get(random.nextInt(words.size()));
         String word2 = words.get(random.nextInt(words.size()));
         String word3 = words.get(random.nextInt(words.size()));
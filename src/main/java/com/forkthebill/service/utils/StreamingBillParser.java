@@ -0,0 +1,144 @@
+package com.forkthebill.service.utils;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.forkthebill.service.models.dto.BillParsedData;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Reads bill items out of a Gemini reply while it is still being streamed. Text is fed as it
+ * arrives to a non-blocking JSON parser, and each element of the top-level "items" array is
+ * handed to the listener as soon as its closing brace is seen.
+ *
+ * Items are a preview only: the complete reply is still parsed with BillJsonParser.parse,
+ * which is what the expense is created from. A reply that stops being valid JSON simply stops
+ * producing items. Not thread-safe; create one per reply with BillJsonParser.streamItems.
+ */
+@Slf4j
+public class StreamingBillParser implements AutoCloseable {
+
+    private static final String ITEMS_FIELD = "items";
+
+    private final ObjectReader itemReader;
+    private final Consumer<BillParsedData.BillItem> onItem;
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+
+    private boolean started;
+    private boolean finished;
+    private int depth;
+    private boolean itemsNext;
+    private boolean inItems;
+    private TokenBuffer item;
+    private int itemCount;
+
+    StreamingBillParser(ObjectReader itemReader, Consumer<BillParsedData.BillItem> onItem) throws IOException {
+        this.itemReader = itemReader;
+        this.onItem = onItem;
+        this.parser = itemReader.createNonBlockingByteArrayParser();
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    /**
+     * Feeds the next piece of the reply. Text before the first '{' (a ```json fence or a
+     * sentence) and after the bill object closes is ignored.
+     */
+    public void feed(String text) {
+        if (finished || text.isEmpty()) {
+            return;
+        }
+        if (!started) {
+            int start = text.indexOf('{');
+            if (start < 0) {
+                return;
+            }
+            text = text.substring(start);
+            started = true;
+        }
+
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        try {
+            feeder.feedInput(bytes, 0, bytes.length);
+            JsonToken token;
+            while (!finished && (token = parser.nextToken()) != JsonToken.NOT_AVAILABLE && token != null) {
+                onToken(token);
+            }
+        } catch (IOException e) {
+            log.debug("Stopped streaming bill items: {}", e.getMessage());
+            finish();
+        }
+    }
+
+    /**
+     * @return the number of items handed to the listener so far
+     */
+    public int itemCount() {
+        return itemCount;
+    }
+
+    private void onToken(JsonToken token) throws IOException {
+        if (item != null) {
+            item.copyCurrentEvent(parser);
+        }
+
+        if (token.isStructStart()) {
+            depth++;
+            if (depth == 2 && token == JsonToken.START_ARRAY && itemsNext) {
+                inItems = true;
+            } else if (depth == 3 && token == JsonToken.START_OBJECT && inItems) {
+                item = new TokenBuffer(parser);
+                item.copyCurrentEvent(parser);
+            }
+            itemsNext = false;
+            return;
+        }
+
+        if (token.isStructEnd()) {
+            depth--;
+            if (depth == 2 && item != null) {
+                publish(item);
+                item = null;
+            } else if (depth == 1) {
+                inItems = false;
+            } else if (depth == 0) {
+                // The bill object is complete; whatever follows (a closing fence) is not JSON
+                finish();
+            }
+            return;
+        }
+
+        itemsNext = depth == 1 && token == JsonToken.FIELD_NAME && ITEMS_FIELD.equals(parser.currentName());
+    }
+
+    private void publish(TokenBuffer tokens) {
+        try (JsonParser itemParser = tokens.asParser()) {
+            BillParsedData.BillItem billItem = itemReader.readValue(itemParser);
+            itemCount++;
+            onItem.accept(billItem);
+        } catch (IOException e) {
+            // An item the model formatted oddly is left to the final parse
+            log.debug("Skipped streamed bill item: {}", e.getMessage());
+        }
+    }
+
+    private void finish() {
+        finished = true;
+        feeder.endOfInput();
+    }
+
+    @Override
+    public void close() {
+        try {
+            parser.close();
+        } catch (IOException e) {
+            log.debug("Could not close streaming bill parser: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,93 @@
+-- Range-partitioned layout for the expense aggregate (PostgreSQL 13+).
+--
+-- Apply to an empty database with spring.jpa.hibernate.ddl-auto=none and
+-- expense.partitioning.enabled=true. Monthly partitions are created ahead of time by
+-- ExpensePartitionMaintainer; the default partitions only catch rows outside that range.
+--
+-- Postgres requires the partition key in every unique constraint, so primary keys become
+-- (id, created_at) and slug is unique per partition only. Slugs are random, and the
+-- application checks existsBySlug before inserting, so this matches current behaviour.
+--
+-- Items and people are partitioned by expense_created_at, which mirrors the owning expense's
+-- created_at, so an aggregate lives in the same month across all three tables. Lookups of a
+-- child by id alone (no expense_created_at) still probe every partition through the
+-- expense_id / id indexes; the application always reaches children through their expense.
+
+CREATE TABLE expenses (
+    id              varchar(255)   NOT NULL,
+    slug            varchar(255)   NOT NULL,
+    version         bigint         NOT NULL DEFAULT 0,
+    created_at      timestamp(6)   NOT NULL,
+    last_activity_at timestamp(6),
+    payer_name      varchar(255)   NOT NULL,
+    payer_key       varchar(64),
+    restaurant_name varchar(255),
+    subtotal        numeric(10, 2) NOT NULL,
+    tax             numeric(38, 2),
+    service_charge  numeric(38, 2),
+    discount        numeric(38, 2),
+    total_amount    numeric(10, 2) NOT NULL,
+    group_id        varchar(255),
+    PRIMARY KEY (id, created_at),
+    UNIQUE (slug, created_at)
+) PARTITION BY RANGE (created_at);
+
+-- A payer's list walks this newest first, partition by partition, and stops at the page size
+CREATE INDEX expenses_payer_key_idx ON expenses (payer_key, created_at, id);
+CREATE INDEX expenses_last_activity_at_idx ON expenses (last_activity_at);
+CREATE TABLE expenses_default PARTITION OF expenses DEFAULT;
+
+CREATE TABLE items (
+    id                 varchar(255)   NOT NULL,
+    expense_id         varchar(255),
+    expense_created_at timestamp(6)   NOT NULL,
+    item_order         integer,
+    name               varchar(255)   NOT NULL,
+    price              numeric(10, 2) NOT NULL,
+    quantity           integer,
+    total_quantity     integer,
+    PRIMARY KEY (id, expense_created_at)
+) PARTITION BY RANGE (expense_created_at);
+
+CREATE INDEX items_expense_id_idx ON items (expense_id);
+CREATE TABLE items_default PARTITION OF items DEFAULT;
+
+CREATE TABLE people (
+    id                   uuid           NOT NULL,
+    expense_id           varchar(255),
+    expense_created_at   timestamp(6)   NOT NULL,
+    name                 varchar(255)   NOT NULL,
+    subtotal             numeric(10, 2) NOT NULL,
+    tax_share            numeric(38, 2),
+    service_charge_share numeric(38, 2),
+    discount_share       numeric(38, 2),
+    total_owed           numeric(10, 2) NOT NULL,
+    is_finished          boolean        NOT NULL,
+    PRIMARY KEY (id, expense_created_at)
+) PARTITION BY RANGE (expense_created_at);
+
+CREATE INDEX people_expense_id_idx ON people (expense_id);
+CREATE TABLE people_default PARTITION OF people DEFAULT;
+
+-- Claim tables stay unpartitioned; they are small per item/person and are always read
+-- by owner id. Partition drops remove the matching claim rows first.
+CREATE TABLE item_claimed_by (
+    item_id   varchar(255) NOT NULL,
+    person_id uuid
+);
+
+CREATE INDEX item_claimed_by_item_id_idx ON item_claimed_by (item_id);
+
+CREATE TABLE item_unit_claims (
+    item_id   varchar(255) NOT NULL,
+    person_id uuid         NOT NULL,
+    units     integer      NOT NULL,
+    PRIMARY KEY (item_id, person_id)
+);
+
+CREATE TABLE person_items_claimed (
+    person_id uuid         NOT NULL,
+    item_id   varchar(255)
+);
+
+CREATE INDEX person_items_claimed_person_id_idx ON person_items_claimed (person_id);
@@ -0,0 +1,230 @@
+package com.forkthebill.service.smoke;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Black-box checks against a running service, for builds whose wiring is decided at build
+ * time (Spring AOT, GraalVM native image). Each test touches a path that depends on
+ * reflection or classpath resources: JSON and CBOR binding, JPA entities and the second-level
+ * cache, the slug word list, and PDF, HTML and text receipts read without Gemini.
+ *
+ * Needs the service and its database up: ./gradlew smokeTest -PsmokeBaseUrl=http://localhost:8080
+ * -PsmokeManagementUrl=http://localhost:8081
+ */
+public class ServiceSmokeTest {
+
+    private static final String BASE_URL = System.getProperty("smoke.base-url", "http://localhost:8080");
+    private static final String MANAGEMENT_URL = System.getProperty("smoke.management-url", "http://localhost:8081");
+
+    private static final String RECEIPT = """
+            Order from: Luigi's Pizzeria
+            2 x Margherita $24.00
+            Garlic Bread $6.50
+            Subtotal $30.50
+            Tax (8%) $2.44
+            Total $32.94
+            """;
+
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void health_shouldBeUp() throws Exception {
+        HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(MANAGEMENT_URL + "/actuator/health")).GET().build());
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(json(response).path("status").asText()).isEqualTo("UP");
+    }
+
+    @Test
+    public void createAndGetExpense_shouldRoundTripAndRevalidate() throws Exception {
+        JsonNode created = createExpense();
+        String slug = created.path("slug").asText();
+
+        assertThat(slug).matches("[^-]+(-[^-]+){2,}");
+        assertThat(created.path("items")).hasSize(2);
+
+        HttpResponse<String> fetched = send(get("/expense/" + slug));
+        assertThat(fetched.statusCode()).isEqualTo(200);
+        assertThat(json(fetched).path("totalAmount").decimalValue()).isEqualByComparingTo("33.00");
+
+        String etag = fetched.headers().firstValue("ETag").orElseThrow();
+        HttpResponse<String> revalidated = send(HttpRequest.newBuilder(uri("/expense/" + slug))
+                .header("If-None-Match", etag).GET().build());
+        assertThat(revalidated.statusCode()).isEqualTo(304);
+    }
+
+    @Test
+    public void getExpense_shouldServeCompactAndCborRepresentations() throws Exception {
+        String slug = createExpense().path("slug").asText();
+
+        HttpResponse<String> compact = send(HttpRequest.newBuilder(uri("/expense/" + slug))
+                .header("Accept", "application/vnd.forkthebill.compact+json").GET().build());
+        assertThat(compact.statusCode()).isEqualTo(200);
+        assertThat(compact.headers().firstValue("Content-Type").orElseThrow())
+                .startsWith("application/vnd.forkthebill.compact+json");
+
+        HttpResponse<byte[]> cbor = client.send(HttpRequest.newBuilder(uri("/expense/" + slug))
+                .header("Accept", "application/cbor").GET().build(), HttpResponse.BodyHandlers.ofByteArray());
+        assertThat(cbor.statusCode()).isEqualTo(200);
+        assertThat(cbor.headers().firstValue("Content-Type").orElseThrow()).startsWith("application/cbor");
+        assertThat(cbor.body()).isNotEmpty();
+    }
+
+    @Test
+    public void claimWithIdempotencyKey_shouldReplayRetry() throws Exception {
+        JsonNode expense = createExpense();
+        String slug = expense.path("slug").asText();
+        String itemId = expense.path("items").get(0).path("id").asText();
+
+        HttpResponse<String> withPerson = send(post("/expense/" + slug + "/people", "{\"name\":\"Bob\"}"));
+        assertThat(withPerson.statusCode()).isEqualTo(200);
+        String personId = json(withPerson).path("people").get(0).path("id").asText();
+
+        String key = UUID.randomUUID().toString();
+        HttpRequest claim = HttpRequest.newBuilder(uri("/expense/" + slug + "/items/" + itemId + "/claim"))
+                .header("Content-Type", "application/json")
+                .header("Idempotency-Key", key)
+                .POST(HttpRequest.BodyPublishers.ofString("{\"personId\":\"" + personId + "\"}"))
+                .build();
+        HttpResponse<String> first = send(claim);
+        HttpResponse<String> retry = send(claim);
+
+        assertThat(first.statusCode()).isEqualTo(200);
+        assertThat(retry.statusCode()).isEqualTo(200);
+        assertThat(retry.headers().firstValue("Idempotent-Replayed")).hasValue("true");
+        assertThat(retry.body()).isEqualTo(first.body());
+
+        HttpResponse<String> unclaimed = send(HttpRequest.newBuilder(
+                uri("/expense/" + slug + "/items/" + itemId + "/claim/" + personId)).DELETE().build());
+        assertThat(unclaimed.statusCode()).isEqualTo(200);
+    }
+
+    @Test
+    public void getUnknownSlug_shouldAnswerWithApiError() throws Exception {
+        HttpResponse<String> response = send(get("/expense/smoke-test-missing-slug"));
+
+        assertThat(response.statusCode()).isEqualTo(404);
+        assertThat(json(response).path("status").asInt()).isEqualTo(404);
+        assertThat(json(response).path("path").asText()).isEqualTo("/expense/smoke-test-missing-slug");
+    }
+
+    @Test
+    public void uploadTextReceipt_shouldBeReadLocally() throws Exception {
+        assertUploadReadLocally(RECEIPT.getBytes(StandardCharsets.UTF_8), "receipt.txt", "text/plain");
+    }
+
+    @Test
+    public void uploadHtmlReceipt_shouldBeReadLocally() throws Exception {
+        String html = "<html><body><p>Order from: Luigi's Pizzeria</p><table>"
+                + "<tr><td>2 x Margherita</td><td>$24.00</td></tr>"
+                + "<tr><td>Garlic Bread</td><td>$6.50</td></tr>"
+                + "<tr><td>Subtotal</td><td>$30.50</td></tr>"
+                + "<tr><td>Tax (8%)</td><td>$2.44</td></tr>"
+                + "<tr><td>Total</td><td>$32.94</td></tr>"
+                + "</table></body></html>";
+        assertUploadReadLocally(html.getBytes(StandardCharsets.UTF_8), "receipt.html", "text/html");
+    }
+
+    @Test
+    public void uploadPdfReceipt_shouldBeReadLocally() throws Exception {
+        assertUploadReadLocally(pdf(RECEIPT), "receipt.pdf", "application/pdf");
+    }
+
+    // A Gemini call would fail or differ here, since the smoke environment has no API key
+    private void assertUploadReadLocally(byte[] content, String fileName, String contentType) throws Exception {
+        String boundary = "smoke-" + UUID.randomUUID();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.writeBytes(("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"payerName\"\r\n\r\nAlice\r\n"
+                + "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"bill\"; filename=\"" + fileName + "\"\r\n"
+                + "Content-Type: " + contentType + "\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(content);
+        body.writeBytes(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+
+        HttpResponse<String> response = send(HttpRequest.newBuilder(uri("/expense/upload"))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .build());
+
+        assertThat(response.statusCode()).isEqualTo(201);
+        JsonNode expense = json(response);
+        assertThat(expense.path("restaurantName").asText()).isEqualTo("Luigi's Pizzeria");
+        assertThat(expense.path("items")).hasSize(2);
+        assertThat(expense.path("totalAmount").decimalValue()).isEqualByComparingTo("32.94");
+    }
+
+    private JsonNode createExpense() throws Exception {
+        String request = """
+                {"payerName":"Alice","restaurantName":"Smoke Diner","totalAmount":33.00,"subtotal":30.00,"tax":3.00,
+                 "items":[{"name":"Burger","price":18.00},{"name":"Salad","price":12.00}]}
+                """;
+        HttpResponse<String> response = send(post("/expense", request));
+        assertThat(response.statusCode()).isEqualTo(201);
+        return json(response);
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private JsonNode json(HttpResponse<String> response) throws IOException {
+        return objectMapper.readTree(response.body());
+    }
+
+    private static HttpRequest get(String path) {
+        return HttpRequest.newBuilder(uri(path)).GET().build();
+    }
+
+    private static HttpRequest post(String path, String json) {
+        return HttpRequest.newBuilder(uri(path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    private static URI uri(String path) {
+        return URI.create(BASE_URL + path);
+    }
+
+    private static byte[] pdf(String text) throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = new PDPage();
+            document.addPage(page);
+            try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                content.beginText();
+                content.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), 11);
+                content.setLeading(14);
+                content.newLineAtOffset(50, 700);
+                for (String line : text.split("\n")) {
+                    content.showText(line);
+                    content.newLine();
+                }
+                content.endText();
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.save(out);
+            return out.toByteArray();
+        }
+    }
+}
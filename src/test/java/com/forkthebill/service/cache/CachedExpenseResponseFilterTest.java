@@ -0,0 +1,194 @@
+package com.forkthebill.service.cache;
+
+import com.forkthebill.service.services.ExpenseService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class CachedExpenseResponseFilterTest {
+
+    private static final String BODY = "{\"slug\":\"test-slug\",\"items\":[]}";
+
+    @Mock
+    private ExpenseService expenseService;
+
+    private ExpenseResponseCache cache;
+    private CachedExpenseResponseFilter filter;
+    private final AtomicInteger controllerCalls = new AtomicInteger();
+    private final AtomicLong renderedVersion = new AtomicLong(3);
+
+    @BeforeEach
+    public void setup() {
+        cache = new ExpenseResponseCache(100, DataSize.ofBytes(0), 6);
+        filter = new CachedExpenseResponseFilter(expenseService, cache, new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void doFilter_shouldServeCachedGzipBody_whileVersionIsUnchanged() throws Exception {
+        when(expenseService.findExpenseVersion("test-slug")).thenReturn(Optional.of(3L));
+
+        MockHttpServletResponse first = perform(request());
+        MockHttpServletResponse second = perform(request());
+
+        assertThat(controllerCalls).hasValue(1);
+        assertThat(second.getHeader("Content-Encoding")).isEqualTo("gzip");
+        assertThat(second.getHeader("ETag")).isEqualTo("\"v3\"");
+        assertThat(gunzip(second.getContentAsByteArray())).isEqualTo(BODY);
+        assertThat(second.getContentAsByteArray()).isEqualTo(first.getContentAsByteArray());
+    }
+
+    @Test
+    public void doFilter_shouldRenderAgain_whenVersionChanged() throws Exception {
+        when(expenseService.findExpenseVersion("test-slug")).thenReturn(Optional.of(3L));
+        perform(request());
+
+        when(expenseService.findExpenseVersion("test-slug")).thenReturn(Optional.of(4L));
+        renderedVersion.set(4);
+        MockHttpServletResponse second = perform(request());
+
+        assertThat(controllerCalls).hasValue(2);
+        assertThat(second.getHeader("ETag")).isEqualTo("\"v4\"");
+    }
+
+    @Test
+    public void doFilter_shouldReturnNotModified_whenEtagMatches() throws Exception {
+        when(expenseService.findExpenseVersion("test-slug")).thenReturn(Optional.of(3L));
+        MockHttpServletRequest request = request();
+        request.addHeader("If-None-Match", "\"v3\"");
+
+        MockHttpServletResponse response = perform(request);
+
+        assertThat(response.getStatus()).isEqualTo(304);
+        assertThat(response.getContentAsByteArray()).isEmpty();
+        assertThat(controllerCalls).hasValue(0);
+    }
+
+    @Test
+    public void doFilter_shouldReturnNotModified_whenEtagIsInListOrWeak() throws Exception {
+        when(expenseService.findExpenseVersion("test-slug")).thenReturn(Optional.of(3L));
+
+        for (String ifNoneMatch : new String[]{"\"v1\", \"v3\"", "W/\"v3\"", "\"v2\" , W/\"v3\"", "*"}) {
+            MockHttpServletRequest request = request();
+            request.addHeader("If-None-Match", ifNoneMatch);
+
+            assertThat(perform(request).getStatus()).as(ifNoneMatch).isEqualTo(304);
+        }
+        assertThat(controllerCalls).hasValue(0);
+    }
+
+    @Test
+    public void doFilter_shouldReturnNotModified_whenEtagIsOnLaterHeaderLine() throws Exception {
+        when(expenseService.findExpenseVersion("test-slug")).thenReturn(Optional.of(3L));
+        MockHttpServletRequest request = request();
+        request.addHeader("If-None-Match", "\"v1\"");
+        request.addHeader("If-None-Match", "\"v3\"");
+
+        assertThat(perform(request).getStatus()).isEqualTo(304);
+    }
+
+    @Test
+    public void doFilter_shouldServeBody_whenNoEtagInListMatches() throws Exception {
+        when(expenseService.findExpenseVersion("test-slug")).thenReturn(Optional.of(3L));
+
+        for (String ifNoneMatch : new String[]{"\"v1\", W/\"v2\"", "v3", "\"v1\" \"v3\""}) {
+            MockHttpServletRequest request = request();
+            request.addHeader("If-None-Match", ifNoneMatch);
+
+            assertThat(perform(request).getStatus()).as(ifNoneMatch).isEqualTo(200);
+        }
+    }
+
+    @Test
+    public void doFilter_shouldPassThrough_whenClientDoesNotAcceptGzip() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/expense/test-slug");
+
+        MockHttpServletResponse response = perform(request);
+
+        assertThat(response.getHeader("Content-Encoding")).isNull();
+        assertThat(response.getContentAsString()).isEqualTo(BODY);
+    }
+
+    @Test
+    public void doFilter_shouldServeCachedJson_whenClientDoesNotAcceptGzip() throws Exception {
+        when(expenseService.findExpenseVersion("test-slug")).thenReturn(Optional.of(3L));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/expense/test-slug");
+
+        perform(request);
+        MockHttpServletResponse second = perform(request);
+
+        assertThat(controllerCalls).hasValue(1);
+        assertThat(second.getHeader("Content-Encoding")).isNull();
+        assertThat(second.getHeader("ETag")).isEqualTo("\"v3\"");
+        assertThat(second.getContentAsString()).isEqualTo(BODY);
+    }
+
+    @Test
+    public void doFilter_shouldServeBodyPublishedByWrite_withoutCallingController() throws Exception {
+        when(expenseService.findExpenseVersion("test-slug")).thenReturn(Optional.of(5L));
+        cache.put("test-slug", cache.body("\"v5\"", BODY.getBytes(StandardCharsets.UTF_8)));
+
+        MockHttpServletResponse response = perform(request());
+
+        assertThat(controllerCalls).hasValue(0);
+        assertThat(gunzip(response.getContentAsByteArray())).isEqualTo(BODY);
+    }
+
+    @Test
+    public void doFilter_shouldPassThrough_whenClientPrefersCbor() throws Exception {
+        MockHttpServletRequest request = request();
+        request.addHeader("Accept", "application/json;q=0.5, application/cbor");
+
+        MockHttpServletResponse response = perform(request);
+
+        assertThat(response.getHeader("Content-Encoding")).isNull();
+        assertThat(controllerCalls).hasValue(1);
+    }
+
+    private MockHttpServletRequest request() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/expense/test-slug");
+        request.addHeader("Accept-Encoding", "gzip, deflate, br");
+        return request;
+    }
+
+    private MockHttpServletResponse perform(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                controllerCalls.incrementAndGet();
+                resp.setContentType("application/json");
+                resp.setHeader("ETag", ExpenseResponseCache.etag(renderedVersion.get()));
+                resp.getOutputStream().write(BODY.getBytes(StandardCharsets.UTF_8));
+            }
+        }));
+        return response;
+    }
+
+    private static String gunzip(byte[] gzip) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
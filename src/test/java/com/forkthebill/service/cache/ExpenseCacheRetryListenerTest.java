@@ -0,0 +1,155 @@
+package com.forkthebill.service.cache;
+
+import com.forkthebill.service.config.RetryConfig;
+import com.forkthebill.service.models.entities.Expense;
+import com.forkthebill.service.models.entities.Item;
+import com.forkthebill.service.models.entities.Person;
+import com.forkthebill.service.repositories.ExpenseRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.retry.annotation.Retryable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=true",
+        "spring.jpa.properties.hibernate.cache.region.factory_class=jcache",
+        "spring.jpa.properties.hibernate.javax.cache.provider=com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider",
+        "spring.jpa.properties.hibernate.javax.cache.missing_cache_strategy=create"
+})
+@Import({RetryConfig.class, ExpenseCacheRetryListener.class, ExpenseCacheEvictor.class,
+        ExpenseCacheRetryListenerTest.ClaimingService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ExpenseCacheRetryListenerTest {
+
+    @Autowired
+    private ExpenseRepository expenseRepository;
+
+    @Autowired
+    private ClaimingService claimingService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    public void setup() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Test
+    public void retry_shouldReloadConflictingExpense_andKeepOthersCached() throws SQLException {
+        // Given two cached expenses
+        String conflictingId = saveAndCache("retry-conflict");
+        String bystanderId = saveAndCache("retry-bystander");
+        Cache cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        assertThat(cache.containsEntity(Expense.class, bystanderId)).isTrue();
+
+        // And another node's write that this node's cache has not seen
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "update expenses set version = version + 1 where id = ?")) {
+            statement.setString(1, conflictingId);
+            statement.executeUpdate();
+        }
+
+        // When
+        claimingService.claimFirstItem("retry-conflict");
+
+        // Then the first attempt failed on the stale version and the retry succeeded
+        assertThat(claimingService.attempts()).isEqualTo(2);
+        Expense reloaded = transactionTemplate.execute(status -> {
+            Expense expense = expenseRepository.findBySlug("retry-conflict").orElseThrow();
+            expense.getItems().forEach(item -> item.getClaimedBy().size());
+            return expense;
+        });
+        assertThat(reloaded.getVersion()).isEqualTo(2L);
+        assertThat(reloaded.getItems().get(0).getClaimedBy()).hasSize(1);
+        assertThat(cache.containsEntity(Expense.class, bystanderId)).isTrue();
+    }
+
+    private String saveAndCache(String slug) {
+        String id = transactionTemplate.execute(status -> expenseRepository.save(createExpense(slug)).getId());
+        transactionTemplate.executeWithoutResult(status -> expenseRepository.findBySlug(slug).orElseThrow());
+        return id;
+    }
+
+    private static Expense createExpense(String slug) {
+        Expense expense = Expense.builder()
+                .slug(slug)
+                .createdAt(LocalDateTime.now())
+                .payerName("John Doe")
+                .totalAmount(new BigDecimal("60.00"))
+                .subtotal(new BigDecimal("50.00"))
+                .tax(new BigDecimal("5.00"))
+                .serviceCharge(new BigDecimal("5.00"))
+                .items(new ArrayList<>())
+                .people(new ArrayList<>())
+                .build();
+        expense.addItem(Item.builder()
+                .name("Pizza")
+                .price(new BigDecimal("50.00"))
+                .claimedBy(new ArrayList<>())
+                .build());
+        expense.addPerson(Person.builder()
+                .name("Alice")
+                .subtotal(BigDecimal.ZERO)
+                .taxShare(BigDecimal.ZERO)
+                .serviceChargeShare(BigDecimal.ZERO)
+                .totalOwed(BigDecimal.ZERO)
+                .itemsClaimed(new ArrayList<>())
+                .build());
+        return expense;
+    }
+
+    static class ClaimingService {
+
+        private final ExpenseRepository expenseRepository;
+        private final AtomicInteger attempts = new AtomicInteger();
+
+        ClaimingService(ExpenseRepository expenseRepository) {
+            this.expenseRepository = expenseRepository;
+        }
+
+        @Retryable(retryFor = OptimisticLockingFailureException.class, maxAttempts = 3, listeners = "expenseCacheRetryListener")
+        @Transactional
+        public void claimFirstItem(String slug) {
+            attempts.incrementAndGet();
+            Expense expense = expenseRepository.findBySlug(slug).orElseThrow();
+            expense.claimItem(expense.getItems().get(0).getId(), expense.getPeople().get(0).getId());
+            expenseRepository.save(expense);
+        }
+
+        // Read through the proxy, whose own fields are not the target's
+        public int attempts() {
+            return attempts.get();
+        }
+    }
+}
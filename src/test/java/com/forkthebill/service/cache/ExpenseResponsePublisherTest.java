@@ -0,0 +1,59 @@
+package com.forkthebill.service.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.forkthebill.service.models.dto.ExpenseResponse;
+import com.forkthebill.service.models.entities.Expense;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ExpenseResponsePublisherTest {
+
+    private final ExpenseResponseCache cache = new ExpenseResponseCache(100, DataSize.ofKilobytes(1), 6);
+    private final ExpenseResponsePublisher publisher = new ExpenseResponsePublisher(cache, new ObjectMapper());
+
+    @AfterEach
+    public void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void publishAfterCommit_shouldCacheBodyWithCommittedVersion_onlyAfterCommit() {
+        Expense expense = Expense.builder().slug("test-slug").version(1L).build();
+        ExpenseResponse response = ExpenseResponse.builder().slug("test-slug").payerName("John Doe").build();
+
+        TransactionSynchronizationManager.initSynchronization();
+        publisher.publishAfterCommit(expense, response);
+        assertThat(cache.get("test-slug", "\"v1\"")).isNull();
+
+        // The forced increment happens on flush, before commit
+        expense.setVersion(2L);
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        ExpenseResponseCache.CachedBody body = cache.get("test-slug", "\"v2\"");
+        assertThat(body).isNotNull();
+        assertThat(new String(body.json(), StandardCharsets.UTF_8)).contains("\"payerName\":\"John Doe\"");
+        // Below the compression threshold, so only served uncompressed
+        assertThat(body.gzip()).isNull();
+    }
+
+    @Test
+    public void publishAfterCommit_shouldNotCache_whenTransactionRollsBack() {
+        Expense expense = Expense.builder().slug("test-slug").version(1L).build();
+
+        TransactionSynchronizationManager.initSynchronization();
+        publisher.publishAfterCommit(expense, ExpenseResponse.builder().slug("test-slug").build());
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        assertThat(cache.get("test-slug", "\"v1\"")).isNull();
+    }
+}
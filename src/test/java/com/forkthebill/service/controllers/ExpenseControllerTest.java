@@ -1,16 +1,23 @@
 package com.forkthebill.service.controllers;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.forkthebill.service.datasource.QueryStatisticsFilter;
+import com.forkthebill.service.exceptions.BillExtractionUnavailableException;
 import com.forkthebill.service.exceptions.GlobalExceptionHandler;
 import com.forkthebill.service.exceptions.ResourceNotFoundException;
 import com.forkthebill.service.exceptions.ValidationException;
+import com.forkthebill.service.models.dto.BillParsedData;
 import com.forkthebill.service.models.dto.ClaimItemRequest;
+import com.forkthebill.service.models.dto.CompactExpenseResponse;
 import com.forkthebill.service.models.dto.ExpenseRequest;
 import com.forkthebill.service.models.dto.ExpenseResponse;
+import com.forkthebill.service.models.dto.ExpenseSummary;
+import com.forkthebill.service.models.dto.ExpenseSummaryPage;
 import com.forkthebill.service.models.dto.ItemRequest;
 import com.forkthebill.service.models.dto.PersonRequest;
 import com.forkthebill.service.models.dto.PersonResponse;
 import com.forkthebill.service.services.ExpenseService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -20,28 +27,38 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.never;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(MockitoExtension.class)
@@ -82,7 +99,7 @@ public class ExpenseControllerTest {
                 .serviceCharge(request.getServiceCharge())
                 .build();
         
-        when(expenseService.createExpense(any(ExpenseRequest.class))).thenReturn(response);
+        when(expenseService.createExpense(any(ExpenseRequest.class), isNull())).thenReturn(response);
 
         // When & Then
         mockMvc.perform(post("/expense")
@@ -95,6 +112,54 @@ public class ExpenseControllerTest {
                 .andExpect(jsonPath("$.totalAmount").value(request.getTotalAmount().doubleValue()));
     }
     
+    @Test
+    public void createExpense_shouldPassPayerToken() throws Exception {
+        ExpenseRequest request = createValidExpenseRequest();
+        ExpenseResponse response = ExpenseResponse.builder()
+                .id("1")
+                .slug("test-slug")
+                .build();
+        when(expenseService.createExpense(any(ExpenseRequest.class), eq("payer-token-0123456789"))).thenReturn(response);
+
+        mockMvc.perform(post("/expense")
+                .header("X-Payer-Token", "payer-token-0123456789")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.slug").value("test-slug"));
+    }
+
+    @Test
+    public void listPayerExpenses_shouldReturnPageWithoutCaching() throws Exception {
+        ExpenseSummary summary = new ExpenseSummary("1", "test-slug", "Pizza Place", new BigDecimal("42.00"),
+                LocalDateTime.now(), 1L, 2L);
+        ExpenseSummaryPage page = ExpenseSummaryPage.builder()
+                .expenses(List.of(summary))
+                .nextCursor("next")
+                .build();
+        when(expenseService.listPayerExpenses("payer-token-0123456789", "cursor", 10)).thenReturn(page);
+
+        mockMvc.perform(get("/expense")
+                .header("X-Payer-Token", "payer-token-0123456789")
+                .param("cursor", "cursor")
+                .param("limit", "10"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "no-store"))
+                .andExpect(jsonPath("$.expenses[0].slug").value("test-slug"))
+                .andExpect(jsonPath("$.expenses[0].peoplePending").value(2))
+                .andExpect(jsonPath("$.nextCursor").value("next"));
+    }
+
+    @Test
+    public void listPayerExpenses_shouldReturnBadRequest_whenTokenIsMissing() throws Exception {
+        when(expenseService.listPayerExpenses(isNull(), isNull(), isNull()))
+                .thenThrow(new ValidationException("X-Payer-Token is required"));
+
+        mockMvc.perform(get("/expense"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("X-Payer-Token is required"));
+    }
+
     @Test
     public void getExpenseBySlug_shouldReturnExpense_whenExpenseExists() throws Exception {
         // Given
@@ -121,6 +186,51 @@ public class ExpenseControllerTest {
                 .andExpect(jsonPath("$.totalAmount").value(100.00));
     }
     
+    @Test
+    public void getExpenseBySlug_shouldReturnVersionAsEtag() throws Exception {
+        // Given
+        String slug = "test-slug";
+        ExpenseResponse response = ExpenseResponse.builder()
+                .id("1")
+                .slug(slug)
+                .payerName("John Doe")
+                .version(7L)
+                .build();
+
+        when(expenseService.getExpenseBySlug(slug)).thenReturn(response);
+
+        // When & Then
+        mockMvc.perform(get("/expense/{slug}", slug))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"v7\""))
+                .andExpect(jsonPath("$.version").doesNotExist());
+
+        mockMvc.perform(get("/expense/{slug}", slug).header("If-None-Match", "\"v7\""))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    public void getExpenseBySlug_shouldReturnCompactShape_whenRequested() throws Exception {
+        // Given
+        String slug = "test-slug";
+        CompactExpenseResponse response = CompactExpenseResponse.builder()
+                .id("1")
+                .slug(slug)
+                .payerName("John Doe")
+                .claims(new int[][]{{0}, {0, 1}})
+                .version(7L)
+                .build();
+
+        when(expenseService.getCompactExpenseBySlug(slug)).thenReturn(response);
+
+        // When & Then
+        mockMvc.perform(get("/expense/{slug}", slug).accept(CompactExpenseResponse.MEDIA_TYPE))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", CompactExpenseResponse.MEDIA_TYPE))
+                .andExpect(header().string("ETag", "\"v7\""))
+                .andExpect(jsonPath("$.claims[1][1]").value(1));
+    }
+
     @Test
     public void getExpenseBySlug_shouldReturn404_whenExpenseDoesNotExist() throws Exception {
         // Given
@@ -239,6 +349,147 @@ public class ExpenseControllerTest {
                 .andExpect(jsonPath("$.slug").value(slug));
     }
     
+    @Test
+    public void createExpenseFromImage_shouldMergePages_whenSeveralBillsAreUploaded() throws Exception {
+        MockMultipartFile first = new MockMultipartFile("bill", "page-1.jpg", "image/jpeg", new byte[]{1});
+        MockMultipartFile second = new MockMultipartFile("bill", "page-2.png", "image/png", new byte[]{2});
+        ExpenseResponse response = ExpenseResponse.builder()
+                .id("1")
+                .slug("test-slug")
+                .build();
+        when(expenseService.createExpenseFromImages(any(), eq("John Doe"), isNull())).thenReturn(response);
+
+        mockMvc.perform(multipart("/expense/upload").file(first).file(second).param("payerName", "John Doe"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.slug").value("test-slug"));
+        verify(expenseService).createExpenseFromImages(
+                argThat(pages -> pages.size() == 2
+                        && pages.get(0).data()[0] == 1 && pages.get(0).contentType().equals("image/jpeg")
+                        && pages.get(1).data()[0] == 2 && pages.get(1).contentType().equals("image/png")),
+                eq("John Doe"), isNull());
+        verify(expenseService, never()).createExpenseFromImage(any(), any(), any(), any());
+    }
+
+    @Test
+    public void createExpenseFromImage_shouldPassContentType_soDigitalReceiptsCanBeReadLocally() throws Exception {
+        MockMultipartFile receipt = new MockMultipartFile("bill", "receipt.pdf", "application/pdf", new byte[]{1});
+        ExpenseResponse response = ExpenseResponse.builder()
+                .id("1")
+                .slug("test-slug")
+                .build();
+        when(expenseService.createExpenseFromImage(any(), eq("application/pdf"), eq("John Doe"), isNull())).thenReturn(response);
+
+        mockMvc.perform(multipart("/expense/upload").file(receipt).param("payerName", "John Doe"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.slug").value("test-slug"));
+    }
+
+    @Test
+    public void createExpenseFromImageStreaming_shouldSendItemsThenExpense() throws Exception {
+        // Given
+        MockMultipartFile bill = new MockMultipartFile("bill", "bill.png", "image/png", new byte[]{1, 2, 3});
+        ExpenseResponse response = ExpenseResponse.builder()
+                .id("1")
+                .slug("test-slug")
+                .build();
+        when(expenseService.createExpenseFromImageStreaming(any(), eq("image/png"), eq("John Doe"), isNull(), any())).thenAnswer(invocation -> {
+            Consumer<BillParsedData.BillItem> onItem = invocation.getArgument(4);
+            onItem.accept(BillParsedData.BillItem.builder().name("Burger").price(new BigDecimal("12.50")).quantity(1).build());
+            return response;
+        });
+
+        // When
+        MvcResult result = mockMvc.perform(multipart("/expense/upload/stream").file(bill).param("payerName", "John Doe"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        result.getAsyncResult(5_000);
+
+        // Then
+        String events = result.getResponse().getContentAsString();
+        assertTrue(events.indexOf("event:item") < events.indexOf("event:expense"));
+        assertTrue(events.contains("\"name\":\"Burger\""));
+        assertTrue(events.contains("\"slug\":\"test-slug\""));
+    }
+
+    @Test
+    public void createExpenseFromImageStreaming_shouldSendErrorEvent_whenExtractionIsUnavailable() throws Exception {
+        MockMultipartFile bill = new MockMultipartFile("bill", "bill.jpg", "image/jpeg", new byte[]{1, 2, 3});
+        when(expenseService.createExpenseFromImageStreaming(any(), any(), eq("John Doe"), isNull(), any()))
+                .thenThrow(new BillExtractionUnavailableException("Too many bill uploads right now, please retry shortly",
+                        Duration.ofSeconds(5), null));
+
+        MvcResult result = mockMvc.perform(multipart("/expense/upload/stream").file(bill).param("payerName", "John Doe"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        result.getAsyncResult(5_000);
+
+        String events = result.getResponse().getContentAsString();
+        assertTrue(events.contains("event:error"));
+        assertTrue(events.contains("retry:5000"));
+        assertTrue(events.contains("\"status\":503"));
+    }
+
+    @Test
+    public void createExpenseFromImageStreaming_shouldSendEvents_withQueryStatisticsHeadersOn() throws Exception {
+        // Given the local profile's filter, which buffers other responses to add its headers
+        MockMvc localMockMvc = MockMvcBuilders.standaloneSetup(expenseController)
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .addFilters(new QueryStatisticsFilter(new SimpleMeterRegistry(), true))
+                .build();
+        MockMultipartFile bill = new MockMultipartFile("bill", "bill.jpg", "image/jpeg", new byte[]{1, 2, 3});
+        when(expenseService.createExpenseFromImageStreaming(any(), any(), eq("John Doe"), isNull(), any()))
+                .thenReturn(ExpenseResponse.builder().id("1").slug("test-slug").build());
+
+        // When
+        MvcResult result = localMockMvc.perform(multipart("/expense/upload/stream").file(bill).param("payerName", "John Doe"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        result.getAsyncResult(5_000);
+
+        // Then the events reach the client instead of the filter's buffer
+        assertTrue(result.getResponse().getContentAsString().contains("\"slug\":\"test-slug\""));
+    }
+
+    @Test
+    public void claimItem_shouldClaimUnits_whenUnitsGiven() throws Exception {
+        // Given
+        String slug = "test-slug";
+        String itemId = "item-1";
+        UUID personId = UUID.randomUUID();
+        ClaimItemRequest request = ClaimItemRequest.builder()
+                .personId(personId)
+                .units(2)
+                .build();
+
+        ExpenseResponse response = ExpenseResponse.builder()
+                .id("1")
+                .slug(slug)
+                .build();
+
+        when(expenseService.claimItemUnits(eq(slug), eq(itemId), eq(personId), eq(2))).thenReturn(response);
+
+        // When & Then
+        mockMvc.perform(post("/expense/{slug}/items/{itemId}/claim", slug, itemId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.slug").value(slug));
+        verify(expenseService, never()).claimItem(any(), any(), any());
+    }
+
+    @Test
+    public void claimItem_shouldReturn400_whenUnitsNotPositive() throws Exception {
+        ClaimItemRequest request = ClaimItemRequest.builder()
+                .personId(UUID.randomUUID())
+                .units(0)
+                .build();
+
+        mockMvc.perform(post("/expense/{slug}/items/{itemId}/claim", "test-slug", "item-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     public void claimItem_shouldReturn404_whenExpenseNotFound() throws Exception {
         // Given
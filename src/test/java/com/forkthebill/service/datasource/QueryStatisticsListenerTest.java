@@ -0,0 +1,56 @@
+package com.forkthebill.service.datasource;
+
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class QueryStatisticsListenerTest {
+
+    private final JdbcTemplate jdbcTemplate = new JdbcTemplate(proxied(Duration.ofMinutes(1)));
+
+    @AfterEach
+    public void tearDown() {
+        QueryStatistics.end();
+    }
+
+    @Test
+    public void afterQuery_shouldCountStatementsOfCurrentRequest() {
+        QueryStatistics statistics = QueryStatistics.start("GET /expense/abc");
+
+        jdbcTemplate.queryForObject("SELECT 1", Integer.class);
+        jdbcTemplate.queryForObject("SELECT 2", Integer.class);
+
+        assertThat(statistics.getStatements()).isEqualTo(2);
+        assertThat(statistics.getSlowStatements()).isZero();
+    }
+
+    @Test
+    public void afterQuery_shouldCountSlowStatements() {
+        JdbcTemplate slowJdbcTemplate = new JdbcTemplate(proxied(Duration.ZERO));
+        QueryStatistics statistics = QueryStatistics.start("GET /expense/abc");
+
+        slowJdbcTemplate.queryForObject("SELECT 1", Integer.class);
+
+        assertThat(statistics.getSlowStatements()).isEqualTo(1);
+    }
+
+    @Test
+    public void afterQuery_shouldIgnoreStatementsOutsideRequest() {
+        jdbcTemplate.queryForObject("SELECT 1", Integer.class);
+
+        assertThat(QueryStatistics.current()).isNull();
+    }
+
+    private static DataSource proxied(Duration slowThreshold) {
+        return ProxyDataSourceBuilder.create(new DriverManagerDataSource("jdbc:h2:mem:query-statistics", "sa", ""))
+                .listener(new QueryStatisticsListener(slowThreshold, 0.0, 0.0))
+                .build();
+    }
+}
@@ -0,0 +1,155 @@
+package com.forkthebill.service.datasource;
+
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ReplicaRoutingDataSourceTest {
+
+    private final AtomicBoolean replicaUsable = new AtomicBoolean(true);
+    private DataSource dataSource;
+
+    @BeforeEach
+    public void setUp() {
+        DataSource primary = database("primary");
+        DataSource replica = database("replica");
+
+        LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy(primary);
+        proxy.setReadOnlyDataSource(new ReplicaRoutingDataSource(primary, replica, replicaUsable::get));
+        dataSource = proxy;
+    }
+
+    @AfterEach
+    public void tearDown() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    public void readOnlyConnection_shouldUseReplica_whenReplicaIsUsable() throws SQLException {
+        assertThat(serverName(true)).isEqualTo("replica");
+    }
+
+    @Test
+    public void writableConnection_shouldUsePrimary() throws SQLException {
+        assertThat(serverName(false)).isEqualTo("primary");
+    }
+
+    @Test
+    public void readOnlyConnection_shouldUsePrimary_whenReplicaIsLagging() throws SQLException {
+        replicaUsable.set(false);
+
+        assertThat(serverName(true)).isEqualTo("primary");
+    }
+
+    @Test
+    public void readOnlyConnection_shouldUsePrimary_whenPrimaryIsForced() throws SQLException {
+        String name = ReadRoutingContext.onPrimary(() -> {
+            try {
+                return serverName(true);
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        assertThat(name).isEqualTo("primary");
+        assertThat(ReadRoutingContext.isPrimaryForced()).isFalse();
+    }
+
+    @Test
+    public void routesToReplica_shouldBeFalse_forRecentlyWrittenSlug() {
+        ReplicaReadRouting routing = new ReplicaReadRouting(replicaUsable::get, Duration.ofMinutes(1));
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertThat(routing.routesToReplica("abc")).isTrue();
+
+        routing.stickToPrimary("abc");
+
+        assertThat(routing.routesToReplica("abc")).isFalse();
+        assertThat(routing.routesToReplica("other")).isTrue();
+    }
+
+    @Test
+    public void routesToReplica_shouldBeTrue_onceStickyWindowHasPassed() {
+        ReplicaReadRouting routing = new ReplicaReadRouting(replicaUsable::get, Duration.ZERO);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        routing.stickToPrimary("abc");
+
+        assertThat(routing.routesToReplica("abc")).isTrue();
+    }
+
+    @Test
+    public void routesToReplica_shouldBeFalse_outsideReadOnlyTransaction() {
+        ReplicaReadRouting routing = new ReplicaReadRouting(replicaUsable::get, Duration.ofMinutes(1));
+
+        assertThat(routing.routesToReplica("abc")).isFalse();
+    }
+
+    private String serverName(boolean readOnly) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setReadOnly(readOnly);
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT name FROM server")) {
+                resultSet.next();
+                return resultSet.getString(1);
+            }
+        }
+    }
+
+    private static DataSource database(String name) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:routing-" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS server (name VARCHAR(20))");
+        jdbcTemplate.execute("DELETE FROM server");
+        jdbcTemplate.update("INSERT INTO server (name) VALUES (?)", name);
+        return dataSource;
+    }
+
+    @Test
+    public void stickToPrimary_shouldHandClientACookieScopedToTheSlug() {
+        ReplicaReadRouting routing = new ReplicaReadRouting(replicaUsable::get, Duration.ofSeconds(5));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest(), response));
+
+        routing.stickToPrimary("abc");
+
+        assertThat(response.getHeader(HttpHeaders.SET_COOKIE))
+                .contains(ReplicaReadRouting.STICKY_COOKIE + "=abc")
+                .contains("Path=/expense/abc")
+                .contains("Max-Age=5");
+    }
+
+    @Test
+    public void routesToReplica_shouldBeFalse_forSlugInStickyCookie_onAnotherNode() {
+        ReplicaReadRouting otherNode = new ReplicaReadRouting(replicaUsable::get, Duration.ofSeconds(5));
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(new Cookie(ReplicaReadRouting.STICKY_COOKIE, "abc"));
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request, new MockHttpServletResponse()));
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertThat(otherNode.routesToReplica("abc")).isFalse();
+        assertThat(otherNode.routesToReplica("other")).isTrue();
+    }
+}
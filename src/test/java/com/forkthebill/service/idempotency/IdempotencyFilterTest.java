@@ -0,0 +1,192 @@
+package com.forkthebill.service.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockMultipartHttpServletRequest;
+import org.springframework.mock.web.MockPart;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IdempotencyFilterTest {
+
+    private IdempotencyFilter filter;
+    private final AtomicInteger controllerCalls = new AtomicInteger();
+    private int controllerStatus = 201;
+
+    @BeforeEach
+    public void setup() {
+        filter = new IdempotencyFilter(new InMemoryIdempotencyStore(100, Duration.ofHours(1)),
+                new ObjectMapper().findAndRegisterModules(), new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void doFilter_shouldReplayOriginalResponse_whenKeyIsReused() throws Exception {
+        MockHttpServletResponse first = perform(request("/expense/upload", "key-1"));
+        MockHttpServletResponse retry = perform(request("/expense/upload", "key-1"));
+
+        assertThat(controllerCalls).hasValue(1);
+        assertThat(retry.getStatus()).isEqualTo(201);
+        assertThat(retry.getContentAsString()).isEqualTo("{\"call\":1}");
+        assertThat(retry.getContentType()).isEqualTo("application/json");
+        assertThat(retry.getHeader(IdempotencyFilter.IDEMPOTENT_REPLAYED)).isEqualTo("true");
+        assertThat(first.getHeader(IdempotencyFilter.IDEMPOTENT_REPLAYED)).isNull();
+    }
+
+    @Test
+    public void doFilter_shouldReplayClientErrors() throws Exception {
+        controllerStatus = 400;
+
+        perform(request("/expense/test-slug/items/item-1/claim", "key-1"));
+        MockHttpServletResponse retry = perform(request("/expense/test-slug/items/item-1/claim", "key-1"));
+
+        assertThat(controllerCalls).hasValue(1);
+        assertThat(retry.getStatus()).isEqualTo(400);
+    }
+
+    @Test
+    public void doFilter_shouldRunAgain_afterServerError() throws Exception {
+        controllerStatus = 502;
+        perform(request("/expense/upload", "key-1"));
+
+        controllerStatus = 201;
+        MockHttpServletResponse retry = perform(request("/expense/upload", "key-1"));
+
+        assertThat(controllerCalls).hasValue(2);
+        assertThat(retry.getStatus()).isEqualTo(201);
+        assertThat(retry.getContentAsString()).isEqualTo("{\"call\":2}");
+    }
+
+    @Test
+    public void doFilter_shouldTreatSameKeyOnAnotherPathAsNewRequest() throws Exception {
+        perform(request("/expense/a/items/1/claim", "key-1"));
+        perform(request("/expense/a/items/2/claim", "key-1"));
+
+        assertThat(controllerCalls).hasValue(2);
+    }
+
+    @Test
+    public void doFilter_shouldReturnConflict_whileFirstRequestIsRunning() throws Exception {
+        AtomicReference<MockHttpServletResponse> concurrentRetry = new AtomicReference<>();
+
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        filter.doFilter(request("/expense", "key-1"), first, new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException, ServletException {
+                // The client gives up and retries before this request has finished
+                concurrentRetry.set(perform(request("/expense", "key-1")));
+                resp.setStatus(201);
+            }
+        }));
+
+        assertThat(first.getStatus()).isEqualTo(201);
+        assertThat(concurrentRetry.get().getStatus()).isEqualTo(409);
+        assertThat(concurrentRetry.get().getHeader("Retry-After")).isEqualTo("1");
+        assertThat(controllerCalls).hasValue(0);
+    }
+
+    @Test
+    public void doFilter_shouldReplayLocationAndEtag() throws Exception {
+        perform(request("/expense", "key-1"));
+        MockHttpServletResponse retry = perform(request("/expense", "key-1"));
+
+        assertThat(retry.getHeader("Location")).isEqualTo("/expense/slug-1");
+        assertThat(retry.getHeader("ETag")).isEqualTo("\"v1\"");
+    }
+
+    @Test
+    public void doFilter_shouldRejectKeyReusedForDifferentBody() throws Exception {
+        MockHttpServletResponse first = perform(request("/expense", "key-1", "{\"payerName\":\"Ann\"}"));
+        MockHttpServletResponse sameBody = perform(request("/expense", "key-1", "{\"payerName\":\"Ann\"}"));
+        MockHttpServletResponse otherBody = perform(request("/expense", "key-1", "{\"payerName\":\"Bob\"}"));
+
+        assertThat(controllerCalls).hasValue(1);
+        assertThat(first.getContentAsString()).isEqualTo("{\"call\":1,\"read\":19}");
+        assertThat(sameBody.getStatus()).isEqualTo(201);
+        assertThat(otherBody.getStatus()).isEqualTo(422);
+    }
+
+    @Test
+    public void doFilter_shouldRejectKeyReusedForDifferentUpload() throws Exception {
+        perform(upload("key-1", new byte[]{1, 2, 3}));
+        MockHttpServletResponse samePhoto = perform(upload("key-1", new byte[]{1, 2, 3}));
+        MockHttpServletResponse otherPhoto = perform(upload("key-1", new byte[]{4, 5, 6}));
+
+        assertThat(controllerCalls).hasValue(1);
+        assertThat(samePhoto.getStatus()).isEqualTo(201);
+        assertThat(otherPhoto.getStatus()).isEqualTo(422);
+    }
+
+    @Test
+    public void doFilter_shouldRejectOverlongKey() throws Exception {
+        MockHttpServletResponse response = perform(request("/expense", "k".repeat(256)));
+
+        assertThat(response.getStatus()).isEqualTo(400);
+        assertThat(controllerCalls).hasValue(0);
+    }
+
+    @Test
+    public void doFilter_shouldIgnoreRequestsWithoutKey() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/expense");
+
+        perform(request);
+        perform(request);
+
+        assertThat(controllerCalls).hasValue(2);
+    }
+
+    private static MockHttpServletRequest request(String path, String key) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+        request.addHeader(IdempotencyFilter.IDEMPOTENCY_KEY, key);
+        return request;
+    }
+
+    private static MockHttpServletRequest request(String path, String key, String json) {
+        MockHttpServletRequest request = request(path, key);
+        request.setContentType("application/json");
+        request.setContent(json.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+
+    private static MockHttpServletRequest upload(String key, byte[] photo) {
+        MockMultipartHttpServletRequest request = new MockMultipartHttpServletRequest();
+        request.setRequestURI("/expense/upload");
+        request.setContentType("multipart/form-data; boundary=test");
+        request.addHeader(IdempotencyFilter.IDEMPOTENCY_KEY, key);
+        request.addPart(new MockPart("bill", "bill.jpg", photo));
+        return request;
+    }
+
+    private MockHttpServletResponse perform(MockHttpServletRequest request) throws IOException, ServletException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                int call = controllerCalls.incrementAndGet();
+                // The body must still be readable behind the filter
+                int read = req.getInputStream().readAllBytes().length;
+                resp.setStatus(controllerStatus);
+                resp.setContentType("application/json");
+                resp.setHeader("Location", "/expense/slug-" + call);
+                resp.setHeader("ETag", "\"v" + call + "\"");
+                resp.getOutputStream().write(("{\"call\":" + call + (read > 0 ? ",\"read\":" + read : "") + "}")
+                        .getBytes(StandardCharsets.UTF_8));
+            }
+        }));
+        return response;
+    }
+}
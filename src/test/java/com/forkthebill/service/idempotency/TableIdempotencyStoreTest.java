@@ -0,0 +1,64 @@
+package com.forkthebill.service.idempotency;
+
+import com.forkthebill.service.repositories.IdempotencyRecordRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Each store call runs in its own transaction, as it does behind the filter
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class TableIdempotencyStoreTest {
+
+    @Autowired
+    private IdempotencyRecordRepository repository;
+
+    private TableIdempotencyStore store;
+
+    @BeforeEach
+    public void setup() {
+        repository.deleteAll();
+        store = new TableIdempotencyStore(repository, Duration.ofHours(24), Duration.ofMinutes(2));
+    }
+
+    @Test
+    public void begin_shouldHandOutKeyOnce_andReturnStoredResponseAfterCompletion() {
+        assertThat(store.begin("key")).isEmpty();
+        assertThat(store.begin("key")).hasValueSatisfying(stored -> assertThat(stored.inProgress()).isTrue());
+
+        store.complete("key", new IdempotencyStore.StoredResponse(201, "application/json", "{}".getBytes(),
+                "request-hash", Map.of("Location", "/expense/test-slug", "ETag", "\"v0\"")));
+
+        assertThat(store.begin("key")).hasValueSatisfying(stored -> {
+            assertThat(stored.status()).isEqualTo(201);
+            assertThat(stored.contentType()).isEqualTo("application/json");
+            assertThat(stored.body()).isEqualTo("{}".getBytes());
+            assertThat(stored.requestHash()).isEqualTo("request-hash");
+            assertThat(stored.headers()).containsEntry("Location", "/expense/test-slug").containsEntry("ETag", "\"v0\"");
+        });
+    }
+
+    @Test
+    public void begin_shouldHandOutKeyAgain_afterRelease() {
+        store.begin("key");
+        store.release("key");
+
+        assertThat(store.begin("key")).isEmpty();
+    }
+
+    @Test
+    public void begin_shouldTakeOverKey_whenFirstRequestOutlivedLockTimeout() {
+        TableIdempotencyStore impatient = new TableIdempotencyStore(repository, Duration.ofHours(24), Duration.ZERO);
+        impatient.begin("key");
+
+        assertThat(impatient.begin("key")).isEmpty();
+    }
+}
@@ -1,12 +1,14 @@
 package com.forkthebill.service.models.entities;
 
 import com.forkthebill.service.exceptions.ResourceNotFoundException;
+import com.forkthebill.service.exceptions.ValidationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -483,4 +485,216 @@ class ExpenseTest {
         // person2: $25.00 (half of item1) = $25.00
         assertEquals(new BigDecimal("25.00"), person2.getSubtotal());
     }
+
+    @Test
+    void claimItemUnits_ShouldChargeUnitPriceTimesUnits() {
+        // Given - 3 beers for $18.00 on one line
+        Item beers = Item.builder()
+                .id("beers")
+                .name("Beer")
+                .price(new BigDecimal("18.00"))
+                .quantity(3)
+                .totalQuantity(3)
+                .claimedBy(new ArrayList<>())
+                .build();
+        expense.addItem(beers);
+        expense.addPerson(person1);
+        expense.addPerson(person2);
+
+        // When
+        expense.claimItemUnits("beers", person1.getId(), 2);
+        expense.claimItemUnits("beers", person2.getId(), 1);
+
+        // Then
+        assertEquals(new BigDecimal("12.00"), person1.getSubtotal());
+        assertEquals(new BigDecimal("6.00"), person2.getSubtotal());
+        assertEquals(List.of(person1.getId(), person2.getId()), beers.getClaimedBy());
+        assertTrue(person1.getItemsClaimed().contains("beers"));
+    }
+
+    @Test
+    void claimItemUnits_ShouldSplitRemainingUnitsAmongSharers() {
+        // Given
+        Item beers = Item.builder()
+                .id("beers")
+                .name("Beer")
+                .price(new BigDecimal("18.00"))
+                .quantity(3)
+                .totalQuantity(3)
+                .claimedBy(new ArrayList<>())
+                .build();
+        expense.addItem(beers);
+        expense.addPerson(person1);
+        expense.addPerson(person2);
+
+        // When - Alice takes one beer, Bob shares what is left
+        expense.claimItemUnits("beers", person1.getId(), 1);
+        expense.claimItem("beers", person2.getId());
+
+        // Then
+        assertEquals(new BigDecimal("6.00"), person1.getSubtotal());
+        assertEquals(new BigDecimal("12.00"), person2.getSubtotal());
+    }
+
+    @Test
+    void claimItemUnits_ShouldRejectMoreUnitsThanAreLeft() {
+        // Given
+        Item beers = Item.builder()
+                .id("beers")
+                .name("Beer")
+                .price(new BigDecimal("18.00"))
+                .quantity(3)
+                .totalQuantity(3)
+                .claimedBy(new ArrayList<>())
+                .build();
+        expense.addItem(beers);
+        expense.addPerson(person1);
+        expense.addPerson(person2);
+        expense.claimItemUnits("beers", person1.getId(), 2);
+
+        // When & Then
+        assertThrows(ValidationException.class, () -> expense.claimItemUnits("beers", person2.getId(), 2));
+
+        // Changing your own claim counts your current units as available
+        expense.claimItemUnits("beers", person1.getId(), 3);
+        assertEquals(3, beers.getUnitClaims().get(person1.getId()));
+    }
+
+    @Test
+    void unclaimItem_ShouldRemoveUnitClaim() {
+        // Given
+        Item beers = Item.builder()
+                .id("beers")
+                .name("Beer")
+                .price(new BigDecimal("18.00"))
+                .quantity(3)
+                .totalQuantity(3)
+                .claimedBy(new ArrayList<>())
+                .build();
+        expense.addItem(beers);
+        expense.addPerson(person1);
+        expense.claimItemUnits("beers", person1.getId(), 2);
+
+        // When
+        expense.unclaimItem("beers", person1.getId());
+
+        // Then
+        assertTrue(beers.getUnitClaims().isEmpty());
+        assertEquals(0, person1.getSubtotal().compareTo(BigDecimal.ZERO));
+    }
+
+    @Test
+    void consolidateUnitRows_ShouldMergeRowsIntoUnitClaims() {
+        // Given - 3 beers stored the old way, one row per unit
+        for (int i = 0; i < 3; i++) {
+            expense.addItem(Item.builder()
+                    .id("beer-" + i)
+                    .name("Beer")
+                    .price(new BigDecimal("6.00"))
+                    .quantity(1)
+                    .totalQuantity(3)
+                    .claimedBy(new ArrayList<>())
+                    .build());
+        }
+        expense.addItem(item1);
+        expense.addPerson(person1);
+        expense.addPerson(person2);
+        expense.claimItem("beer-0", person1.getId());
+        expense.claimItem("beer-1", person1.getId());
+        expense.claimItem("beer-2", person2.getId());
+
+        // When
+        int removed = expense.consolidateUnitRows();
+
+        // Then
+        assertEquals(2, removed);
+        assertEquals(2, expense.getItems().size());
+        Item beers = expense.findItemById("beer-0");
+        assertEquals(new BigDecimal("18.00"), beers.getPrice());
+        assertEquals(3, beers.getQuantity());
+        assertEquals(3, beers.getTotalQuantity());
+        assertEquals(2, beers.getUnitClaims().get(person1.getId()));
+        assertEquals(1, beers.getUnitClaims().get(person2.getId()));
+        assertEquals(List.of("beer-0"), person1.getItemsClaimed());
+        assertEquals(List.of("beer-0"), person2.getItemsClaimed());
+        assertEquals(new BigDecimal("12.00"), person1.getSubtotal());
+        assertEquals(new BigDecimal("6.00"), person2.getSubtotal());
+    }
+
+    @Test
+    void consolidateUnitRows_ShouldLeaveSharedRowsAlone() {
+        // Given
+        for (int i = 0; i < 2; i++) {
+            expense.addItem(Item.builder()
+                    .id("beer-" + i)
+                    .name("Beer")
+                    .price(new BigDecimal("6.00"))
+                    .quantity(1)
+                    .totalQuantity(2)
+                    .claimedBy(new ArrayList<>())
+                    .build());
+        }
+        expense.addPerson(person1);
+        expense.addPerson(person2);
+        expense.claimItem("beer-0", person1.getId());
+        expense.claimItem("beer-0", person2.getId());
+
+        // When & Then
+        assertEquals(0, expense.consolidateUnitRows());
+        assertEquals(2, expense.getItems().size());
+    }
+
+    @Test
+    void consolidateUnitRows_ShouldKeepSeparateBillLinesApart() {
+        // Given - two "2 x Beer" lines with a different dish between them, and two more lines back to back
+        for (String id : List.of("a-0", "a-1", "mid", "b-0", "b-1", "c-0", "c-1")) {
+            boolean beer = !id.equals("mid");
+            expense.addItem(Item.builder()
+                    .id(id)
+                    .name(beer ? "Beer" : "Fries")
+                    .price(new BigDecimal("6.00"))
+                    .quantity(1)
+                    .totalQuantity(beer ? 2 : 1)
+                    .claimedBy(new ArrayList<>())
+                    .build());
+        }
+        expense.addPerson(person1);
+        expense.claimItem("a-0", person1.getId());
+
+        // When
+        int removed = expense.consolidateUnitRows();
+
+        // Then
+        assertEquals(3, removed);
+        assertEquals(List.of("a-0", "mid", "b-0", "c-0"), expense.getItems().stream().map(Item::getId).toList());
+        for (String id : List.of("a-0", "b-0", "c-0")) {
+            assertEquals(new BigDecimal("12.00"), expense.findItemById(id).getPrice());
+            assertEquals(2, expense.findItemById(id).getTotalQuantity());
+        }
+        assertEquals(1, expense.findItemById("a-0").getUnitClaims().get(person1.getId()));
+    }
+
+    @Test
+    void consolidateUnitRows_ShouldLeaveWholeLineAlone_whenOneRowIsShared() {
+        // Given
+        for (int i = 0; i < 3; i++) {
+            expense.addItem(Item.builder()
+                    .id("beer-" + i)
+                    .name("Beer")
+                    .price(new BigDecimal("6.00"))
+                    .quantity(1)
+                    .totalQuantity(3)
+                    .claimedBy(new ArrayList<>())
+                    .build());
+        }
+        expense.addPerson(person1);
+        expense.addPerson(person2);
+        expense.claimItem("beer-0", person1.getId());
+        expense.claimItem("beer-0", person2.getId());
+
+        // When & Then
+        assertEquals(0, expense.consolidateUnitRows());
+        assertEquals(3, expense.getItems().size());
+        assertEquals(1, expense.findItemById("beer-1").getQuantity());
+    }
 }
@@ -0,0 +1,118 @@
+package com.forkthebill.service.ratelimit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RateLimitFilterTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private RateLimitFilter filter;
+
+    @BeforeEach
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        RequestRateLimiter rateLimiter = new RequestRateLimiter(meterRegistry, 1_000, 2,
+                "2/1h", "3/1h", "1/1h", "none", "1/1h");
+        filter = new RateLimitFilter(rateLimiter, new ObjectMapper().findAndRegisterModules());
+    }
+
+    @Test
+    public void doFilter_shouldRefusePollsOverClientBudget_withRetryAfter() throws Exception {
+        assertThat(perform("GET", "/expense/slug-a", "10.0.0.1").getStatus()).isEqualTo(200);
+        assertThat(perform("GET", "/expense/slug-b", "10.0.0.1").getStatus()).isEqualTo(200);
+
+        MockHttpServletResponse refused = perform("GET", "/expense/slug-c", "10.0.0.1");
+
+        assertThat(refused.getStatus()).isEqualTo(429);
+        assertThat(Long.parseLong(refused.getHeader("Retry-After"))).isBetween(1L, 1_800L);
+        assertThat(refused.getContentAsString()).contains("\"status\":429");
+        assertThat(meterRegistry.get("expense.rate-limit.rejected").tag("budget", "poll").tag("limit", "client")
+                .counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void doFilter_shouldRefusePollsOverSlugBudget_acrossClients() throws Exception {
+        perform("GET", "/expense/slug-a", "10.0.0.1");
+        perform("GET", "/expense/slug-a", "10.0.0.2");
+        perform("GET", "/expense/slug-a", "10.0.0.3");
+
+        assertThat(perform("GET", "/expense/slug-a", "10.0.0.4").getStatus()).isEqualTo(429);
+        assertThat(perform("GET", "/expense/slug-b", "10.0.0.4").getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    public void doFilter_shouldKeepSeparateBudgets_forPollsMutationsAndUploads() throws Exception {
+        assertThat(perform("POST", "/expense/upload", "10.0.0.1").getStatus()).isEqualTo(200);
+        assertThat(perform("POST", "/expense/upload", "10.0.0.1").getStatus()).isEqualTo(429);
+
+        assertThat(perform("POST", "/expense/slug-a/items/1/claim", "10.0.0.1").getStatus()).isEqualTo(200);
+        assertThat(perform("PUT", "/expense/slug-a", "10.0.0.1").getStatus()).isEqualTo(429);
+
+        assertThat(perform("GET", "/expense/slug-a", "10.0.0.1").getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    public void doFilter_shouldGiveEachClientIdItsOwnBudget_upToClientsPerAddress() throws Exception {
+        assertThat(perform("GET", "/expense/slug-a", "10.0.0.1", "ann").getStatus()).isEqualTo(200);
+        assertThat(perform("GET", "/expense/slug-b", "10.0.0.1", "ann").getStatus()).isEqualTo(200);
+        assertThat(perform("GET", "/expense/slug-c", "10.0.0.1", "ann").getStatus()).isEqualTo(429);
+
+        assertThat(perform("GET", "/expense/slug-c", "10.0.0.1", "bob").getStatus()).isEqualTo(200);
+        assertThat(perform("GET", "/expense/slug-d", "10.0.0.1", "bob").getStatus()).isEqualTo(200);
+
+        // Two clients' worth for the address, however many ids are made up
+        assertThat(perform("GET", "/expense/slug-d", "10.0.0.1", "cat").getStatus()).isEqualTo(429);
+        assertThat(meterRegistry.get("expense.rate-limit.rejected").tag("budget", "poll").tag("limit", "address")
+                .counter().count()).isEqualTo(1);
+        assertThat(perform("GET", "/expense/slug-d", "10.0.0.2", "cat").getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    public void doFilter_shouldNotSpendClientBudget_whenSlugBudgetRefuses() throws Exception {
+        perform("GET", "/expense/slug-a", "10.0.0.1");
+        perform("GET", "/expense/slug-a", "10.0.0.2");
+        perform("GET", "/expense/slug-a", "10.0.0.2");
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(perform("GET", "/expense/slug-a", "10.0.0.3").getStatus()).isEqualTo(429);
+        }
+
+        assertThat(perform("GET", "/expense/slug-b", "10.0.0.3").getStatus()).isEqualTo(200);
+        assertThat(perform("GET", "/expense/slug-b", "10.0.0.3").getStatus()).isEqualTo(200);
+        assertThat(meterRegistry.get("expense.rate-limit.rejected").tag("budget", "poll").tag("limit", "client")
+                .counter().count()).isZero();
+    }
+
+    @Test
+    public void doFilter_shouldNotLimitOtherPaths() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            assertThat(perform("GET", "/actuator/health", "10.0.0.1").getStatus()).isEqualTo(200);
+        }
+    }
+
+    private MockHttpServletResponse perform(String method, String path, String client) throws IOException, ServletException {
+        return perform(method, path, client, null);
+    }
+
+    private MockHttpServletResponse perform(String method, String path, String client, String clientId)
+            throws IOException, ServletException {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+        request.setRemoteAddr(client);
+        if (clientId != null) {
+            request.addHeader(RateLimitFilter.CLIENT_ID, clientId);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+}
@@ -0,0 +1,83 @@
+package com.forkthebill.service.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void tryTake_shouldAllowBurstUpToCapacity_thenRefuse() {
+        TokenBucket bucket = new TokenBucket(3, Duration.ofSeconds(3), 0);
+
+        assertThat(bucket.tryTake(0)).isZero();
+        assertThat(bucket.tryTake(0)).isZero();
+        assertThat(bucket.tryTake(0)).isZero();
+        assertThat(bucket.tryTake(0)).isEqualTo(SECOND);
+    }
+
+    @Test
+    public void tryTake_shouldRefillOneTokenPerInterval() {
+        TokenBucket bucket = new TokenBucket(2, Duration.ofSeconds(2), 0);
+        bucket.tryTake(0);
+        bucket.tryTake(0);
+
+        assertThat(bucket.tryTake(SECOND / 2)).isEqualTo(SECOND / 2);
+        assertThat(bucket.tryTake(SECOND)).isZero();
+        assertThat(bucket.tryTake(SECOND)).isEqualTo(SECOND);
+    }
+
+    @Test
+    public void timeToToken_shouldReportWaitWithoutTaking() {
+        TokenBucket bucket = new TokenBucket(1, Duration.ofSeconds(1), 0);
+
+        assertThat(bucket.timeToToken(0)).isZero();
+        assertThat(bucket.timeToToken(0)).isZero();
+        assertThat(bucket.tryTake(0)).isZero();
+        assertThat(bucket.timeToToken(SECOND / 4)).isEqualTo(SECOND * 3 / 4);
+        assertThat(bucket.tryTake(SECOND)).isZero();
+    }
+
+    @Test
+    public void tryTake_shouldNotStoreMoreThanCapacity_afterLongIdle() {
+        TokenBucket bucket = new TokenBucket(2, Duration.ofSeconds(2), 0);
+
+        long later = 3_600 * SECOND;
+        assertThat(bucket.tryTake(later)).isZero();
+        assertThat(bucket.tryTake(later)).isZero();
+        assertThat(bucket.tryTake(later)).isPositive();
+    }
+
+    @Test
+    public void tryTake_shouldHandOutExactlyCapacity_underContention() throws Exception {
+        TokenBucket bucket = new TokenBucket(1_000, Duration.ofDays(1), 0);
+        AtomicInteger taken = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int thread = 0; thread < 8; thread++) {
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < 500; i++) {
+                    if (bucket.tryTake(0) == 0) {
+                        taken.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(taken).hasValue(1_000);
+    }
+}
@@ -0,0 +1,221 @@
+package com.forkthebill.service.repositories;
+
+import com.forkthebill.service.models.dto.ExpenseSummary;
+import com.forkthebill.service.models.entities.Expense;
+import com.forkthebill.service.models.entities.Item;
+import com.forkthebill.service.models.entities.Person;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest(properties = "expense.storage.mode=document")
+public class ExpenseDocumentStorageTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private ExpenseRepository expenseRepository;
+
+    @Test
+    public void save_shouldAssignIdsAndRoundTripAggregate() {
+        // Given
+        Expense expense = createExpense("doc-slug");
+
+        // When
+        Expense saved = expenseRepository.save(expense);
+        entityManager.flush();
+        entityManager.clear();
+        Optional<Expense> found = expenseRepository.findBySlug("doc-slug");
+
+        // Then
+        assertThat(saved.getId()).isNotNull();
+        assertThat(saved.getItems()).allSatisfy(item -> assertThat(item.getId()).isNotNull());
+        assertThat(saved.getPeople()).allSatisfy(person -> assertThat(person.getId()).isNotNull());
+
+        assertThat(found).isPresent();
+        assertThat(found.get().getId()).isEqualTo(saved.getId());
+        assertThat(found.get().getItems()).hasSize(2);
+        assertThat(found.get().getItems().get(0).getName()).isEqualTo("Pizza");
+        assertThat(found.get().getPeople()).hasSize(1);
+        assertThat(found.get().getItems().get(0).getExpense()).isSameAs(found.get());
+    }
+
+    @Test
+    public void save_shouldPersistClaimsOnUpdate() {
+        // Given
+        Expense saved = expenseRepository.save(createExpense("doc-claims"));
+        entityManager.flush();
+        entityManager.clear();
+
+        Expense loaded = expenseRepository.findBySlug("doc-claims").orElseThrow();
+        String itemId = loaded.getItems().get(0).getId();
+        UUID personId = loaded.getPeople().get(0).getId();
+
+        // When
+        loaded.claimItem(itemId, personId);
+        expenseRepository.save(loaded);
+        entityManager.flush();
+        entityManager.clear();
+
+        // Then
+        Expense reloaded = expenseRepository.findBySlug("doc-claims").orElseThrow();
+        assertThat(reloaded.getId()).isEqualTo(saved.getId());
+        assertThat(reloaded.findItemById(itemId).getClaimedBy()).containsExactly(personId);
+        assertThat(reloaded.findPersonById(personId).getItemsClaimed()).containsExactly(itemId);
+        assertThat(reloaded.findPersonById(personId).getSubtotal()).isEqualByComparingTo("50.00");
+    }
+
+    @Test
+    public void save_shouldRejectWriteFromStaleDocument() {
+        // Given two diners who loaded the same version
+        expenseRepository.save(createExpense("doc-conflict"));
+        entityManager.flush();
+        entityManager.clear();
+        Expense first = expenseRepository.findBySlug("doc-conflict").orElseThrow();
+        Expense second = expenseRepository.findBySlug("doc-conflict").orElseThrow();
+        String itemId = first.getItems().get(0).getId();
+        UUID personId = first.getPeople().get(0).getId();
+
+        // When the first claim is saved
+        first.claimItem(itemId, personId);
+        expenseRepository.save(first);
+
+        // Then the second is rejected instead of overwriting it
+        second.claimItem(second.getItems().get(1).getId(), personId);
+        assertThatThrownBy(() -> expenseRepository.save(second))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        entityManager.clear();
+        Expense reloaded = expenseRepository.findBySlug("doc-conflict").orElseThrow();
+        assertThat(reloaded.getVersion()).isEqualTo(1L);
+        assertThat(reloaded.findItemById(itemId).getClaimedBy()).containsExactly(personId);
+    }
+
+    @Test
+    public void findVersionBySlug_shouldReadVersionColumn() {
+        // Given a document saved twice
+        Expense expense = expenseRepository.save(createExpense("doc-version"));
+        expenseRepository.save(expense);
+        entityManager.flush();
+        entityManager.clear();
+
+        // When / Then
+        assertThat(expenseRepository.findVersionBySlug("doc-version")).contains(1L);
+        assertThat(expenseRepository.findVersionBySlug("doc-missing")).isEmpty();
+    }
+
+    @Test
+    public void existsBySlug_shouldReflectDocumentTable() {
+        // Given
+        expenseRepository.save(createExpense("doc-exists"));
+        entityManager.flush();
+
+        // When / Then
+        assertThat(expenseRepository.existsBySlug("doc-exists")).isTrue();
+        assertThat(expenseRepository.existsBySlug("doc-missing")).isFalse();
+        assertThat(expenseRepository.findBySlug("doc-missing")).isEmpty();
+    }
+
+    @Test
+    public void findPayerExpenses_shouldPageDocumentsNewestFirst() {
+        // Given
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        for (int i = 0; i < 3; i++) {
+            Expense expense = createExpense("doc-payer-" + i);
+            expense.setPayerKey("payer-key");
+            expense.setCreatedAt(now.plusMinutes(i));
+            expenseRepository.save(expense);
+        }
+        expenseRepository.save(createExpense("doc-other-payer"));
+        entityManager.flush();
+
+        // When
+        List<ExpenseSummary> first = expenseRepository.findPayerExpenses("payer-key", null, null, 2);
+        ExpenseSummary last = first.get(1);
+        List<ExpenseSummary> second = expenseRepository.findPayerExpenses(
+                "payer-key", last.getCreatedAt(), last.getId(), 2);
+
+        // Then
+        assertThat(first).extracting(ExpenseSummary::getSlug).containsExactly("doc-payer-2", "doc-payer-1");
+        assertThat(first.get(0).getPeoplePending()).isEqualTo(1L);
+        assertThat(first.get(0).getPeopleFinished()).isZero();
+        assertThat(second).extracting(ExpenseSummary::getSlug).containsExactly("doc-payer-0");
+    }
+
+    @Test
+    public void findPayerExpenses_shouldReadSummaryColumns_andFallBackToDocumentForOlderRows() {
+        // Given one expense whose diner has finished, and one saved before the summary columns
+        Expense finished = createExpense("doc-finished");
+        finished.setPayerKey("payer-key");
+        finished.setCreatedAt(LocalDateTime.now().plusMinutes(1));
+        finished.getPeople().get(0).setFinished(true);
+        expenseRepository.save(finished);
+        Expense older = createExpense("doc-older");
+        older.setPayerKey("payer-key");
+        expenseRepository.save(older);
+        entityManager.flush();
+        entityManager.getEntityManager().createQuery("update ExpenseDocumentEntity d set d.restaurantName = null, "
+                        + "d.totalAmount = null, d.peopleFinished = null, d.peoplePending = null where d.slug = :slug")
+                .setParameter("slug", "doc-older")
+                .executeUpdate();
+        entityManager.clear();
+
+        // When
+        List<ExpenseSummary> summaries = expenseRepository.findPayerExpenses("payer-key", null, null, 10);
+
+        // Then
+        assertThat(summaries).extracting(ExpenseSummary::getSlug).containsExactly("doc-finished", "doc-older");
+        assertThat(summaries).extracting(ExpenseSummary::getPeopleFinished).containsExactly(1L, 0L);
+        assertThat(summaries).extracting(ExpenseSummary::getPeoplePending).containsExactly(0L, 1L);
+        assertThat(summaries).extracting(ExpenseSummary::getTotalAmount)
+                .usingElementComparator(BigDecimal::compareTo)
+                .containsExactly(new BigDecimal("100.00"), new BigDecimal("100.00"));
+    }
+
+    private Expense createExpense(String slug) {
+        Expense expense = Expense.builder()
+                .slug(slug)
+                .createdAt(LocalDateTime.now())
+                .payerName("John Doe")
+                .totalAmount(new BigDecimal("100.00"))
+                .subtotal(new BigDecimal("80.00"))
+                .tax(new BigDecimal("10.00"))
+                .serviceCharge(new BigDecimal("10.00"))
+                .items(new ArrayList<>())
+                .people(new ArrayList<>())
+                .build();
+
+        expense.addItem(Item.builder()
+                .name("Pizza")
+                .price(new BigDecimal("50.00"))
+                .claimedBy(new ArrayList<>())
+                .build());
+        expense.addItem(Item.builder()
+                .name("Burger")
+                .price(new BigDecimal("30.00"))
+                .claimedBy(new ArrayList<>())
+                .build());
+        expense.addPerson(Person.builder()
+                .name("Alice")
+                .subtotal(BigDecimal.ZERO)
+                .taxShare(BigDecimal.ZERO)
+                .serviceChargeShare(BigDecimal.ZERO)
+                .totalOwed(BigDecimal.ZERO)
+                .itemsClaimed(new ArrayList<>())
+                .build());
+
+        return expense;
+    }
+}
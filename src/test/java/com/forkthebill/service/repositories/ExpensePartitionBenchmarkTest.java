@@ -0,0 +1,98 @@
+package com.forkthebill.service.repositories;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Random;
+
+/**
+ * Measures slug lookups against the partitioned schema at 1x and 100x expense volume, with
+ * and without the createdAt bound that lets Postgres prune to the recent partitions.
+ *
+ * Needs a disposable PostgreSQL database:
+ * PARTITION_BENCH_DATABASE_URL=jdbc:postgresql://localhost:5432/bench?user=...&password=... ./gradlew benchmark
+ */
+@Tag("benchmark")
+@EnabledIfEnvironmentVariable(named = "PARTITION_BENCH_DATABASE_URL", matches = ".+")
+public class ExpensePartitionBenchmarkTest {
+
+    private static final int BASE_EXPENSES = 20_000;
+    private static final int MONTHS = 24;
+    private static final int LOOKUPS = 2_000;
+
+    @Test
+    public void compareLookupLatencyAcrossVolumes() throws SQLException {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(System.getenv("PARTITION_BENCH_DATABASE_URL"));
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+        for (int scale : new int[]{1, 100}) {
+            resetSchema(jdbcTemplate, dataSource);
+            int expenses = BASE_EXPENSES * scale;
+            seed(jdbcTemplate, expenses);
+
+            // Recent slugs are the common case: links are shared and used right after the meal
+            int recentFrom = expenses - expenses / MONTHS;
+            measure(jdbcTemplate, "warm-up", scale, recentFrom, expenses, true);
+            measure(jdbcTemplate, "pruned", scale, recentFrom, expenses, true);
+            measure(jdbcTemplate, "unpruned", scale, recentFrom, expenses, false);
+        }
+    }
+
+    private void resetSchema(JdbcTemplate jdbcTemplate, DriverManagerDataSource dataSource) throws SQLException {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS expenses, items, people, item_claimed_by, item_unit_claims, person_items_claimed CASCADE");
+        try (Connection connection = dataSource.getConnection()) {
+            ScriptUtils.executeSqlScript(connection,
+                    new ClassPathResource("db/partitioning/postgres-partitioned-schema.sql"));
+        }
+
+        YearMonth first = YearMonth.now().minusMonths(MONTHS - 1);
+        for (int i = 0; i <= MONTHS; i++) {
+            YearMonth month = first.plusMonths(i);
+            jdbcTemplate.execute("CREATE TABLE expenses_" + month.toString().replace('-', '_')
+                    + " PARTITION OF expenses FOR VALUES FROM ('" + month.atDay(1)
+                    + "') TO ('" + month.plusMonths(1).atDay(1) + "')");
+        }
+    }
+
+    private void seed(JdbcTemplate jdbcTemplate, int expenses) {
+        // Spread creation times evenly over the last MONTHS months, oldest first
+        jdbcTemplate.update("INSERT INTO expenses (id, slug, created_at, payer_name, subtotal, total_amount) "
+                        + "SELECT md5(g::text), 'slug-' || g, "
+                        + "now() - make_interval(days => ?) + (g::double precision / ?) * make_interval(days => ?), "
+                        + "'Payer', 100, 100 FROM generate_series(0, ? - 1) g",
+                MONTHS * 30, expenses, MONTHS * 30, expenses);
+        jdbcTemplate.execute("ANALYZE expenses");
+    }
+
+    private void measure(JdbcTemplate jdbcTemplate, String label, int scale, int from, int to, boolean pruned) {
+        String sql = pruned
+                ? "SELECT id FROM expenses WHERE slug = ? AND created_at >= ?"
+                : "SELECT id FROM expenses WHERE slug = ?";
+        LocalDate horizon = LocalDate.now().minusDays(30);
+        Random random = new Random(42);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            String slug = "slug-" + (from + random.nextInt(to - from));
+            if (pruned) {
+                jdbcTemplate.queryForList(sql, String.class, slug, horizon);
+            } else {
+                jdbcTemplate.queryForList(sql, String.class, slug);
+            }
+        }
+        long nanos = System.nanoTime() - start;
+
+        if (!label.equals("warm-up")) {
+            System.out.printf("%4dx %-9s findBySlug: %8.1f us/op%n", scale, label, nanos / 1_000.0 / LOOKUPS);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.forkthebill.service.repositories;
+
+import com.forkthebill.service.models.entities.Expense;
+import com.forkthebill.service.models.entities.Item;
+import com.forkthebill.service.models.entities.Person;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+        "expense.partitioning.enabled=true",
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=true",
+        "spring.jpa.properties.hibernate.cache.region.factory_class=jcache",
+        "spring.jpa.properties.hibernate.javax.cache.provider=com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider",
+        "spring.jpa.properties.hibernate.javax.cache.missing_cache_strategy=create",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ExpensePartitionLookupTest {
+
+    @Autowired
+    private ExpenseRepository expenseRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    private Statistics statistics;
+
+    @BeforeEach
+    public void setup() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    public void findBySlug_shouldServeRecentSlugFromCaches() {
+        // Given
+        transactionTemplate.executeWithoutResult(status -> expenseRepository.save(createExpense("recent-cached")));
+        load("recent-cached");
+        load("recent-cached");
+        statistics.clear();
+
+        // When
+        Expense expense = load("recent-cached");
+
+        // Then
+        assertThat(expense.getItems()).hasSize(2);
+        assertThat(statistics.getNaturalIdCacheHitCount()).isPositive();
+        assertThat(statistics.getQueryExecutionCount()).isZero();
+    }
+
+    @Test
+    public void findBySlug_shouldFetchChildrenWithTheirPartitionKey_onCacheMiss() {
+        // Given
+        transactionTemplate.executeWithoutResult(status -> expenseRepository.save(createExpense("recent-uncached")));
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictAllRegions();
+        statistics.clear();
+
+        // When
+        Expense expense = load("recent-uncached");
+
+        // Then the collections came from the bounded queries, not lazy loads by expense_id
+        assertThat(expense.getItems()).extracting(Item::getName).containsExactlyInAnyOrder("Pizza", "Burger");
+        assertThat(expense.getPeople()).hasSize(1);
+        assertThat(statistics.getCollectionStatistics(Expense.class.getName() + ".items").getFetchCount()).isZero();
+        assertThat(statistics.getCollectionStatistics(Expense.class.getName() + ".people").getFetchCount()).isZero();
+    }
+
+    private Expense load(String slug) {
+        return transactionTemplate.execute(status -> {
+            Expense expense = expenseRepository.findBySlug(slug).orElseThrow();
+            expense.getItems().forEach(item -> item.getClaimedBy().size());
+            expense.getPeople().forEach(person -> person.getItemsClaimed().size());
+            return expense;
+        });
+    }
+
+    private Expense createExpense(String slug) {
+        Expense expense = Expense.builder()
+                .slug(slug)
+                .createdAt(LocalDateTime.now())
+                .payerName("John Doe")
+                .totalAmount(new BigDecimal("90.00"))
+                .subtotal(new BigDecimal("80.00"))
+                .tax(new BigDecimal("5.00"))
+                .serviceCharge(new BigDecimal("5.00"))
+                .items(new ArrayList<>())
+                .people(new ArrayList<>())
+                .build();
+        expense.addItem(Item.builder()
+                .name("Pizza")
+                .price(new BigDecimal("50.00"))
+                .claimedBy(new ArrayList<>())
+                .build());
+        expense.addItem(Item.builder()
+                .name("Burger")
+                .price(new BigDecimal("30.00"))
+                .claimedBy(new ArrayList<>())
+                .build());
+        expense.addPerson(Person.builder()
+                .name("Alice")
+                .subtotal(BigDecimal.ZERO)
+                .taxShare(BigDecimal.ZERO)
+                .serviceChargeShare(BigDecimal.ZERO)
+                .totalOwed(BigDecimal.ZERO)
+                .itemsClaimed(new ArrayList<>())
+                .build());
+        return expense;
+    }
+}
@@ -1,6 +1,9 @@
 package com.forkthebill.service.repositories;
 
+import com.forkthebill.service.models.dto.ExpenseSummary;
+import com.forkthebill.service.models.entities.ArchivedExpense;
 import com.forkthebill.service.models.entities.Expense;
+import com.forkthebill.service.models.entities.Person;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
@@ -8,6 +11,8 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -54,6 +59,24 @@ public class ExpenseRepositoryTest {
         assertThat(found).isEmpty();
     }
     
+    @Test
+    public void findVersionBySlug_shouldReturnVersion_whenSlugExists() {
+        // Given
+        Expense expense = new Expense();
+        expense.setSlug("version-slug");
+        expense.setCreatedAt(LocalDateTime.now());
+        expense.setPayerName("John Doe");
+        expense.setTotalAmount(new BigDecimal("100.00"));
+        expense.setSubtotal(new BigDecimal("100.00"));
+        entityManager.persist(expense);
+        entityManager.flush();
+        entityManager.clear();
+
+        // When / Then
+        assertThat(expenseRepository.findVersionBySlug("version-slug")).contains(expense.getVersion());
+        assertThat(expenseRepository.findVersionBySlug("non-existent-slug")).isEmpty();
+    }
+
     @Test
     public void existsBySlug_shouldReturnTrue_whenSlugExists() {
         // Given
@@ -84,4 +107,72 @@ public class ExpenseRepositoryTest {
         // Then
         assertThat(exists).isFalse();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void findPayerExpenses_shouldPageNewestFirstWithPeopleCounts() {
+        // Given
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        Expense older = payerExpense("payer-older", "payer-key", now.minusHours(2));
+        older.addPerson(person("Alice", true));
+        older.addPerson(person("Bob", false));
+        older.addPerson(person("Carol", false));
+        entityManager.persist(older);
+        entityManager.persist(payerExpense("payer-newer", "payer-key", now.minusHours(1)));
+        entityManager.persist(payerExpense("other-payer", "other-key", now));
+        entityManager.persist(ArchivedExpense.builder()
+                .slug("payer-archived")
+                .expenseId("archived-id")
+                .createdAt(now.minusDays(20))
+                .archivedAt(now)
+                .payerKey("payer-key")
+                .restaurantName("Archived Diner")
+                .totalAmount(new BigDecimal("40.00"))
+                .peopleFinished(2)
+                .peoplePending(0)
+                .payload(new byte[]{0})
+                .build());
+        entityManager.flush();
+
+        // When
+        List<ExpenseSummary> first = expenseRepository.findPayerExpenses("payer-key", null, null, 2);
+        ExpenseSummary last = first.get(1);
+        List<ExpenseSummary> second = expenseRepository.findPayerExpenses(
+                "payer-key", last.getCreatedAt(), last.getId(), 2);
+
+        // Then
+        assertThat(first).extracting(ExpenseSummary::getSlug).containsExactly("payer-newer", "payer-older");
+        assertThat(first.get(1).getPeopleFinished()).isEqualTo(1L);
+        assertThat(first.get(1).getPeoplePending()).isEqualTo(2L);
+        assertThat(second).extracting(ExpenseSummary::getSlug).containsExactly("payer-archived");
+        assertThat(second.get(0).getRestaurantName()).isEqualTo("Archived Diner");
+        assertThat(second.get(0).getPeopleFinished()).isEqualTo(2L);
+    }
+
+    private Expense payerExpense(String slug, String payerKey, LocalDateTime createdAt) {
+        return Expense.builder()
+                .slug(slug)
+                .payerKey(payerKey)
+                .createdAt(createdAt)
+                .payerName("John Doe")
+                .restaurantName("Diner")
+                .totalAmount(new BigDecimal("100.00"))
+                .subtotal(new BigDecimal("80.00"))
+                .tax(new BigDecimal("10.00"))
+                .serviceCharge(new BigDecimal("10.00"))
+                .items(new ArrayList<>())
+                .people(new ArrayList<>())
+                .build();
+    }
+
+    private Person person(String name, boolean finished) {
+        return Person.builder()
+                .name(name)
+                .subtotal(BigDecimal.ZERO)
+                .taxShare(BigDecimal.ZERO)
+                .serviceChargeShare(BigDecimal.ZERO)
+                .totalOwed(BigDecimal.ZERO)
+                .isFinished(finished)
+                .itemsClaimed(new ArrayList<>())
+                .build();
+    }
+}
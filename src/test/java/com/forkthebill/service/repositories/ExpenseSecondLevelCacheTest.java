@@ -0,0 +1,124 @@
+package com.forkthebill.service.repositories;
+
+import com.forkthebill.service.models.entities.Expense;
+import com.forkthebill.service.models.entities.Item;
+import com.forkthebill.service.models.entities.Person;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=true",
+        "spring.jpa.properties.hibernate.cache.region.factory_class=jcache",
+        "spring.jpa.properties.hibernate.javax.cache.provider=com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider",
+        "spring.jpa.properties.hibernate.javax.cache.missing_cache_strategy=create",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ExpenseSecondLevelCacheTest {
+
+    @Autowired
+    private ExpenseRepository expenseRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    private Statistics statistics;
+
+    @BeforeEach
+    public void setup() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    public void findBySlug_shouldBeServedFromCache_afterFirstLoad() {
+        // Given
+        transactionTemplate.executeWithoutResult(status -> expenseRepository.save(createExpense("cached-slug")));
+        statistics.clear();
+
+        // When
+        transactionTemplate.executeWithoutResult(status -> touch(expenseRepository.findBySlug("cached-slug").orElseThrow()));
+        transactionTemplate.executeWithoutResult(status -> touch(expenseRepository.findBySlug("cached-slug").orElseThrow()));
+
+        // Then
+        assertThat(statistics.getNaturalIdCacheHitCount()).isPositive();
+        assertThat(statistics.getSecondLevelCacheHitCount()).isPositive();
+    }
+
+    @Test
+    public void save_shouldBumpVersionAndKeepCacheConsistent() {
+        // Given
+        transactionTemplate.executeWithoutResult(status -> expenseRepository.save(createExpense("versioned-slug")));
+        Long initialVersion = transactionTemplate.execute(status ->
+                expenseRepository.findBySlug("versioned-slug").orElseThrow().getVersion());
+
+        // When
+        transactionTemplate.executeWithoutResult(status -> {
+            Expense expense = expenseRepository.findBySlug("versioned-slug").orElseThrow();
+            expense.claimItem(expense.getItems().get(0).getId(), expense.getPeople().get(0).getId());
+            expenseRepository.save(expense);
+        });
+
+        // Then
+        Expense reloaded = transactionTemplate.execute(status -> {
+            Expense expense = expenseRepository.findBySlug("versioned-slug").orElseThrow();
+            touch(expense);
+            return expense;
+        });
+        assertThat(reloaded.getVersion()).isEqualTo(initialVersion + 1);
+        assertThat(reloaded.getItems().get(0).getClaimedBy()).containsExactly(reloaded.getPeople().get(0).getId());
+        assertThat(reloaded.getPeople().get(0).getSubtotal()).isEqualByComparingTo("50.00");
+    }
+
+    private void touch(Expense expense) {
+        expense.getItems().forEach(item -> item.getClaimedBy().size());
+        expense.getPeople().forEach(person -> person.getItemsClaimed().size());
+    }
+
+    private Expense createExpense(String slug) {
+        Expense expense = Expense.builder()
+                .slug(slug)
+                .createdAt(LocalDateTime.now())
+                .payerName("John Doe")
+                .totalAmount(new BigDecimal("60.00"))
+                .subtotal(new BigDecimal("50.00"))
+                .tax(new BigDecimal("5.00"))
+                .serviceCharge(new BigDecimal("5.00"))
+                .items(new ArrayList<>())
+                .people(new ArrayList<>())
+                .build();
+        expense.addItem(Item.builder()
+                .name("Pizza")
+                .price(new BigDecimal("50.00"))
+                .claimedBy(new ArrayList<>())
+                .build());
+        expense.addPerson(Person.builder()
+                .name("Alice")
+                .subtotal(BigDecimal.ZERO)
+                .taxShare(BigDecimal.ZERO)
+                .serviceChargeShare(BigDecimal.ZERO)
+                .totalOwed(BigDecimal.ZERO)
+                .itemsClaimed(new ArrayList<>())
+                .build());
+        return expense;
+    }
+}
@@ -0,0 +1,127 @@
+package com.forkthebill.service.repositories;
+
+import com.forkthebill.service.cache.NoOpExpenseCacheInvalidationBroadcaster;
+import com.forkthebill.service.config.ExpenseStorageMode;
+import com.forkthebill.service.models.entities.Expense;
+import com.forkthebill.service.models.entities.Item;
+import com.forkthebill.service.models.entities.Person;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares relational and document storage on read-heavy (poll) and claim-heavy workloads.
+ * Run with ./gradlew benchmark; timings are printed rather than asserted.
+ */
+@Tag("benchmark")
+@DataJpaTest
+public class ExpenseStorageModeBenchmarkTest {
+
+    private static final int EXPENSES = 50;
+    private static final int ITEMS_PER_EXPENSE = 40;
+    private static final int PEOPLE_PER_EXPENSE = 8;
+    private static final int OPERATIONS = 2_000;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    public void compareStorageModes() {
+        for (ExpenseStorageMode mode : ExpenseStorageMode.values()) {
+            ExpenseRepositoryCustomImpl repository = new ExpenseRepositoryCustomImpl(
+                    entityManager, mode, new NoOpExpenseCacheInvalidationBroadcaster(), null, null, null);
+            List<String> slugs = seed(repository, mode.name().toLowerCase());
+
+            // Warm up both paths before measuring
+            runReads(repository, slugs, OPERATIONS / 4);
+            runClaims(repository, slugs, OPERATIONS / 4);
+
+            long readNanos = runReads(repository, slugs, OPERATIONS);
+            long claimNanos = runClaims(repository, slugs, OPERATIONS);
+
+            System.out.printf("%-10s read: %8.1f us/op   claim: %8.1f us/op%n",
+                    mode, readNanos / 1_000.0 / OPERATIONS, claimNanos / 1_000.0 / OPERATIONS);
+        }
+    }
+
+    private long runReads(ExpenseRepositoryCustomImpl repository, List<String> slugs, int operations) {
+        Random random = new Random(42);
+        long start = System.nanoTime();
+        for (int i = 0; i < operations; i++) {
+            Expense expense = repository.findBySlug(slugs.get(random.nextInt(slugs.size()))).orElseThrow();
+            // Touch the whole graph the way mapToExpenseResponse does
+            expense.getItems().forEach(item -> item.getClaimedBy().size());
+            expense.getPeople().forEach(person -> person.getItemsClaimed().size());
+            entityManager.clear();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private long runClaims(ExpenseRepositoryCustomImpl repository, List<String> slugs, int operations) {
+        Random random = new Random(7);
+        long start = System.nanoTime();
+        for (int i = 0; i < operations; i++) {
+            Expense expense = repository.findBySlug(slugs.get(random.nextInt(slugs.size()))).orElseThrow();
+            Item item = expense.getItems().get(random.nextInt(expense.getItems().size()));
+            Person person = expense.getPeople().get(random.nextInt(expense.getPeople().size()));
+            if (item.getClaimedBy().contains(person.getId())) {
+                expense.unclaimItem(item.getId(), person.getId());
+            } else {
+                expense.claimItem(item.getId(), person.getId());
+            }
+            repository.save(expense);
+            entityManager.flush();
+            entityManager.clear();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private List<String> seed(ExpenseRepositoryCustomImpl repository, String prefix) {
+        List<String> slugs = new ArrayList<>();
+        for (int e = 0; e < EXPENSES; e++) {
+            Expense expense = Expense.builder()
+                    .slug(prefix + "-bench-" + e)
+                    .createdAt(LocalDateTime.now())
+                    .payerName("Payer")
+                    .subtotal(BigDecimal.ZERO)
+                    .tax(new BigDecimal("18.00"))
+                    .serviceCharge(new BigDecimal("10.00"))
+                    .totalAmount(BigDecimal.ZERO)
+                    .items(new ArrayList<>())
+                    .people(new ArrayList<>())
+                    .build();
+            for (int i = 0; i < ITEMS_PER_EXPENSE; i++) {
+                expense.addItem(Item.builder()
+                        .name("Item " + i)
+                        .price(new BigDecimal("12.50"))
+                        .quantity(1)
+                        .claimedBy(new ArrayList<>())
+                        .build());
+            }
+            for (int p = 0; p < PEOPLE_PER_EXPENSE; p++) {
+                expense.addPerson(Person.builder()
+                        .name("Diner " + p)
+                        .subtotal(BigDecimal.ZERO)
+                        .taxShare(BigDecimal.ZERO)
+                        .serviceChargeShare(BigDecimal.ZERO)
+                        .totalOwed(BigDecimal.ZERO)
+                        .itemsClaimed(new ArrayList<>())
+                        .build());
+            }
+            expense.recalculateAmounts();
+            repository.save(expense);
+            slugs.add(expense.getSlug());
+        }
+        entityManager.flush();
+        entityManager.clear();
+        return slugs;
+    }
+}
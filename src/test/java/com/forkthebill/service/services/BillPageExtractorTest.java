@@ -0,0 +1,120 @@
+package com.forkthebill.service.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.forkthebill.service.exceptions.BillExtractionException;
+import com.forkthebill.service.exceptions.ValidationException;
+import com.forkthebill.service.models.dto.BillParsedData;
+import com.forkthebill.service.utils.BillJsonParser;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BillPageExtractorTest {
+
+    private final GeminiService geminiService = mock(GeminiService.class);
+    private final BillPageExtractor extractor = extractor(4, 3, 8);
+
+    @AfterEach
+    public void shutdown() {
+        extractor.shutdown();
+    }
+
+    @Test
+    public void extract_shouldReadPagesConcurrentlyAndMergeInUploadOrder() {
+        // Each page answers after the number of milliseconds written on it
+        when(geminiService.getGeminiResponse(any(), any())).thenAnswer(invocation -> {
+            String page = new String(invocation.<byte[]>getArgument(0), StandardCharsets.UTF_8);
+            String[] parts = page.split(":");
+            Thread.sleep(Long.parseLong(parts[1]));
+            return "{\"items\":[{\"name\":\"" + parts[0] + "\",\"price\":1,\"quantity\":1}]}";
+        });
+
+        long start = System.nanoTime();
+        BillParsedData bill = extractor.extract(List.of(page("Soup:600"), page("Steak:300"), page("Pie:100")));
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        assertThat(bill.getItems()).extracting(BillParsedData.BillItem::getName).containsExactly("Soup", "Steak", "Pie");
+        // Close to the slowest page (600ms), well below the sum (1000ms)
+        assertThat(elapsed).isLessThan(Duration.ofMillis(950));
+    }
+
+    @Test
+    public void extract_shouldFail_whenAnyPageCannotBeRead() {
+        when(geminiService.getGeminiResponse(any(), any())).thenAnswer(invocation -> {
+            String page = new String(invocation.<byte[]>getArgument(0), StandardCharsets.UTF_8);
+            return page.equals("blurry") ? "I cannot read this" : "{\"items\":[]}";
+        });
+
+        assertThatThrownBy(() -> extractor.extract(List.of(page("sharp"), page("blurry"))))
+                .isInstanceOf(BillExtractionException.class)
+                .hasMessageContaining("one of the pages");
+    }
+
+    @Test
+    public void extract_shouldRejectTooManyPages() {
+        assertThatThrownBy(() -> extractor.extract(List.of(page("1"), page("2"), page("3"), page("4"))))
+                .isInstanceOf(ValidationException.class);
+    }
+
+    @Test
+    public void extract_shouldBoundPagesInFlight_byParallelismAndBulkhead() {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        when(geminiService.getGeminiResponse(any(), any())).thenAnswer(invocation -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            Thread.sleep(100);
+            inFlight.decrementAndGet();
+            return "{\"items\":[]}";
+        });
+        List<BillPageExtractor.Page> pages = List.of(page("1"), page("2"), page("3"), page("4"), page("5"), page("6"));
+
+        BillPageExtractor byParallelism = extractor(2, 6, 8);
+        BillPageExtractor byBulkhead = extractor(6, 6, 3);
+        try {
+            byParallelism.extract(pages);
+            assertThat(maxInFlight).hasValue(2);
+
+            maxInFlight.set(0);
+            byBulkhead.extract(pages);
+            assertThat(maxInFlight).hasValue(3);
+        } finally {
+            byParallelism.shutdown();
+            byBulkhead.shutdown();
+        }
+    }
+
+    private BillPageExtractor extractor(int pageParallelism, int maxPages, int bulkheadCalls) {
+        BulkheadRegistry bulkheads = BulkheadRegistry.of(BulkheadConfig.custom()
+                .maxConcurrentCalls(bulkheadCalls)
+                .build());
+        return new BillPageExtractor(geminiService, new BillJsonParser(new ObjectMapper()), bulkheads,
+                pageParallelism, maxPages);
+    }
+
+    @Test
+    public void extract_shouldSendEachPageWithItsContentType() {
+        when(geminiService.getGeminiResponse(any(), any())).thenReturn("{\"items\":[]}");
+
+        extractor.extract(List.of(page("1"), new BillPageExtractor.Page(page("2").data(), "image/png")));
+
+        verify(geminiService).getGeminiResponse(page("1").data(), "image/jpeg");
+        verify(geminiService).getGeminiResponse(page("2").data(), "image/png");
+    }
+
+    private static BillPageExtractor.Page page(String value) {
+        return new BillPageExtractor.Page(value.getBytes(StandardCharsets.UTF_8), "image/jpeg");
+    }
+}
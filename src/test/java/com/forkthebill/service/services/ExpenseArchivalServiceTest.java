@@ -0,0 +1,153 @@
+package com.forkthebill.service.services;
+
+import com.forkthebill.service.cache.NoOpExpenseCacheInvalidationBroadcaster;
+import com.forkthebill.service.models.entities.Expense;
+import com.forkthebill.service.models.entities.Item;
+import com.forkthebill.service.models.entities.Person;
+import com.forkthebill.service.repositories.ArchivedExpenseRepository;
+import com.forkthebill.service.repositories.ExpenseRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {"expense.archival.enabled=true", "expense.archival.batch-size=10"})
+@Import({ExpenseArchivalService.class, ExpenseArchiveRestorer.class,
+        NoOpExpenseCacheInvalidationBroadcaster.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ExpenseArchivalServiceTest {
+
+    @Autowired
+    private ExpenseArchivalService expenseArchivalService;
+
+    @Autowired
+    private ExpenseRepository expenseRepository;
+
+    @Autowired
+    private ArchivedExpenseRepository archivedExpenseRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    public void setup() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Test
+    public void archiveBatch_shouldMoveOnlyExpiredExpenses() {
+        // Given
+        saveExpense("old-archive-slug", LocalDateTime.now().minusDays(30));
+        saveExpense("recent-archive-slug", LocalDateTime.now());
+
+        // When
+        int archived = expenseArchivalService.archiveBatch(LocalDateTime.now().minusDays(14));
+
+        // Then
+        assertThat(archived).isEqualTo(1);
+        assertThat(archivedExpenseRepository.existsById("old-archive-slug")).isTrue();
+        assertThat(archivedExpenseRepository.existsById("recent-archive-slug")).isFalse();
+        assertThat(expenseRepository.existsBySlug("old-archive-slug")).isTrue();
+        assertThat(expenseArchivalService.archiveBatch(LocalDateTime.now().minusDays(14))).isZero();
+    }
+
+    @Test
+    public void findBySlug_shouldRestoreArchivedExpenseWithSameIdsAndClaims() {
+        // Given
+        Expense original = saveExpense("restore-archive-slug", LocalDateTime.now().minusDays(30));
+        String itemId = original.getItems().get(0).getId();
+        UUID personId = original.getPeople().get(0).getId();
+        expenseArchivalService.archiveBatch(LocalDateTime.now().minusDays(14));
+
+        // When
+        Expense restored = transactionTemplate.execute(status -> {
+            Expense expense = expenseRepository.findBySlug("restore-archive-slug").orElseThrow();
+            expense.getItems().forEach(item -> item.getClaimedBy().size());
+            expense.getPeople().forEach(person -> person.getItemsClaimed().size());
+            return expense;
+        });
+
+        // Then
+        assertThat(restored.getId()).isEqualTo(original.getId());
+        assertThat(restored.findItemById(itemId).getClaimedBy()).containsExactly(personId);
+        assertThat(restored.findPersonById(personId).getItemsClaimed()).containsExactly(itemId);
+        assertThat(archivedExpenseRepository.existsById("restore-archive-slug")).isFalse();
+    }
+
+    @Test
+    public void archiveBatch_shouldSkipOldExpensesWithRecentActivity() {
+        // Given an old expense that someone claimed on today
+        saveExpense("old-active-slug", LocalDateTime.now().minusDays(30));
+        transactionTemplate.executeWithoutResult(status ->
+                expenseRepository.save(expenseRepository.findBySlug("old-active-slug").orElseThrow()));
+
+        // When / Then
+        assertThat(expenseArchivalService.archiveBatch(LocalDateTime.now().minusDays(14))).isZero();
+        assertThat(archivedExpenseRepository.existsById("old-active-slug")).isFalse();
+    }
+
+    @Test
+    public void archiveBatch_shouldNotArchiveRestoredExpenseAgain() {
+        // Given
+        saveExpense("restored-twice-slug", LocalDateTime.now().minusDays(30));
+        expenseArchivalService.archiveBatch(LocalDateTime.now().minusDays(14));
+        transactionTemplate.executeWithoutResult(status -> expenseRepository.findBySlug("restored-twice-slug").orElseThrow());
+
+        // When
+        int archived = expenseArchivalService.archiveBatch(LocalDateTime.now().minusDays(14));
+
+        // Then
+        assertThat(archived).isZero();
+        assertThat(archivedExpenseRepository.existsById("restored-twice-slug")).isFalse();
+    }
+
+    private Expense saveExpense(String slug, LocalDateTime createdAt) {
+        return transactionTemplate.execute(status -> {
+            Expense expense = Expense.builder()
+                    .slug(slug)
+                    .createdAt(createdAt)
+                    .payerName("John Doe")
+                    .totalAmount(new BigDecimal("60.00"))
+                    .subtotal(new BigDecimal("50.00"))
+                    .tax(new BigDecimal("5.00"))
+                    .serviceCharge(new BigDecimal("5.00"))
+                    .items(new ArrayList<>())
+                    .people(new ArrayList<>())
+                    .build();
+            expense.addItem(Item.builder()
+                    .name("Pizza")
+                    .price(new BigDecimal("50.00"))
+                    .claimedBy(new ArrayList<>())
+                    .build());
+            expense.addPerson(Person.builder()
+                    .name("Alice")
+                    .subtotal(BigDecimal.ZERO)
+                    .taxShare(BigDecimal.ZERO)
+                    .serviceChargeShare(BigDecimal.ZERO)
+                    .totalOwed(BigDecimal.ZERO)
+                    .itemsClaimed(new ArrayList<>())
+                    .build());
+            expenseRepository.save(expense);
+            // Ids are assigned on persist; claim once they exist
+            expense.claimItem(expense.getItems().get(0).getId(), expense.getPeople().get(0).getId());
+            // As if nobody has touched it since it was created
+            expense.setLastActivityAt(createdAt);
+            return expense;
+        });
+    }
+}
@@ -1,5 +1,8 @@
 package com.forkthebill.service.services;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.forkthebill.service.cache.ExpenseResponsePublisher;
+import com.forkthebill.service.exceptions.BillExtractionException;
 import com.forkthebill.service.exceptions.ResourceNotFoundException;
 import com.forkthebill.service.exceptions.ValidationException;
 import com.forkthebill.service.models.dto.*;
@@ -7,7 +10,9 @@ import com.forkthebill.service.models.entities.Expense;
 import com.forkthebill.service.models.entities.Item;
 import com.forkthebill.service.models.entities.Person;
 import com.forkthebill.service.repositories.ExpenseRepository;
+import com.forkthebill.service.utils.BillJsonParser;
 import com.forkthebill.service.utils.SlugGenerator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
@@ -22,16 +27,20 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verifyNoInteractions;
 import com.forkthebill.service.models.dto.PersonRequest;
 import java.util.Arrays;
 
@@ -47,15 +56,32 @@ public class ExpenseServiceTest {
     @Mock
     private GeminiService geminiService;
 
+    @Mock
+    private ExpenseResponsePublisher responsePublisher;
+
+    @Mock
+    private BillPageExtractor billPageExtractor;
+
+    @Mock
+    private LocalReceiptExtractor localReceiptExtractor;
+
+    @Mock
+    private GroupLedgerService groupLedgerService;
+
     @Captor
     private ArgumentCaptor<Expense> expenseCaptor;
 
     @InjectMocks
     private ExpenseService expenseService;
 
+    private SimpleMeterRegistry meterRegistry;
+
     @BeforeEach
     public void setup() {
-        expenseService = new ExpenseService(expenseRepository, slugGenerator, geminiService);
+        meterRegistry = new SimpleMeterRegistry();
+        expenseService = new ExpenseService(expenseRepository, slugGenerator, geminiService,
+                new ExpenseMetrics(meterRegistry), responsePublisher, new BillJsonParser(new ObjectMapper()),
+                billPageExtractor, localReceiptExtractor, groupLedgerService);
     }
 
     @Test
@@ -82,7 +108,7 @@ public class ExpenseServiceTest {
         when(expenseRepository.save(any(Expense.class))).thenReturn(savedExpense);
 
         // When
-        ExpenseResponse response = expenseService.createExpense(request);
+        ExpenseResponse response = expenseService.createExpense(request, null);
 
         // Then
         verify(expenseRepository).save(expenseCaptor.capture());
@@ -122,7 +148,7 @@ public class ExpenseServiceTest {
                 .build();
 
         // When/Then
-        assertThatThrownBy(() -> expenseService.createExpense(request))
+        assertThatThrownBy(() -> expenseService.createExpense(request, null))
                 .isInstanceOf(ValidationException.class)
                 .hasMessageContaining("Total amount must be within 5 rupees of calculated total");
     }
@@ -161,12 +187,85 @@ public class ExpenseServiceTest {
         
         when(expenseRepository.save(any(Expense.class))).thenReturn(savedExpense);
 
-        ExpenseResponse response = expenseService.createExpense(request);
+        ExpenseResponse response = expenseService.createExpense(request, null);
 
         assertThat(response).isNotNull();
         assertThat(response.getTotalAmount()).isEqualByComparingTo(request.getTotalAmount());
     }
     
+    @Test
+    public void createExpense_shouldStoreHashOfPayerToken() {
+        when(slugGenerator.generateUniqueSlug()).thenReturn("test-slug");
+        when(expenseRepository.save(any(Expense.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        expenseService.createExpense(createValidExpenseRequest(), "payer-token-0123456789");
+
+        verify(expenseRepository).save(expenseCaptor.capture());
+        assertThat(expenseCaptor.getValue().getPayerKey())
+                .hasSize(64)
+                .isEqualTo(ExpenseService.payerKey("payer-token-0123456789"))
+                .doesNotContain("payer-token");
+    }
+
+    @Test
+    public void createExpense_shouldRejectShortPayerToken() {
+        assertThatThrownBy(() -> expenseService.createExpense(createValidExpenseRequest(), "short"))
+                .isInstanceOf(ValidationException.class)
+                .hasMessageContaining("X-Payer-Token");
+        verify(expenseRepository, never()).save(any());
+    }
+
+    @Test
+    public void listPayerExpenses_shouldReturnCursorToNextPage_whenMoreRowsExist() {
+        String payerKey = ExpenseService.payerKey("payer-token-0123456789");
+        LocalDateTime now = LocalDateTime.of(2024, 5, 1, 12, 0);
+        List<ExpenseSummary> rows = List.of(
+                new ExpenseSummary("c", "slug-c", "C", BigDecimal.TEN, now, 0L, 1L),
+                new ExpenseSummary("b", "slug-b", "B", BigDecimal.TEN, now.minusMinutes(1), 1L, 0L),
+                new ExpenseSummary("a", "slug-a", "A", BigDecimal.TEN, now.minusMinutes(2), 0L, 0L));
+        when(expenseRepository.findPayerExpenses(payerKey, null, null, 3)).thenReturn(rows);
+
+        ExpenseSummaryPage page = expenseService.listPayerExpenses("payer-token-0123456789", null, 2);
+
+        assertThat(page.getExpenses()).extracting(ExpenseSummary::getSlug).containsExactly("slug-c", "slug-b");
+        assertThat(page.getNextCursor()).isNotNull();
+
+        // The cursor resumes after the last row of the page
+        when(expenseRepository.findPayerExpenses(payerKey, now.minusMinutes(1), "b", 3)).thenReturn(rows.subList(2, 3));
+
+        ExpenseSummaryPage next = expenseService.listPayerExpenses("payer-token-0123456789", page.getNextCursor(), 2);
+
+        assertThat(next.getExpenses()).extracting(ExpenseSummary::getSlug).containsExactly("slug-a");
+        assertThat(next.getNextCursor()).isNull();
+    }
+
+    @Test
+    public void listPayerExpenses_shouldClampLimit() {
+        String payerKey = ExpenseService.payerKey("payer-token-0123456789");
+        when(expenseRepository.findPayerExpenses(payerKey, null, null, ExpenseService.MAX_PAGE_SIZE + 1))
+                .thenReturn(List.of());
+
+        ExpenseSummaryPage page = expenseService.listPayerExpenses("payer-token-0123456789", null, 10_000);
+
+        assertThat(page.getExpenses()).isEmpty();
+        assertThat(page.getNextCursor()).isNull();
+    }
+
+    @Test
+    public void listPayerExpenses_shouldRejectInvalidCursor() {
+        assertThatThrownBy(() -> expenseService.listPayerExpenses("payer-token-0123456789", "not a cursor", null))
+                .isInstanceOf(ValidationException.class)
+                .hasMessage("Invalid cursor");
+        verifyNoInteractions(expenseRepository);
+    }
+
+    @Test
+    public void listPayerExpenses_shouldRequirePayerToken() {
+        assertThatThrownBy(() -> expenseService.listPayerExpenses(null, null, null))
+                .isInstanceOf(ValidationException.class);
+        verifyNoInteractions(expenseRepository);
+    }
+
     @Test
     public void getExpenseBySlug_shouldReturnExpense_whenExpenseExists() {
         // Given
@@ -196,6 +295,63 @@ public class ExpenseServiceTest {
         assertThat(response.getTotalAmount()).isEqualByComparingTo(new BigDecimal("100.00"));
     }
     
+    @Test
+    public void getCompactExpenseBySlug_shouldSendClaimsAsPersonIndexes() {
+        // Given
+        Expense expense = createTestExpense();
+        Item secondItem = Item.builder()
+                .id("item2")
+                .name("Item 2")
+                .price(new BigDecimal("20.00"))
+                .claimedBy(new ArrayList<>())
+                .build();
+        expense.addItem(secondItem);
+        Person secondPerson = createTestPerson(UUID.randomUUID(), "Person 2");
+        expense.addPerson(secondPerson);
+        expense.claimItem("item1", secondPerson.getId());
+        expense.claimItem("item2", expense.getPeople().get(0).getId());
+        expense.claimItem("item2", secondPerson.getId());
+
+        when(expenseRepository.findBySlug(expense.getSlug())).thenReturn(Optional.of(expense));
+
+        // When
+        CompactExpenseResponse response = expenseService.getCompactExpenseBySlug(expense.getSlug());
+
+        // Then
+        assertThat(response.getItems()).extracting(CompactItemResponse::getId).containsExactly("item1", "item2");
+        assertThat(response.getPeople()).extracting(CompactPersonResponse::getName).containsExactly("Person 1", "Person 2");
+        assertThat(response.getClaims()).isDeepEqualTo(new int[][]{{1}, {0, 1}});
+    }
+
+    @Test
+    public void getCompactExpenseBySlug_shouldSendUnitsAlongsideClaims() {
+        // Given
+        Expense expense = createTestExpense();
+        Item beers = Item.builder()
+                .id("item2")
+                .name("Beer")
+                .price(new BigDecimal("18.00"))
+                .quantity(3)
+                .totalQuantity(3)
+                .claimedBy(new ArrayList<>())
+                .build();
+        expense.addItem(beers);
+        Person secondPerson = createTestPerson(UUID.randomUUID(), "Person 2");
+        expense.addPerson(secondPerson);
+        expense.claimItem("item1", secondPerson.getId());
+        expense.claimItemUnits("item2", secondPerson.getId(), 2);
+        expense.claimItem("item2", expense.getPeople().get(0).getId());
+
+        when(expenseRepository.findBySlug(expense.getSlug())).thenReturn(Optional.of(expense));
+
+        // When
+        CompactExpenseResponse response = expenseService.getCompactExpenseBySlug(expense.getSlug());
+
+        // Then
+        assertThat(response.getClaims()).isDeepEqualTo(new int[][]{{1}, {1, 0}});
+        assertThat(response.getClaimUnits()).isDeepEqualTo(new int[][]{{0}, {2, 0}});
+    }
+
     @Test
     public void getExpenseBySlug_shouldThrowException_whenExpenseDoesNotExist() {
         // Given
@@ -328,6 +484,69 @@ public class ExpenseServiceTest {
         assertTrue(claimedItem.getClaimedBy().contains(personId));
     }
 
+    @Test
+    public void claimItem_ShouldUpdateGroupBalances_whenExpenseBelongsToGroup() {
+        // Given
+        Expense expense = createTestExpense();
+        expense.setGroupId("group-1");
+        String itemId = expense.getItems().get(0).getId();
+        UUID personId = expense.getPeople().get(0).getId();
+
+        when(expenseRepository.findBySlug(expense.getSlug())).thenReturn(Optional.of(expense));
+        when(expenseRepository.save(any(Expense.class))).thenReturn(expense);
+
+        // When
+        expenseService.claimItem(expense.getSlug(), itemId, personId);
+
+        // Then
+        verify(groupLedgerService).recordExpense(expense);
+    }
+
+    @Test
+    public void claimItemUnits_ShouldRecordUnitsAndChargeForThem() {
+        // Given
+        Expense expense = createTestExpense();
+        Item item = expense.getItems().get(0);
+        item.setQuantity(4);
+        item.setTotalQuantity(4);
+        UUID personId = expense.getPeople().get(0).getId();
+
+        when(expenseRepository.findBySlug(expense.getSlug())).thenReturn(Optional.of(expense));
+        when(expenseRepository.save(any(Expense.class))).thenReturn(expense);
+
+        // When
+        ExpenseResponse response = expenseService.claimItemUnits(expense.getSlug(), item.getId(), personId, 1);
+
+        // Then
+        ItemResponse claimedItem = response.getItems().get(0);
+        assertEquals(Map.of(personId, 1), claimedItem.getUnitClaims());
+        assertTrue(claimedItem.getClaimedBy().contains(personId));
+        assertEquals(new BigDecimal("20.00"), response.getPeople().get(0).getSubtotal());
+        verify(responsePublisher).publishAfterCommit(eq(expense), any(ExpenseResponse.class));
+        verifyNoInteractions(groupLedgerService);
+    }
+
+    @Test
+    public void createExpenseRequestFromParsedData_shouldKeepOneItemPerBillLine() {
+        BillParsedData parsedData = BillParsedData.builder()
+                .subtotal(new BigDecimal("18.00"))
+                .totalAmount(new BigDecimal("18.00"))
+                .items(List.of(BillParsedData.BillItem.builder()
+                        .name("Beer")
+                        .price(new BigDecimal("18.00"))
+                        .quantity(3)
+                        .build()))
+                .build();
+
+        ExpenseRequest request = expenseService.createExpenseRequestFromParsedData(parsedData, "John Doe");
+
+        assertEquals(1, request.getItems().size());
+        ItemRequest item = request.getItems().get(0);
+        assertEquals(new BigDecimal("18.00"), item.getPrice());
+        assertEquals(3, item.getQuantity());
+        assertEquals(3, item.getTotalQuantity());
+    }
+
     @Test
     public void claimItem_ShouldAddItemToPersonItemsClaimedList() {
         // Given
@@ -370,6 +589,7 @@ public class ExpenseServiceTest {
         assertEquals(new BigDecimal("80.00"), claimingPerson.getSubtotal());
         assertEquals(new BigDecimal("100.00"), claimingPerson.getTotalOwed());
         assertTrue(expense.getItems().get(0).getClaimedBy().contains(claimingPerson.getId()));
+        assertEquals(1, meterRegistry.timer("expense.recalculation").count());
     }
 
     @Test
@@ -944,7 +1164,7 @@ public class ExpenseServiceTest {
         
         String geminiResponse = "{\"subtotal\":80.00,\"tax\":10.00,\"tip\":10.00,\"totalAmount\":100.00,\"items\":[{\"name\":\"Burger\",\"price\":80.00,\"quantity\":1}],\"restaurantName\":\"Test Restaurant\",\"date\":\"2024-01-01\"}";
         
-        when(geminiService.getGeminiResponse(imageData)).thenReturn(geminiResponse);
+        when(geminiService.getGeminiResponse(imageData, "image/jpeg")).thenReturn(geminiResponse);
         when(slugGenerator.generateUniqueSlug()).thenReturn(slug);
         
         Expense savedExpense = Expense.builder()
@@ -970,7 +1190,7 @@ public class ExpenseServiceTest {
         
         when(expenseRepository.save(any(Expense.class))).thenReturn(savedExpense);
 
-        ExpenseResponse response = expenseService.createExpenseFromImage(imageData, payerName);
+        ExpenseResponse response = expenseService.createExpenseFromImage(imageData, "image/jpeg", payerName, null);
 
         // Then
         assertThat(response).isNotNull();
@@ -987,14 +1207,110 @@ public class ExpenseServiceTest {
         verify(expenseRepository).save(any(Expense.class));
     }
 
+    @Test
+    public void createExpenseFromImage_shouldNotCallGemini_whenReceiptIsReadLocally() {
+        byte[] receipt = "%PDF-receipt".getBytes();
+        when(localReceiptExtractor.extract(receipt, "application/pdf")).thenReturn(Optional.of(BillParsedData.builder()
+                .subtotal(new BigDecimal("12.00"))
+                .totalAmount(new BigDecimal("12.00"))
+                .items(List.of(BillParsedData.BillItem.builder().name("Burger").price(new BigDecimal("12.00")).quantity(1).build()))
+                .build()));
+        when(slugGenerator.generateUniqueSlug()).thenReturn("test-slug");
+        when(expenseRepository.save(any(Expense.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        ExpenseResponse response = expenseService.createExpenseFromImage(receipt, "application/pdf", "John Doe", null);
+
+        assertThat(response.getItems()).extracting(ItemResponse::getName).containsExactly("Burger");
+        verifyNoInteractions(geminiService);
+    }
+
+    @Test
+    public void createExpenseFromImage_shouldSendReceiptToGemini_whenLocalReadingFails() {
+        byte[] receipt = "%PDF-scanned".getBytes();
+        when(localReceiptExtractor.extract(receipt, "application/pdf")).thenReturn(Optional.empty());
+        when(geminiService.getGeminiResponse(receipt, "application/pdf"))
+                .thenReturn("{\"subtotal\":12.00,\"totalAmount\":12.00,\"items\":[{\"name\":\"Burger\",\"price\":12.00,\"quantity\":1}]}");
+        when(slugGenerator.generateUniqueSlug()).thenReturn("test-slug");
+        when(expenseRepository.save(any(Expense.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        ExpenseResponse response = expenseService.createExpenseFromImage(receipt, "application/pdf", "John Doe", null);
+
+        assertThat(response.getItems()).extracting(ItemResponse::getName).containsExactly("Burger");
+    }
+
+    @Test
+    public void createExpenseFromImageStreaming_shouldHandOutItemsBeforeCreatingExpense() {
+        byte[] imageData = "test-image-data".getBytes();
+        String reply = "{\"subtotal\":30.00,\"totalAmount\":30.00,\"items\":[{\"name\":\"Burger\",\"price\":20.00,\"quantity\":1},"
+                + "{\"name\":\"Fries\",\"price\":10.00,\"quantity\":2}]}";
+        when(geminiService.streamGeminiResponse(eq(imageData), eq("image/png"), any())).thenAnswer(invocation -> {
+            Consumer<String> onText = invocation.getArgument(2);
+            for (int i = 0; i < reply.length(); i += 16) {
+                onText.accept(reply.substring(i, Math.min(reply.length(), i + 16)));
+            }
+            return reply;
+        });
+        when(slugGenerator.generateUniqueSlug()).thenReturn("test-slug");
+        List<String> events = new ArrayList<>();
+        when(expenseRepository.save(any(Expense.class))).thenAnswer(invocation -> {
+            events.add("saved");
+            return invocation.getArgument(0);
+        });
+
+        ExpenseResponse response = expenseService.createExpenseFromImageStreaming(imageData, "image/png", "John Doe", null,
+                item -> events.add(item.getName()));
+
+        assertThat(events).containsExactly("Burger", "Fries", "saved");
+        assertThat(response.getItems()).extracting(ItemResponse::getName).containsExactly("Burger", "Fries");
+        assertThat(response.getItems().get(1).getQuantity()).isEqualTo(2);
+    }
+
+    @Test
+    public void createExpenseFromImages_shouldCreateOneExpenseFromMergedPages() {
+        List<BillPageExtractor.Page> pages = List.of(
+                new BillPageExtractor.Page("page-1".getBytes(), "image/jpeg"),
+                new BillPageExtractor.Page("page-2".getBytes(), "image/jpeg"));
+        when(billPageExtractor.extract(pages)).thenReturn(BillParsedData.builder()
+                .subtotal(new BigDecimal("30.00"))
+                .totalAmount(new BigDecimal("30.00"))
+                .items(List.of(
+                        BillParsedData.BillItem.builder().name("Burger").price(new BigDecimal("20.00")).quantity(1).build(),
+                        BillParsedData.BillItem.builder().name("Pie").price(new BigDecimal("10.00")).quantity(1).build()))
+                .build());
+        when(slugGenerator.generateUniqueSlug()).thenReturn("test-slug");
+        when(expenseRepository.save(any(Expense.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        ExpenseResponse response = expenseService.createExpenseFromImages(pages, "John Doe", null);
+
+        assertThat(response.getItems()).extracting(ItemResponse::getName).containsExactly("Burger", "Pie");
+        verify(expenseRepository).save(any(Expense.class));
+    }
+
+    @Test
+    public void createExpenseFromImage_shouldRejectShortPayerToken_beforeReadingBill() {
+        byte[] imageData = "test-image-data".getBytes();
+        List<BillPageExtractor.Page> pages = List.of(new BillPageExtractor.Page(imageData, "image/jpeg"));
+
+        assertThatThrownBy(() -> expenseService.createExpenseFromImage(imageData, "image/jpeg", "John Doe", "short"))
+                .isInstanceOf(ValidationException.class)
+                .hasMessageContaining("X-Payer-Token");
+        assertThatThrownBy(() -> expenseService.createExpenseFromImages(pages, "John Doe", "short"))
+                .isInstanceOf(ValidationException.class);
+        assertThatThrownBy(() -> expenseService.createExpenseFromImageStreaming(imageData, "image/jpeg", "John Doe", "short",
+                item -> { }))
+                .isInstanceOf(ValidationException.class);
+
+        verifyNoInteractions(localReceiptExtractor, geminiService, billPageExtractor, expenseRepository);
+    }
+
     @Test
     public void createExpenseFromImage_shouldThrowException_whenGeminiServiceFails() {
         byte[] imageData = "test-image-data".getBytes();
         String payerName = "John Doe";
         
-        when(geminiService.getGeminiResponse(imageData)).thenThrow(new RuntimeException("Gemini service error"));
+        when(geminiService.getGeminiResponse(imageData, "image/jpeg")).thenThrow(new RuntimeException("Gemini service error"));
 
-        assertThatThrownBy(() -> expenseService.createExpenseFromImage(imageData, payerName))
+        assertThatThrownBy(() -> expenseService.createExpenseFromImage(imageData, "image/jpeg", payerName, null))
                 .isInstanceOf(RuntimeException.class)
                 .hasMessageContaining("Failed to create expense from image");
     }
@@ -1004,10 +1320,11 @@ public class ExpenseServiceTest {
         byte[] imageData = "test-image-data".getBytes();
         String payerName = "John Doe";
         
-        when(geminiService.getGeminiResponse(imageData)).thenReturn("invalid-json");
+        when(geminiService.getGeminiResponse(imageData, "image/jpeg")).thenReturn("invalid-json");
 
-        assertThatThrownBy(() -> expenseService.createExpenseFromImage(imageData, payerName))
-                .isInstanceOf(RuntimeException.class)
-                .hasMessageContaining("Failed to create expense from image");
+        // Surfaced as 502 rather than a generic server error
+        assertThatThrownBy(() -> expenseService.createExpenseFromImage(imageData, "image/jpeg", payerName, null))
+                .isInstanceOf(BillExtractionException.class)
+                .hasMessageContaining("Could not read a bill");
     }
 }
\ No newline at end of file
@@ -0,0 +1,310 @@
+package com.forkthebill.service.services;
+
+import com.forkthebill.service.exceptions.BillExtractionException;
+import com.forkthebill.service.exceptions.BillExtractionUnavailableException;
+import com.forkthebill.service.exceptions.UnreadableBillException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.ratelimiter.RateLimiterConfig;
+import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
+import io.github.resilience4j.ratelimiter.RequestNotPermitted;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs GeminiService against a local fake of the generateContent and streamGenerateContent
+ * endpoints that can be made slow or failing.
+ */
+public class GeminiServiceTest {
+
+    private static final byte[] IMAGE = "image".getBytes(StandardCharsets.UTF_8);
+    private static final String BILL = "```json\n{\"subtotal\":10.00,\"items\":[]}\n```";
+
+    private HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final CountDownLatch requestReceived = new CountDownLatch(1);
+    private volatile int status = 200;
+    private volatile long delayMillis = 0;
+    private volatile long firstRequestDelayMillis = 0;
+    private volatile long chunkDelayMillis = 0;
+    private volatile String text = BILL;
+    private volatile String lastRequestBody;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    public void startFakeModel() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", exchange -> {
+            int request = requests.incrementAndGet();
+            requestReceived.countDown();
+            lastRequestBody = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            sleep(request == 1 ? Math.max(delayMillis, firstRequestDelayMillis) : delayMillis);
+
+            if (status == 200 && exchange.getRequestURI().getPath().endsWith(":streamGenerateContent")) {
+                streamText(exchange);
+                return;
+            }
+
+            String body = status == 200
+                    ? "{\"candidates\":[{\"content\":{\"role\":\"model\",\"parts\":[{\"text\":" + quote(text) + "}]}}]}"
+                    : "{\"error\":{\"code\":" + status + ",\"message\":\"injected\",\"status\":\"INTERNAL\"}}";
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+    }
+
+    // Sends the reply as server-sent events of a few characters each, chunkDelayMillis apart
+    private void streamText(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (int i = 0; i < text.length(); i += 8) {
+                String piece = text.substring(i, Math.min(text.length(), i + 8));
+                String event = "data: {\"candidates\":[{\"content\":{\"role\":\"model\",\"parts\":[{\"text\":"
+                        + quote(piece) + "}]}}]}\n\n";
+                out.write(event.getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                sleep(chunkDelayMillis);
+            }
+        }
+    }
+
+    @AfterEach
+    public void stopFakeModel() {
+        server.stop(0);
+    }
+
+    @Test
+    public void getGeminiResponse_shouldReturnModelText() {
+        GeminiService geminiService = service(4, 10, Duration.ofSeconds(5));
+
+        assertThat(geminiService.getGeminiResponse(IMAGE)).isEqualTo(BILL);
+        assertThat(meterRegistry.get("gemini.request").tag("outcome", "success").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void getGeminiResponse_shouldFail_whenModelReturnsNoText() {
+        text = "";
+        GeminiService geminiService = service(4, 10, Duration.ofSeconds(5));
+
+        assertThatThrownBy(() -> geminiService.getGeminiResponse(IMAGE))
+                .isExactlyInstanceOf(UnreadableBillException.class);
+        assertThat(meterRegistry.get("gemini.request").tag("outcome", "empty").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void getGeminiResponse_shouldKeepCircuitClosed_whenRepliesHoldNoBill() {
+        text = "";
+        GeminiService geminiService = service(4, 100, Duration.ofSeconds(5));
+
+        for (int i = 0; i < 6; i++) {
+            assertThatThrownBy(() -> geminiService.getGeminiResponse(IMAGE))
+                    .isExactlyInstanceOf(UnreadableBillException.class);
+        }
+        text = BILL;
+
+        assertThat(geminiService.getGeminiResponse(IMAGE)).isEqualTo(BILL);
+        assertThat(requests.get()).isEqualTo(7);
+    }
+
+    @Test
+    public void getGeminiResponse_shouldFailFast_onceCircuitOpens() {
+        status = 500;
+        GeminiService geminiService = service(4, 100, Duration.ofSeconds(5));
+
+        for (int i = 0; i < 4; i++) {
+            assertThatThrownBy(() -> geminiService.getGeminiResponse(IMAGE))
+                    .isExactlyInstanceOf(BillExtractionException.class);
+        }
+        int requestsBeforeOpen = requests.get();
+
+        assertThatThrownBy(() -> geminiService.getGeminiResponse(IMAGE))
+                .isInstanceOf(BillExtractionUnavailableException.class)
+                .satisfies(e -> assertThat(((BillExtractionUnavailableException) e).getRetryAfter())
+                        .isEqualTo(Duration.ofMinutes(1)));
+        assertThat(requests.get()).isEqualTo(requestsBeforeOpen);
+        assertThat(meterRegistry.get("gemini.request").tag("outcome", "error").timer().count()).isEqualTo(4);
+    }
+
+    @Test
+    public void getGeminiResponse_shouldTimeOut_whenModelIsSlow() {
+        delayMillis = 3_000;
+        GeminiService geminiService = service(4, 10, Duration.ofMillis(300));
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> geminiService.getGeminiResponse(IMAGE))
+                .isExactlyInstanceOf(BillExtractionException.class);
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(2));
+    }
+
+    @Test
+    public void getGeminiResponse_shouldRejectCalls_beyondConcurrencyLimit() throws Exception {
+        delayMillis = 1_000;
+        GeminiService geminiService = service(1, 10, Duration.ofSeconds(5));
+
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> geminiService.getGeminiResponse(IMAGE));
+        assertThat(requestReceived.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThatThrownBy(() -> geminiService.getGeminiResponse(IMAGE))
+                .isInstanceOf(BillExtractionUnavailableException.class)
+                .hasCauseInstanceOf(BulkheadFullException.class);
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo(BILL);
+    }
+
+    @Test
+    public void getGeminiResponse_shouldRejectCalls_beyondRateLimit() {
+        GeminiService geminiService = service(4, 1, Duration.ofSeconds(5));
+
+        geminiService.getGeminiResponse(IMAGE);
+
+        assertThatThrownBy(() -> geminiService.getGeminiResponse(IMAGE))
+                .isInstanceOf(BillExtractionUnavailableException.class)
+                .hasCauseInstanceOf(RequestNotPermitted.class);
+        assertThat(requests.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void getGeminiResponse_shouldHedge_whenFirstRequestIsSlow() {
+        firstRequestDelayMillis = 3_000;
+        GeminiService geminiService = service(4, 10, Duration.ofSeconds(5), Duration.ofMillis(200));
+
+        long start = System.nanoTime();
+        assertThat(geminiService.getGeminiResponse(IMAGE)).isEqualTo(BILL);
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(2));
+        assertThat(requests.get()).isEqualTo(2);
+        assertThat(meterRegistry.get("gemini.hedge.sent").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("gemini.hedge.won").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void getGeminiResponse_shouldNotHedge_whenAnswerComesBeforeDelay() {
+        GeminiService geminiService = service(4, 10, Duration.ofSeconds(5), Duration.ofSeconds(2));
+
+        assertThat(geminiService.getGeminiResponse(IMAGE)).isEqualTo(BILL);
+
+        assertThat(requests.get()).isEqualTo(1);
+        assertThat(meterRegistry.get("gemini.hedge.sent").counter().count()).isZero();
+    }
+
+    @Test
+    public void getGeminiResponse_shouldWaitForFirstRequest_whenHedgeIsRefused() {
+        firstRequestDelayMillis = 500;
+        GeminiService geminiService = service(1, 10, Duration.ofSeconds(5), Duration.ofMillis(100));
+
+        assertThat(geminiService.getGeminiResponse(IMAGE)).isEqualTo(BILL);
+
+        // The hedge found the bulkhead full and never reached the model
+        assertThat(requests.get()).isEqualTo(1);
+        assertThat(meterRegistry.get("gemini.hedge.won").counter().count()).isZero();
+    }
+
+    @Test
+    public void streamGeminiResponse_shouldHandOutTextAsItArrives() {
+        chunkDelayMillis = 50;
+        GeminiService geminiService = service(4, 10, Duration.ofSeconds(5));
+        List<String> pieces = new ArrayList<>();
+        List<Long> arrivals = new ArrayList<>();
+
+        long start = System.nanoTime();
+        String reply = geminiService.streamGeminiResponse(IMAGE, "image/jpeg", piece -> {
+            pieces.add(piece);
+            arrivals.add(System.nanoTime() - start);
+        });
+        long total = System.nanoTime() - start;
+
+        assertThat(reply).isEqualTo(BILL);
+        assertThat(String.join("", pieces)).isEqualTo(BILL);
+        assertThat(pieces).hasSizeGreaterThan(2);
+        assertThat(arrivals.get(0)).isLessThan(total / 2);
+        assertThat(meterRegistry.get("gemini.stream.first-text").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("gemini.request").tag("mode", "stream").tag("outcome", "success").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void streamGeminiResponse_shouldFail_whenModelErrors() {
+        status = 500;
+        GeminiService geminiService = service(4, 10, Duration.ofSeconds(5));
+
+        assertThatThrownBy(() -> geminiService.streamGeminiResponse(IMAGE, "image/jpeg", piece -> { }))
+                .isExactlyInstanceOf(BillExtractionException.class);
+    }
+
+    @Test
+    public void streamGeminiResponse_shouldSendUploadContentType() {
+        GeminiService geminiService = service(4, 10, Duration.ofSeconds(5));
+
+        geminiService.streamGeminiResponse(IMAGE, "image/png", piece -> { });
+
+        assertThat(lastRequestBody).contains("\"mimeType\":\"image/png\"");
+    }
+
+    private GeminiService service(int maxConcurrentCalls, int requestsPerMinute, Duration timeout) {
+        return service(maxConcurrentCalls, requestsPerMinute, timeout, null);
+    }
+
+    private GeminiService service(int maxConcurrentCalls, int requestsPerMinute, Duration timeout, Duration hedgeDelay) {
+        CircuitBreakerRegistry circuitBreakers = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .slidingWindowSize(4)
+                .minimumNumberOfCalls(4)
+                .failureRateThreshold(50)
+                .waitDurationInOpenState(Duration.ofMinutes(1))
+                .ignoreExceptions(RequestNotPermitted.class, BulkheadFullException.class, UnreadableBillException.class)
+                .build());
+        BulkheadRegistry bulkheads = BulkheadRegistry.of(BulkheadConfig.custom()
+                .maxConcurrentCalls(maxConcurrentCalls)
+                .maxWaitDuration(Duration.ZERO)
+                .build());
+        RateLimiterRegistry rateLimiters = RateLimiterRegistry.of(RateLimiterConfig.custom()
+                .limitForPeriod(requestsPerMinute)
+                .limitRefreshPeriod(Duration.ofMinutes(1))
+                .timeoutDuration(Duration.ZERO)
+                .build());
+        return new GeminiService(meterRegistry, circuitBreakers, bulkheads, rateLimiters,
+                "gemini-2.5-flash", timeout, "http://localhost:" + server.getAddress().getPort(), "test-key",
+                hedgeDelay != null, hedgeDelay != null ? hedgeDelay : Duration.ofSeconds(10), 20);
+    }
+
+    private static String quote(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\"";
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.forkthebill.service.services;
+
+import com.forkthebill.service.models.dto.GroupRequest;
+import com.forkthebill.service.models.dto.GroupSettlementResponse;
+import com.forkthebill.service.models.entities.Expense;
+import com.forkthebill.service.models.entities.Person;
+import com.forkthebill.service.repositories.ExpenseGroupRepository;
+import com.forkthebill.service.repositories.ExpenseRepository;
+import com.forkthebill.service.repositories.GroupBalanceRepository;
+import com.forkthebill.service.repositories.GroupLedgerEntryRepository;
+import com.forkthebill.service.utils.SlugGenerator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+@DataJpaTest(properties = "expense.storage.mode=document")
+public class GroupLedgerServiceDocumentTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private ExpenseGroupRepository groupRepository;
+
+    @Autowired
+    private GroupBalanceRepository balanceRepository;
+
+    @Autowired
+    private GroupLedgerEntryRepository entryRepository;
+
+    @Autowired
+    private ExpenseRepository expenseRepository;
+
+    private GroupLedgerService groupLedgerService;
+
+    @BeforeEach
+    public void setup() {
+        groupLedgerService = new GroupLedgerService(groupRepository, balanceRepository, entryRepository,
+                expenseRepository, new SlugGenerator(expenseRepository));
+    }
+
+    @Test
+    public void recordExpense_shouldNotApplyStaleDocument() {
+        // Given two diners who loaded the same version of a grouped expense
+        String group = groupLedgerService.createGroup(new GroupRequest("Friday dinners")).getSlug();
+        Expense dinner = Expense.builder()
+                .slug("doc-dinner")
+                .createdAt(LocalDateTime.now())
+                .payerName("Alice")
+                .subtotal(new BigDecimal("100.00"))
+                .totalAmount(new BigDecimal("100.00"))
+                .items(new ArrayList<>())
+                .people(new ArrayList<>())
+                .build();
+        dinner.addPerson(Person.builder()
+                .name("Bob")
+                .subtotal(new BigDecimal("20.00"))
+                .totalOwed(new BigDecimal("20.00"))
+                .itemsClaimed(new ArrayList<>())
+                .build());
+        expenseRepository.save(dinner);
+        groupLedgerService.addExpense(group, "doc-dinner");
+        entityManager.flush();
+        entityManager.clear();
+        Expense first = expenseRepository.findBySlug("doc-dinner").orElseThrow();
+        Expense second = expenseRepository.findBySlug("doc-dinner").orElseThrow();
+
+        // When the first change is saved and recorded
+        first.getPeople().get(0).setTotalOwed(new BigDecimal("25.00"));
+        groupLedgerService.recordExpense(expenseRepository.save(first));
+
+        // Then the second is rejected before it reaches the ledger
+        second.getPeople().get(0).setTotalOwed(new BigDecimal("30.00"));
+        assertThatThrownBy(() -> groupLedgerService.recordExpense(expenseRepository.save(second)))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        assertThat(groupLedgerService.getSettlement(group).getBalances())
+                .extracting(GroupSettlementResponse.MemberBalance::getName, balance -> balance.getBalance().toPlainString())
+                .containsExactly(tuple("Alice", "25.00"), tuple("Bob", "-25.00"));
+    }
+}
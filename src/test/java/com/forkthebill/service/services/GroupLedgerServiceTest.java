@@ -0,0 +1,139 @@
+package com.forkthebill.service.services;
+
+import com.forkthebill.service.exceptions.ResourceNotFoundException;
+import com.forkthebill.service.exceptions.ValidationException;
+import com.forkthebill.service.models.dto.GroupRequest;
+import com.forkthebill.service.models.dto.GroupSettlementResponse;
+import com.forkthebill.service.models.entities.Expense;
+import com.forkthebill.service.models.entities.Person;
+import com.forkthebill.service.repositories.ExpenseGroupRepository;
+import com.forkthebill.service.repositories.ExpenseRepository;
+import com.forkthebill.service.repositories.GroupBalanceRepository;
+import com.forkthebill.service.repositories.GroupLedgerEntryRepository;
+import com.forkthebill.service.utils.SlugGenerator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+@DataJpaTest
+public class GroupLedgerServiceTest {
+
+    @Autowired
+    private ExpenseGroupRepository groupRepository;
+
+    @Autowired
+    private GroupBalanceRepository balanceRepository;
+
+    @Autowired
+    private GroupLedgerEntryRepository entryRepository;
+
+    @Autowired
+    private ExpenseRepository expenseRepository;
+
+    private GroupLedgerService groupLedgerService;
+
+    @BeforeEach
+    public void setup() {
+        groupLedgerService = new GroupLedgerService(groupRepository, balanceRepository, entryRepository,
+                expenseRepository, new SlugGenerator(expenseRepository));
+    }
+
+    @Test
+    public void addExpense_shouldCreditPayerWithOtherPeoplesShares() {
+        String group = groupLedgerService.createGroup(new GroupRequest("Friday dinners")).getSlug();
+        // The payer's own share is listed under a differently written name and is not a debt
+        Expense dinner = saveExpense("dinner", "Alice", person("Bob", "20.00"), person("Carol", "10.00"), person(" alice", "15.00"));
+
+        GroupSettlementResponse settlement = groupLedgerService.addExpense(group, dinner.getSlug());
+
+        assertThat(settlement.getBalances()).extracting(GroupSettlementResponse.MemberBalance::getName,
+                        balance -> balance.getBalance().toPlainString())
+                .containsExactly(tuple("Alice", "30.00"), tuple("Carol", "-10.00"), tuple("Bob", "-20.00"));
+        assertThat(settlement.getTransfers()).extracting(GroupSettlementResponse.Transfer::getFrom,
+                        GroupSettlementResponse.Transfer::getTo, transfer -> transfer.getAmount().toPlainString())
+                .containsExactly(tuple("Bob", "Alice", "20.00"), tuple("Carol", "Alice", "10.00"));
+    }
+
+    @Test
+    public void recordExpense_shouldApplyOnlyTheChangeToBalances() {
+        String group = groupLedgerService.createGroup(new GroupRequest("Friday dinners")).getSlug();
+        groupLedgerService.addExpense(group, saveExpense("dinner", "Alice", person("Bob", "20.00"), person("Carol", "10.00")).getSlug());
+        Expense drinks = saveExpense("drinks", "Bob", person("ALICE", "30.00"));
+        groupLedgerService.addExpense(group, drinks.getSlug());
+
+        assertThat(groupLedgerService.getSettlement(group).getTransfers())
+                .extracting(GroupSettlementResponse.Transfer::getFrom, GroupSettlementResponse.Transfer::getTo,
+                        transfer -> transfer.getAmount().toPlainString())
+                .containsExactly(tuple("Carol", "Bob", "10.00"));
+
+        // Alice unclaims a round: her share of the drinks drops by 5
+        drinks.getPeople().get(0).setTotalOwed(new BigDecimal("25.00"));
+        groupLedgerService.recordExpense(expenseRepository.save(drinks));
+
+        assertThat(groupLedgerService.getSettlement(group).getTransfers())
+                .extracting(GroupSettlementResponse.Transfer::getFrom, GroupSettlementResponse.Transfer::getTo,
+                        transfer -> transfer.getAmount().toPlainString())
+                .containsExactly(tuple("Carol", "Alice", "5.00"), tuple("Carol", "Bob", "5.00"));
+        assertThat(entryRepository.findByExpenseId(drinks.getId())).hasSize(2);
+    }
+
+    @Test
+    public void removeExpense_shouldTakeItsSharesOutOfBalances() {
+        String group = groupLedgerService.createGroup(new GroupRequest("Friday dinners")).getSlug();
+        Expense dinner = saveExpense("dinner", "Alice", person("Bob", "20.00"));
+        groupLedgerService.addExpense(group, dinner.getSlug());
+
+        GroupSettlementResponse settlement = groupLedgerService.removeExpense(group, dinner.getSlug());
+
+        assertThat(settlement.getBalances()).isEmpty();
+        assertThat(settlement.getTransfers()).isEmpty();
+        assertThat(entryRepository.findByExpenseId(dinner.getId())).isEmpty();
+        assertThat(expenseRepository.findBySlug("dinner")).hasValueSatisfying(expense -> assertThat(expense.getGroupId()).isNull());
+    }
+
+    @Test
+    public void addExpense_shouldRejectExpenseOfAnotherGroup() {
+        String first = groupLedgerService.createGroup(new GroupRequest("Friday dinners")).getSlug();
+        String second = groupLedgerService.createGroup(new GroupRequest("Ski trip")).getSlug();
+        groupLedgerService.addExpense(first, saveExpense("dinner", "Alice", person("Bob", "20.00")).getSlug());
+
+        assertThatThrownBy(() -> groupLedgerService.addExpense(second, "dinner"))
+                .isInstanceOf(ValidationException.class);
+        assertThatThrownBy(() -> groupLedgerService.removeExpense(second, "dinner"))
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    private Expense saveExpense(String slug, String payerName, Person... people) {
+        Expense expense = Expense.builder()
+                .slug(slug)
+                .createdAt(LocalDateTime.now())
+                .payerName(payerName)
+                .subtotal(new BigDecimal("100.00"))
+                .totalAmount(new BigDecimal("100.00"))
+                .items(new ArrayList<>())
+                .people(new ArrayList<>())
+                .build();
+        for (Person person : people) {
+            expense.addPerson(person);
+        }
+        return expenseRepository.save(expense);
+    }
+
+    private static Person person(String name, String totalOwed) {
+        return Person.builder()
+                .name(name)
+                .subtotal(new BigDecimal(totalOwed))
+                .totalOwed(new BigDecimal(totalOwed))
+                .itemsClaimed(new ArrayList<>())
+                .build();
+    }
+}
@@ -0,0 +1,128 @@
+package com.forkthebill.service.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.forkthebill.service.models.dto.BillParsedData;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LocalReceiptExtractorTest {
+
+    private static final String RECEIPT = """
+            Order from: Luigi's Pizzeria
+            Order #1234
+            2 x Margherita $24.00
+            Garlic Bread $6.50
+            Subtotal $30.50
+            Tax (8%) $2.44
+            Delivery Fee $3.99
+            Tip $5.00
+            Total $41.93
+            Paid with Visa $41.93
+            """;
+
+    private SimpleMeterRegistry meterRegistry;
+    private LocalReceiptExtractor extractor;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        meterRegistry = new SimpleMeterRegistry();
+        extractor = new LocalReceiptExtractor(new ObjectMapper(), meterRegistry, true,
+                new ClassPathResource("receipt-layouts.json"));
+    }
+
+    @Test
+    public void extract_shouldReadTextLayerOfPdf_withoutRelyingOnContentType() throws IOException {
+        Optional<BillParsedData> bill = extractor.extract(pdf(RECEIPT), "application/octet-stream");
+
+        assertThat(bill).isPresent();
+        assertThat(bill.get().getRestaurantName()).isEqualTo("Luigi's Pizzeria");
+        assertThat(bill.get().getItems()).extracting(BillParsedData.BillItem::getName)
+                .containsExactly("Margherita", "Garlic Bread");
+        assertThat(bill.get().getItems().get(0).getQuantity()).isEqualTo(2);
+        assertThat(bill.get().getItems().get(0).getPrice()).isEqualByComparingTo("24.00");
+        assertThat(bill.get().getTax()).isEqualByComparingTo("2.44");
+        assertThat(bill.get().getServiceCharge()).isEqualByComparingTo("8.99");
+        assertThat(bill.get().getTotalAmount()).isEqualByComparingTo("41.93");
+        assertThat(meterRegistry.get("receipt.local-extraction").tag("result", "served").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void extract_shouldReadHtmlReceiptLaidOutAsTable() {
+        String html = """
+                <html><body><p>Order from: Corner Cafe</p><table>
+                <tr><td>Latte</td><td>4.50</td></tr>
+                <tr><td>2 x Croissant</td><td>6.00</td></tr>
+                <tr><td>Subtotal</td><td>10.50</td></tr>
+                <tr><td>Total</td><td>10.50</td></tr>
+                </table></body></html>
+                """;
+
+        Optional<BillParsedData> bill = extractor.extract(html.getBytes(StandardCharsets.UTF_8), "text/html; charset=UTF-8");
+
+        assertThat(bill).isPresent();
+        assertThat(bill.get().getRestaurantName()).isEqualTo("Corner Cafe");
+        assertThat(bill.get().getItems()).extracting(BillParsedData.BillItem::getName).containsExactly("Latte", "Croissant");
+    }
+
+    @Test
+    public void extract_shouldFallBack_whenAmountsDoNotReconcile() {
+        // A discount line the layout does not know about leaves the items 5.00 over the subtotal
+        String receipt = RECEIPT.replace("Subtotal $30.50", "Promo -$5.00\nSubtotal $25.50")
+                .replace("Total $41.93", "Total $36.93");
+
+        Optional<BillParsedData> bill = extractor.extract(receipt.getBytes(StandardCharsets.UTF_8), "text/plain");
+
+        assertThat(bill).isEmpty();
+        assertThat(meterRegistry.get("receipt.local-extraction").tag("result", "fallback").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void extract_shouldLeavePhotosToGemini() {
+        Optional<BillParsedData> bill = extractor.extract(new byte[]{(byte) 0xFF, (byte) 0xD8}, "image/jpeg");
+
+        assertThat(bill).isEmpty();
+        assertThat(meterRegistry.find("receipt.local-extraction").timer()).isNull();
+    }
+
+    @Test
+    public void extract_shouldFallBack_whenPdfIsDamaged() {
+        Optional<BillParsedData> bill = extractor.extract("%PDF-1.7 truncated".getBytes(StandardCharsets.US_ASCII), "application/pdf");
+
+        assertThat(bill).isEmpty();
+    }
+
+    private static byte[] pdf(String text) throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = new PDPage();
+            document.addPage(page);
+            try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                content.beginText();
+                content.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), 11);
+                content.setLeading(14);
+                content.newLineAtOffset(50, 700);
+                for (String line : text.split("\n")) {
+                    content.showText(line);
+                    content.newLine();
+                }
+                content.endText();
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.save(out);
+            return out.toByteArray();
+        }
+    }
+}
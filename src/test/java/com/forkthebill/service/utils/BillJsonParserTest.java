@@ -0,0 +1,94 @@
+package com.forkthebill.service.utils;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.forkthebill.service.models.dto.BillParsedData;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class BillJsonParserTest {
+
+    private static final String BILL = "{\"subtotal\":\"80.00\",\"tax\":10.00,\"tip\":5,"
+            + "\"items\":[{\"name\":\"Burger\",\"price\":80.00,\"quantity\":\"2\"},],\"restaurantName\":\"Diner\"}";
+
+    private final BillJsonParser parser = new BillJsonParser(new ObjectMapper());
+
+    @Test
+    public void parse_shouldReadBareJson() throws Exception {
+        BillParsedData bill = parser.parse(BILL);
+
+        assertThat(bill.getSubtotal()).isEqualByComparingTo(new BigDecimal("80.00"));
+        assertThat(bill.getRestaurantName()).isEqualTo("Diner");
+        assertThat(bill.getItems()).hasSize(1);
+        assertThat(bill.getItems().get(0).getQuantity()).isEqualTo(2);
+    }
+
+    @Test
+    public void parse_shouldSkipFencesAndSurroundingText() throws Exception {
+        BillParsedData bill = parser.parse("Here is the bill:\n```json\n" + BILL + "\n```\nLet me know!");
+
+        assertThat(bill.getTax()).isEqualByComparingTo(new BigDecimal("10.00"));
+        assertThat(bill.getItems().get(0).getName()).isEqualTo("Burger");
+    }
+
+    @Test
+    public void parse_shouldFail_whenResponseHasNoJsonObject() {
+        assertThatThrownBy(() -> parser.parse(""))
+                .isInstanceOf(JsonParseException.class)
+                .hasMessageContaining("No JSON object");
+    }
+
+    @Test
+    public void streamItems_shouldPublishEachItemAsSoonAsItCloses() {
+        String reply = "```json\n{\"subtotal\":30.00,\"items\":[{\"name\":\"Burger\",\"price\":20.00,\"quantity\":1},"
+                + "{\"name\":\"Fries\",\"price\":\"10.00\",\"quantity\":2,\"extra\":{\"a\":[1]}},],\"tax\":0}\n```";
+        List<BillParsedData.BillItem> items = new ArrayList<>();
+        List<Integer> publishedAt = new ArrayList<>();
+
+        try (StreamingBillParser stream = parser.streamItems(items::add)) {
+            // Three characters at a time, like a token stream
+            for (int i = 0; i < reply.length(); i += 3) {
+                stream.feed(reply.substring(i, Math.min(reply.length(), i + 3)));
+                if (publishedAt.size() < items.size()) {
+                    publishedAt.add(i);
+                }
+            }
+            assertThat(stream.itemCount()).isEqualTo(2);
+        }
+
+        assertThat(items).extracting(BillParsedData.BillItem::getName).containsExactly("Burger", "Fries");
+        assertThat(items.get(1).getPrice()).isEqualByComparingTo(new BigDecimal("10.00"));
+        // The first item is out before the second one has even started
+        assertThat(publishedAt.get(0)).isLessThan(reply.indexOf("Fries"));
+    }
+
+    @Test
+    public void streamItems_shouldIgnoreNestedItemsFields() {
+        List<BillParsedData.BillItem> items = new ArrayList<>();
+
+        try (StreamingBillParser stream = parser.streamItems(items::add)) {
+            stream.feed("{\"meta\":{\"items\":[{\"name\":\"Not an item\"}]},\"items\":[{\"name\":\"Soup\",\"price\":5}]}");
+        }
+
+        assertThat(items).extracting(BillParsedData.BillItem::getName).containsExactly("Soup");
+    }
+
+    @Test
+    public void streamItems_shouldStopQuietly_onMalformedReply() {
+        List<BillParsedData.BillItem> items = new ArrayList<>();
+
+        try (StreamingBillParser stream = parser.streamItems(items::add)) {
+            stream.feed("{\"items\":[{\"name\":\"Soup\",\"price\":5},");
+            stream.feed("oops}]}");
+            stream.feed("{\"name\":\"Late\",\"price\":1}");
+        }
+
+        assertThat(items).extracting(BillParsedData.BillItem::getName).containsExactly("Soup");
+    }
+}
@@ -0,0 +1,95 @@
+package com.forkthebill.service.utils;
+
+import com.forkthebill.service.models.dto.BillParsedData;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BillPageMergerTest {
+
+    @Test
+    public void merge_shouldDropLinesRepeatedAcrossConsecutivePhotos() {
+        BillParsedData first = page(null, null, "Diner",
+                item("Burger", "12.00", 1), item("Fries", "4.00", 1), item("Cola", "3.00", 2));
+        // The second photo starts two lines above where the first one ended
+        BillParsedData second = page(null, null, null,
+                item("fries ", "4.0", 1), item("Cola", "3.00", 2), item("Salad", "8.00", 1));
+        BillParsedData third = page("33.00", "2.00", null,
+                item("Salad", "8.00", 1), item("Pie", "6.00", 1));
+
+        BillParsedData bill = BillPageMerger.merge(List.of(first, second, third));
+
+        assertThat(bill.getItems()).extracting(BillParsedData.BillItem::getName)
+                .containsExactly("Burger", "Fries", "Cola", "Salad", "Pie");
+        assertThat(bill.getSubtotal()).isEqualByComparingTo("33.00");
+        assertThat(bill.getTax()).isEqualByComparingTo("2.00");
+        assertThat(bill.getTotalAmount()).isEqualByComparingTo("35.00");
+        assertThat(bill.getRestaurantName()).isEqualTo("Diner");
+    }
+
+    @Test
+    public void merge_shouldKeepRepeatedLines_whenTheyAreNotAtThePageBoundary() {
+        BillParsedData first = page(null, null, null, item("Cola", "3.00", 1), item("Burger", "12.00", 1));
+        BillParsedData second = page(null, null, null, item("Fries", "4.00", 1), item("Cola", "3.00", 1));
+
+        BillParsedData bill = BillPageMerger.merge(List.of(first, second));
+
+        assertThat(bill.getItems()).extracting(BillParsedData.BillItem::getName)
+                .containsExactly("Cola", "Burger", "Fries", "Cola");
+        // No page showed a subtotal, so it is the sum of the items
+        assertThat(bill.getSubtotal()).isEqualByComparingTo("22.00");
+        assertThat(bill.getTotalAmount()).isEqualByComparingTo("22.00");
+    }
+
+    @Test
+    public void merge_shouldKeepSingleRepeatedLine_unlessDroppingItReconcilesWithSubtotal() {
+        // A second round of cola at the top of the next photo, not an overlap
+        BillParsedData first = page(null, null, null, item("Burger", "12.00", 1), item("Cola", "3.00", 1));
+        BillParsedData second = page("18.00", null, null, item("Cola", "3.00", 1));
+
+        assertThat(BillPageMerger.merge(List.of(first, second)).getItems()).extracting(BillParsedData.BillItem::getName)
+                .containsExactly("Burger", "Cola", "Cola");
+
+        // Without a printed subtotal there is nothing to tell them apart, so both are kept
+        BillParsedData unprinted = page(null, null, null, item("Cola", "3.00", 1), item("Pie", "6.00", 1));
+        assertThat(BillPageMerger.merge(List.of(first, unprinted)).getItems()).hasSize(4);
+
+        // Here the receipt only adds up with the cola counted once
+        BillParsedData overlapping = page("21.00", null, null, item("Cola", "3.00", 1), item("Pie", "6.00", 1));
+        assertThat(BillPageMerger.merge(List.of(first, overlapping)).getItems()).extracting(BillParsedData.BillItem::getName)
+                .containsExactly("Burger", "Cola", "Pie");
+    }
+
+    @Test
+    public void merge_shouldTakeAmountsFromTheLastPageThatShowsThem() {
+        BillParsedData first = page("20.00", "1.00", null, item("Burger", "12.00", 1));
+        BillParsedData second = page("0.00", "3.00", null, item("Pie", "8.00", 1));
+
+        BillParsedData bill = BillPageMerger.merge(List.of(first, second));
+
+        assertThat(bill.getSubtotal()).isEqualByComparingTo("20.00");
+        assertThat(bill.getTax()).isEqualByComparingTo("3.00");
+    }
+
+    private static BillParsedData page(String subtotal, String tax, String restaurantName, BillParsedData.BillItem... items) {
+        return BillParsedData.builder()
+                .subtotal(subtotal == null ? BigDecimal.ZERO : new BigDecimal(subtotal))
+                .tax(tax == null ? BigDecimal.ZERO : new BigDecimal(tax))
+                .serviceCharge(BigDecimal.ZERO)
+                .totalAmount(BigDecimal.ZERO)
+                .restaurantName(restaurantName)
+                .items(List.of(items))
+                .build();
+    }
+
+    private static BillParsedData.BillItem item(String name, String price, int quantity) {
+        return BillParsedData.BillItem.builder()
+                .name(name)
+                .price(new BigDecimal(price))
+                .quantity(quantity)
+                .build();
+    }
+}
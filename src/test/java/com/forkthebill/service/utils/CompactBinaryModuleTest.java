@@ -0,0 +1,90 @@
+package com.forkthebill.service.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.forkthebill.service.config.WireFormatConfig;
+import com.forkthebill.service.models.dto.ExpenseResponse;
+import com.forkthebill.service.models.dto.ItemResponse;
+import com.forkthebill.service.models.dto.PersonResponse;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CompactBinaryModuleTest {
+
+    private final ObjectMapper cborMapper = WireFormatConfig.cborMapper();
+
+    @Test
+    public void cbor_shouldEncodeIdsAsBinaryAndAmountsAsMinorUnits() throws Exception {
+        ExpenseResponse response = response();
+
+        JsonNode tree = cborMapper.readTree(cborMapper.writeValueAsBytes(response));
+
+        assertThat(tree.get("id").isBinary()).isTrue();
+        assertThat(tree.get("id").binaryValue()).hasSize(16);
+        assertThat(tree.get("totalAmount").isIntegralNumber()).isTrue();
+        assertThat(tree.get("totalAmount").longValue()).isEqualTo(2750L);
+        assertThat(tree.get("people").get(0).get("id").binaryValue()).hasSize(16);
+        assertThat(tree.get("people").get(0).get("itemsClaimed").get(0).isBinary()).isTrue();
+        assertThat(tree.has("discount")).isFalse();
+    }
+
+    @Test
+    public void cbor_shouldRoundTripExpenseResponse() throws Exception {
+        ExpenseResponse response = response();
+
+        ExpenseResponse decoded = cborMapper.readValue(cborMapper.writeValueAsBytes(response), ExpenseResponse.class);
+
+        assertThat(decoded).isEqualTo(response);
+    }
+
+    @Test
+    public void cbor_shouldKeepIdsThatAreNotUuidsAsStrings() throws Exception {
+        ExpenseResponse response = response();
+        response.setId("legacy-id");
+
+        ExpenseResponse decoded = cborMapper.readValue(cborMapper.writeValueAsBytes(response), ExpenseResponse.class);
+
+        assertThat(decoded.getId()).isEqualTo("legacy-id");
+    }
+
+    private static ExpenseResponse response() {
+        String itemId = UUID.randomUUID().toString();
+        UUID personId = UUID.randomUUID();
+        return ExpenseResponse.builder()
+                .id(UUID.randomUUID().toString())
+                .slug("test-slug")
+                .restaurantName("Test Restaurant")
+                .createdAt(LocalDateTime.of(2025, 1, 1, 19, 30))
+                .payerName("Alice")
+                .subtotal(new BigDecimal("25.00"))
+                .tax(new BigDecimal("2.50"))
+                .serviceCharge(new BigDecimal("0.00"))
+                .totalAmount(new BigDecimal("27.50"))
+                .items(List.of(ItemResponse.builder()
+                        .id(itemId)
+                        .name("Pizza")
+                        .price(new BigDecimal("12.50"))
+                        .quantity(2)
+                        .totalQuantity(2)
+                        .claimedBy(List.of(personId))
+                        .build()))
+                .people(List.of(PersonResponse.builder()
+                        .id(personId)
+                        .name("Bob")
+                        .itemsClaimed(List.of(itemId))
+                        .subtotal(new BigDecimal("12.50"))
+                        .taxShare(new BigDecimal("1.25"))
+                        .serviceChargeShare(new BigDecimal("0.00"))
+                        .discountShare(new BigDecimal("0.00"))
+                        .totalOwed(new BigDecimal("13.75"))
+                        .isFinished(true)
+                        .build()))
+                .build();
+    }
+}
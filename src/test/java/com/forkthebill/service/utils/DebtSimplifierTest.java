@@ -0,0 +1,63 @@
+package com.forkthebill.service.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DebtSimplifierTest {
+
+    @Test
+    public void simplify_shouldLetLargestDebtorPayLargestCreditorFirst() {
+        Map<String, BigDecimal> balances = new LinkedHashMap<>();
+        balances.put("alice", new BigDecimal("40.00"));
+        balances.put("bob", new BigDecimal("-30.00"));
+        balances.put("carol", new BigDecimal("-10.00"));
+
+        assertThat(DebtSimplifier.simplify(balances)).containsExactly(
+                new DebtSimplifier.Transfer("bob", "alice", new BigDecimal("30.00")),
+                new DebtSimplifier.Transfer("carol", "alice", new BigDecimal("10.00")));
+    }
+
+    @Test
+    public void simplify_shouldCollapseChainOfDebtsIntoOnePayment() {
+        // Carol owes Bob 25 and Bob owes Alice 25 across two dinners: Carol can pay Alice directly
+        Map<String, BigDecimal> balances = Map.of(
+                "alice", new BigDecimal("25.00"),
+                "bob", new BigDecimal("0.00"),
+                "carol", new BigDecimal("-25.00"));
+
+        assertThat(DebtSimplifier.simplify(balances))
+                .containsExactly(new DebtSimplifier.Transfer("carol", "alice", new BigDecimal("25.00")));
+    }
+
+    @Test
+    public void simplify_shouldSettleEveryoneWithFewerPaymentsThanMembers() {
+        Random random = new Random(7);
+        Map<String, BigDecimal> balances = new HashMap<>();
+        long sum = 0;
+        for (int i = 0; i < 199; i++) {
+            long cents = random.nextInt(20_001) - 10_000;
+            balances.put("member-" + i, BigDecimal.valueOf(cents, 2));
+            sum += cents;
+        }
+        balances.put("member-199", BigDecimal.valueOf(-sum, 2));
+
+        List<DebtSimplifier.Transfer> transfers = DebtSimplifier.simplify(balances);
+
+        Map<String, BigDecimal> settled = new HashMap<>(balances);
+        for (DebtSimplifier.Transfer transfer : transfers) {
+            assertThat(transfer.amount()).isPositive();
+            settled.merge(transfer.from(), transfer.amount(), BigDecimal::add);
+            settled.merge(transfer.to(), transfer.amount().negate(), BigDecimal::add);
+        }
+        assertThat(settled.values()).allSatisfy(balance -> assertThat(balance).isZero());
+        assertThat(transfers).hasSizeLessThan(balances.size());
+    }
+}
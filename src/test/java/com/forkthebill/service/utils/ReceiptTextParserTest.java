@@ -0,0 +1,42 @@
+package com.forkthebill.service.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ReceiptTextParserTest {
+
+    @Test
+    public void parseAmount_shouldReadGroupingAndDecimalSeparatorsOfEitherKind() {
+        assertThat(ReceiptTextParser.parseAmount("1,234.56")).isEqualByComparingTo("1234.56");
+        assertThat(ReceiptTextParser.parseAmount("1.234,56")).isEqualByComparingTo("1234.56");
+        assertThat(ReceiptTextParser.parseAmount("1 234,56")).isEqualByComparingTo("1234.56");
+        assertThat(ReceiptTextParser.parseAmount("\u20AC12,50")).isEqualByComparingTo("12.50");
+    }
+
+    @Test
+    public void parse_shouldUseFirstMatchingLayout() {
+        ReceiptLayout german = new ReceiptLayout("german", "Zwischensumme", null,
+                "^(?<name>.*?\\p{L}.*?)\\s(?<price>\\d+,\\d{2})$",
+                "^Zwischensumme\\b", "^MwSt\\b", null, "^Gesamt\\b", null);
+        ReceiptLayout generic = new ReceiptLayout("generic", null, null,
+                "^(?<name>.*?\\p{L}.*?)\\s(?<price>\\d+[.,]\\d{2})$",
+                "^Subtotal\\b", "^Tax\\b", null, "^Total\\b", null);
+        ReceiptTextParser parser = new ReceiptTextParser(List.of(german, generic));
+
+        assertThat(parser.parse("Schnitzel 14,50\nZwischensumme 14,50\nMwSt 1,00\nGesamt 15,50"))
+                .hasValueSatisfying(bill -> assertThat(bill.getTax()).isEqualByComparingTo("1.00"));
+        assertThat(parser.parse("Burger 12.00\nTotal 12.00"))
+                .hasValueSatisfying(bill -> assertThat(bill.getSubtotal()).isEqualByComparingTo("12.00"));
+    }
+
+    @Test
+    public void parse_shouldReturnEmpty_whenNoAmountsToReconcileAgainst() {
+        ReceiptTextParser parser = new ReceiptTextParser(List.of(new ReceiptLayout("generic", null, null,
+                "^(?<name>.*?\\p{L}.*?)\\s(?<price>\\d+[.,]\\d{2})$", null, null, null, null, null)));
+
+        assertThat(parser.parse("Burger 12.00\nFries 3.00")).isEmpty();
+    }
+}